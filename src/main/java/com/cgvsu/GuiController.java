@@ -1,10 +1,15 @@
 package com.cgvsu;
 
+import com.cgvsu.render_engine.FrameBuffer;
+import com.cgvsu.render_engine.PickingBuffer;
+import com.cgvsu.render_engine.RenderBackend;
 import com.cgvsu.render_engine.RenderEngine;
+import com.cgvsu.render_engine.Scene;
+import com.cgvsu.render_engine.SceneObject;
+import com.cgvsu.render_engine.TiledRasterizer;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
 import javafx.event.ActionEvent;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Alert;
@@ -19,17 +24,24 @@ import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
 import javafx.stage.FileChooser;
-import javafx.util.Duration;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.io.IOException;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.vecmath.Vector3f;
 
+import com.cgvsu.model.LodChain;
 import com.cgvsu.model.Model;
-import com.cgvsu.objreader.ObjReader;
+import com.cgvsu.objreader.MeshCache;
 import com.cgvsu.objreader.ObjReaderException;
 import com.cgvsu.objreader.ObjWriter;
 import com.cgvsu.render_engine.Camera;
@@ -40,10 +52,13 @@ import com.cgvsu.render_engine.Camera;
  * ========================================================================
  * Храним список всех загруженных моделей и индекс активной модели.
  * Активная модель - та, над которой выполняются трансформации и сохранение.
+ * Рисуются все видимые модели сцены сразу, каждая со своим поворотом.
  */
 public class GuiController {
 
     final private float TRANSLATION = 0.5F;
+    // Цвет обводки полигона под курсором
+    private static final javafx.scene.paint.Color HOVER_COLOR = javafx.scene.paint.Color.ORANGE;
 
     @FXML
     AnchorPane anchorPane;
@@ -66,59 +81,117 @@ public class GuiController {
     private Label modelStatsLabel;
 
     // ===== ПУНКТ 2: СЦЕНА - СПИСОК МОДЕЛЕЙ И АКТИВНАЯ МОДЕЛЬ =====
-    // Список всех загруженных моделей (может быть несколько)
-    private final List<Model> models = new ArrayList<>();
+    // Все загруженные модели (может быть несколько), каждая со своим положением
+    private final Scene scene = new Scene();
     // Индекс активной модели в списке (для трансформаций и сохранения)
     private int activeModelIndex = -1;
 
+    // Дальняя плоскость с запасом: камера стоит в 100 от начала координат,
+    // а всё, что дальше дальней плоскости, отсекается
     private Camera camera = new Camera(
             new Vector3f(0, 00, 100),
             new Vector3f(0, 0, 0),
-            1.0F, 1, 0.01F, 100);
+            1.0F, 1, 0.01F, 1000);
 
-    private Timeline timeline;
+    // Цикл отрисовки: кадр перерисовывается, только если что-то изменилось
+    private AnimationTimer renderLoop;
+    private FrameState lastFrameState;
+    // Перерисовывать каждый кадр, даже если ничего не менялось (для замеров скорости)
+    private boolean continuousRendering = false;
 
-    // Вращение модели мышкой
-    private float modelRotationX = 0.0f;
-    private float modelRotationY = 0.0f;
+    // Вращение активной модели мышкой
     private double lastMouseX = 0;
     private double lastMouseY = 0;
     private boolean isDragging = false;
 
-    // Выделение полигона
+    // Выделение полигона (в активной модели)
     private int selectedPolygonIndex = -1;
 
+    // Способ отрисовки и кадр для программной растеризации
+    private RenderBackend renderBackend = RenderBackend.CANVAS;
+    private final FrameBuffer frameBuffer = new FrameBuffer();
+    // Растеризация кадра по плиткам на всех ядрах
+    private final TiledRasterizer rasterizer = new TiledRasterizer();
+    // Закрашенные полигоны с буфером глубины (только для программной растеризации)
+    private boolean filledMode = false;
+
+    // Выбор полигона по буферу номеров полигонов: буфер строится только в том кадре,
+    // где есть необработанный щелчок правой кнопкой или движение курсора
+    private final PickingBuffer pickingBuffer = new PickingBuffer();
+    private boolean pickPending = false;
+    private double pendingPickX;
+    private double pendingPickY;
+    // Подсветка полигона под курсором
+    private boolean hoverHighlight = false;
+    private boolean hoverPending = false;
+    private double pendingHoverX;
+    private double pendingHoverY;
+    private SceneObject hoveredObject;
+    private int hoveredPolygonIndex = -1;
+
+    // Фоновая загрузка моделей: каждая модель читается своей задачей, несколько файлов
+    // загружаются одновременно. Потоки-демоны не мешают закрыть программу посреди загрузки.
+    private final ExecutorService loadExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "model-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Незавершённые задачи загрузки (меняется только в потоке JavaFX)
+    private final List<ModelLoadTask> loadingTasks = new ArrayList<>();
+    // Уже прочитанная часть загружаемой модели, показывается вместе со сценой
+    private ModelLoadTask previewTask;
+    // Сваривать совпадающие вершины загружаемых моделей
+    private boolean weldOnLoad = false;
+    private Model previewModel;
+    private SceneObject previewObject;
+    // Кэш загруженных моделей пишется в фоне, когда модель уже в сцене. Если пишется
+    // модель из сцены, перед её изменением запись прерывается (stopCacheWrite)
+    private final Map<Model, CacheWrite> cacheWrites = new HashMap<>();
+
+    private record CacheWrite(AtomicBoolean cancelled, Future<?> future) {
+    }
+
+    // Уровни детализации: для моделей не меньше LOD_MIN_TRIANGLES треугольников цепочка
+    // упрощённых копий строится в фоне после загрузки и после изменений модели.
+    // Пока камера или модели двигаются, далёкие модели рисуются упрощёнными; через
+    // LOD_IDLE_NANOS после последнего движения кадр перерисовывается полностью.
+    private static final int LOD_MIN_TRIANGLES = 50_000;
+    private static final long LOD_IDLE_NANOS = 300_000_000L;
+    // Цепочка строится, только если её оценка памяти не больше этой доли свободной кучи:
+    // остальное нужно кадру и загрузкам
+    private static final double LOD_MAX_HEAP_SHARE = 0.5;
+    private boolean levelsOfDetailEnabled = true;
+    // Запущенные постройки цепочек: для какого счётчика изменений модели и флаг отмены
+    private final Map<SceneObject, LodRequest> lodRequests = new HashMap<>();
+    private int motionCameraCount = -1;
+    private long motionSceneCount = -1;
+    private long lastMotionTime;
+    private boolean interacting = false;
+
+    private record LodRequest(long modificationCount, AtomicBoolean cancelled) {
+    }
+
     @FXML
     private void initialize() {
         anchorPane.prefWidthProperty().addListener((ov, oldValue, newValue) -> canvas.setWidth(newValue.doubleValue()));
         anchorPane.prefHeightProperty().addListener((ov, oldValue, newValue) -> canvas.setHeight(newValue.doubleValue()));
 
-        timeline = new Timeline();
-        timeline.setCycleCount(Animation.INDEFINITE);
-
-        KeyFrame frame = new KeyFrame(Duration.millis(15), event -> {
-            double width = canvas.getWidth();
-            double height = canvas.getHeight();
-
-            canvas.getGraphicsContext2D().clearRect(0, 0, width, height);
-            camera.setAspectRatio((float) (width / height));
-
-            // Устанавливаем цвет линий в зависимости от темы
-            // Проверяем наличие класса dark-theme для определения текущей темы
-            javafx.scene.paint.Color strokeColor = anchorPane.getStyleClass().contains("dark-theme") 
-                    ? javafx.scene.paint.Color.LIGHTGRAY 
-                    : javafx.scene.paint.Color.BLACK;
-            canvas.getGraphicsContext2D().setStroke(strokeColor);
-
-            Model activeModel = getActiveModel();
-            if (activeModel != null) {
-                RenderEngine.render(canvas.getGraphicsContext2D(), camera, activeModel, (int) width, (int) height,
-                        modelRotationX, modelRotationY, selectedPolygonIndex, strokeColor);
+        renderLoop = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                camera.setAspectRatio((float) (canvas.getWidth() / canvas.getHeight()));
+                updatePreview();
+                resolvePendingPicks();
+                trackMotion(now);
+                updateLevelsOfDetail();
+                FrameState state = captureFrameState();
+                if (continuousRendering || !state.equals(lastFrameState)) {
+                    renderFrame();
+                    lastFrameState = state;
+                }
             }
-        });
-
-        timeline.getKeyFrames().add(frame);
-        timeline.play();
+        };
+        renderLoop.start();
 
         setupMouseHandlers();
         setupKeyboardHandlers();
@@ -127,6 +200,220 @@ public class GuiController {
         updateStatusBar();
     }
 
+    // ========================================================================
+    // ОТРИСОВКА ТОЛЬКО ПРИ ИЗМЕНЕНИЯХ
+    // ========================================================================
+    // Кадр перерисовывается, если с прошлой отрисовки изменилось хоть что-то, что на него
+    // влияет: камера, сцена (состав, положение моделей, их вершины и полигоны), выделение,
+    // тема, способ отрисовки или размер окна. Пока ничего не меняется, процессор не занят.
+
+    /**
+     * Всё, от чего зависит картинка на экране.
+     */
+    private record FrameState(
+            int cameraModificationCount,
+            long sceneModificationCount,
+            Model previewModel,
+            int activeModelIndex,
+            int selectedPolygonIndex,
+            SceneObject hoveredObject,
+            int hoveredPolygonIndex,
+            boolean darkTheme,
+            RenderBackend renderBackend,
+            boolean filledMode,
+            boolean interacting,
+            double width,
+            double height) {
+    }
+
+    private FrameState captureFrameState() {
+        return new FrameState(
+                camera.getModificationCount(),
+                scene.getModificationCount(),
+                previewModel,
+                activeModelIndex,
+                selectedPolygonIndex,
+                hoveredObject,
+                hoveredPolygonIndex,
+                anchorPane.getStyleClass().contains("dark-theme"),
+                renderBackend,
+                filledMode,
+                interacting,
+                canvas.getWidth(),
+                canvas.getHeight());
+    }
+
+    private void renderFrame() {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+
+        // Устанавливаем цвет линий в зависимости от темы
+        // Проверяем наличие класса dark-theme для определения текущей темы
+        javafx.scene.paint.Color strokeColor = anchorPane.getStyleClass().contains("dark-theme") 
+                ? javafx.scene.paint.Color.LIGHTGRAY 
+                : javafx.scene.paint.Color.BLACK;
+        canvas.getGraphicsContext2D().setStroke(strokeColor);
+
+        // Рисуются все видимые модели сцены; пока модель загружается, уже прочитанная
+        // её часть рисуется вместе с ними
+        List<SceneObject> objects = scene.getObjects();
+        if (previewObject != null) {
+            objects = new ArrayList<>(objects);
+            objects.add(previewObject);
+        }
+        SceneObject activeObject = getActiveObject();
+        final boolean showHovered = hoveredObject != null && hoveredObject.isVisible()
+                && (hoveredObject != activeObject || hoveredPolygonIndex != selectedPolygonIndex);
+        if (renderBackend == RenderBackend.SOFTWARE) {
+            // Весь кадр рисуется в массив пикселей и выгружается на Canvas одним вызовом
+            frameBuffer.resize((int) width, (int) height);
+            frameBuffer.clear(0);
+            RenderEngine.renderScene(frameBuffer, camera, objects, activeObject, selectedPolygonIndex,
+                    filledMode ? javafx.scene.paint.Color.LIGHTSTEELBLUE : strokeColor, filledMode, rasterizer,
+                    interacting);
+            if (showHovered) {
+                RenderEngine.drawPolygonOutline(frameBuffer, camera, hoveredObject, hoveredPolygonIndex,
+                        HOVER_COLOR, 2);
+            }
+            frameBuffer.present(canvas.getGraphicsContext2D().getPixelWriter());
+        } else {
+            canvas.getGraphicsContext2D().clearRect(0, 0, width, height);
+            RenderEngine.renderScene(canvas.getGraphicsContext2D(), camera, objects, (int) width, (int) height,
+                    activeObject, selectedPolygonIndex, strokeColor, interacting);
+            if (showHovered) {
+                RenderEngine.drawPolygonOutline(canvas.getGraphicsContext2D(), camera, hoveredObject,
+                        (int) width, (int) height, hoveredPolygonIndex, HOVER_COLOR, 2.0);
+            }
+        }
+    }
+
+    /**
+     * Движением считается любое изменение камеры или сцены. Пока с последнего движения
+     * прошло меньше LOD_IDLE_NANOS, сцена рисуется с уровнями детализации; переход
+     * в покой меняет состояние кадра, и он перерисовывается полностью.
+     */
+    private void trackMotion(long now) {
+        final int cameraCount = camera.getModificationCount();
+        final long sceneCount = scene.getModificationCount();
+        if (cameraCount != motionCameraCount || sceneCount != motionSceneCount) {
+            motionCameraCount = cameraCount;
+            motionSceneCount = sceneCount;
+            lastMotionTime = now;
+        }
+        interacting = now - lastMotionTime < LOD_IDLE_NANOS;
+    }
+
+    /**
+     * Запускает в фоне постройку цепочки уровней детализации для больших моделей сцены,
+     * у которых её нет или она устарела. Модель копируется здесь, в потоке JavaFX
+     * ({@link LodChain#prepare}), в фоне идёт только упрощение копии. Постройки для
+     * изменённых или удалённых моделей отменяются сразу, а новые запускаются, только
+     * когда сцена LOD_IDLE_NANOS не менялась: серия правок большой модели не копирует
+     * её после каждой правки. Готовая цепочка принимается в потоке JavaFX, только если
+     * модель за время постройки не менялась.
+     */
+    private void updateLevelsOfDetail() {
+        lodRequests.entrySet().removeIf(entry -> {
+            final SceneObject object = entry.getKey();
+            final LodRequest request = entry.getValue();
+            if (scene.getObjects().contains(object)
+                    && object.getModel().getModificationCount() == request.modificationCount()) {
+                return false;
+            }
+            request.cancelled().set(true);
+            return true;
+        });
+        if (interacting || !levelsOfDetailEnabled) {
+            return;
+        }
+        for (SceneObject object : scene.getObjects()) {
+            final Model model = object.getModel();
+            final int triangleCount = model.polygons.getCornerCount() - 2 * model.polygons.size();
+            final LodChain levels = object.getLevelsOfDetail();
+            if (triangleCount < LOD_MIN_TRIANGLES || (levels != null && levels.isValidFor(model))
+                    || lodRequests.containsKey(object)) {
+                continue;
+            }
+            final LodRequest request = new LodRequest(model.getModificationCount(), new AtomicBoolean());
+            lodRequests.put(object, request);
+            if (LodChain.estimateMemory(model.vertices.size(), triangleCount, LodChain.DEFAULT_RATIOS)
+                    > LOD_MAX_HEAP_SHARE * getFreeHeap()) {
+                // Запрос остаётся в lodRequests: без изменения модели попытка не повторяется
+                statusLabel.setText("⚠ Levels of detail skipped: not enough memory for "
+                        + triangleCount + " triangles");
+                continue;
+            }
+            final LodChain.Builder builder = LodChain.prepare(model);
+            CompletableFuture
+                    .supplyAsync(() -> builder.build(LodChain.DEFAULT_RATIOS, request.cancelled()::get), loadExecutor)
+                    .whenCompleteAsync((chain, exception) -> {
+                        if (exception != null) {
+                            // Запрос остаётся в lodRequests: до следующего изменения модели
+                            // постройка не повторяется
+                            Throwable cause = exception.getCause() != null ? exception.getCause() : exception;
+                            statusLabel.setText("✗ Levels of detail not built: " + cause);
+                            return;
+                        }
+                        // Запроса нет, если постройку отменили (в том числе выключив LOD)
+                        if (lodRequests.remove(object, request) && chain != null && chain.isValidFor(model)) {
+                            object.setLevelsOfDetail(chain);
+                        }
+                    }, Platform::runLater);
+        }
+    }
+
+    private static long getFreeHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Обрабатывает отложенные щелчок и движение курсора: буфер номеров полигонов всей сцены
+     * строится (если камера, сцена или окно изменились с прошлого раза), а объект и полигон
+     * под курсором берутся из него одним чтением. Щелчок по другой модели делает её активной.
+     */
+    private void resolvePendingPicks() {
+        if (!pickPending && !hoverPending) {
+            return;
+        }
+        if (scene.isEmpty()) {
+            pickPending = false;
+            hoverPending = false;
+            hoveredObject = null;
+            hoveredPolygonIndex = -1;
+            return;
+        }
+
+        // В каркасе видны и задние грани, поэтому выбирать можно и их
+        pickingBuffer.update(camera, scene.getObjects(), (int) canvas.getWidth(), (int) canvas.getHeight(),
+                rasterizer, filledMode);
+        if (hoverPending) {
+            hoveredObject = pickingBuffer.getObjectAt(pendingHoverX, pendingHoverY);
+            hoveredPolygonIndex = pickingBuffer.getPolygonAt(pendingHoverX, pendingHoverY);
+            hoverPending = false;
+        }
+        if (pickPending) {
+            SceneObject object = pickingBuffer.getObjectAt(pendingPickX, pendingPickY);
+            if (object != null) {
+                activeModelIndex = scene.getObjects().indexOf(object);
+            }
+            selectPolygon(pickingBuffer.getPolygonAt(pendingPickX, pendingPickY));
+            pickPending = false;
+        }
+    }
+
+    private void selectPolygon(int polygonIndex) {
+        if (polygonIndex >= 0) {
+            selectedPolygonIndex = polygonIndex;
+            updateStatusBar();
+            statusLabel.setText("✓ Polygon #" + polygonIndex + " selected (Click 'Delete Selected' to remove)");
+        } else {
+            selectedPolygonIndex = -1;
+            updateStatusBar();
+            statusLabel.setText("Ready");
+        }
+    }
+
     private void setupKeyboardHandlers() {
         canvas.setFocusTraversable(true);
         
@@ -182,23 +469,23 @@ public class GuiController {
                 break;
             case LEFT:
                 // Вращение модели влево
-                modelRotationY -= rotationStep;
+                rotateActiveModel(0, -rotationStep);
                 break;
             case RIGHT:
                 // Вращение модели вправо
-                modelRotationY += rotationStep;
+                rotateActiveModel(0, rotationStep);
                 break;
             case W:
                 // Вращение модели вверх
-                modelRotationX -= rotationStep;
-                // Ограничение углов
-                if (modelRotationX < -Math.PI / 2) modelRotationX = (float) (-Math.PI / 2);
+                rotateActiveModel(-rotationStep, 0);
                 break;
             case S:
                 // Вращение модели вниз
-                modelRotationX += rotationStep;
-                // Ограничение углов
-                if (modelRotationX > Math.PI / 2) modelRotationX = (float) (Math.PI / 2);
+                rotateActiveModel(rotationStep, 0);
+                break;
+            case ESCAPE:
+                // Отмена фоновой загрузки моделей
+                cancelLoading();
                 break;
         }
     }
@@ -224,13 +511,8 @@ public class GuiController {
                 double deltaX = event.getX() - lastMouseX;
                 double deltaY = event.getY() - lastMouseY;
 
-                // Вращение модели
-                modelRotationY += (float) (deltaX * 0.01);
-                modelRotationX += (float) (deltaY * 0.01);
-
-                // Ограничение углов
-                if (modelRotationX > Math.PI / 2) modelRotationX = (float) (Math.PI / 2);
-                if (modelRotationX < -Math.PI / 2) modelRotationX = (float) (-Math.PI / 2);
+                // Вращение активной модели (угол наклона ограничен)
+                rotateActiveModel((float) (deltaY * 0.01), (float) (deltaX * 0.01));
 
                 lastMouseX = event.getX();
                 lastMouseY = event.getY();
@@ -243,28 +525,31 @@ public class GuiController {
             }
         });
 
-        // Выделение полигона кликом правой кнопкой мыши
+        // Выделение полигона кликом правой кнопкой мыши: сам выбор делается в ближайшем
+        // кадре по буферу номеров полигонов (см. resolvePendingPicks)
         canvas.setOnMouseClicked(event -> {
-            if (event.getButton() == MouseButton.SECONDARY) {
-                Model activeModel = getActiveModel();
-                if (activeModel != null) {
-                    int polygonIndex = RenderEngine.findPolygonAtPoint(
-                            camera, activeModel, (int) canvas.getWidth(), (int) canvas.getHeight(),
-                            modelRotationX, modelRotationY, event.getX(), event.getY());
-
-                    if (polygonIndex >= 0) {
-                        selectedPolygonIndex = polygonIndex;
-                        updateStatusBar();
-                        statusLabel.setText("✓ Polygon #" + polygonIndex + " selected (Click 'Delete Selected' to remove)");
-                    } else {
-                        selectedPolygonIndex = -1;
-                        updateStatusBar();
-                        statusLabel.setText("Ready");
-                    }
-                }
+            if (event.getButton() == MouseButton.SECONDARY && !scene.isEmpty()) {
+                pickPending = true;
+                pendingPickX = event.getX();
+                pendingPickY = event.getY();
+            }
+        });
+
+        // Подсветка полигона под курсором
+        canvas.setOnMouseMoved(event -> {
+            if (hoverHighlight) {
+                hoverPending = true;
+                pendingHoverX = event.getX();
+                pendingHoverY = event.getY();
             }
         });
 
+        canvas.setOnMouseExited(event -> {
+            hoverPending = false;
+            hoveredObject = null;
+            hoveredPolygonIndex = -1;
+        });
+
         // Зум колесиком мыши
         canvas.setOnScroll((ScrollEvent event) -> {
             double deltaY = event.getDeltaY();
@@ -284,25 +569,43 @@ public class GuiController {
 
     private void updateStatusBar() {
         Model activeModel = getActiveModel();
+
+        if (previewModel != null) {
+            // Загружаемая модель: сколько уже прочитано, прогресс - в строке статуса
+            activeModelLabel.setText("Active: Loading " + previewTask.getTitle());
+            modelStatsLabel.setText("Vertices: " + previewModel.vertices.size() +
+                                   " | Polygons: " + previewModel.polygons.size());
+            modelsInfoLabel.setText("Models: " + scene.size());
+            updateLoadingStatus();
+            return;
+        }
         
         // Обновление информации о моделях
-        modelsInfoLabel.setText("Models: " + models.size());
+        int hiddenCount = 0;
+        for (SceneObject object : scene.getObjects()) {
+            if (!object.isVisible()) {
+                ++hiddenCount;
+            }
+        }
+        modelsInfoLabel.setText("Models: " + scene.size() + (hiddenCount > 0 ? " (" + hiddenCount + " hidden)" : ""));
         
         // Обновление информации об активной модели
         if (activeModel != null && activeModelIndex >= 0) {
-            activeModelLabel.setText("Active: Model #" + (activeModelIndex + 1));
+            activeModelLabel.setText("Active: Model #" + (activeModelIndex + 1)
+                    + (getActiveObject().isVisible() ? "" : " (hidden)"));
             modelStatsLabel.setText("Vertices: " + activeModel.vertices.size() + 
                                    " | Polygons: " + activeModel.polygons.size());
             statusLabel.setText("✓ Ready");
         } else {
             activeModelLabel.setText("Active: None");
             modelStatsLabel.setText("Vertices: 0 | Polygons: 0");
-            if (models.isEmpty()) {
+            if (scene.isEmpty()) {
                 statusLabel.setText("Ready - Load a model to start");
             } else {
                 statusLabel.setText("Ready");
             }
         }
+        updateLoadingStatus();
      }
 
     /**
@@ -313,6 +616,10 @@ public class GuiController {
      * Используется качественный ObjReader для чтения модели.
      * Загруженная модель добавляется в список моделей и становится активной.
      * 
+     * Файлы читаются в фоне ({@link ModelLoadTask}), интерфейс и отрисовка при этом
+     * не замирают; можно выбрать сразу несколько файлов. Загрузку отменяет Esc
+     * или пункт меню File -> Cancel Loading.
+     *
      * ПУНКТ 5: ОБРАБОТКА ОШИБОК
      * При ошибках чтения (ObjReaderException, IOException) показывается
      * окно с ошибкой, чтобы пользователь мог обдумать свои действия.
@@ -323,34 +630,181 @@ public class GuiController {
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Model (*.obj)", "*.obj"));
         fileChooser.setTitle("Load Model");
 
-        File file = fileChooser.showOpenDialog((Stage) canvas.getScene().getWindow());
-        if (file == null) {
+        List<File> files = fileChooser.showOpenMultipleDialog((Stage) canvas.getScene().getWindow());
+        if (files == null) {
             return;
         }
 
-        Path fileName = Path.of(file.getAbsolutePath());
+        for (File file : files) {
+            startLoading(Path.of(file.getAbsolutePath()));
+        }
+    }
+
+    private void startLoading(Path path) {
+        // ПУНКТ 1: Чтение и парсинг файла через ObjReader (куски файла разбираются параллельно).
+        // Если модель уже открывали и файл с тех пор не менялся, она берётся из двоичного кэша
+        ModelLoadTask task = new ModelLoadTask(path, weldOnLoad);
+        task.setOnPreviewReleased(() -> releasePreview(task));
+
+        task.setOnSucceeded(event -> {
+            finishLoading(task);
+            // ПУНКТ 2: Добавление модели в список и установка как активной.
+            // Модель попадает в сцену только целиком и только в потоке JavaFX
+            scene.add(task.getValue());
+            activeModelIndex = scene.size() - 1;
+            updateStatusBar();
+            statusLabel.setText("✓ Model loaded: " + task.getTitle() + (task.getWeldedVertexCount() > 0
+                    ? " (vertices welded: " + task.getVertexCountBeforeWeld() + " → "
+                            + (task.getVertexCountBeforeWeld() - task.getWeldedVertexCount()) + ")"
+                    : ""));
+            updateLoadingStatus();
+            startCacheWrite(path, task.takeModelToCache());
+        });
+        task.setOnFailed(event -> {
+            finishLoading(task);
+            updateStatusBar();
+            Throwable exception = task.getException();
+            if (exception instanceof ObjReaderException) {
+                // ПУНКТ 5: Обработка ошибок парсинга OBJ-файла
+                showError("Ошибка при чтении OBJ-файла", exception.getMessage());
+                statusLabel.setText("✗ Error loading model: " + task.getTitle());
+            } else {
+                // ПУНКТ 5: Обработка ошибок чтения файла
+                showError("Ошибка при чтении файла", exception.getMessage());
+                statusLabel.setText("✗ Error reading file: " + task.getTitle());
+            }
+            updateLoadingStatus();
+        });
+        task.setOnCancelled(event -> {
+            finishLoading(task);
+            updateStatusBar();
+            statusLabel.setText("Loading cancelled: " + task.getTitle());
+            updateLoadingStatus();
+        });
+        task.progressProperty().addListener((observable, oldValue, newValue) -> updateLoadingStatus());
+
+        loadingTasks.add(task);
+        updateLoadingStatus();
+        loadExecutor.execute(task);
+    }
+
+    private void finishLoading(ModelLoadTask task) {
+        loadingTasks.remove(task);
+        releasePreview(task);
+    }
+
+    /**
+     * Пишет в фоне двоичный кэш модели, прочитанной из OBJ-файла path ({@link MeshCache}),
+     * чтобы следующее открытие файла было быстрым. Модель к этому времени уже показана.
+     */
+    private void startCacheWrite(Path path, Model model) {
+        if (model == null) {
+            return;
+        }
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final Future<?> future = loadExecutor.submit(() -> {
+            MeshCache.tryWrite(path, model, cancelled::get);
+            Platform.runLater(() -> cacheWrites.remove(model));
+        });
+        cacheWrites.put(model, new CacheWrite(cancelled, future));
+    }
 
+    /**
+     * Прерывает фоновую запись кэша модели, если она идёт, и ждёт, пока фоновый поток
+     * перестанет читать модель (не дольше записи одного блока). Вызывается перед любым
+     * изменением модели: массивы сдвигаются на месте, и в кэш попала бы каша.
+     * Кэш этой модели тогда не записывается, его запишет следующая загрузка файла.
+     */
+    private void stopCacheWrite(Model model) {
+        final CacheWrite write = cacheWrites.remove(model);
+        if (write == null) {
+            return;
+        }
+        write.cancelled().set(true);
         try {
-            // ПУНКТ 1: Чтение файла и парсинг через ObjReader
-            String fileContent = Files.readString(fileName);
-            Model loadedModel = ObjReader.read(fileContent);
-            
-            // ПУНКТ 2: Добавление модели в список и установка как активной
-            models.add(loadedModel);
-            activeModelIndex = models.size() - 1;
+            write.future().get();
+        } catch (ExecutionException exception) {
+            // Кэш - только ускорение, его ошибки не мешают редактированию
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void releasePreview(ModelLoadTask task) {
+        if (previewTask == task) {
+            previewTask = null;
+            previewModel = null;
+            previewObject = null;
+        }
+    }
+
+    /**
+     * Пока модели загружаются, показывает уже прочитанную часть последней из них
+     * ({@link ModelLoadTask#getSnapshot()}). Для каждого показанного снимка заново строятся
+     * рёбра и треугольники, поэтому новый снимок берётся, только когда модель выросла
+     * в полтора раза: так вся эта работа остаётся пропорциональной размеру модели.
+     */
+    private void updatePreview() {
+        ModelLoadTask task = loadingTasks.isEmpty() ? null : loadingTasks.get(loadingTasks.size() - 1);
+        Model snapshot = task != null ? task.getSnapshot() : null;
+        if (snapshot == null) {
+            if (previewModel != null) {
+                previewTask = null;
+                previewModel = null;
+                previewObject = null;
+                updateStatusBar();
+            }
+            return;
+        }
+        if (snapshot == previewModel) {
+            return;
+        }
+        final long shownSize = previewModel != null && task == previewTask
+                ? (long) previewModel.vertices.size() + previewModel.polygons.size()
+                : 0;
+        final long snapshotSize = (long) snapshot.vertices.size() + snapshot.polygons.size();
+        if (shownSize == 0 || snapshotSize * 2 >= shownSize * 3) {
+            previewTask = task;
+            previewModel = snapshot;
+            previewObject = new SceneObject(snapshot);
             updateStatusBar();
-            statusLabel.setText("✓ Model loaded: " + file.getName());
-        } catch (ObjReaderException exception) {
-            // ПУНКТ 5: Обработка ошибок парсинга OBJ-файла
-            showError("Ошибка при чтении OBJ-файла", exception.getMessage());
-            statusLabel.setText("✗ Error loading model");
-        } catch (IOException exception) {
-            // ПУНКТ 5: Обработка ошибок чтения файла
-            showError("Ошибка при чтении файла", exception.getMessage());
-            statusLabel.setText("✗ Error reading file");
         }
     }
 
+    /**
+     * Показывает в строке статуса общий прогресс всех идущих загрузок.
+     */
+    private void updateLoadingStatus() {
+        if (loadingTasks.isEmpty()) {
+            return;
+        }
+        double workDone = 0;
+        double totalWork = 0;
+        for (ModelLoadTask task : loadingTasks) {
+            if (task.getTotalWork() > 0) {
+                workDone += Math.max(task.getWorkDone(), 0);
+                totalWork += task.getTotalWork();
+            }
+        }
+        final String files = loadingTasks.size() == 1
+                ? loadingTasks.get(0).getTitle()
+                : loadingTasks.size() + " models";
+        final String percent = totalWork > 0 ? " " + Math.round(100 * workDone / totalWork) + "%" : "";
+        statusLabel.setText("⏳ Loading " + files + "..." + percent + " (Esc to cancel)");
+    }
+
+    private void cancelLoading() {
+        // Копия списка: обработчик отмены удаляет задачу из loadingTasks
+        for (ModelLoadTask task : new ArrayList<>(loadingTasks)) {
+            task.cancel();
+        }
+    }
+
+    @FXML
+    private void onCancelLoadingMenuItemClick() {
+        cancelLoading();
+    }
+
     /**
      * ========================================================================
      * ПУНКТ 1: ЗАГРУЗКА И ЧТЕНИЕ МОДЕЛЕЙ - СОХРАНЕНИЕ МОДЕЛИ
@@ -378,10 +832,9 @@ public class GuiController {
             return;
         }
 
-        // ПУНКТ 1: Используем ObjWriter для сохранения модели
-        String content = ObjWriter.write(activeModel);
+        // ПУНКТ 1: Используем ObjWriter для сохранения модели (куски файла кодируются параллельно)
         try {
-            Files.writeString(file.toPath(), content);
+            ObjWriter.writeParallel(activeModel, file.toPath());
             statusLabel.setText("✓ Model saved: " + file.getName());
         } catch (IOException exception) {
             // ПУНКТ 5: Обработка ошибок сохранения
@@ -400,14 +853,14 @@ public class GuiController {
      */
     @FXML
     private void onNextModelMenuItemClick() {
-        if (models.isEmpty()) {
+        if (scene.isEmpty()) {
             activeModelIndex = -1;
             selectedPolygonIndex = -1;
             updateStatusBar();
             return;
         }
         // Циклическое переключение: после последней модели переходим к первой
-        activeModelIndex = (activeModelIndex + 1) % models.size();
+        activeModelIndex = (activeModelIndex + 1) % scene.size();
         selectedPolygonIndex = -1; // Сбрасываем выделение при смене модели
         updateStatusBar();
     }
@@ -417,14 +870,14 @@ public class GuiController {
      */
     @FXML
     private void onPreviousModelMenuItemClick() {
-        if (models.isEmpty()) {
+        if (scene.isEmpty()) {
             activeModelIndex = -1;
             selectedPolygonIndex = -1;
             updateStatusBar();
             return;
         }
         // Циклическое переключение: перед первой моделью переходим к последней
-        activeModelIndex = (activeModelIndex - 1 + models.size()) % models.size();
+        activeModelIndex = (activeModelIndex - 1 + scene.size()) % scene.size();
         selectedPolygonIndex = -1; // Сбрасываем выделение при смене модели
         updateStatusBar();
     }
@@ -436,10 +889,44 @@ public class GuiController {
      * Только активная модель может быть трансформирована и сохранена.
      */
     public Model getActiveModel() {
-        if (activeModelIndex < 0 || activeModelIndex >= models.size()) {
+        SceneObject activeObject = getActiveObject();
+        return activeObject != null ? activeObject.getModel() : null;
+    }
+
+    /**
+     * Активная модель вместе с её положением в сцене.
+     */
+    private SceneObject getActiveObject() {
+        if (activeModelIndex < 0 || activeModelIndex >= scene.size()) {
             return null;
         }
-        return models.get(activeModelIndex);
+        return scene.get(activeModelIndex);
+    }
+
+    /**
+     * Поворачивает только активную модель, остальные модели сцены остаются на месте.
+     */
+    private void rotateActiveModel(float deltaX, float deltaY) {
+        SceneObject activeObject = getActiveObject();
+        if (activeObject != null) {
+            activeObject.rotate(deltaX, deltaY);
+        }
+    }
+
+    /**
+     * Скрывает активную модель или снова показывает её. Скрытая модель не рисуется
+     * и не выбирается мышью, но остаётся в сцене и её можно сохранить.
+     */
+    @FXML
+    private void onToggleActiveModelVisibilityClick() {
+        SceneObject activeObject = getActiveObject();
+        if (activeObject == null) {
+            showInfo("Нет активной модели.");
+            return;
+        }
+        activeObject.setVisible(!activeObject.isVisible());
+        updateStatusBar();
+        statusLabel.setText(activeObject.isVisible() ? "✓ Active model shown" : "✓ Active model hidden");
     }
 
     /**
@@ -449,27 +936,30 @@ public class GuiController {
      */
     @FXML
     private void onDeleteActiveModelClick() {
-        if (models.isEmpty()) {
+        if (scene.isEmpty()) {
             showInfo("Нет загруженных моделей для удаления.");
             return;
         }
 
-        if (activeModelIndex < 0 || activeModelIndex >= models.size()) {
+        if (activeModelIndex < 0 || activeModelIndex >= scene.size()) {
             showInfo("Нет активной модели для удаления.");
             return;
         }
 
         // Удаляем активную модель
-        models.remove(activeModelIndex);
+        if (scene.remove(activeModelIndex) == hoveredObject) {
+            hoveredObject = null;
+            hoveredPolygonIndex = -1;
+        }
         selectedPolygonIndex = -1; // Сбрасываем выделение
 
         // Обновляем индекс активной модели
-        if (models.isEmpty()) {
+        if (scene.isEmpty()) {
             // Если это была последняя модель
             activeModelIndex = -1;
-        } else if (activeModelIndex >= models.size()) {
+        } else if (activeModelIndex >= scene.size()) {
             // Если удалили последнюю модель в списке, переходим к предыдущей
-            activeModelIndex = models.size() - 1;
+            activeModelIndex = scene.size() - 1;
         }
         // Если удалили не последнюю, индекс остается корректным (смещается автоматически)
 
@@ -506,6 +996,7 @@ public class GuiController {
                     showInfo("Индекс должен быть в диапазоне 0.." + (model.polygons.size() - 1));
                     return;
                 }
+                stopCacheWrite(model);
                 model.deletePolygon(index);
                 if (selectedPolygonIndex == index) {
                     selectedPolygonIndex = -1;
@@ -538,6 +1029,7 @@ public class GuiController {
         }
 
         int index = selectedPolygonIndex;
+        stopCacheWrite(model);
         model.deletePolygon(index);
         selectedPolygonIndex = -1;
         updateStatusBar();
@@ -567,6 +1059,7 @@ public class GuiController {
                     showInfo("Индекс должен быть в диапазоне 0.." + (model.vertices.size() - 1));
                     return;
                 }
+                stopCacheWrite(model);
                 model.deleteVertex(index);
                 updateStatusBar();
                 statusLabel.setText("✓ Vertex #" + index + " deleted");
@@ -619,6 +1112,85 @@ public class GuiController {
         setDarkTheme();
     }
 
+    // ========================================================================
+    // ПЕРЕКЛЮЧЕНИЕ СПОСОБА ОТРИСОВКИ
+    // ========================================================================
+    // Для сравнения скорости: линии через GraphicsContext или программная растеризация.
+
+    @FXML
+    private void onSetCanvasBackendMenuItemClick() {
+        renderBackend = RenderBackend.CANVAS;
+        filledMode = false;
+        statusLabel.setText("✓ Renderer: Canvas (GraphicsContext)");
+    }
+
+    @FXML
+    private void onSetSoftwareBackendMenuItemClick() {
+        renderBackend = RenderBackend.SOFTWARE;
+        statusLabel.setText("✓ Renderer: Software rasterizer");
+    }
+
+    @FXML
+    private void onToggleContinuousRenderingMenuItemClick() {
+        continuousRendering = !continuousRendering;
+        statusLabel.setText(continuousRendering
+                ? "✓ Continuous rendering: every frame is redrawn"
+                : "✓ Continuous rendering off: redraw only on changes");
+    }
+
+    @FXML
+    private void onToggleWeldOnLoadMenuItemClick() {
+        weldOnLoad = !weldOnLoad;
+        statusLabel.setText(weldOnLoad
+                ? "✓ Weld vertices on load: coinciding vertices of loaded models are merged"
+                : "✓ Weld vertices on load off");
+    }
+
+    @FXML
+    private void onToggleLevelsOfDetailMenuItemClick() {
+        levelsOfDetailEnabled = !levelsOfDetailEnabled;
+        if (!levelsOfDetailEnabled) {
+            // Постройки прерываются, готовые цепочки отдаются сборщику мусора
+            for (LodRequest request : lodRequests.values()) {
+                request.cancelled().set(true);
+            }
+            lodRequests.clear();
+            for (SceneObject object : scene.getObjects()) {
+                object.setLevelsOfDetail(null);
+            }
+        }
+        statusLabel.setText(levelsOfDetailEnabled
+                ? "✓ Levels of detail: large models are simplified while the camera moves"
+                : "✓ Levels of detail off");
+    }
+
+    @FXML
+    private void onToggleHoverHighlightMenuItemClick() {
+        hoverHighlight = !hoverHighlight;
+        if (!hoverHighlight) {
+            hoverPending = false;
+            hoveredObject = null;
+            hoveredPolygonIndex = -1;
+        }
+        statusLabel.setText(hoverHighlight
+                ? "✓ Hover highlight on: polygon under the cursor is outlined"
+                : "✓ Hover highlight off");
+    }
+
+    @FXML
+    private void onSetWireframeModeMenuItemClick() {
+        filledMode = false;
+        statusLabel.setText("✓ Mode: Wireframe");
+    }
+
+    @FXML
+    private void onSetFilledModeMenuItemClick() {
+        // Закрашенные полигоны рисует только программный растеризатор
+        renderBackend = RenderBackend.SOFTWARE;
+        filledMode = true;
+        statusLabel.setText("✓ Mode: Filled (Z-buffer, back faces culled)");
+    }
+
     /**
      * ПУНКТ 4: Установка светлой темы оформления.
      */
@@ -694,38 +1266,35 @@ public class GuiController {
     @FXML
     public void handleCameraLeft(ActionEvent actionEvent) {
         // Вращение модели влево
-        modelRotationY -= 0.05f;
+        rotateActiveModel(0, -0.05f);
     }
 
     @FXML
     public void handleCameraRight(ActionEvent actionEvent) {
         // Вращение модели вправо
-        modelRotationY += 0.05f;
+        rotateActiveModel(0, 0.05f);
     }
 
     @FXML
     public void handleCameraUp(ActionEvent actionEvent) {
         // Вращение модели вверх
-        modelRotationX -= 0.05f;
-        // Ограничение углов
-        if (modelRotationX < -Math.PI / 2) modelRotationX = (float) (-Math.PI / 2);
+        rotateActiveModel(-0.05f, 0);
     }
 
     @FXML
     public void handleCameraDown(ActionEvent actionEvent) {
         // Вращение модели вниз
-        modelRotationX += 0.05f;
-        // Ограничение углов
-        if (modelRotationX > Math.PI / 2) modelRotationX = (float) (Math.PI / 2);
+        rotateActiveModel(0.05f, 0);
     }
 
     @FXML
     private void onShowHelpClick() {
         String helpText = "📖 Simple3DViewer - Инструкция\n\n" +
                 "🖱 УПРАВЛЕНИЕ МЫШЬЮ:\n" +
-                "• Левый клик + перетаскивание - Вращение модели\n" +
+                "• Левый клик + перетаскивание - Вращение активной модели\n" +
                 "• Колесико мыши - Приближение/отдаление (зум)\n" +
-                "• Правый клик по полигону - Выделение полигона (красным цветом)\n\n" +
+                "• Правый клик по полигону - Выделение полигона (красным цветом), модель становится активной\n" +
+                "  (выделяется ближайший к камере полигон под курсором; задние грани - только в каркасном режиме)\n\n" +
                 "⌨ УПРАВЛЕНИЕ КЛАВИАТУРОЙ:\n" +
                 "• Стрелки ↑↓ - Приближение/отдаление (зум)\n" +
                 "• Стрелки ←→ - Вращение модели влево/вправо\n" +
@@ -733,10 +1302,15 @@ public class GuiController {
                 "• W/S - Вращение модели вверх/вниз\n\n" +
                 "📂 ФАЙЛЫ:\n" +
                 "• Load - Загрузить OBJ модель\n" +
-                "• Save - Сохранить активную модель\n\n" +
+                "• Save - Сохранить активную модель\n" +
+                "• Weld Vertices on Load - Сливать совпадающие вершины при загрузке\n\n" +
                 "🎨 СЦЕНА:\n" +
                 "• Prev/Next Model - Переключение между загруженными моделями\n" +
                 "• Del Model - Удаление активной модели из сцены\n" +
+                "• Hide/Show Active Model - Скрыть или показать активную модель\n" +
+                "• На экране все видимые модели сразу, каждая со своим поворотом\n" +
+                "• Большие модели при вращении рисуются упрощёнными, полностью - как только камера остановится\n" +
+                "  (View → Levels of Detail отключает это и экономит память)\n" +
                 "• В строке статуса отображается активная модель и статистика\n\n" +
                 "✂ РЕДАКТИРОВАНИЕ:\n" +
                 "• Del Polygon - Удалить полигон по индексу\n" +
@@ -0,0 +1,168 @@
+package com.cgvsu;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.objreader.MeshCache;
+import com.cgvsu.objreader.ObjReader;
+import com.cgvsu.objreader.ReadMonitor;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Загрузка модели из OBJ-файла в фоновом потоке.
+ * <p>
+ * Сначала пробуется двоичный кэш ({@link MeshCache}), иначе файл разбирается
+ * {@link ObjReader#readProgressive} на общем fork-join пуле. Прогресс задачи - число
+ * разобранных байт файла, отмена задачи прерывает разбор. Готовая модель - значение
+ * задачи; в сцену её добавляет тот, кто запустил задачу, уже в потоке JavaFX.
+ * <p>
+ * Пока файл читается, задача держит последний снимок прочитанной части модели
+ * ({@link #getSnapshot()}): его можно показывать из потока JavaFX без блокировок.
+ * Снимок смотрит в массивы читаемой модели, поэтому, дочитав файл, задача сначала
+ * забирает снимок у потока JavaFX ({@link #setOnPreviewReleased}) и только потом
+ * что-либо делает с моделью дальше.
+ * <p>
+ * Если включена сварка, совпадающие вершины готовой модели сливаются в новую модель
+ * ({@link Model#weldedCopy}): прочитанная модель не меняется, потому что на её массивы
+ * может смотреть последний снимок, который поток JavaFX ещё рисует.
+ * <p>
+ * Кэш задача не пишет: это ещё одно чтение всего файла и запись всей модели, и модель
+ * появилась бы на экране заметно позже. Прочитанная из OBJ модель (как в файле, без
+ * сварки) отдаётся тому, кто запустил задачу ({@link #takeModelToCache()}), и он пишет
+ * кэш в фоне уже после того, как показал модель.
+ */
+public class ModelLoadTask extends Task<Model> {
+
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 250;
+
+    private final Path path;
+    private final boolean weldVertices;
+    private int vertexCountBeforeWeld;
+    private int weldedVertexCount;
+    // Публикуется потоком чтения, читается потоком JavaFX
+    private volatile Model snapshot;
+    private volatile Runnable onPreviewReleased;
+    private Model modelToCache;
+
+    public ModelLoadTask(Path path) {
+        this(path, false);
+    }
+
+    public ModelLoadTask(Path path, boolean weldVertices) {
+        this.path = path;
+        this.weldVertices = weldVertices;
+        updateTitle(String.valueOf(path.getFileName()));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Число вершин модели до сварки (после успешной загрузки).
+     */
+    public int getVertexCountBeforeWeld() {
+        return vertexCountBeforeWeld;
+    }
+
+    /**
+     * Сколько вершин удалила сварка; 0, если сварка выключена.
+     */
+    public int getWeldedVertexCount() {
+        return weldedVertexCount;
+    }
+
+    /**
+     * Последний снимок прочитанной части модели или null, если его ещё нет
+     * (или модель взята из кэша целиком).
+     */
+    public Model getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Модель как в OBJ-файле (без сварки), для которой ещё нет кэша, или null, если
+     * модель взята из кэша. Вызывается после успешной загрузки; задача модель больше
+     * не держит. Если сварки не было, это та же модель, что и значение задачи: тогда,
+     * пока кэш пишется, менять её нельзя.
+     */
+    public Model takeModelToCache() {
+        final Model model = modelToCache;
+        modelToCache = null;
+        return model;
+    }
+
+    /**
+     * Обработчик, который в потоке JavaFX перестаёт показывать снимки этой задачи
+     * (забывает все ссылки на них). Задача, дочитав файл, вызывает его через
+     * {@link Platform#runLater} и ждёт, пока он отработает. Без обработчика считается,
+     * что снимки никто не показывает.
+     */
+    public void setOnPreviewReleased(Runnable handler) {
+        onPreviewReleased = handler;
+    }
+
+    @Override
+    protected Model call() throws Exception {
+        final long fileSize = Files.size(path);
+        updateProgress(0, fileSize);
+
+        Model model = MeshCache.tryRead(path);
+        if (model == null) {
+            model = ObjReader.readProgressive(path, ForkJoinPool.commonPool(), new ReadMonitor() {
+                @Override
+                public void onProgress(long bytesRead, long totalBytes) {
+                    updateProgress(bytesRead, totalBytes);
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return ModelLoadTask.this.isCancelled();
+                }
+
+                @Override
+                public void onSnapshot(Model partialModel) {
+                    snapshot = partialModel;
+                }
+            }, 0, SNAPSHOT_INTERVAL_MILLIS);
+            if (isCancelled()) {
+                return null;
+            }
+            // Снимок смотрит в массивы модели: после этого их никто, кроме задачи, не видит
+            if (snapshot != null) {
+                snapshot = null;
+                releasePreview();
+            }
+            modelToCache = model;
+        }
+
+        vertexCountBeforeWeld = model.vertices.size();
+        Model result = model;
+        if (weldVertices) {
+            result = model.weldedCopy(Model.DEFAULT_WELD_TOLERANCE);
+            weldedVertexCount = vertexCountBeforeWeld - result.vertices.size();
+        }
+        updateProgress(fileSize, fileSize);
+        return result;
+    }
+
+    private void releasePreview() throws InterruptedException {
+        final Runnable handler = onPreviewReleased;
+        if (handler == null) {
+            return;
+        }
+        final CountDownLatch released = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            try {
+                handler.run();
+            } finally {
+                released.countDown();
+            }
+        });
+        released.await();
+    }
+}
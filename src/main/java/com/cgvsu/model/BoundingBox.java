@@ -0,0 +1,105 @@
+package com.cgvsu.model;
+
+/**
+ * Ограничивающий параллелепипед (со сторонами вдоль осей) и описанная вокруг него сфера.
+ * Нужны для быстрых проверок "модель целиком не видна" без перебора вершин.
+ */
+public class BoundingBox {
+
+    private final float minX;
+    private final float minY;
+    private final float minZ;
+    private final float maxX;
+    private final float maxY;
+    private final float maxZ;
+    private final boolean empty;
+
+    private BoundingBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, boolean empty) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.empty = empty;
+    }
+
+    /**
+     * Параллелепипед по всем вершинам списка за один проход.
+     */
+    public static BoundingBox of(Vector3fList vertices) {
+        final int count = vertices.size();
+        if (count == 0) {
+            return new BoundingBox(0, 0, 0, 0, 0, 0, true);
+        }
+
+        final float[] coordinates = vertices.coordinates();
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int offset = 0; offset < count * 3; offset += 3) {
+            final float x = coordinates[offset];
+            final float y = coordinates[offset + 1];
+            final float z = coordinates[offset + 2];
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+        return new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ, false);
+    }
+
+    /**
+     * true, если модель без вершин.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public float getMinZ() {
+        return minZ;
+    }
+
+    public float getMaxX() {
+        return maxX;
+    }
+
+    public float getMaxY() {
+        return maxY;
+    }
+
+    public float getMaxZ() {
+        return maxZ;
+    }
+
+    public float getCenterX() {
+        return (minX + maxX) * 0.5f;
+    }
+
+    public float getCenterY() {
+        return (minY + maxY) * 0.5f;
+    }
+
+    public float getCenterZ() {
+        return (minZ + maxZ) * 0.5f;
+    }
+
+    /**
+     * Радиус сферы с центром в центре параллелепипеда, содержащей его целиком.
+     */
+    public float getRadius() {
+        final float dx = maxX - minX;
+        final float dy = maxY - minY;
+        final float dz = maxZ - minZ;
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz) * 0.5f;
+    }
+}
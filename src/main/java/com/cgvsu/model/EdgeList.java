@@ -0,0 +1,74 @@
+package com.cgvsu.model;
+
+/**
+ * Список уникальных рёбер модели.
+ * <p>
+ * В замкнутой сетке каждое внутреннее ребро принадлежит двум полигонам, поэтому при обходе
+ * полигонов оно встречается дважды. Здесь каждое ребро хранится один раз в виде пары
+ * индексов вершин (меньший, больший), пары лежат подряд в одном int[].
+ */
+public class EdgeList {
+
+    private final int[] vertexIndices;
+    private final int size;
+
+    private EdgeList(int[] vertexIndices, int size) {
+        this.vertexIndices = vertexIndices;
+        this.size = size;
+    }
+
+    /**
+     * Собирает уникальные рёбра всех полигонов за один проход.
+     * Рёбра из одной вершины в неё же пропускаются.
+     */
+    public static EdgeList build(PolygonList polygons) {
+        final int[] offsets = polygons.offsets();
+        final int[] indices = polygons.vertexIndices();
+        final int polygonCount = polygons.size();
+
+        // Рёбер не больше, чем углов; для замкнутой сетки - примерно вдвое меньше
+        LongHashSet seen = new LongHashSet(polygons.getCornerCount() / 2);
+        IntList edges = new IntList(polygons.getCornerCount());
+        for (int polygonInd = 0; polygonInd < polygonCount; ++polygonInd) {
+            final int start = offsets[polygonInd];
+            final int end = offsets[polygonInd + 1];
+            if (end <= start) {
+                continue;
+            }
+
+            int previous = indices[end - 1];
+            for (int i = start; i < end; ++i) {
+                final int current = indices[i];
+                if (current != previous) {
+                    final int min = Math.min(previous, current);
+                    final int max = Math.max(previous, current);
+                    if (seen.add(((long) min << 32) | (max & 0xFFFFFFFFL))) {
+                        edges.add(min, max);
+                    }
+                }
+                previous = current;
+            }
+        }
+        return new EdgeList(edges.array(), edges.size() / 2);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int edgeIndex) {
+        return vertexIndices[edgeIndex * 2];
+    }
+
+    public int getEnd(int edgeIndex) {
+        return vertexIndices[edgeIndex * 2 + 1];
+    }
+
+    /**
+     * Индексы вершин рёбер парами: начало и конец ребра i лежат в элементах 2i и 2i+1.
+     * Допустимы только первые {@code size() * 2} элементов.
+     */
+    public int[] vertexIndices() {
+        return vertexIndices;
+    }
+}
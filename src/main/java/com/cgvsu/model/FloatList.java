@@ -0,0 +1,111 @@
+package com.cgvsu.model;
+
+import java.util.Arrays;
+
+/**
+ * Растущий массив float без упаковки в объекты.
+ * Аналог ArrayList&lt;Float&gt;, но хранит значения подряд в одном float[].
+ */
+public class FloatList {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private float[] data;
+    private int size;
+
+    public FloatList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FloatList(int initialCapacity) {
+        data = new float[Math.max(initialCapacity, 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public float get(int index) {
+        return data[index];
+    }
+
+    public void set(int index, float value) {
+        data[index] = value;
+    }
+
+    public void add(float value) {
+        if (size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    public void add(float a, float b) {
+        if (size + 2 > data.length) {
+            grow(size + 2);
+        }
+        data[size] = a;
+        data[size + 1] = b;
+        size += 2;
+    }
+
+    public void add(float a, float b, float c) {
+        if (size + 3 > data.length) {
+            grow(size + 3);
+        }
+        data[size] = a;
+        data[size + 1] = b;
+        data[size + 2] = c;
+        size += 3;
+    }
+
+    public void addAll(float[] values, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(values, offset, data, size, length);
+        size += length;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * Уменьшает размер списка, ёмкость массива при этом не меняется.
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("Size " + newSize + " out of bounds for length " + size);
+        }
+        size = newSize;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Внутренний массив. Допустимы только первые {@link #size()} элементов;
+     * ссылка перестаёт быть актуальной после роста списка.
+     */
+    public float[] array() {
+        return data;
+    }
+
+    public float[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, data.length + (data.length >> 1));
+        if (newCapacity < 0) {
+            newCapacity = Integer.MAX_VALUE - 8;
+        }
+        data = Arrays.copyOf(data, newCapacity);
+    }
+}
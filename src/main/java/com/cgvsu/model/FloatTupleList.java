@@ -0,0 +1,219 @@
+package com.cgvsu.model;
+
+import java.nio.FloatBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Список векторов фиксированной размерности, хранящий координаты подряд в одном float[]
+ * (x0 y0 z0 x1 y1 z1 ...), а не отдельными объектами.
+ * <p>
+ * Реализует {@link java.util.List}, чтобы старый код, работающий с вершинами как с объектами,
+ * продолжал работать: {@link #get(int)} создаёт новый вектор-копию, {@link #set(int, Object)}
+ * и {@link #add(Object)} копируют координаты внутрь. Изменение вектора, полученного через
+ * get, на список не влияет. В горячих циклах следует пользоваться покоординатным
+ * доступом наследников или сырым массивом {@link #coordinates()}.
+ */
+public abstract class FloatTupleList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final int dimension;
+    protected float[] coordinates;
+    private int size;
+
+    protected FloatTupleList(int dimension) {
+        this.dimension = dimension;
+        this.coordinates = new float[DEFAULT_CAPACITY * dimension];
+    }
+
+    protected abstract T createVector(float[] coordinates, int offset);
+
+    protected abstract void storeVector(T vector, float[] coordinates, int offset);
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Внутренний массив координат. Допустимы только первые {@code size() * getDimension()} элементов;
+     * ссылка перестаёт быть актуальной после роста списка.
+     */
+    public float[] coordinates() {
+        return coordinates;
+    }
+
+    /**
+     * Счётчик изменений списка. Растёт при любом изменении, включая изменение координат,
+     * поэтому подходит для проверки актуальности кэшей, построенных по модели.
+     */
+    public int getModificationCount() {
+        return modCount;
+    }
+
+    /**
+     * Сообщает списку, что координаты были изменены напрямую через {@link #coordinates()}.
+     */
+    public void markModified() {
+        ++modCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        return createVector(coordinates, index * dimension);
+    }
+
+    @Override
+    public T set(int index, T vector) {
+        Objects.checkIndex(index, size);
+        final T previous = createVector(coordinates, index * dimension);
+        storeVector(vector, coordinates, index * dimension);
+        ++modCount;
+        return previous;
+    }
+
+    @Override
+    public boolean add(T vector) {
+        final int offset = reserve(1);
+        storeVector(vector, coordinates, offset);
+        return true;
+    }
+
+    @Override
+    public void add(int index, T vector) {
+        Objects.checkIndex(index, size + 1);
+        reserve(1);
+        System.arraycopy(coordinates, index * dimension, coordinates, (index + 1) * dimension,
+                (size - 1 - index) * dimension);
+        storeVector(vector, coordinates, index * dimension);
+    }
+
+    @Override
+    public T remove(int index) {
+        Objects.checkIndex(index, size);
+        final T previous = createVector(coordinates, index * dimension);
+        System.arraycopy(coordinates, (index + 1) * dimension, coordinates, index * dimension,
+                (size - 1 - index) * dimension);
+        --size;
+        ++modCount;
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        System.arraycopy(coordinates, toIndex * dimension, coordinates, fromIndex * dimension,
+                (size - toIndex) * dimension);
+        size -= toIndex - fromIndex;
+        ++modCount;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        ++modCount;
+    }
+
+    /**
+     * Добавляет count векторов, координаты которых лежат подряд в source начиная с offset.
+     */
+    public void addAll(float[] source, int offset, int count) {
+        final int target = reserve(count);
+        System.arraycopy(source, offset, coordinates, target, count * dimension);
+    }
+
+    /**
+     * Добавляет count векторов, координаты которых лежат подряд в буфере (например,
+     * в отображённом в память файле), одним копированием прямо во внутренний массив.
+     */
+    public void addAll(FloatBuffer source, int count) {
+        final int target = reserve(count);
+        source.get(coordinates, target, count * dimension);
+    }
+
+    /**
+     * Делает список видом на первые count векторов списка source: массив координат общий,
+     * ничего не копируется. Вид остаётся верным, пока в source только добавляют векторы
+     * в конец (при росте source переходит на новый массив, а вид остаётся со старым).
+     * Менять вид нельзя - изменения попали бы в source.
+     */
+    void viewOf(FloatTupleList<T> source, int count) {
+        coordinates = source.coordinates;
+        size = count;
+        ++modCount;
+    }
+
+    /**
+     * Удаляет все векторы, отмеченные в removed, за один проход по массиву.
+     *
+     * @return таблица "старый индекс -> новый индекс", у удалённых векторов -1
+     */
+    public int[] compact(BitSet removed) {
+        final int[] newIndices = new int[size];
+        int write = 0;
+        int read = 0;
+        while (read < size) {
+            // Непрерывный отрезок сохраняемых векторов [read, removedStart) копируется целиком
+            int removedStart = removed.nextSetBit(read);
+            if (removedStart < 0 || removedStart > size) {
+                removedStart = size;
+            }
+            if (write != read) {
+                System.arraycopy(coordinates, read * dimension, coordinates, write * dimension,
+                        (removedStart - read) * dimension);
+            }
+            for (int i = read; i < removedStart; ++i) {
+                newIndices[i] = write++;
+            }
+
+            read = Math.min(removed.nextClearBit(removedStart), size);
+            for (int i = removedStart; i < read; ++i) {
+                newIndices[i] = -1;
+            }
+        }
+        size = write;
+        ++modCount;
+        return newIndices;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if ((long) capacity * dimension > coordinates.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * Оставляет первые newSize векторов.
+     */
+    public void truncate(int newSize) {
+        Objects.checkIndex(newSize, size + 1);
+        size = newSize;
+        ++modCount;
+    }
+
+    /**
+     * Увеличивает размер на count векторов и возвращает смещение первого из них в массиве координат.
+     */
+    protected int reserve(int count) {
+        ensureCapacity(size + count);
+        final int offset = size * dimension;
+        size += count;
+        ++modCount;
+        return offset;
+    }
+
+    private void grow(int minCapacity) {
+        final int capacity = coordinates.length / dimension;
+        long newCapacity = Math.max(minCapacity, capacity + (capacity >> 1));
+        newCapacity = Math.min(newCapacity, (Integer.MAX_VALUE - 8) / dimension);
+        coordinates = Arrays.copyOf(coordinates, (int) newCapacity * dimension);
+    }
+}
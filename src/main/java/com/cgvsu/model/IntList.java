@@ -0,0 +1,164 @@
+package com.cgvsu.model;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Растущий массив int без упаковки в объекты.
+ * Аналог ArrayList&lt;Integer&gt;, но хранит значения подряд в одном int[].
+ */
+public class IntList {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] data;
+    private int size;
+
+    public IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntList(int initialCapacity) {
+        data = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        return data[index];
+    }
+
+    public void set(int index, int value) {
+        data[index] = value;
+    }
+
+    public void add(int value) {
+        if (size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    public void add(int a, int b) {
+        if (size + 2 > data.length) {
+            grow(size + 2);
+        }
+        data[size] = a;
+        data[size + 1] = b;
+        size += 2;
+    }
+
+    public void add(int a, int b, int c) {
+        if (size + 3 > data.length) {
+            grow(size + 3);
+        }
+        data[size] = a;
+        data[size + 1] = b;
+        data[size + 2] = c;
+        size += 3;
+    }
+
+    public void addAll(int[] values, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(values, offset, data, size, length);
+        size += length;
+    }
+
+    /**
+     * Добавляет count значений из буфера одним копированием.
+     */
+    public void addAll(IntBuffer source, int count) {
+        ensureCapacity(size + count);
+        source.get(data, size, count);
+        size += count;
+    }
+
+    /**
+     * Вид на первые count значений source без копирования, см. {@link FloatTupleList#viewOf}.
+     */
+    static IntList viewOf(IntList source, int count) {
+        IntList view = new IntList(1);
+        view.data = source.data;
+        view.size = count;
+        return view;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * Уменьшает размер списка, ёмкость массива при этом не меняется.
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("Size " + newSize + " out of bounds for length " + size);
+        }
+        size = newSize;
+    }
+
+    /**
+     * Вставляет count элементов со значением value перед позицией index.
+     */
+    public void insert(int index, int count, int value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        ensureCapacity(size + count);
+        System.arraycopy(data, index, data, index + count, size - index);
+        Arrays.fill(data, index, index + count, value);
+        size += count;
+    }
+
+    /**
+     * Удаляет элементы в диапазоне [fromIndex, toIndex).
+     */
+    public void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range [" + fromIndex + ", " + toIndex + ") out of bounds for length " + size);
+        }
+        System.arraycopy(data, toIndex, data, fromIndex, size - toIndex);
+        size -= toIndex - fromIndex;
+    }
+
+    /**
+     * Добавляет count элементов со значением value в конец.
+     */
+    public void fill(int count, int value) {
+        ensureCapacity(size + count);
+        Arrays.fill(data, size, size + count, value);
+        size += count;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Внутренний массив. Допустимы только первые {@link #size()} элементов;
+     * ссылка перестаёт быть актуальной после роста списка.
+     */
+    public int[] array() {
+        return data;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, data.length + (data.length >> 1));
+        if (newCapacity < 0) {
+            newCapacity = Integer.MAX_VALUE - 8;
+        }
+        data = Arrays.copyOf(data, newCapacity);
+    }
+}
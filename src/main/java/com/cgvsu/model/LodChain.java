@@ -0,0 +1,156 @@
+package com.cgvsu.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Цепочка уровней детализации (LOD) модели: уровень 0 - сама модель, следующие -
+ * её упрощённые копии ({@link MeshSimplifier}), каждая грубее предыдущей.
+ * <p>
+ * Цепочка строится по состоянию модели на момент постройки; после изменения модели
+ * она устаревает ({@link #isValidFor}), и упрощённые уровни больше не используются.
+ * Уровень для кадра выбирается по размеру модели на экране ({@link #selectLevel}):
+ * модели в сотню пикселей не нужны миллионы треугольников.
+ */
+public class LodChain {
+
+    /**
+     * Доли треугольников исходной модели на уровнях 1, 2, ...
+     */
+    public static final float[] DEFAULT_RATIOS = {0.5f, 0.25f, 0.06f, 0.01f};
+
+    // Сколько треугольников на пиксель площади модели на экране ещё имеет смысл рисовать
+    static final double TRIANGLES_PER_PIXEL = 0.5;
+
+    private final Model[] levels;
+    private final int[] triangleCounts;
+    private final long modificationCount;
+
+    private LodChain(Model[] levels, int[] triangleCounts, long modificationCount) {
+        this.levels = levels;
+        this.triangleCounts = triangleCounts;
+        this.modificationCount = modificationCount;
+    }
+
+    // Байт на треугольник уровня: вершины (их примерно вдвое меньше треугольников),
+    // индексы и смещения полигонов, а также рёбра и треугольники, которые строятся при отрисовке
+    private static final long LEVEL_BYTES_PER_TRIANGLE = 64;
+
+    /**
+     * Сколько байт кучи нужно, чтобы построить цепочку для модели с таким числом вершин
+     * и треугольников: рабочие массивы упрощения и сами уровни. По этой оценке можно
+     * заранее отказаться от постройки, если памяти не хватит.
+     */
+    public static long estimateMemory(int vertexCount, int triangleCount, float[] ratios) {
+        double levelTriangles = 0;
+        for (float ratio : ratios) {
+            levelTriangles += (double) triangleCount * ratio;
+        }
+        return MeshSimplifier.estimateMemory(vertexCount, triangleCount)
+                + (long) levelTriangles * LEVEL_BYTES_PER_TRIANGLE;
+    }
+
+    /**
+     * Строит цепочку в текущем потоке. Модель в это время менять нельзя.
+     *
+     * @param modificationCount счётчик изменений модели на момент запуска постройки
+     * @param cancelled         проверяется между уровнями; если вернул true, постройка
+     *                          прекращается и возвращается null
+     */
+    public static LodChain build(Model model, long modificationCount, float[] ratios, BooleanSupplier cancelled) {
+        return new Builder(model, modificationCount).build(ratios, cancelled);
+    }
+
+    /**
+     * Готовит постройку цепочки: копирует вершины и треугольники модели. Вызывается
+     * в потоке, которому принадлежит модель (в программе - поток JavaFX); это быстрый
+     * линейный проход. Долгое упрощение ({@link Builder#build}) с моделью уже не работает
+     * и идёт в фоне, а модель тем временем можно менять: готовая цепочка тогда просто
+     * окажется устаревшей.
+     */
+    public static Builder prepare(Model model) {
+        return new Builder(model, model.getModificationCount());
+    }
+
+    /**
+     * Копия модели для постройки цепочки, см. {@link #prepare}.
+     */
+    public static final class Builder {
+
+        private final Model model;
+        private final long modificationCount;
+        private final MeshSimplifier simplifier;
+
+        private Builder(Model model, long modificationCount) {
+            this.model = model;
+            this.modificationCount = modificationCount;
+            this.simplifier = new MeshSimplifier(model);
+        }
+
+        /**
+         * Строит цепочку по скопированной модели. Вызывается один раз, в любом потоке.
+         *
+         * @param cancelled проверяется между уровнями; если вернул true, постройка
+         *                  прекращается и возвращается null
+         */
+        public LodChain build(float[] ratios, BooleanSupplier cancelled) {
+            final int sourceTriangleCount = simplifier.getTriangleCount();
+            final List<Model> levels = new ArrayList<>();
+            final List<Integer> triangleCounts = new ArrayList<>();
+            levels.add(model);
+            triangleCounts.add(sourceTriangleCount);
+            for (float ratio : ratios) {
+                if (cancelled.getAsBoolean()) {
+                    return null;
+                }
+                final int previousCount = triangleCounts.get(triangleCounts.size() - 1);
+                final Model level = simplifier.simplify((int) (sourceTriangleCount * ratio));
+                // Сетку больше не удаётся упростить - дальше те же уровни
+                if (simplifier.getTriangleCount() >= previousCount) {
+                    break;
+                }
+                levels.add(level);
+                triangleCounts.add(simplifier.getTriangleCount());
+            }
+            final int[] counts = new int[triangleCounts.size()];
+            for (int i = 0; i < counts.length; ++i) {
+                counts[i] = triangleCounts.get(i);
+            }
+            return new LodChain(levels.toArray(new Model[0]), counts, modificationCount);
+        }
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    public Model getLevel(int level) {
+        return levels[level];
+    }
+
+    public int getTriangleCount(int level) {
+        return triangleCounts[level];
+    }
+
+    /**
+     * Построена ли цепочка для этой модели в её текущем состоянии.
+     */
+    public boolean isValidFor(Model model) {
+        return levels[0] == model && model.getModificationCount() == modificationCount;
+    }
+
+    /**
+     * Самый грубый уровень, в котором треугольников ещё не меньше, чем нужно модели
+     * с таким радиусом на экране (в пикселях).
+     */
+    public int selectLevel(double projectedRadius) {
+        final double neededTriangles = TRIANGLES_PER_PIXEL * Math.PI * projectedRadius * projectedRadius;
+        for (int level = levels.length - 1; level > 0; --level) {
+            if (triangleCounts[level] >= neededTriangles) {
+                return level;
+            }
+        }
+        return 0;
+    }
+}
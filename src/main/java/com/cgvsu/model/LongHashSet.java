@@ -0,0 +1,118 @@
+package com.cgvsu.model;
+
+import java.util.Arrays;
+
+/**
+ * Множество значений long без упаковки в объекты (открытая адресация, линейное пробирование).
+ * Аналог HashSet&lt;Long&gt;, но все ключи лежат в одном long[].
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    // Ключ, совпадающий с маркером пустой ячейки, хранится отдельно
+    private boolean containsEmptyKey;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return true, если значения ещё не было в множестве
+     */
+    public boolean add(long key) {
+        if (key == EMPTY) {
+            if (containsEmptyKey) {
+                return false;
+            }
+            containsEmptyKey = true;
+            ++size;
+            return true;
+        }
+
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size > (mask + 1) * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == EMPTY) {
+            return containsEmptyKey;
+        }
+
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        containsEmptyKey = false;
+        size = 0;
+    }
+
+    private void rehash(int newLength) {
+        final long[] oldKeys = keys;
+        allocate(newLength);
+        for (long key : oldKeys) {
+            if (key != EMPTY) {
+                int slot = hash(key) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private void allocate(int length) {
+        keys = new long[length];
+        mask = length - 1;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        final long needed = (long) Math.ceil(Math.max(expectedSize, 1) / (double) LOAD_FACTOR) + 1;
+        final long length = Long.highestOneBit(needed - 1) << 1;
+        return (int) Math.min(Math.max(length, 2), 1 << 30);
+    }
+
+    // Перемешивание битов (финализатор MurmurHash3), чтобы соседние ключи не шли подряд
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
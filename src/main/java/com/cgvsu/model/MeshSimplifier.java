@@ -0,0 +1,564 @@
+package com.cgvsu.model;
+
+import java.util.Arrays;
+
+/**
+ * Упрощение сетки стягиванием рёбер по квадрикам ошибки (Garland, Heckbert).
+ * <p>
+ * У каждой вершины есть квадрика - сумма квадратов расстояний до плоскостей её исходных
+ * треугольников (симметричная матрица 4x4, хранится 10 числами). Стягивание ребра (v0, v1)
+ * в точку p стоит Q(p) для Q = Q0 + Q1; p выбирается так, чтобы Q(p) было минимальным.
+ * <p>
+ * Вместо общей очереди рёбер по стоимости сетка обходится проходами: за проход стягиваются
+ * все рёбра дешевле порога, а порог растёт от прохода к проходу. Так не нужна куча на
+ * все рёбра, а результат почти такой же. Треугольники, которые задело стягивание, до конца
+ * прохода не трогаются; стягивание отменяется, если какой-нибудь соседний треугольник
+ * перевернулся бы. Рёбра на границе сетки стягиваются только вдоль границы, чтобы края
+ * не "съедались".
+ * <p>
+ * Все данные лежат в плоских массивах: вершины треугольника t - элементы 3t..3t+2, ошибки
+ * трёх его рёбер - тоже элементы 3t..3t+2. Треугольники вершины v - ссылки
+ * refs[start[v], start[v] + count[v]), ссылка - номер угла 3t + j. Ошибки хранятся во float,
+ * а нормали треугольников не хранятся вовсе и считаются по вершинам, когда нужны: сетки
+ * в десятки миллионов треугольников упрощаются, и на треугольник уходит около 44 байт
+ * ({@link #estimateMemory}).
+ * <p>
+ * Упрощение можно продолжать: каждый следующий вызов {@link #simplify} начинает с того,
+ * что осталось после предыдущего, поэтому цепочка уровней детализации строится за один
+ * проход по исходной сетке.
+ */
+final class MeshSimplifier {
+
+    private static final int MAX_ITERATIONS = 100;
+    // Порог ошибки на проходе i: THRESHOLD_SCALE * (i + 3)^AGGRESSIVENESS
+    private static final double THRESHOLD_SCALE = 1e-9;
+    private static final int AGGRESSIVENESS = 7;
+    // Раз в столько проходов удалённые треугольники вычищаются и ссылки строятся заново
+    private static final int COMPACT_INTERVAL = 5;
+    // Стягивание отменяется, если соседний треугольник становится вырожденным
+    // или его нормаль поворачивается больше чем на ~78 градусов
+    private static final double MAX_EDGE_COS = 0.999;
+    private static final double MIN_NORMAL_COS = 0.2;
+
+    // Координаты приведены к кубу с диагональю 1, чтобы порог не зависел от размера модели
+    private final double[] positions;
+    private final int vertexCount;
+    private final double centerX;
+    private final double centerY;
+    private final double centerZ;
+    private final double scale;
+    private double[] quadrics;
+    private boolean[] border;
+    private int[] refStart;
+    private int[] refCount;
+
+    private int[] triangles;
+    private int triangleCount;
+    private int liveTriangleCount;
+    private float[] errors;
+    private boolean[] deleted;
+    private boolean[] dirty;
+
+    private int[] refs = new int[0];
+    private int refSize;
+
+    private boolean[] removed0 = new boolean[16];
+    private boolean[] removed1 = new boolean[16];
+    private boolean initialized;
+
+    // Сумма квадрик концов ребра для calculateError
+    private final double[] quadricSum = new double[10];
+
+    // Точка, посчитанная последним вызовом calculateError
+    private double resultX;
+    private double resultY;
+    private double resultZ;
+
+    // Нормаль, посчитанная последним вызовом calculateNormal
+    private double normalX;
+    private double normalY;
+    private double normalZ;
+
+    /**
+     * Копирует вершины и треугольники модели (полигоны разбиваются веером, как в
+     * {@link TriangleList}). Саму модель упрощение не меняет и после конструктора
+     * не читает, поэтому конструктор вызывается в потоке, которому принадлежит модель,
+     * а {@link #simplify} можно вызывать в любом другом.
+     */
+    MeshSimplifier(Model model) {
+        vertexCount = model.vertices.size();
+        final float[] coordinates = model.vertices.coordinates();
+        final BoundingBox bounds = model.getBounds();
+        centerX = bounds.isEmpty() ? 0 : bounds.getCenterX();
+        centerY = bounds.isEmpty() ? 0 : bounds.getCenterY();
+        centerZ = bounds.isEmpty() ? 0 : bounds.getCenterZ();
+        final double diagonal = bounds.isEmpty() ? 0 : 2.0 * bounds.getRadius();
+        scale = diagonal > 0 ? diagonal : 1;
+        positions = new double[vertexCount * 3];
+        for (int v = 0; v < vertexCount; ++v) {
+            positions[v * 3] = (coordinates[v * 3] - centerX) / scale;
+            positions[v * 3 + 1] = (coordinates[v * 3 + 1] - centerY) / scale;
+            positions[v * 3 + 2] = (coordinates[v * 3 + 2] - centerZ) / scale;
+        }
+
+        final int[] offsets = model.polygons.offsets();
+        final int[] indices = model.polygons.vertexIndices();
+        final int polygonCount = model.polygons.size();
+        int count = 0;
+        for (int p = 0; p < polygonCount; ++p) {
+            count += Math.max(offsets[p + 1] - offsets[p] - 2, 0);
+        }
+        triangles = new int[count * 3];
+        for (int p = 0; p < polygonCount; ++p) {
+            final int start = offsets[p];
+            for (int i = start + 1; i + 1 < offsets[p + 1]; ++i) {
+                triangles[triangleCount * 3] = indices[start];
+                triangles[triangleCount * 3 + 1] = indices[i];
+                triangles[triangleCount * 3 + 2] = indices[i + 1];
+                ++triangleCount;
+            }
+        }
+        liveTriangleCount = triangleCount;
+    }
+
+    // Рабочие массивы заводятся при первом упрощении, уже в его потоке
+    private void allocate() {
+        quadrics = new double[vertexCount * 10];
+        border = new boolean[vertexCount];
+        refStart = new int[vertexCount];
+        refCount = new int[vertexCount];
+        errors = new float[triangleCount * 3];
+        deleted = new boolean[triangleCount];
+        dirty = new boolean[triangleCount];
+    }
+
+    /**
+     * Сколько байт займёт упрощение сетки: копия в конструкторе и рабочие массивы.
+     * На вершину - координаты и квадрика в double, граница и ссылки; на треугольник -
+     * вершины, ошибки рёбер, флаги и ссылки с запасом в половину на перестройку.
+     */
+    static long estimateMemory(int vertexCount, int triangleCount) {
+        return vertexCount * (3L * Double.BYTES + 10L * Double.BYTES + 1 + 2L * Integer.BYTES)
+                + triangleCount * (3L * Integer.BYTES + 3L * Float.BYTES + 2 + 3L * Integer.BYTES * 3 / 2);
+    }
+
+    /**
+     * Число треугольников после последнего упрощения.
+     */
+    int getTriangleCount() {
+        return liveTriangleCount;
+    }
+
+    /**
+     * Упрощает сетку, пока в ней больше targetTriangleCount треугольников (или пока
+     * есть что стягивать), и возвращает результат отдельной моделью из треугольников.
+     * Текстурные координаты и нормали в упрощённую модель не переносятся.
+     */
+    Model simplify(int targetTriangleCount) {
+        if (deleted == null) {
+            allocate();
+        }
+        for (int iteration = 0; iteration < MAX_ITERATIONS; ++iteration) {
+            if (liveTriangleCount <= targetTriangleCount) {
+                break;
+            }
+            if (iteration % COMPACT_INTERVAL == 0) {
+                updateMesh();
+            }
+            Arrays.fill(dirty, 0, triangleCount, false);
+            final double threshold = THRESHOLD_SCALE * Math.pow(iteration + 3, AGGRESSIVENESS);
+            for (int t = 0; t < triangleCount && liveTriangleCount > targetTriangleCount; ++t) {
+                if (minError(t) > threshold || deleted[t] || dirty[t]) {
+                    continue;
+                }
+                // Рёбра пробуются от дешёвого к дорогому: если брать их по порядку углов,
+                // на регулярной сетке все проходы стягивают рёбра одного направления
+                // и треугольники вытягиваются в иглы
+                final int first = cheapestEdge(t, -1);
+                final int second = cheapestEdge(t, first);
+                final int third = 3 - first - second;
+                if (!tryCollapse(t, first, threshold) && !tryCollapse(t, second, threshold)) {
+                    tryCollapse(t, third, threshold);
+                }
+            }
+        }
+        return toModel();
+    }
+
+    private float minError(int t) {
+        return Math.min(errors[t * 3], Math.min(errors[t * 3 + 1], errors[t * 3 + 2]));
+    }
+
+    // Самое дешёвое ребро треугольника t, кроме excluded
+    private int cheapestEdge(int t, int excluded) {
+        int cheapest = -1;
+        for (int j = 0; j < 3; ++j) {
+            if (j != excluded && (cheapest < 0 || errors[t * 3 + j] < errors[t * 3 + cheapest])) {
+                cheapest = j;
+            }
+        }
+        return cheapest;
+    }
+
+    private boolean tryCollapse(int t, int edge, double threshold) {
+        return errors[t * 3 + edge] < threshold
+                && collapse(triangles[t * 3 + edge], triangles[t * 3 + (edge + 1) % 3]);
+    }
+
+    // Стягивает ребро (i0, i1) в вершину i0, если это ничего не переворачивает
+    private boolean collapse(int i0, int i1) {
+        if (border[i0] != border[i1]) {
+            return false;
+        }
+        calculateError(i0, i1);
+        final double x = resultX;
+        final double y = resultY;
+        final double z = resultZ;
+        removed0 = ensureCapacity(removed0, refCount[i0]);
+        removed1 = ensureCapacity(removed1, refCount[i1]);
+        if (flipped(x, y, z, i1, i0, removed0) || flipped(x, y, z, i0, i1, removed1)) {
+            return false;
+        }
+
+        positions[i0 * 3] = x;
+        positions[i0 * 3 + 1] = y;
+        positions[i0 * 3 + 2] = z;
+        for (int k = 0; k < 10; ++k) {
+            quadrics[i0 * 10 + k] += quadrics[i1 * 10 + k];
+        }
+
+        final int start = refSize;
+        updateTriangles(i0, i0, removed0);
+        updateTriangles(i0, i1, removed1);
+        final int count = refSize - start;
+        if (count <= refCount[i0]) {
+            // Новые ссылки помещаются на старое место, хвост массива освобождается
+            System.arraycopy(refs, start, refs, refStart[i0], count);
+            refSize = start;
+        } else {
+            refStart[i0] = start;
+        }
+        refCount[i0] = count;
+        refCount[i1] = 0;
+        return true;
+    }
+
+    // Перевернётся ли какой-нибудь треугольник вершины vertex, если её перенести в (x, y, z).
+    // Треугольники, содержащие и другой конец ребра other, исчезнут - они отмечаются в removed
+    private boolean flipped(double x, double y, double z, int other, int vertex, boolean[] removed) {
+        for (int k = 0; k < refCount[vertex]; ++k) {
+            final int t = refs[refStart[vertex] + k] / 3;
+            if (deleted[t]) {
+                continue;
+            }
+            final int corner = refs[refStart[vertex] + k] % 3;
+            final int id1 = triangles[t * 3 + (corner + 1) % 3];
+            final int id2 = triangles[t * 3 + (corner + 2) % 3];
+            if (id1 == other || id2 == other) {
+                removed[k] = true;
+                continue;
+            }
+            removed[k] = false;
+            double d1x = positions[id1 * 3] - x;
+            double d1y = positions[id1 * 3 + 1] - y;
+            double d1z = positions[id1 * 3 + 2] - z;
+            double length = Math.sqrt(d1x * d1x + d1y * d1y + d1z * d1z);
+            d1x /= length;
+            d1y /= length;
+            d1z /= length;
+            double d2x = positions[id2 * 3] - x;
+            double d2y = positions[id2 * 3 + 1] - y;
+            double d2z = positions[id2 * 3 + 2] - z;
+            length = Math.sqrt(d2x * d2x + d2y * d2y + d2z * d2z);
+            d2x /= length;
+            d2y /= length;
+            d2z /= length;
+            // NaN (совпадающие точки) тоже считается переворотом
+            if (!(Math.abs(d1x * d2x + d1y * d2y + d1z * d2z) <= MAX_EDGE_COS)) {
+                return true;
+            }
+            final double nx = d1y * d2z - d1z * d2y;
+            final double ny = d1z * d2x - d1x * d2z;
+            final double nz = d1x * d2y - d1y * d2x;
+            length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            // Нормаль до переноса: вершины треугольника ещё на старых местах
+            calculateNormal(t);
+            final double dot = nx * normalX + ny * normalY + nz * normalZ;
+            // У вырожденного треугольника нормали нет, ориентацию сравнивать не с чем
+            final boolean hasNormal = normalX != 0 || normalY != 0 || normalZ != 0;
+            if (hasNormal && !(dot / length >= MIN_NORMAL_COS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Переводит треугольники вершины vertex на вершину i0 и пересчитывает ошибки их рёбер
+    private void updateTriangles(int i0, int vertex, boolean[] removed) {
+        final int start = refStart[vertex];
+        final int count = refCount[vertex];
+        for (int k = 0; k < count; ++k) {
+            final int t = refs[start + k] / 3;
+            final int corner = refs[start + k] % 3;
+            if (deleted[t]) {
+                continue;
+            }
+            if (removed[k]) {
+                deleted[t] = true;
+                --liveTriangleCount;
+                continue;
+            }
+            triangles[t * 3 + corner] = i0;
+            dirty[t] = true;
+            updateErrors(t);
+            addRef(t, corner);
+        }
+    }
+
+    private void updateErrors(int t) {
+        final int v0 = triangles[t * 3];
+        final int v1 = triangles[t * 3 + 1];
+        final int v2 = triangles[t * 3 + 2];
+        errors[t * 3] = (float) calculateError(v0, v1);
+        errors[t * 3 + 1] = (float) calculateError(v1, v2);
+        errors[t * 3 + 2] = (float) calculateError(v2, v0);
+    }
+
+    // Вычищает удалённые треугольники и строит ссылки заново; при первом вызове
+    // ещё считает квадрики, нормали, граничные вершины и ошибки рёбер
+    private void updateMesh() {
+        int count = 0;
+        for (int t = 0; t < triangleCount; ++t) {
+            if (deleted[t]) {
+                continue;
+            }
+            System.arraycopy(triangles, t * 3, triangles, count * 3, 3);
+            System.arraycopy(errors, t * 3, errors, count * 3, 3);
+            deleted[count] = false;
+            ++count;
+        }
+        triangleCount = count;
+        liveTriangleCount = count;
+
+        if (!initialized) {
+            initializeQuadrics();
+        }
+
+        Arrays.fill(refCount, 0);
+        for (int i = 0; i < triangleCount * 3; ++i) {
+            ++refCount[triangles[i]];
+        }
+        int start = 0;
+        for (int v = 0; v < vertexCount; ++v) {
+            refStart[v] = start;
+            start += refCount[v];
+            refCount[v] = 0;
+        }
+        refSize = 0;
+        if (refs.length < start) {
+            refs = new int[start + start / 2];
+        }
+        for (int t = 0; t < triangleCount; ++t) {
+            for (int j = 0; j < 3; ++j) {
+                final int v = triangles[t * 3 + j];
+                refs[refStart[v] + refCount[v]++] = t * 3 + j;
+            }
+        }
+        refSize = start;
+
+        if (!initialized) {
+            markBorderVertices();
+            for (int t = 0; t < triangleCount; ++t) {
+                updateErrors(t);
+            }
+            initialized = true;
+        }
+    }
+
+    private void initializeQuadrics() {
+        for (int t = 0; t < triangleCount; ++t) {
+            calculateNormal(t);
+            final int p0 = triangles[t * 3] * 3;
+            final double nx = normalX;
+            final double ny = normalY;
+            final double nz = normalZ;
+            final double d = -(nx * positions[p0] + ny * positions[p0 + 1] + nz * positions[p0 + 2]);
+            for (int j = 0; j < 3; ++j) {
+                final int q = triangles[t * 3 + j] * 10;
+                quadrics[q] += nx * nx;
+                quadrics[q + 1] += nx * ny;
+                quadrics[q + 2] += nx * nz;
+                quadrics[q + 3] += nx * d;
+                quadrics[q + 4] += ny * ny;
+                quadrics[q + 5] += ny * nz;
+                quadrics[q + 6] += ny * d;
+                quadrics[q + 7] += nz * nz;
+                quadrics[q + 8] += nz * d;
+                quadrics[q + 9] += d * d;
+            }
+        }
+    }
+
+    // Единичная нормаль треугольника по текущим координатам (нулевая у вырожденного) -
+    // в normalX, normalY, normalZ
+    private void calculateNormal(int t) {
+        final int p0 = triangles[t * 3] * 3;
+        final int p1 = triangles[t * 3 + 1] * 3;
+        final int p2 = triangles[t * 3 + 2] * 3;
+        final double ux = positions[p1] - positions[p0];
+        final double uy = positions[p1 + 1] - positions[p0 + 1];
+        final double uz = positions[p1 + 2] - positions[p0 + 2];
+        final double vx = positions[p2] - positions[p0];
+        final double vy = positions[p2 + 1] - positions[p0 + 1];
+        final double vz = positions[p2 + 2] - positions[p0 + 2];
+        double nx = uy * vz - uz * vy;
+        double ny = uz * vx - ux * vz;
+        double nz = ux * vy - uy * vx;
+        final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length > 0) {
+            nx /= length;
+            ny /= length;
+            nz /= length;
+        }
+        normalX = nx;
+        normalY = ny;
+        normalZ = nz;
+    }
+
+    // Ребро граничное, если лежит ровно в одном треугольнике: у вершины такой сосед
+    // встречается в её треугольниках один раз
+    private void markBorderVertices() {
+        int[] neighbors = new int[16];
+        int[] counts = new int[16];
+        for (int v = 0; v < vertexCount; ++v) {
+            int neighborCount = 0;
+            for (int k = 0; k < refCount[v]; ++k) {
+                final int t = refs[refStart[v] + k] / 3;
+                for (int j = 0; j < 3; ++j) {
+                    final int id = triangles[t * 3 + j];
+                    int n = 0;
+                    while (n < neighborCount && neighbors[n] != id) {
+                        ++n;
+                    }
+                    if (n == neighborCount) {
+                        if (neighborCount == neighbors.length) {
+                            neighbors = Arrays.copyOf(neighbors, neighborCount * 2);
+                            counts = Arrays.copyOf(counts, neighborCount * 2);
+                        }
+                        neighbors[neighborCount] = id;
+                        counts[neighborCount++] = 0;
+                    }
+                    ++counts[n];
+                }
+            }
+            for (int n = 0; n < neighborCount; ++n) {
+                if (counts[n] == 1) {
+                    border[neighbors[n]] = true;
+                }
+            }
+        }
+    }
+
+    // Ошибка стягивания ребра (v1, v2); лучшая точка - в resultX, resultY, resultZ
+    private double calculateError(int v1, int v2) {
+        final double[] q = quadricSum;
+        for (int k = 0; k < 10; ++k) {
+            q[k] = quadrics[v1 * 10 + k] + quadrics[v2 * 10 + k];
+        }
+        final double x1 = positions[v1 * 3];
+        final double y1 = positions[v1 * 3 + 1];
+        final double z1 = positions[v1 * 3 + 2];
+        final double x2 = positions[v2 * 3];
+        final double y2 = positions[v2 * 3 + 1];
+        final double z2 = positions[v2 * 3 + 2];
+        final double x3 = (x1 + x2) / 2;
+        final double y3 = (y1 + y2) / 2;
+        final double z3 = (z1 + z2) / 2;
+        final double det = det(q, 0, 1, 2, 1, 4, 5, 2, 5, 7);
+        if (det != 0 && !(border[v1] && border[v2])) {
+            // Минимум квадрики - решение системы 3x3 по правилу Крамера
+            final double x = -1 / det * det(q, 1, 2, 3, 4, 5, 6, 5, 7, 8);
+            final double y = 1 / det * det(q, 0, 2, 3, 1, 5, 6, 2, 7, 8);
+            final double z = -1 / det * det(q, 0, 1, 3, 1, 4, 6, 2, 5, 8);
+            // На почти плоском участке система плохо обусловлена и точка улетает далеко
+            // от ребра; такое стягивание всё равно отменилось бы из-за переворота
+            final double edgeSquared = (x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1) + (z2 - z1) * (z2 - z1);
+            final double offsetSquared = (x - x3) * (x - x3) + (y - y3) * (y - y3) + (z - z3) * (z - z3);
+            if (offsetSquared <= edgeSquared) {
+                resultX = x;
+                resultY = y;
+                resultZ = z;
+                return vertexError(q, x, y, z);
+            }
+        }
+        // Система вырождена (или ребро граничное): лучшая из концов и середины
+        final double error1 = vertexError(q, x1, y1, z1);
+        final double error2 = vertexError(q, x2, y2, z2);
+        final double error3 = vertexError(q, x3, y3, z3);
+        final double error = Math.min(error1, Math.min(error2, error3));
+        if (error == error1) {
+            resultX = x1;
+            resultY = y1;
+            resultZ = z1;
+        } else if (error == error2) {
+            resultX = x2;
+            resultY = y2;
+            resultZ = z2;
+        } else {
+            resultX = x3;
+            resultY = y3;
+            resultZ = z3;
+        }
+        return error;
+    }
+
+    private static double vertexError(double[] q, double x, double y, double z) {
+        return q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z + 2 * q[3] * x + q[4] * y * y
+                + 2 * q[5] * y * z + 2 * q[6] * y + q[7] * z * z + 2 * q[8] * z + q[9];
+    }
+
+    private static double det(double[] q, int a11, int a12, int a13, int a21, int a22, int a23,
+                              int a31, int a32, int a33) {
+        return q[a11] * q[a22] * q[a33] + q[a13] * q[a21] * q[a32] + q[a12] * q[a23] * q[a31]
+                - q[a13] * q[a22] * q[a31] - q[a11] * q[a23] * q[a32] - q[a12] * q[a21] * q[a33];
+    }
+
+    private void addRef(int triangle, int corner) {
+        if (refSize == refs.length) {
+            refs = Arrays.copyOf(refs, Math.max(16, refSize + refSize / 2));
+        }
+        refs[refSize++] = triangle * 3 + corner;
+    }
+
+    private static boolean[] ensureCapacity(boolean[] array, int capacity) {
+        return array.length >= capacity ? array : new boolean[Math.max(capacity, array.length * 2)];
+    }
+
+    // Оставшиеся треугольники и только используемые ими вершины, в исходных координатах
+    private Model toModel() {
+        final int[] newIndices = new int[vertexCount];
+        Arrays.fill(newIndices, -1);
+        final Model model = new Model();
+        final float[] coordinates = new float[3];
+        final int[] triangle = new int[3];
+        int usedVertexCount = 0;
+        for (int t = 0; t < triangleCount; ++t) {
+            if (deleted[t]) {
+                continue;
+            }
+            for (int j = 0; j < 3; ++j) {
+                final int v = triangles[t * 3 + j];
+                if (newIndices[v] < 0) {
+                    newIndices[v] = usedVertexCount++;
+                    coordinates[0] = (float) (positions[v * 3] * scale + centerX);
+                    coordinates[1] = (float) (positions[v * 3 + 1] * scale + centerY);
+                    coordinates[2] = (float) (positions[v * 3 + 2] * scale + centerZ);
+                    model.vertices.addAll(coordinates, 0, 1);
+                }
+                triangle[j] = newIndices[v];
+            }
+            model.polygons.add(triangle, 3, null, 0, null, 0);
+        }
+        return model;
+    }
+}
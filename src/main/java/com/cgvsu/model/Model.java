@@ -1,7 +1,4 @@
 package com.cgvsu.model;
-import com.cgvsu.math.Vector2f;
-import com.cgvsu.math.Vector3f;
-
 import java.util.*;
 
 /**
@@ -16,26 +13,45 @@ import java.util.*;
  */
 public class Model {
 
-    // Публичные поля для простоты доступа (как в методичке)
-    public ArrayList<Vector3f> vertices = new ArrayList<Vector3f>();
-    public ArrayList<Vector2f> textureVertices = new ArrayList<Vector2f>();
-    public ArrayList<Vector3f> normals = new ArrayList<Vector3f>();
-    public ArrayList<Polygon> polygons = new ArrayList<Polygon>();
+    // Публичные поля для простоты доступа (как в методичке).
+    // Координаты хранятся в плоских float[] (x y z подряд), а не отдельными объектами Vector3f:
+    // так модель занимает втрое меньше памяти. Списки по-прежнему реализуют List<Vector3f>,
+    // поэтому старый код вида vertices.get(i).x продолжает работать, но в циклах по всей
+    // модели лучше использовать vertices.getX(i) или vertices.coordinates().
+    public final Vector3fList vertices = new Vector3fList();
+    public final Vector2fList textureVertices = new Vector2fList();
+    public final Vector3fList normals = new Vector3fList();
+    // Полигоны хранятся так же компактно: индексы всех полигонов лежат в общих int[].
+    public final PolygonList polygons = new PolygonList();
+
+    // Уникальные рёбра для каркасной отрисовки, строятся по требованию
+    private EdgeList edges;
+    private int edgesModificationCount;
+    // Разбиение полигонов на треугольники для закрашенной отрисовки, тоже по требованию
+    private TriangleList triangles;
+    private int trianglesModificationCount;
+    // Ограничивающий параллелепипед, пересчитывается после изменения вершин
+    private BoundingBox bounds;
+    private int boundsModificationCount;
+    // Дерево для поиска треугольника на луче: перестраивается вместе с треугольниками,
+    // после сдвига вершин только пересчитываются границы узлов
+    private TriangleBvh bvh;
+    private int bvhModificationCount;
 
     // Геттеры для лучшей инкапсуляции (принцип ООП из методички)
-    public ArrayList<Vector3f> getVertices() {
+    public Vector3fList getVertices() {
         return vertices;
     }
 
-    public ArrayList<Vector2f> getTextureVertices() {
+    public Vector2fList getTextureVertices() {
         return textureVertices;
     }
 
-    public ArrayList<Vector3f> getNormals() {
+    public Vector3fList getNormals() {
         return normals;
     }
 
-    public ArrayList<Polygon> getPolygons() {
+    public PolygonList getPolygons() {
         return polygons;
     }
 
@@ -47,6 +63,92 @@ public class Model {
         return polygons.size();
     }
 
+    /**
+     * Общий счётчик изменений модели: меняется при любом изменении вершин, текстурных вершин,
+     * нормалей или полигонов. Подходит для проверки, нужно ли перерисовать кадр.
+     */
+    public long getModificationCount() {
+        return (long) vertices.getModificationCount() + textureVertices.getModificationCount()
+                + normals.getModificationCount() + polygons.getModificationCount();
+    }
+
+    /**
+     * Снимок первых vertexCount вершин и polygonCount полигонов модели без копирования:
+     * списки снимка смотрят в те же массивы. Так показывается модель, которая ещё читается
+     * из файла: читающий поток только добавляет элементы в конец, а уже попавшие в снимок
+     * элементы не меняются, поэтому снимок можно рисовать из другого потока без блокировок
+     * (если передать его через volatile-поле или другой безопасный способ публикации).
+     * <p>
+     * Снимок только для чтения: его изменение испортило бы исходную модель. И наоборот,
+     * пока снимок кому-то виден, исходную модель можно только дополнять в конец: удаление,
+     * сжатие массивов, сварка вершин и любое изменение уже попавших в снимок элементов
+     * испортили бы снимок прямо во время его отрисовки. Поэтому тот, кто раздаёт снимки,
+     * перед такими изменениями должен забрать их у всех, кто их показывает
+     * (так делает {@link com.cgvsu.ModelLoadTask}).
+     */
+    public Model snapshot(int vertexCount, int polygonCount) {
+        Model snapshot = new Model();
+        snapshot.vertices.viewOf(vertices, vertexCount);
+        snapshot.textureVertices.viewOf(textureVertices, textureVertices.size());
+        snapshot.normals.viewOf(normals, normals.size());
+        snapshot.polygons.viewOf(polygons, polygonCount);
+        return snapshot;
+    }
+
+    /**
+     * Ограничивающий параллелепипед и сфера модели. Кэшируется и пересчитывается
+     * только после изменения вершин.
+     */
+    public BoundingBox getBounds() {
+        if (bounds == null || boundsModificationCount != vertices.getModificationCount()) {
+            bounds = BoundingBox.of(vertices);
+            boundsModificationCount = vertices.getModificationCount();
+        }
+        return bounds;
+    }
+
+    /**
+     * Уникальные рёбра модели: ребро, общее для нескольких полигонов, входит в список один раз.
+     * Список кэшируется и перестраивается только после изменения полигонов
+     * (удаления полигонов или вершин, добавления новых полигонов).
+     */
+    public EdgeList getEdges() {
+        if (edges == null || edgesModificationCount != polygons.getModificationCount()) {
+            edges = EdgeList.build(polygons);
+            edgesModificationCount = polygons.getModificationCount();
+        }
+        return edges;
+    }
+
+    /**
+     * Полигоны модели, разбитые на треугольники. Кэшируется так же, как {@link #getEdges()}.
+     */
+    public TriangleList getTriangles() {
+        if (triangles == null || trianglesModificationCount != polygons.getModificationCount()) {
+            triangles = TriangleList.build(polygons);
+            trianglesModificationCount = polygons.getModificationCount();
+        }
+        return triangles;
+    }
+
+    /**
+     * Иерархия ограничивающих объёмов над треугольниками модели ({@link #getTriangles()}).
+     * Строится при первом обращении и заново после изменения полигонов (в том числе удаления
+     * полигонов и вершин); если менялись только координаты вершин, дерево не перестраивается,
+     * а подгоняется под новые координаты.
+     */
+    public TriangleBvh getBvh() {
+        final TriangleList currentTriangles = getTriangles();
+        if (bvh == null || bvh.getTriangles() != currentTriangles) {
+            bvh = TriangleBvh.build(currentTriangles, vertices);
+            bvhModificationCount = vertices.getModificationCount();
+        } else if (bvhModificationCount != vertices.getModificationCount()) {
+            bvh.refit(vertices);
+            bvhModificationCount = vertices.getModificationCount();
+        }
+        return bvh;
+    }
+
     /**
      * ПУНКТ 3: Удаление полигона по индексу.
      * Просто удаляет полигон из списка полигонов модели.
@@ -73,42 +175,176 @@ public class Model {
             return;
         }
 
-        vertices.remove(vertexIndex);
+        BitSet removed = new BitSet(vertices.size());
+        removed.set(vertexIndex);
+        deleteVertices(removed, false);
+    }
 
-        ArrayList<Polygon> newPolygons = new ArrayList<>();
-        for (Polygon polygon : polygons) {
-            ArrayList<Integer> vertexIndices = polygon.getVertexIndices();
-            boolean containsRemovedVertex = false;
-            ArrayList<Integer> newVertexIndices = new ArrayList<>();
+    /**
+     * ПУНКТ 3: Пакетное удаление вершин по списку индексов.
+     * Индексы вне диапазона и повторы игнорируются.
+     */
+    public void deleteVertices(int[] vertexIndices) {
+        deleteVertices(toBitSet(vertexIndices, vertices.size()), false);
+    }
 
-            for (Integer index : vertexIndices) {
-                if (index == vertexIndex) {
-                    containsRemovedVertex = true;
-                    break;
-                }
-            }
+    public void deleteVertices(BitSet removedVertices) {
+        deleteVertices(removedVertices, false);
+    }
+
+    /**
+     * ПУНКТ 3: Пакетное удаление вершин.
+     * Сколько бы вершин ни удалялось, работа линейна по размеру модели (O(V + F)):
+     * массив вершин сжимается за один проход, по нему строится таблица
+     * "старый индекс -> новый" (префиксные суммы сохранённых вершин),
+     * и индексы всех полигонов переписываются тоже за один проход.
+     * Полигоны, ссылавшиеся на удалённые вершины, удаляются.
+     *
+     * @param removedVertices         отмеченные вершины
+     * @param removeUnusedAttributes  удалить заодно нормали и текстурные вершины,
+     *                                на которые больше не ссылается ни один полигон
+     */
+    public void deleteVertices(BitSet removedVertices, boolean removeUnusedAttributes) {
+        if (removedVertices.nextSetBit(0) < 0 || removedVertices.nextSetBit(0) >= vertices.size()) {
+            return;
+        }
+
+        int[] newVertexIndices = vertices.compact(removedVertices);
+        polygons.remapVertexIndices(newVertexIndices);
+
+        if (removeUnusedAttributes) {
+            deleteUnusedAttributes();
+        }
+    }
 
-            if (containsRemovedVertex) {
-                // Полигон, в котором была удалённая вершина, просто пропускаем.
-                continue;
+    /**
+     * Допуск сварки по умолчанию - тот же, что в {@link com.cgvsu.math.Vector3f#equals}.
+     */
+    public static final float DEFAULT_WELD_TOLERANCE = 1e-7f;
+
+    /**
+     * Сваривает совпадающие вершины: вершины, все координаты которых отличаются меньше
+     * чем на tolerance, заменяются одной (первой из них), индексы полигонов переписываются.
+     * Полезно для OBJ, где одни и те же координаты повторены для каждого угла грани.
+     * Поиск совпадений почти линеен по числу вершин, см. {@link VertexWelder}.
+     *
+     * @return сколько вершин удалено
+     */
+    public int weldVertices(float tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Weld tolerance must be positive: " + tolerance);
+        }
+        final int[] newVertexIndices = VertexWelder.findDuplicates(vertices, tolerance);
+        if (newVertexIndices == null) {
+            return 0;
+        }
+        // Вершина остаётся, если её новый индекс - следующий по порядку
+        final BitSet removed = new BitSet(vertices.size());
+        int keptCount = 0;
+        for (int v = 0; v < newVertexIndices.length; ++v) {
+            if (newVertexIndices[v] == keptCount) {
+                ++keptCount;
+            } else {
+                removed.set(v);
             }
+        }
+        vertices.compact(removed);
+        polygons.remapVertexIndices(newVertexIndices);
+        return removed.cardinality();
+    }
 
-            for (Integer index : vertexIndices) {
-                if (index > vertexIndex) {
-                    newVertexIndices.add(index - 1);
-                } else {
-                    newVertexIndices.add(index);
-                }
+    /**
+     * То же, что {@link #weldVertices}, но сама модель не меняется: результат - новая
+     * модель со своими массивами. Нужна, когда на массивы модели ещё могут смотреть
+     * другие потоки (например, снимки {@link #snapshot} при загрузке).
+     *
+     * @return сваренная копия или сама модель, если совпадающих вершин нет
+     */
+    public Model weldedCopy(float tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Weld tolerance must be positive: " + tolerance);
+        }
+        final int[] newVertexIndices = VertexWelder.findDuplicates(vertices, tolerance);
+        if (newVertexIndices == null) {
+            return this;
+        }
+        final Model welded = new Model();
+        // Вершина остаётся, если её новый индекс - следующий по порядку
+        int keptCount = 0;
+        for (int v = 0; v < newVertexIndices.length; ++v) {
+            keptCount = Math.max(keptCount, newVertexIndices[v] + 1);
+        }
+        welded.vertices.ensureCapacity(keptCount);
+        keptCount = 0;
+        for (int v = 0; v < newVertexIndices.length; ++v) {
+            if (newVertexIndices[v] == keptCount) {
+                welded.vertices.add(vertices.getX(v), vertices.getY(v), vertices.getZ(v));
+                ++keptCount;
             }
+        }
+        welded.textureVertices.addAll(textureVertices.coordinates(), 0, textureVertices.size());
+        welded.normals.addAll(normals.coordinates(), 0, normals.size());
+        welded.polygons.addAll(polygons);
+        welded.polygons.remapVertexIndices(newVertexIndices);
+        return welded;
+    }
+
+    /**
+     * ПУНКТ 3: Пакетное удаление полигонов по списку индексов.
+     * Индексы вне диапазона и повторы игнорируются.
+     */
+    public void deletePolygons(int[] polygonIndices) {
+        deletePolygons(toBitSet(polygonIndices, polygons.size()), false);
+    }
+
+    public void deletePolygons(BitSet removedPolygons) {
+        deletePolygons(removedPolygons, false);
+    }
+
+    /**
+     * ПУНКТ 3: Пакетное удаление полигонов за один проход по массивам индексов (O(F)).
+     *
+     * @param removedPolygons         отмеченные полигоны
+     * @param removeUnusedAttributes  удалить заодно нормали и текстурные вершины,
+     *                                на которые больше не ссылается ни один полигон
+     */
+    public void deletePolygons(BitSet removedPolygons, boolean removeUnusedAttributes) {
+        polygons.removePolygons(removedPolygons);
 
-            Polygon newPolygon = new Polygon();
-            newPolygon.setVertexIndices(newVertexIndices);
-            newPolygon.setTextureVertexIndices(polygon.getTextureVertexIndices());
-            newPolygon.setNormalIndices(polygon.getNormalIndices());
+        if (removeUnusedAttributes) {
+            deleteUnusedAttributes();
+        }
+    }
+
+    /**
+     * Удаляет нормали и текстурные вершины, на которые не ссылается ни один полигон,
+     * и переписывает индексы полигонов.
+     */
+    public void deleteUnusedAttributes() {
+        int[] newTextureVertexIndices = deleteUnused(textureVertices, true);
+        int[] newNormalIndices = deleteUnused(normals, false);
+        if (newTextureVertexIndices != null || newNormalIndices != null) {
+            polygons.remapAttributeIndices(newTextureVertexIndices, newNormalIndices);
+        }
+    }
 
-            newPolygons.add(newPolygon);
+    private int[] deleteUnused(FloatTupleList<?> attributes, boolean textures) {
+        BitSet unused = new BitSet(attributes.size());
+        polygons.markUsedAttributes(unused, textures);
+        unused.flip(0, attributes.size());
+        if (unused.isEmpty()) {
+            return null;
         }
+        return attributes.compact(unused);
+    }
 
-        polygons = newPolygons;
+    private static BitSet toBitSet(int[] indices, int size) {
+        BitSet result = new BitSet(size);
+        for (int index : indices) {
+            if (index >= 0 && index < size) {
+                result.set(index);
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,495 @@
+package com.cgvsu.model;
+
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Компактное хранилище полигонов произвольной формы (как CSR-матрица).
+ * <p>
+ * Индексы вершин всех полигонов лежат подряд в одном int[], а массив смещений
+ * хранит начало каждого полигона: углы полигона p занимают позиции
+ * [offsets[p], offsets[p + 1]). Индексы текстурных вершин и нормалей выровнены
+ * по углам полигона, отсутствующий индекс хранится как -1. Если ни у одного
+ * полигона нет текстурных координат (нормалей), соответствующий массив не создаётся.
+ * <p>
+ * Для совместимости со старым кодом класс реализует List&lt;Polygon&gt;:
+ * {@link #get(int)} собирает новый {@link Polygon}, а add/set/remove копируют
+ * индексы внутрь. В циклах по всей модели следует пользоваться методами
+ * доступа по индексу или сырыми массивами, они не создают объектов.
+ */
+public class PolygonList extends AbstractList<Polygon> implements RandomAccess {
+
+    private IntList offsets = new IntList();
+    private IntList vertexIndices = new IntList();
+    private IntList textureVertexIndices;
+    private IntList normalIndices;
+
+    public PolygonList() {
+        offsets.add(0);
+    }
+
+    @Override
+    public int size() {
+        return offsets.size() - 1;
+    }
+
+    /**
+     * Общее количество углов во всех полигонах.
+     */
+    public int getCornerCount() {
+        return vertexIndices.size();
+    }
+
+    public int getPolygonVertexCount(int polygonIndex) {
+        return offsets.get(polygonIndex + 1) - offsets.get(polygonIndex);
+    }
+
+    /**
+     * Позиция первого угла полигона в массивах индексов.
+     */
+    public int getOffset(int polygonIndex) {
+        return offsets.get(polygonIndex);
+    }
+
+    public int getVertexIndex(int polygonIndex, int vertexInPolygonIndex) {
+        return vertexIndices.get(offsets.get(polygonIndex) + vertexInPolygonIndex);
+    }
+
+    public int getTextureVertexIndex(int polygonIndex, int vertexInPolygonIndex) {
+        return textureVertexIndices == null
+                ? -1
+                : textureVertexIndices.get(offsets.get(polygonIndex) + vertexInPolygonIndex);
+    }
+
+    public int getNormalIndex(int polygonIndex, int vertexInPolygonIndex) {
+        return normalIndices == null
+                ? -1
+                : normalIndices.get(offsets.get(polygonIndex) + vertexInPolygonIndex);
+    }
+
+    public boolean hasTextureVertexIndices() {
+        return textureVertexIndices != null;
+    }
+
+    public boolean hasNormalIndices() {
+        return normalIndices != null;
+    }
+
+    /**
+     * Сырой массив смещений, допустимы первые {@code size() + 1} элементов.
+     * Ссылки на сырые массивы перестают быть актуальными после изменения списка.
+     */
+    public int[] offsets() {
+        return offsets.array();
+    }
+
+    /**
+     * Сырой массив индексов вершин, допустимы первые {@link #getCornerCount()} элементов.
+     */
+    public int[] vertexIndices() {
+        return vertexIndices.array();
+    }
+
+    /**
+     * Сырой массив индексов текстурных вершин или null, если их нет ни у одного полигона.
+     */
+    public int[] textureVertexIndices() {
+        return textureVertexIndices == null ? null : textureVertexIndices.array();
+    }
+
+    /**
+     * Сырой массив индексов нормалей или null, если их нет ни у одного полигона.
+     */
+    public int[] normalIndices() {
+        return normalIndices == null ? null : normalIndices.array();
+    }
+
+    /**
+     * Делает список видом на первые polygonCount полигонов source без копирования,
+     * см. {@link FloatTupleList#viewOf}.
+     */
+    void viewOf(PolygonList source, int polygonCount) {
+        final int cornerCount = source.offsets.get(polygonCount);
+        offsets = IntList.viewOf(source.offsets, polygonCount + 1);
+        vertexIndices = IntList.viewOf(source.vertexIndices, cornerCount);
+        textureVertexIndices = source.textureVertexIndices != null
+                ? IntList.viewOf(source.textureVertexIndices, cornerCount)
+                : null;
+        normalIndices = source.normalIndices != null
+                ? IntList.viewOf(source.normalIndices, cornerCount)
+                : null;
+        ++modCount;
+    }
+
+    /**
+     * Счётчик изменений, растёт при любом изменении полигонов.
+     */
+    public int getModificationCount() {
+        return modCount;
+    }
+
+    /**
+     * Добавляет полигон из первых count элементов массивов индексов без создания объектов.
+     * Если текстурных индексов (нормалей) меньше, чем вершин, недостающие углы получают -1.
+     */
+    public void add(
+            int[] vertexIndices, int vertexCount,
+            int[] textureVertexIndices, int textureVertexCount,
+            int[] normalIndices, int normalCount) {
+        final int cornerCount = this.vertexIndices.size();
+        this.vertexIndices.addAll(vertexIndices, 0, vertexCount);
+        this.textureVertexIndices = appendAttribute(
+                this.textureVertexIndices, cornerCount, textureVertexIndices, textureVertexCount, vertexCount);
+        this.normalIndices = appendAttribute(this.normalIndices, cornerCount, normalIndices, normalCount, vertexCount);
+        offsets.add(this.vertexIndices.size());
+        ++modCount;
+    }
+
+    /**
+     * Добавляет все полигоны другого списка. Индексы копируются как есть.
+     */
+    public void addAll(PolygonList other) {
+        final int cornerCount = vertexIndices.size();
+        final int otherCornerCount = other.getCornerCount();
+        final int[] otherOffsets = other.offsets();
+
+        offsets.ensureCapacity(offsets.size() + other.size());
+        for (int i = 1; i <= other.size(); ++i) {
+            offsets.add(cornerCount + otherOffsets[i]);
+        }
+        vertexIndices.addAll(other.vertexIndices(), 0, otherCornerCount);
+        textureVertexIndices = appendAttribute(textureVertexIndices, cornerCount,
+                other.textureVertexIndices(), other.textureVertexIndices == null ? 0 : otherCornerCount, otherCornerCount);
+        normalIndices = appendAttribute(normalIndices, cornerCount,
+                other.normalIndices(), other.normalIndices == null ? 0 : otherCornerCount, otherCornerCount);
+        ++modCount;
+    }
+
+    /**
+     * Добавляет polygonCount полигонов из буферов (например, отображённого в память файла)
+     * копированием целых массивов, без разбора по одному полигону.
+     *
+     * @param offsets              polygonCount + 1 смещение, первое - 0
+     * @param vertexIndices        индексы вершин всех углов
+     * @param textureVertexIndices индексы текстурных вершин по углам или null
+     * @param normalIndices        индексы нормалей по углам или null
+     */
+    public void addAll(
+            IntBuffer offsets, IntBuffer vertexIndices,
+            IntBuffer textureVertexIndices, IntBuffer normalIndices,
+            int polygonCount) {
+        final int cornerCount = this.vertexIndices.size();
+        final int firstOffset = this.offsets.size();
+        offsets.get();
+        this.offsets.addAll(offsets, polygonCount);
+        if (cornerCount != 0) {
+            for (int i = firstOffset; i < this.offsets.size(); ++i) {
+                this.offsets.set(i, this.offsets.get(i) + cornerCount);
+            }
+        }
+
+        final int newCornerCount = this.offsets.get(this.offsets.size() - 1) - cornerCount;
+        this.vertexIndices.addAll(vertexIndices, newCornerCount);
+        this.textureVertexIndices = appendAttribute(
+                this.textureVertexIndices, cornerCount, textureVertexIndices, newCornerCount);
+        this.normalIndices = appendAttribute(this.normalIndices, cornerCount, normalIndices, newCornerCount);
+        ++modCount;
+    }
+
+    private static IntList appendAttribute(
+            IntList target, int cornerCount, IntBuffer source, int newCornerCount) {
+        if (source == null) {
+            if (target != null) {
+                target.fill(newCornerCount, -1);
+            }
+            return target;
+        }
+        if (target == null) {
+            target = new IntList(cornerCount + newCornerCount);
+            target.fill(cornerCount, -1);
+        }
+        target.addAll(source, newCornerCount);
+        return target;
+    }
+
+    private static IntList appendAttribute(
+            IntList target, int cornerCount, int[] source, int sourceCount, int newCornerCount) {
+        if (target == null) {
+            if (sourceCount == 0) {
+                return null;
+            }
+            target = new IntList(cornerCount + newCornerCount);
+            target.fill(cornerCount, -1);
+        }
+        final int copied = Math.min(sourceCount, newCornerCount);
+        if (copied > 0) {
+            target.addAll(source, 0, copied);
+        }
+        target.fill(newCornerCount - copied, -1);
+        return target;
+    }
+
+    /**
+     * Заменяет индексы вершин по таблице newVertexIndices (старый индекс -> новый) за один проход.
+     * Полигоны, в которых есть вершина с новым индексом -1, удаляются.
+     * Некорректные индексы, не попадающие в таблицу, остаются как есть.
+     *
+     * @return количество удалённых полигонов
+     */
+    public int remapVertexIndices(int[] newVertexIndices) {
+        return compact(null, newVertexIndices);
+    }
+
+    /**
+     * Удаляет все полигоны, отмеченные в removedPolygons, за один проход.
+     *
+     * @return количество удалённых полигонов
+     */
+    public int removePolygons(BitSet removedPolygons) {
+        return compact(removedPolygons, null);
+    }
+
+    /**
+     * Общий проход для удаления: полигоны сдвигаются к началу массивов,
+     * пропускаются отмеченные в removedPolygons и те, что ссылаются на удалённые вершины.
+     */
+    private int compact(BitSet removedPolygons, int[] newVertexIndices) {
+        final int[] offsets = this.offsets.array();
+        final int[] vertices = vertexIndices.array();
+        final int[] textures = textureVertexIndices();
+        final int[] normals = normalIndices();
+        final int polygonCount = size();
+
+        int writePolygon = 0;
+        int writeCorner = 0;
+        for (int polygonInd = 0; polygonInd < polygonCount; ++polygonInd) {
+            final int start = offsets[polygonInd];
+            final int end = offsets[polygonInd + 1];
+
+            if (removedPolygons != null && removedPolygons.get(polygonInd)) {
+                continue;
+            }
+            if (newVertexIndices != null && referencesRemovedVertex(vertices, start, end, newVertexIndices)) {
+                continue;
+            }
+
+            for (int i = start; i < end; ++i, ++writeCorner) {
+                final int vertex = vertices[i];
+                vertices[writeCorner] = newVertexIndices != null && vertex >= 0 && vertex < newVertexIndices.length
+                        ? newVertexIndices[vertex]
+                        : vertex;
+                if (textures != null) {
+                    textures[writeCorner] = textures[i];
+                }
+                if (normals != null) {
+                    normals[writeCorner] = normals[i];
+                }
+            }
+            offsets[++writePolygon] = writeCorner;
+        }
+
+        final int removedCount = polygonCount - writePolygon;
+        truncate(writePolygon, writeCorner);
+        return removedCount;
+    }
+
+    private static boolean referencesRemovedVertex(int[] vertices, int start, int end, int[] newVertexIndices) {
+        for (int i = start; i < end; ++i) {
+            final int vertex = vertices[i];
+            if (vertex >= 0 && vertex < newVertexIndices.length && newVertexIndices[vertex] < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Заменяет индексы текстурных вершин и нормалей по таблицам "старый индекс -> новый".
+     * Таблица может быть null, тогда соответствующие индексы не меняются.
+     */
+    public void remapAttributeIndices(int[] newTextureVertexIndices, int[] newNormalIndices) {
+        final int cornerCount = getCornerCount();
+        remap(textureVertexIndices(), cornerCount, newTextureVertexIndices);
+        remap(normalIndices(), cornerCount, newNormalIndices);
+        ++modCount;
+    }
+
+    private static void remap(int[] indices, int count, int[] newIndices) {
+        if (indices == null || newIndices == null) {
+            return;
+        }
+        for (int i = 0; i < count; ++i) {
+            final int index = indices[i];
+            if (index >= 0 && index < newIndices.length) {
+                indices[i] = newIndices[index];
+            }
+        }
+    }
+
+    /**
+     * Отмечает в used все текстурные вершины (textures = true) или нормали, на которые ссылаются полигоны.
+     */
+    public void markUsedAttributes(BitSet used, boolean textures) {
+        final int[] indices = textures ? textureVertexIndices() : normalIndices();
+        if (indices == null) {
+            return;
+        }
+        final int cornerCount = getCornerCount();
+        for (int i = 0; i < cornerCount; ++i) {
+            if (indices[i] >= 0) {
+                used.set(indices[i]);
+            }
+        }
+    }
+
+    private void truncate(int polygonCount, int cornerCount) {
+        offsets.truncate(polygonCount + 1);
+        vertexIndices.truncate(cornerCount);
+        if (textureVertexIndices != null) {
+            textureVertexIndices.truncate(cornerCount);
+        }
+        if (normalIndices != null) {
+            normalIndices.truncate(cornerCount);
+        }
+        ++modCount;
+    }
+
+    // ===== Совместимость с List<Polygon> =====
+
+    @Override
+    public Polygon get(int index) {
+        Objects.checkIndex(index, size());
+        final int start = offsets.get(index);
+        final int end = offsets.get(index + 1);
+
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(toList(vertexIndices, start, end));
+        polygon.setTextureVertexIndices(toList(textureVertexIndices, start, end));
+        polygon.setNormalIndices(toList(normalIndices, start, end));
+        return polygon;
+    }
+
+    private static ArrayList<Integer> toList(IntList indices, int start, int end) {
+        ArrayList<Integer> result = new ArrayList<>(indices == null ? 0 : end - start);
+        if (indices != null) {
+            for (int i = start; i < end; ++i) {
+                final int index = indices.get(i);
+                if (index != -1) {
+                    result.add(index);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean add(Polygon polygon) {
+        add(size(), polygon);
+        return true;
+    }
+
+    @Override
+    public void add(int index, Polygon polygon) {
+        Objects.checkIndex(index, size() + 1);
+        final int start = offsets.get(index);
+        offsets.insert(index + 1, 1, start);
+        replaceCorners(index, polygon);
+    }
+
+    @Override
+    public Polygon set(int index, Polygon polygon) {
+        final Polygon previous = get(index);
+        replaceCorners(index, polygon);
+        return previous;
+    }
+
+    @Override
+    public Polygon remove(int index) {
+        final Polygon previous = get(index);
+        removeRange(index, index + 1);
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        final int start = offsets.get(fromIndex);
+        final int end = offsets.get(toIndex);
+        resizeCorners(start, end, 0);
+        offsets.removeRange(fromIndex + 1, toIndex + 1);
+        final int[] data = offsets.array();
+        for (int i = fromIndex + 1; i < offsets.size(); ++i) {
+            data[i] -= end - start;
+        }
+        ++modCount;
+    }
+
+    @Override
+    public void clear() {
+        truncate(0, 0);
+    }
+
+    /**
+     * Записывает индексы polygon на место полигона index, сдвигая хвост массивов при необходимости.
+     */
+    private void replaceCorners(int index, Polygon polygon) {
+        final List<Integer> vertices = polygon.getVertexIndices();
+        final List<Integer> textures = polygon.getTextureVertexIndices();
+        final List<Integer> normals = polygon.getNormalIndices();
+        final int count = vertices.size();
+
+        if (textureVertexIndices == null && !textures.isEmpty()) {
+            textureVertexIndices = new IntList(vertexIndices.size() + count);
+            textureVertexIndices.fill(vertexIndices.size(), -1);
+        }
+        if (normalIndices == null && !normals.isEmpty()) {
+            normalIndices = new IntList(vertexIndices.size() + count);
+            normalIndices.fill(vertexIndices.size(), -1);
+        }
+
+        final int start = offsets.get(index);
+        final int end = offsets.get(index + 1);
+        resizeCorners(start, end, count);
+        final int delta = count - (end - start);
+        if (delta != 0) {
+            final int[] data = offsets.array();
+            for (int i = index + 1; i < offsets.size(); ++i) {
+                data[i] += delta;
+            }
+        }
+
+        for (int i = 0; i < count; ++i) {
+            vertexIndices.set(start + i, vertices.get(i));
+            if (textureVertexIndices != null) {
+                textureVertexIndices.set(start + i, i < textures.size() ? textures.get(i) : -1);
+            }
+            if (normalIndices != null) {
+                normalIndices.set(start + i, i < normals.size() ? normals.get(i) : -1);
+            }
+        }
+        ++modCount;
+    }
+
+    private void resizeCorners(int start, int end, int newCount) {
+        resize(vertexIndices, start, end, newCount);
+        if (textureVertexIndices != null) {
+            resize(textureVertexIndices, start, end, newCount);
+        }
+        if (normalIndices != null) {
+            resize(normalIndices, start, end, newCount);
+        }
+    }
+
+    private static void resize(IntList indices, int start, int end, int newCount) {
+        final int oldCount = end - start;
+        if (newCount > oldCount) {
+            indices.insert(end, newCount - oldCount, -1);
+        } else if (newCount < oldCount) {
+            indices.removeRange(start + newCount, end);
+        }
+    }
+}
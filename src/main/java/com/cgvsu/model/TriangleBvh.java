@@ -0,0 +1,343 @@
+package com.cgvsu.model;
+
+/**
+ * Иерархия ограничивающих объёмов (BVH) над треугольниками модели для поиска
+ * ближайшего треугольника на луче.
+ * <p>
+ * Узлы - параллелепипеды со сторонами вдоль осей, лежат в плоских массивах: границы
+ * узла i - элементы 6i..6i+5 массива bounds (min x, y, z, затем max x, y, z). У листа
+ * count &gt; 0, его треугольники - order[start, start + count). У внутреннего узла
+ * count == 0, а дети - узлы start и start + 1. Дети всегда создаются после родителя,
+ * поэтому при обходе узлов с конца ребёнок встречается раньше родителя.
+ * <p>
+ * Дерево строится делением треугольников пополам по медиане центров вдоль самой длинной
+ * оси, так что глубина - около log2(n / {@link #LEAF_SIZE}), и луч проверяет лишь
+ * несколько листьев вместо всех треугольников. Если у модели менялись только
+ * координаты вершин, дерево не перестраивается, а пересчитываются границы узлов
+ * ({@link #refit}).
+ */
+public class TriangleBvh {
+
+    // Больше треугольников в листе - меньше узлов, но больше проверок пересечения
+    static final int LEAF_SIZE = 4;
+    // Глубина дерева не больше ~log2(n), 64 хватает для любого размера int
+    private static final int MAX_DEPTH = 64;
+
+    private final TriangleList triangles;
+    private final int[] order;
+    private final float[] bounds;
+    private final int[] nodeStart;
+    private final int[] nodeCount;
+    private int nodeCountTotal;
+
+    // Координаты вершин, по которым посчитаны границы узлов
+    private float[] coordinates;
+
+    private TriangleBvh(TriangleList triangles, float[] coordinates) {
+        this.triangles = triangles;
+        this.coordinates = coordinates;
+        final int triangleCount = triangles.size();
+        order = new int[triangleCount];
+        for (int i = 0; i < triangleCount; ++i) {
+            order[i] = i;
+        }
+        final int maxNodes = Math.max(1, 2 * triangleCount);
+        bounds = new float[maxNodes * 6];
+        nodeStart = new int[maxNodes];
+        nodeCount = new int[maxNodes];
+    }
+
+    /**
+     * Строит дерево по треугольникам и текущим координатам вершин.
+     */
+    public static TriangleBvh build(TriangleList triangles, Vector3fList vertices) {
+        TriangleBvh bvh = new TriangleBvh(triangles, vertices.coordinates());
+        final int triangleCount = triangles.size();
+        final float[] centroids = new float[triangleCount * 3];
+        final int[] indices = triangles.vertexIndices();
+        final float[] coordinates = bvh.coordinates;
+        for (int t = 0; t < triangleCount; ++t) {
+            for (int axis = 0; axis < 3; ++axis) {
+                centroids[t * 3 + axis] = (coordinates[indices[t * 3] * 3 + axis]
+                        + coordinates[indices[t * 3 + 1] * 3 + axis]
+                        + coordinates[indices[t * 3 + 2] * 3 + axis]) / 3;
+            }
+        }
+
+        bvh.nodeCountTotal = 1;
+        bvh.buildNode(0, 0, triangleCount, centroids);
+        bvh.refit(vertices);
+        return bvh;
+    }
+
+    public TriangleList getTriangles() {
+        return triangles;
+    }
+
+    public int getNodeCount() {
+        return nodeCountTotal;
+    }
+
+    /**
+     * Пересчитывает границы узлов по новым координатам вершин, не меняя структуру дерева.
+     * Подходит, когда вершины сдвинулись, а полигоны остались те же; после больших сдвигов
+     * дерево лучше построить заново.
+     */
+    public void refit(Vector3fList vertices) {
+        coordinates = vertices.coordinates();
+        if (triangles.size() == 0) {
+            return;
+        }
+        final int[] indices = triangles.vertexIndices();
+        for (int node = nodeCountTotal - 1; node >= 0; --node) {
+            final int offset = node * 6;
+            if (nodeCount[node] == 0) {
+                final int left = nodeStart[node] * 6;
+                final int right = left + 6;
+                for (int axis = 0; axis < 3; ++axis) {
+                    bounds[offset + axis] = Math.min(bounds[left + axis], bounds[right + axis]);
+                    bounds[offset + 3 + axis] = Math.max(bounds[left + 3 + axis], bounds[right + 3 + axis]);
+                }
+                continue;
+            }
+            for (int axis = 0; axis < 3; ++axis) {
+                bounds[offset + axis] = Float.POSITIVE_INFINITY;
+                bounds[offset + 3 + axis] = Float.NEGATIVE_INFINITY;
+            }
+            final int end = nodeStart[node] + nodeCount[node];
+            for (int i = nodeStart[node]; i < end; ++i) {
+                final int triangle = order[i];
+                for (int k = 0; k < 3; ++k) {
+                    final int vertexOffset = indices[triangle * 3 + k] * 3;
+                    for (int axis = 0; axis < 3; ++axis) {
+                        final float value = coordinates[vertexOffset + axis];
+                        bounds[offset + axis] = Math.min(bounds[offset + axis], value);
+                        bounds[offset + 3 + axis] = Math.max(bounds[offset + 3 + axis], value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Ближайший треугольник, который пересекает луч origin + t * direction при t &gt;= 0.
+     * Стороны треугольника не различаются.
+     *
+     * @return номер треугольника в {@link #getTriangles()} или -1, если луч ничего не задел
+     */
+    public int raycast(float originX, float originY, float originZ,
+                       float directionX, float directionY, float directionZ) {
+        if (triangles.size() == 0) {
+            return -1;
+        }
+        final float inverseX = 1 / directionX;
+        final float inverseY = 1 / directionY;
+        final float inverseZ = 1 / directionZ;
+        final int[] indices = triangles.vertexIndices();
+
+        final int[] stack = new int[MAX_DEPTH];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        float closest = Float.POSITIVE_INFINITY;
+        int closestTriangle = -1;
+
+        while (stackSize > 0) {
+            final int node = stack[--stackSize];
+            if (intersectBox(node, originX, originY, originZ, inverseX, inverseY, inverseZ, closest) == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            if (nodeCount[node] > 0) {
+                final int end = nodeStart[node] + nodeCount[node];
+                for (int i = nodeStart[node]; i < end; ++i) {
+                    final int triangle = order[i];
+                    final float t = intersectTriangle(indices, triangle,
+                            originX, originY, originZ, directionX, directionY, directionZ);
+                    if (t < closest) {
+                        closest = t;
+                        closestTriangle = triangle;
+                    }
+                }
+                continue;
+            }
+
+            // Сначала проверяем ближнего ребёнка: найденное в нём пересечение
+            // позволит отбросить дальнего целиком
+            final int left = nodeStart[node];
+            final int right = left + 1;
+            final float leftDistance = intersectBox(left, originX, originY, originZ, inverseX, inverseY, inverseZ, closest);
+            final float rightDistance = intersectBox(right, originX, originY, originZ, inverseX, inverseY, inverseZ, closest);
+            if (leftDistance <= rightDistance) {
+                if (rightDistance != Float.POSITIVE_INFINITY) {
+                    stack[stackSize++] = right;
+                }
+                if (leftDistance != Float.POSITIVE_INFINITY) {
+                    stack[stackSize++] = left;
+                }
+            } else {
+                if (leftDistance != Float.POSITIVE_INFINITY) {
+                    stack[stackSize++] = left;
+                }
+                stack[stackSize++] = right;
+            }
+        }
+        return closestTriangle;
+    }
+
+    /**
+     * Пересечение луча с треугольником (алгоритм Мёллера - Трумбора).
+     *
+     * @return параметр t точки пересечения или +бесконечность, если пересечения нет
+     */
+    static float intersectTriangle(
+            int[] indices, int triangle, float[] coordinates,
+            float originX, float originY, float originZ,
+            float directionX, float directionY, float directionZ) {
+        final int i0 = indices[triangle * 3] * 3;
+        final int i1 = indices[triangle * 3 + 1] * 3;
+        final int i2 = indices[triangle * 3 + 2] * 3;
+        final float e1x = coordinates[i1] - coordinates[i0];
+        final float e1y = coordinates[i1 + 1] - coordinates[i0 + 1];
+        final float e1z = coordinates[i1 + 2] - coordinates[i0 + 2];
+        final float e2x = coordinates[i2] - coordinates[i0];
+        final float e2y = coordinates[i2 + 1] - coordinates[i0 + 1];
+        final float e2z = coordinates[i2 + 2] - coordinates[i0 + 2];
+
+        final float px = directionY * e2z - directionZ * e2y;
+        final float py = directionZ * e2x - directionX * e2z;
+        final float pz = directionX * e2y - directionY * e2x;
+        final float determinant = e1x * px + e1y * py + e1z * pz;
+        if (determinant == 0 || !Float.isFinite(determinant)) {
+            return Float.POSITIVE_INFINITY;
+        }
+        final float inverseDeterminant = 1 / determinant;
+
+        final float sx = originX - coordinates[i0];
+        final float sy = originY - coordinates[i0 + 1];
+        final float sz = originZ - coordinates[i0 + 2];
+        final float u = (sx * px + sy * py + sz * pz) * inverseDeterminant;
+        if (u < 0 || u > 1) {
+            return Float.POSITIVE_INFINITY;
+        }
+        final float qx = sy * e1z - sz * e1y;
+        final float qy = sz * e1x - sx * e1z;
+        final float qz = sx * e1y - sy * e1x;
+        final float v = (directionX * qx + directionY * qy + directionZ * qz) * inverseDeterminant;
+        if (v < 0 || u + v > 1) {
+            return Float.POSITIVE_INFINITY;
+        }
+        final float t = (e2x * qx + e2y * qy + e2z * qz) * inverseDeterminant;
+        return t >= 0 ? t : Float.POSITIVE_INFINITY;
+    }
+
+    private float intersectTriangle(
+            int[] indices, int triangle,
+            float originX, float originY, float originZ,
+            float directionX, float directionY, float directionZ) {
+        return intersectTriangle(indices, triangle, coordinates,
+                originX, originY, originZ, directionX, directionY, directionZ);
+    }
+
+    /**
+     * Пересечение луча с параллелепипедом узла (метод плит).
+     *
+     * @return параметр t входа в параллелепипед или +бесконечность, если луч его не задевает
+     * или входит не ближе maxDistance
+     */
+    private float intersectBox(
+            int node,
+            float originX, float originY, float originZ,
+            float inverseX, float inverseY, float inverseZ,
+            float maxDistance) {
+        final int offset = node * 6;
+        float tx1 = (bounds[offset] - originX) * inverseX;
+        float tx2 = (bounds[offset + 3] - originX) * inverseX;
+        float tMin = Math.min(tx1, tx2);
+        float tMax = Math.max(tx1, tx2);
+        final float ty1 = (bounds[offset + 1] - originY) * inverseY;
+        final float ty2 = (bounds[offset + 4] - originY) * inverseY;
+        tMin = Math.max(tMin, Math.min(ty1, ty2));
+        tMax = Math.min(tMax, Math.max(ty1, ty2));
+        final float tz1 = (bounds[offset + 2] - originZ) * inverseZ;
+        final float tz2 = (bounds[offset + 5] - originZ) * inverseZ;
+        tMin = Math.max(tMin, Math.min(tz1, tz2));
+        tMax = Math.min(tMax, Math.max(tz1, tz2));
+
+        tMin = Math.max(tMin, 0);
+        // NaN (луч в плоскости грани параллелепипеда) сравнения не проходит, узел не отбрасывается
+        if (tMax < tMin || tMin > maxDistance) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return tMin;
+    }
+
+    private void buildNode(int node, int from, int to, float[] centroids) {
+        if (to - from <= LEAF_SIZE) {
+            nodeStart[node] = from;
+            nodeCount[node] = to - from;
+            return;
+        }
+
+        // Самая длинная ось по центрам треугольников
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; ++i) {
+            final int offset = order[i] * 3;
+            minX = Math.min(minX, centroids[offset]);
+            maxX = Math.max(maxX, centroids[offset]);
+            minY = Math.min(minY, centroids[offset + 1]);
+            maxY = Math.max(maxY, centroids[offset + 1]);
+            minZ = Math.min(minZ, centroids[offset + 2]);
+            maxZ = Math.max(maxZ, centroids[offset + 2]);
+        }
+        final float extentX = maxX - minX;
+        final float extentY = maxY - minY;
+        final float extentZ = maxZ - minZ;
+        final int axis = extentX >= extentY && extentX >= extentZ ? 0 : extentY >= extentZ ? 1 : 2;
+
+        final int middle = (from + to) >>> 1;
+        selectNth(from, to, middle, axis, centroids);
+
+        final int left = nodeCountTotal;
+        nodeCountTotal += 2;
+        nodeStart[node] = left;
+        nodeCount[node] = 0;
+        buildNode(left, from, middle, centroids);
+        buildNode(left + 1, middle, to, centroids);
+    }
+
+    /**
+     * Переставляет order[from, to) так, чтобы на месте nth оказался треугольник с nth по
+     * порядку центром вдоль оси axis, левее - не больше, правее - не меньше (быстрый выбор).
+     */
+    private void selectNth(int from, int to, int nth, int axis, float[] centroids) {
+        int low = from;
+        int high = to - 1;
+        while (low < high) {
+            final float pivot = centroids[order[(low + high) >>> 1] * 3 + axis];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (centroids[order[i] * 3 + axis] < pivot) {
+                    ++i;
+                }
+                while (centroids[order[j] * 3 + axis] > pivot) {
+                    --j;
+                }
+                if (i <= j) {
+                    final int t = order[i];
+                    order[i] = order[j];
+                    order[j] = t;
+                    ++i;
+                    --j;
+                }
+            }
+            if (nth <= j) {
+                high = j;
+            } else if (nth >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.cgvsu.model;
+
+/**
+ * Треугольники модели для закрашенной отрисовки.
+ * <p>
+ * Каждый полигон из n вершин разбивается веером из первой вершины на n - 2 треугольника
+ * (полигоны считаются выпуклыми). Индексы вершин треугольников лежат тройками в одном int[],
+ * для каждого треугольника запоминается номер полигона, из которого он получен.
+ */
+public class TriangleList {
+
+    private final int[] vertexIndices;
+    private final int[] polygonIndices;
+    private final int size;
+
+    private TriangleList(int[] vertexIndices, int[] polygonIndices, int size) {
+        this.vertexIndices = vertexIndices;
+        this.polygonIndices = polygonIndices;
+        this.size = size;
+    }
+
+    public static TriangleList build(PolygonList polygons) {
+        final int[] offsets = polygons.offsets();
+        final int[] indices = polygons.vertexIndices();
+        final int polygonCount = polygons.size();
+
+        int triangleCount = 0;
+        for (int polygonInd = 0; polygonInd < polygonCount; ++polygonInd) {
+            triangleCount += Math.max(offsets[polygonInd + 1] - offsets[polygonInd] - 2, 0);
+        }
+
+        int[] vertexIndices = new int[triangleCount * 3];
+        int[] polygonIndices = new int[triangleCount];
+        int triangleInd = 0;
+        for (int polygonInd = 0; polygonInd < polygonCount; ++polygonInd) {
+            final int start = offsets[polygonInd];
+            final int end = offsets[polygonInd + 1];
+            for (int i = start + 1; i + 1 < end; ++i) {
+                vertexIndices[triangleInd * 3] = indices[start];
+                vertexIndices[triangleInd * 3 + 1] = indices[i];
+                vertexIndices[triangleInd * 3 + 2] = indices[i + 1];
+                polygonIndices[triangleInd] = polygonInd;
+                ++triangleInd;
+            }
+        }
+        return new TriangleList(vertexIndices, polygonIndices, triangleCount);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getVertexIndex(int triangleIndex, int vertexInTriangleIndex) {
+        return vertexIndices[triangleIndex * 3 + vertexInTriangleIndex];
+    }
+
+    public int getPolygonIndex(int triangleIndex) {
+        return polygonIndices[triangleIndex];
+    }
+
+    /**
+     * Индексы вершин тройками: вершины треугольника i лежат в элементах 3i, 3i+1, 3i+2.
+     */
+    public int[] vertexIndices() {
+        return vertexIndices;
+    }
+
+    /**
+     * Номер полигона для каждого треугольника.
+     */
+    public int[] polygonIndices() {
+        return polygonIndices;
+    }
+}
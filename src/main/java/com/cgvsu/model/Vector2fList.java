@@ -0,0 +1,46 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector2f;
+
+/**
+ * Компактный список двумерных векторов (текстурные координаты): u и v
+ * хранятся подряд в одном float[].
+ */
+public class Vector2fList extends FloatTupleList<Vector2f> {
+
+    public Vector2fList() {
+        super(2);
+    }
+
+    public float getX(int index) {
+        return coordinates[index * 2];
+    }
+
+    public float getY(int index) {
+        return coordinates[index * 2 + 1];
+    }
+
+    public void add(float x, float y) {
+        final int offset = reserve(1);
+        coordinates[offset] = x;
+        coordinates[offset + 1] = y;
+    }
+
+    public void set(int index, float x, float y) {
+        final int offset = index * 2;
+        coordinates[offset] = x;
+        coordinates[offset + 1] = y;
+        markModified();
+    }
+
+    @Override
+    protected Vector2f createVector(float[] coordinates, int offset) {
+        return new Vector2f(coordinates[offset], coordinates[offset + 1]);
+    }
+
+    @Override
+    protected void storeVector(Vector2f vector, float[] coordinates, int offset) {
+        coordinates[offset] = vector.x;
+        coordinates[offset + 1] = vector.y;
+    }
+}
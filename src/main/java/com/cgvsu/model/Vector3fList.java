@@ -0,0 +1,53 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+
+/**
+ * Компактный список трёхмерных векторов (вершины, нормали): координаты x, y, z
+ * хранятся подряд в одном float[].
+ */
+public class Vector3fList extends FloatTupleList<Vector3f> {
+
+    public Vector3fList() {
+        super(3);
+    }
+
+    public float getX(int index) {
+        return coordinates[index * 3];
+    }
+
+    public float getY(int index) {
+        return coordinates[index * 3 + 1];
+    }
+
+    public float getZ(int index) {
+        return coordinates[index * 3 + 2];
+    }
+
+    public void add(float x, float y, float z) {
+        final int offset = reserve(1);
+        coordinates[offset] = x;
+        coordinates[offset + 1] = y;
+        coordinates[offset + 2] = z;
+    }
+
+    public void set(int index, float x, float y, float z) {
+        final int offset = index * 3;
+        coordinates[offset] = x;
+        coordinates[offset + 1] = y;
+        coordinates[offset + 2] = z;
+        markModified();
+    }
+
+    @Override
+    protected Vector3f createVector(float[] coordinates, int offset) {
+        return new Vector3f(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2]);
+    }
+
+    @Override
+    protected void storeVector(Vector3f vector, float[] coordinates, int offset) {
+        coordinates[offset] = vector.x;
+        coordinates[offset + 1] = vector.y;
+        coordinates[offset + 2] = vector.z;
+    }
+}
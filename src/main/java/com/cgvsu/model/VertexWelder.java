@@ -0,0 +1,129 @@
+package com.cgvsu.model;
+
+import java.util.Arrays;
+
+/**
+ * Поиск совпадающих вершин для {@link Model#weldVertices}.
+ * <p>
+ * Вершины совпадают, если все их координаты отличаются меньше чем на tolerance - как
+ * в {@link com.cgvsu.math.Vector3f#equals}. Чтобы не сравнивать каждую вершину со всеми,
+ * пространство делится на кубические ячейки со стороной 2 * tolerance: совпадающая вершина
+ * может лежать только в своей ячейке или в соседней с той стороны, к которой вершина
+ * ближе, - всего 8 ячеек. Так работа почти линейна по числу вершин.
+ * <p>
+ * Ячейки лежат в хеш-таблице с открытой адресацией без объектов-ключей: в таблице
+ * хранится только номер первой вершины ячейки (int), координаты ячейки пересчитываются
+ * по этой вершине, а остальные вершины ячейки связаны в список массивом next. В таблицу
+ * попадают только вершины, которые остаются после сварки, и каждая вершина сравнивается
+ * только с ними; остающейся становится первая по порядку вершина из совпадающих.
+ */
+final class VertexWelder {
+
+    private static final int EMPTY = -1;
+
+    private final float[] coordinates;
+    private final double cellSize;
+    private final int[] heads;
+    private final int mask;
+    private final int[] next;
+
+    private VertexWelder(float[] coordinates, int vertexCount, float tolerance) {
+        this.coordinates = coordinates;
+        this.cellSize = 2.0 * tolerance;
+        // Ячеек не больше, чем вершин; таблица заполнена не больше чем наполовину
+        final int length = (int) Math.min(Long.highestOneBit(Math.max(2L * vertexCount - 1, 1)) << 1, 1 << 30);
+        heads = new int[length];
+        Arrays.fill(heads, EMPTY);
+        mask = length - 1;
+        next = new int[vertexCount];
+    }
+
+    /**
+     * Таблица "старый индекс вершины -> новый": совпадающие вершины получают индекс
+     * первой из них, остальные нумеруются подряд в прежнем порядке.
+     *
+     * @return таблица или null, если совпадающих вершин нет
+     */
+    static int[] findDuplicates(Vector3fList vertices, float tolerance) {
+        final int vertexCount = vertices.size();
+        final VertexWelder welder = new VertexWelder(vertices.coordinates(), vertexCount, tolerance);
+        final int[] newIndices = new int[vertexCount];
+        int keptCount = 0;
+        for (int v = 0; v < vertexCount; ++v) {
+            final int duplicate = welder.findDuplicate(v, tolerance);
+            if (duplicate >= 0) {
+                newIndices[v] = newIndices[duplicate];
+            } else {
+                welder.insert(v);
+                newIndices[v] = keptCount++;
+            }
+        }
+        return keptCount == vertexCount ? null : newIndices;
+    }
+
+    // Первая оставленная вершина, совпадающая с v, или -1
+    private int findDuplicate(int v, float tolerance) {
+        final double x = coordinates[v * 3] / cellSize;
+        final double y = coordinates[v * 3 + 1] / cellSize;
+        final double z = coordinates[v * 3 + 2] / cellSize;
+        final long cellX = (long) Math.floor(x);
+        final long cellY = (long) Math.floor(y);
+        final long cellZ = (long) Math.floor(z);
+        // Соседняя ячейка по каждой оси - с той стороны, к которой вершина ближе
+        final long sideX = x - cellX < 0.5 ? -1 : 1;
+        final long sideY = y - cellY < 0.5 ? -1 : 1;
+        final long sideZ = z - cellZ < 0.5 ? -1 : 1;
+        // Если совпадающих несколько, берётся самая ранняя - результат не зависит от хеширования
+        int duplicate = -1;
+        for (int i = 0; i < 8; ++i) {
+            final int slot = findSlot(
+                    cellX + ((i & 1) != 0 ? sideX : 0),
+                    cellY + ((i & 2) != 0 ? sideY : 0),
+                    cellZ + ((i & 4) != 0 ? sideZ : 0));
+            for (int u = heads[slot]; u != EMPTY; u = next[u]) {
+                if (Math.abs(coordinates[u * 3] - coordinates[v * 3]) < tolerance
+                        && Math.abs(coordinates[u * 3 + 1] - coordinates[v * 3 + 1]) < tolerance
+                        && Math.abs(coordinates[u * 3 + 2] - coordinates[v * 3 + 2]) < tolerance
+                        && (duplicate < 0 || u < duplicate)) {
+                    duplicate = u;
+                }
+            }
+        }
+        return duplicate;
+    }
+
+    private void insert(int v) {
+        final int slot = findSlot(cell(v, 0), cell(v, 1), cell(v, 2));
+        next[v] = heads[slot];
+        heads[slot] = v;
+    }
+
+    // Ячейка таблицы с вершинами ячейки пространства (cellX, cellY, cellZ) или пустая
+    // ячейка, куда их следует положить
+    private int findSlot(long cellX, long cellY, long cellZ) {
+        int slot = hash(cellX, cellY, cellZ) & mask;
+        while (heads[slot] != EMPTY) {
+            final int u = heads[slot];
+            if (cell(u, 0) == cellX && cell(u, 1) == cellY && cell(u, 2) == cellZ) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private long cell(int v, int axis) {
+        return (long) Math.floor(coordinates[v * 3 + axis] / cellSize);
+    }
+
+    // Координаты ячейки смешиваются так же, как ключи в LongHashSet (финализатор MurmurHash3)
+    private static int hash(long cellX, long cellY, long cellZ) {
+        long key = cellX * 0x9E3779B97F4A7C15L + cellY * 0xC2B2AE3D27D4EB4FL + cellZ * 0x165667B19E3779F9L;
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,317 @@
+package com.cgvsu.objreader;
+
+import java.math.BigInteger;
+
+/**
+ * Запись float в текст кратчайшей строкой, которая читается обратно в то же самое число
+ * (алгоритм Ryu, Ulf Adams, 2018), прямо в массив байт без создания строк.
+ * <p>
+ * Оформление то же, что у {@link Float#toString}: обычная запись для 1e-3 &lt;= |x| &lt; 1e7
+ * ("1.0", "0.001", "1234567.0") и научная вне этого диапазона ("1.0E-4", "1.2345678E7").
+ * Цифры же всегда кратчайшие: {@link Float#toString} до Java 19 для части чисел выдаёт
+ * лишние знаки (JDK-4511638).
+ */
+final class FloatFormatter {
+
+    /**
+     * Наибольшая длина записи одного числа: "-1.2345678E-38".
+     */
+    static final int MAX_LENGTH = 16;
+
+    private static final int MANTISSA_BITS = 23;
+    private static final int EXPONENT_BITS = 8;
+    private static final int EXPONENT_BIAS = 127;
+
+    private static final int POW5_BITCOUNT = 61;
+    private static final int POW5_INV_BITCOUNT = 59;
+    private static final long[] POW5_SPLIT = new long[48];
+    private static final long[] POW5_INV_SPLIT = new long[31];
+
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] INFINITY = {'I', 'n', 'f', 'i', 'n', 'i', 't', 'y'};
+
+    static {
+        // Степени пятёрки (и обратные к ним), приведённые к 61 (59) значащему биту
+        for (int i = 0; i < POW5_SPLIT.length; ++i) {
+            final BigInteger pow = BigInteger.valueOf(5).pow(i);
+            final int pow5Length = pow.bitLength();
+            POW5_SPLIT[i] = pow5Length > POW5_BITCOUNT
+                    ? pow.shiftRight(pow5Length - POW5_BITCOUNT).longValue()
+                    : pow.shiftLeft(POW5_BITCOUNT - pow5Length).longValue();
+            if (i < POW5_INV_SPLIT.length) {
+                final int j = pow5Length - 1 + POW5_INV_BITCOUNT;
+                POW5_INV_SPLIT[i] = BigInteger.ONE.shiftLeft(j).divide(pow).add(BigInteger.ONE).longValue();
+            }
+        }
+    }
+
+    private FloatFormatter() {
+    }
+
+    /**
+     * Записывает value в target начиная с offset.
+     * В target должно быть не меньше {@link #MAX_LENGTH} свободных байт.
+     *
+     * @return индекс байта сразу после записанного числа
+     */
+    static int format(float value, byte[] target, int offset) {
+        final int bits = Float.floatToRawIntBits(value);
+        final int ieeeMantissa = bits & ((1 << MANTISSA_BITS) - 1);
+        final int ieeeExponent = (bits >>> MANTISSA_BITS) & ((1 << EXPONENT_BITS) - 1);
+        final boolean negative = bits < 0;
+
+        if (ieeeExponent == (1 << EXPONENT_BITS) - 1) {
+            if (ieeeMantissa != 0) {
+                return put(NAN, target, offset);
+            }
+            if (negative) {
+                target[offset++] = '-';
+            }
+            return put(INFINITY, target, offset);
+        }
+        if (negative) {
+            target[offset++] = '-';
+        }
+        if (ieeeExponent == 0 && ieeeMantissa == 0) {
+            target[offset] = '0';
+            target[offset + 1] = '.';
+            target[offset + 2] = '0';
+            return offset + 3;
+        }
+
+        // Кратчайшие десятичные цифры digits и порядок: |value| = digits * 10^exponent
+        final int e2;
+        final int m2;
+        if (ieeeExponent == 0) {
+            e2 = 1 - EXPONENT_BIAS - MANTISSA_BITS - 2;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - EXPONENT_BIAS - MANTISSA_BITS - 2;
+            m2 = (1 << MANTISSA_BITS) | ieeeMantissa;
+        }
+        final boolean acceptBounds = (m2 & 1) == 0;
+
+        // Середины между value и соседними float, умноженные на 4, чтобы быть целыми
+        final int mv = 4 * m2;
+        final int mp = 4 * m2 + 2;
+        final int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+        final int mm = 4 * m2 - 1 - mmShift;
+
+        int vr;
+        int vp;
+        int vm;
+        final int e10;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        int lastRemovedDigit = 0;
+        if (e2 >= 0) {
+            final int q = log10Pow2(e2);
+            e10 = q;
+            final int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            final int i = -e2 + q + k;
+            vr = mulPow5InvDivPow2(mv, q, i);
+            vp = mulPow5InvDivPow2(mp, q, i);
+            vm = mulPow5InvDivPow2(mm, q, i);
+            if (q != 0 && (vp - 1) / 10 <= vm / 10) {
+                final int l = POW5_INV_BITCOUNT + pow5bits(q - 1) - 1;
+                lastRemovedDigit = mulPow5InvDivPow2(mv, q - 1, -e2 + q - 1 + l) % 10;
+            }
+            if (q <= 9) {
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = pow5Factor(mv) >= q;
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = pow5Factor(mm) >= q;
+                } else if (pow5Factor(mp) >= q) {
+                    --vp;
+                }
+            }
+        } else {
+            final int q = log10Pow5(-e2);
+            e10 = q + e2;
+            final int i = -e2 - q;
+            final int k = pow5bits(i) - POW5_BITCOUNT;
+            int j = q - k;
+            vr = mulPow5DivPow2(mv, i, j);
+            vp = mulPow5DivPow2(mp, i, j);
+            vm = mulPow5DivPow2(mm, i, j);
+            if (q != 0 && (vp - 1) / 10 <= vm / 10) {
+                j = q - 1 - (pow5bits(i + 1) - POW5_BITCOUNT);
+                lastRemovedDigit = mulPow5DivPow2(mv, i + 1, j) % 10;
+            }
+            if (q <= 1) {
+                vrIsTrailingZeros = true;
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mmShift == 1;
+                } else {
+                    --vp;
+                }
+            } else if (q < 31) {
+                vrIsTrailingZeros = (mv & ((1 << (q - 1)) - 1)) == 0;
+            }
+        }
+
+        // Отбрасываем младшие цифры, пока весь интервал округления даёт одно и то же число
+        int removed = 0;
+        int digits;
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            while (vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = vr % 10;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                ++removed;
+            }
+            if (vmIsTrailingZeros) {
+                while (vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = vr % 10;
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    ++removed;
+                }
+            }
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                // Ровно посередине - округляем к чётному
+                lastRemovedDigit = 4;
+            }
+            digits = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5 ? 1 : 0);
+        } else {
+            while (vp / 10 > vm / 10) {
+                lastRemovedDigit = vr % 10;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                ++removed;
+            }
+            digits = vr + (vr == vm || lastRemovedDigit >= 5 ? 1 : 0);
+        }
+        int exponent = e10 + removed;
+        while (digits % 10 == 0) {
+            digits /= 10;
+            ++exponent;
+        }
+
+        return putDecimal(digits, exponent, target, offset);
+    }
+
+    /**
+     * Оформляет число digits * 10^exponent так же, как {@link Float#toString}.
+     */
+    private static int putDecimal(int digits, int exponent, byte[] target, int offset) {
+        final int length = decimalLength(digits);
+        // Порядок старшей цифры
+        final int scientificExponent = exponent + length - 1;
+
+        if (scientificExponent >= -3 && scientificExponent < 7) {
+            if (scientificExponent < 0) {
+                target[offset++] = '0';
+                target[offset++] = '.';
+                for (int i = -1; i > scientificExponent; --i) {
+                    target[offset++] = '0';
+                }
+                return putDigits(digits, length, target, offset);
+            }
+            if (exponent >= 0) {
+                offset = putDigits(digits, length, target, offset);
+                for (int i = 0; i < exponent; ++i) {
+                    target[offset++] = '0';
+                }
+                target[offset++] = '.';
+                target[offset++] = '0';
+                return offset;
+            }
+            // Точка внутри цифр: пишем все цифры и сдвигаем дробную часть на место
+            final int end = putDigits(digits, length, target, offset);
+            final int fractionLength = -exponent;
+            System.arraycopy(target, end - fractionLength, target, end - fractionLength + 1, fractionLength);
+            target[end - fractionLength] = '.';
+            return end + 1;
+        }
+
+        // Научная запись: d.ddddEn
+        final int end = putDigits(digits, length, target, offset + 1);
+        target[offset] = target[offset + 1];
+        target[offset + 1] = '.';
+        if (length == 1) {
+            target[end] = '0';
+            offset = end + 1;
+        } else {
+            offset = end;
+        }
+        target[offset++] = 'E';
+        int e = scientificExponent;
+        if (e < 0) {
+            target[offset++] = '-';
+            e = -e;
+        }
+        if (e >= 10) {
+            target[offset++] = (byte) ('0' + e / 10);
+        }
+        target[offset++] = (byte) ('0' + e % 10);
+        return offset;
+    }
+
+    private static int putDigits(int value, int length, byte[] target, int offset) {
+        for (int i = offset + length - 1; i >= offset; --i) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + length;
+    }
+
+    private static int put(byte[] text, byte[] target, int offset) {
+        System.arraycopy(text, 0, target, offset, text.length);
+        return offset + text.length;
+    }
+
+    private static int decimalLength(int value) {
+        int length = 1;
+        while (value >= 10) {
+            value /= 10;
+            ++length;
+        }
+        return length;
+    }
+
+    private static int pow5Factor(int value) {
+        int count = 0;
+        while (value % 5 == 0) {
+            value /= 5;
+            ++count;
+        }
+        return count;
+    }
+
+    // Число бит в 5^e
+    private static int pow5bits(int e) {
+        return ((e * 1217359) >>> 19) + 1;
+    }
+
+    // floor(log10(2^e))
+    private static int log10Pow2(int e) {
+        return (e * 78913) >>> 18;
+    }
+
+    // floor(log10(5^e))
+    private static int log10Pow5(int e) {
+        return (e * 732923) >>> 20;
+    }
+
+    private static int mulPow5InvDivPow2(int m, int q, int j) {
+        return mulShift(m, POW5_INV_SPLIT[q], j);
+    }
+
+    private static int mulPow5DivPow2(int m, int i, int j) {
+        return mulShift(m, POW5_SPLIT[i], j);
+    }
+
+    // (m * factor) >> shift без переполнения: m < 2^26, factor < 2^61, shift > 32
+    private static int mulShift(int m, long factor, int shift) {
+        final long bits0 = m * (factor & 0xFFFFFFFFL);
+        final long bits1 = m * (factor >>> 32);
+        return (int) (((bits0 >>> 32) + bits1) >>> (shift - 32));
+    }
+}
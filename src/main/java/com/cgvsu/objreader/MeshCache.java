@@ -0,0 +1,377 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.model.PolygonList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Двоичный кэш модели для быстрого повторного открытия OBJ-файла.
+ * <p>
+ * Формат (все числа little-endian): заголовок {@link #HEADER_SIZE} байт - сигнатура, версия,
+ * флаги, размер, время изменения и контрольная сумма CRC32C исходного OBJ-файла, количество
+ * вершин, текстурных вершин, нормалей, полигонов и углов полигонов. Затем подряд массивы:
+ * координаты вершин, текстурных вершин и нормалей (float), смещения полигонов, индексы вершин
+ * углов и, если они есть в модели, индексы текстурных вершин и нормалей углов (int).
+ * <p>
+ * При чтении каждый массив отображается в память и копируется во внутренние массивы модели
+ * одним вызовом, без разбора текста. Кэш считается действительным, если размер и время
+ * изменения OBJ-файла совпадают с записанными; если совпадает только размер (файл скопировали
+ * или "потрогали"), сравнивается контрольная сумма содержимого. Повреждённый или устаревший
+ * кэш просто не используется.
+ * <p>
+ * Кэш пишется рядом с OBJ-файлом (имя файла + {@link #EXTENSION}), а если там писать нельзя -
+ * в каталог ~/.cache/simple3dviewer. Запись читает весь OBJ-файл ещё раз (контрольная сумма)
+ * и пишет всю модель, поэтому её делают в фоне уже после того, как модель показана; запись
+ * можно прервать (например, перед изменением модели, массивы которой пишутся).
+ */
+public class MeshCache {
+
+    public static final String EXTENSION = ".meshcache";
+
+    static final int HEADER_SIZE = 64;
+    private static final byte[] MAGIC = "CGVSUMSH".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int FLAG_TEXTURE_INDICES = 1;
+    private static final int FLAG_NORMAL_INDICES = 1 << 1;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Модель из кэша для OBJ-файла source или null, если действительного кэша нет.
+     * Никогда не бросает исключений: при любой ошибке модель надо просто прочитать из OBJ.
+     */
+    public static Model tryRead(Path source) {
+        for (Path cacheFile : new Path[]{getCachePath(source), getCacheDirectoryPath(source)}) {
+            if (!Files.isRegularFile(cacheFile)) {
+                continue;
+            }
+            try {
+                Model model = read(cacheFile, source);
+                if (model != null) {
+                    return model;
+                }
+            } catch (IOException | RuntimeException exception) {
+                // Кэш повреждён или не читается - пробуем следующий
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Записывает кэш модели, прочитанной из source: рядом с OBJ-файлом или, если там
+     * писать нельзя, в общий каталог кэша.
+     *
+     * @return true, если кэш записан
+     */
+    public static boolean tryWrite(Path source, Model model) {
+        return tryWrite(source, model, () -> false);
+    }
+
+    /**
+     * То же, но запись прекращается (недописанный файл удаляется), как только cancelled
+     * вернёт true. Проверяется после каждого блока, так что после отмены запись
+     * заканчивается быстро и больше не читает модель.
+     *
+     * @return true, если кэш записан
+     */
+    public static boolean tryWrite(Path source, Model model, BooleanSupplier cancelled) {
+        try {
+            write(getCachePath(source), source, model, cancelled);
+            return true;
+        } catch (IOException | RuntimeException exception) {
+            // Каталог модели только для чтения - пишем в общий каталог
+        }
+        if (cancelled.getAsBoolean()) {
+            return false;
+        }
+        try {
+            Path cacheFile = getCacheDirectoryPath(source);
+            Files.createDirectories(cacheFile.getParent());
+            write(cacheFile, source, model, cancelled);
+            return true;
+        } catch (IOException | RuntimeException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Файл кэша рядом с OBJ-файлом.
+     */
+    public static Path getCachePath(Path source) {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Файл кэша в общем каталоге; в имени - хэш полного пути, чтобы одноимённые модели
+     * из разных каталогов не мешали друг другу.
+     */
+    public static Path getCacheDirectoryPath(Path source) {
+        final Path absolute = source.toAbsolutePath().normalize();
+        return Path.of(System.getProperty("user.home"), ".cache", "simple3dviewer",
+                Integer.toHexString(absolute.toString().hashCode()) + "-" + absolute.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Читает модель из файла кэша.
+     *
+     * @return модель или null, если кэш устарел (source изменился) или повреждён
+     * @throws IOException если файл не удалось прочитать
+     */
+    public static Model read(Path cacheFile, Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            final ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            final byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION) {
+                return null;
+            }
+            final int flags = header.getInt();
+            final long sourceSize = header.getLong();
+            final long sourceModified = header.getLong();
+            final long sourceChecksum = header.getLong();
+            final int vertexCount = header.getInt();
+            final int textureVertexCount = header.getInt();
+            final int normalCount = header.getInt();
+            final int polygonCount = header.getInt();
+            final int cornerCount = header.getInt();
+            final boolean hasTextureIndices = (flags & FLAG_TEXTURE_INDICES) != 0;
+            final boolean hasNormalIndices = (flags & FLAG_NORMAL_INDICES) != 0;
+
+            if (vertexCount < 0 || textureVertexCount < 0 || normalCount < 0 || polygonCount < 0 || cornerCount < 0
+                    || channel.size() != HEADER_SIZE + 4L * (3L * vertexCount + 2L * textureVertexCount
+                    + 3L * normalCount + polygonCount + 1
+                    + (long) cornerCount * (1 + (hasTextureIndices ? 1 : 0) + (hasNormalIndices ? 1 : 0)))) {
+                return null;
+            }
+            if (!isSourceUnchanged(source, sourceSize, sourceModified, sourceChecksum)) {
+                return null;
+            }
+
+            Model model = new Model();
+            long position = HEADER_SIZE;
+            model.vertices.addAll(map(channel, position, 12L * vertexCount).asFloatBuffer(), vertexCount);
+            position += 12L * vertexCount;
+            model.textureVertices.addAll(map(channel, position, 8L * textureVertexCount).asFloatBuffer(),
+                    textureVertexCount);
+            position += 8L * textureVertexCount;
+            model.normals.addAll(map(channel, position, 12L * normalCount).asFloatBuffer(), normalCount);
+            position += 12L * normalCount;
+
+            final IntBuffer offsets = map(channel, position, 4L * (polygonCount + 1)).asIntBuffer();
+            position += 4L * (polygonCount + 1);
+            if (offsets.get(0) != 0 || offsets.get(polygonCount) != cornerCount) {
+                return null;
+            }
+            final IntBuffer vertexIndices = map(channel, position, 4L * cornerCount).asIntBuffer();
+            position += 4L * cornerCount;
+            IntBuffer textureVertexIndices = null;
+            if (hasTextureIndices) {
+                textureVertexIndices = map(channel, position, 4L * cornerCount).asIntBuffer();
+                position += 4L * cornerCount;
+            }
+            final IntBuffer normalIndices = hasNormalIndices
+                    ? map(channel, position, 4L * cornerCount).asIntBuffer()
+                    : null;
+            model.polygons.addAll(offsets, vertexIndices, textureVertexIndices, normalIndices, polygonCount);
+
+            return isConsistent(model) ? model : null;
+        }
+    }
+
+    /**
+     * Записывает кэш модели, прочитанной из source. Файл сначала пишется во временный
+     * и только потом переименовывается, так что прерванная запись не оставляет
+     * недописанного кэша.
+     */
+    public static void write(Path cacheFile, Path source, Model model) throws IOException {
+        write(cacheFile, source, model, () -> false);
+    }
+
+    /**
+     * То же с отменой, см. {@link #tryWrite(Path, Model, BooleanSupplier)}.
+     *
+     * @throws CancellationException если запись отменена
+     */
+    public static void write(Path cacheFile, Path source, Model model, BooleanSupplier cancelled)
+            throws IOException {
+        final long sourceModified = Files.getLastModifiedTime(source).toMillis();
+        final long sourceSize = Files.size(source);
+        final long sourceChecksum = checksum(source, cancelled);
+
+        final PolygonList polygons = model.polygons;
+        final int cornerCount = polygons.getCornerCount();
+        int flags = 0;
+        if (polygons.hasTextureVertexIndices()) {
+            flags |= FLAG_TEXTURE_INDICES;
+        }
+        if (polygons.hasNormalIndices()) {
+            flags |= FLAG_NORMAL_INDICES;
+        }
+
+        final Path temporaryFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(flags)
+                    .putLong(sourceSize)
+                    .putLong(sourceModified)
+                    .putLong(sourceChecksum)
+                    .putInt(model.vertices.size())
+                    .putInt(model.textureVertices.size())
+                    .putInt(model.normals.size())
+                    .putInt(polygons.size())
+                    .putInt(cornerCount);
+            while (buffer.position() < HEADER_SIZE) {
+                buffer.put((byte) 0);
+            }
+
+            writeFloats(channel, buffer, model.vertices.coordinates(), model.vertices.size() * 3, cancelled);
+            writeFloats(channel, buffer, model.textureVertices.coordinates(), model.textureVertices.size() * 2, cancelled);
+            writeFloats(channel, buffer, model.normals.coordinates(), model.normals.size() * 3, cancelled);
+            writeInts(channel, buffer, polygons.offsets(), polygons.size() + 1, cancelled);
+            writeInts(channel, buffer, polygons.vertexIndices(), cornerCount, cancelled);
+            if (polygons.hasTextureVertexIndices()) {
+                writeInts(channel, buffer, polygons.textureVertexIndices(), cornerCount, cancelled);
+            }
+            if (polygons.hasNormalIndices()) {
+                writeInts(channel, buffer, polygons.normalIndices(), cornerCount, cancelled);
+            }
+            flush(channel, buffer, cancelled);
+        } catch (IOException | RuntimeException exception) {
+            Files.deleteIfExists(temporaryFile);
+            throw exception;
+        }
+
+        try {
+            Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException exception) {
+            Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static boolean isSourceUnchanged(Path source, long size, long modified, long checksum) throws IOException {
+        if (Files.size(source) != size) {
+            return false;
+        }
+        return Files.getLastModifiedTime(source).toMillis() == modified || checksum(source) == checksum;
+    }
+
+    /**
+     * CRC32C всего файла; файл читается блоками в один буфер, без загрузки целиком.
+     */
+    static long checksum(Path file) throws IOException {
+        return checksum(file, () -> false);
+    }
+
+    private static long checksum(Path file, BooleanSupplier cancelled) throws IOException {
+        final CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                checkCancelled(cancelled);
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Проверяет, что все индексы в полигонах ссылаются на существующие элементы:
+     * повреждённый кэш не должен ронять отрисовку.
+     */
+    private static boolean isConsistent(Model model) {
+        final PolygonList polygons = model.polygons;
+        final int[] offsets = polygons.offsets();
+        for (int polygonInd = 0; polygonInd < polygons.size(); ++polygonInd) {
+            if (offsets[polygonInd] > offsets[polygonInd + 1]) {
+                return false;
+            }
+        }
+        final int cornerCount = polygons.getCornerCount();
+        return isInRange(polygons.vertexIndices(), cornerCount, 0, model.vertices.size())
+                && (!polygons.hasTextureVertexIndices()
+                || isInRange(polygons.textureVertexIndices(), cornerCount, -1, model.textureVertices.size()))
+                && (!polygons.hasNormalIndices()
+                || isInRange(polygons.normalIndices(), cornerCount, -1, model.normals.size()));
+    }
+
+    private static boolean isInRange(int[] values, int count, int min, int maxExclusive) {
+        for (int i = 0; i < count; ++i) {
+            if (values[i] < min || values[i] >= maxExclusive) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeFloats(FileChannel channel, ByteBuffer buffer, float[] values, int count,
+            BooleanSupplier cancelled) throws IOException {
+        int written = 0;
+        while (written < count) {
+            if (buffer.remaining() < Float.BYTES) {
+                flush(channel, buffer, cancelled);
+            }
+            final int length = Math.min(count - written, buffer.remaining() / Float.BYTES);
+            buffer.asFloatBuffer().put(values, written, length);
+            buffer.position(buffer.position() + length * Float.BYTES);
+            written += length;
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int count,
+            BooleanSupplier cancelled) throws IOException {
+        int written = 0;
+        while (written < count) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(channel, buffer, cancelled);
+            }
+            final int length = Math.min(count - written, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, written, length);
+            buffer.position(buffer.position() + length * Integer.BYTES);
+            written += length;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, BooleanSupplier cancelled)
+            throws IOException {
+        // Отмена проверяется до записи: после неё блок, прочитанный из модели, уже не нужен
+        checkCancelled(cancelled);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void checkCancelled(BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("Mesh cache write cancelled");
+        }
+    }
+}
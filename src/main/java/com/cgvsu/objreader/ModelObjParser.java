@@ -0,0 +1,50 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+
+/**
+ * Разборщик, складывающий элементы OBJ-файла прямо в {@link Model}.
+ * Индексы переводятся к нумерации с нуля, отрицательные (относительные) индексы
+ * отсчитываются от последнего прочитанного элемента, как и в {@link ObjReader#read(String)}.
+ */
+class ModelObjParser extends ObjByteParser {
+
+    private final Model model = new Model();
+
+    Model getModel() {
+        return model;
+    }
+
+    @Override
+    protected void onVertex(float x, float y, float z) {
+        model.vertices.add(x, y, z);
+    }
+
+    @Override
+    protected void onTextureVertex(float u, float v) {
+        model.textureVertices.add(u, v);
+    }
+
+    @Override
+    protected void onNormal(float x, float y, float z) {
+        model.normals.add(x, y, z);
+    }
+
+    @Override
+    protected void onFace() {
+        toIndices(faceVertexIndices, faceVertexCount, model.vertices.size());
+        toIndices(faceTextureVertexIndices, faceTextureVertexCount, model.textureVertices.size());
+        toIndices(faceNormalIndices, faceNormalCount, model.normals.size());
+        model.polygons.add(
+                faceVertexIndices, faceVertexCount,
+                faceTextureVertexIndices, faceTextureVertexCount,
+                faceNormalIndices, faceNormalCount);
+    }
+
+    private static void toIndices(int[] indices, int count, int elementCount) {
+        for (int i = 0; i < count; ++i) {
+            final int raw = indices[i];
+            indices[i] = raw < 0 ? elementCount + raw : raw - 1;
+        }
+    }
+}
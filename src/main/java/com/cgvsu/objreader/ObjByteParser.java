@@ -0,0 +1,477 @@
+package com.cgvsu.objreader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Потоковый разборщик OBJ, работающий прямо с байтами.
+ * <p>
+ * В отличие от {@link ObjReader#read(String)} не создаёт ни строк на каждую строку файла,
+ * ни списков слов: токены ищутся по байтам, числа разбираются вручную. Если число записано
+ * в непривычной форме (NaN, шестнадцатеричная запись, слишком много цифр и т.п.),
+ * разбор отдаётся {@link Float#parseFloat}/{@link Integer#parseInt}, поэтому набор
+ * допустимых значений и тексты ошибок совпадают с эталонным ObjReader.
+ * <p>
+ * Что делать с разобранными элементами, решают наследники: индексы вершин полигона
+ * передаются "как в файле" (с единицы, возможно отрицательные).
+ */
+abstract class ObjByteParser {
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    // Индексы текущего полигона. Массивы переиспользуются между строками.
+    protected int[] faceVertexIndices = new int[16];
+    protected int[] faceTextureVertexIndices = new int[16];
+    protected int[] faceNormalIndices = new int[16];
+    protected int faceVertexCount;
+    protected int faceTextureVertexCount;
+    protected int faceNormalCount;
+
+    private int lineInd = 0;
+
+    // Границы текущей строки и текущего слова в буфере
+    private ByteBuffer buffer;
+    private int cursor;
+    private int lineEnd;
+    private int wordStart;
+    private int wordEnd;
+
+    // Начала и концы первых частей слова "v/vt/vn"
+    private final int[] partStarts = new int[3];
+    private final int[] partEnds = new int[3];
+
+    private byte[] fallbackBytes = new byte[64];
+
+    protected abstract void onVertex(float x, float y, float z);
+
+    protected abstract void onTextureVertex(float u, float v);
+
+    protected abstract void onNormal(float x, float y, float z);
+
+    protected abstract void onFace();
+
+    /**
+     * Количество разобранных строк (в том числе пустых и пропущенных).
+     */
+    int getLineCount() {
+        return lineInd;
+    }
+
+    /**
+     * Читает канал до конца, разбирая его кусками фиксированного размера.
+     * Строка, не поместившаяся в буфер целиком, переносится в начало буфера
+     * и дочитывается; при необходимости буфер увеличивается.
+     */
+    final void parse(ReadableByteChannel channel, int bufferSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            if (channel.read(buffer) < 0) {
+                endOfInput = true;
+            }
+
+            final int filled = buffer.position();
+            final int consumed = parse(buffer, 0, filled, endOfInput);
+
+            if (consumed == 0 && filled == buffer.capacity()) {
+                // Строка длиннее буфера
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+                continue;
+            }
+
+            buffer.limit(filled);
+            buffer.position(consumed);
+            buffer.compact();
+        }
+    }
+
+    /**
+     * Разбирает все полные строки в диапазоне [from, to) буфера.
+     * Позиция и предел буфера не меняются, чтение идёт по абсолютным индексам.
+     *
+     * @param endOfInput true, если после {@code to} данных больше не будет
+     *                   и последнюю строку без перевода строки тоже надо разобрать
+     * @return индекс первого неразобранного байта
+     */
+    final int parse(ByteBuffer buffer, int from, int to, boolean endOfInput) {
+        this.buffer = buffer;
+        int lineStart = from;
+        while (lineStart < to) {
+            int i = lineStart;
+            int terminatorLength = -1;
+            while (i < to) {
+                final byte b = buffer.get(i);
+                if (b == '\n') {
+                    terminatorLength = 1;
+                    break;
+                }
+                if (b == '\r') {
+                    if (i + 1 < to) {
+                        terminatorLength = buffer.get(i + 1) == '\n' ? 2 : 1;
+                    } else if (endOfInput) {
+                        terminatorLength = 1;
+                    }
+                    break;
+                }
+                if (b < 0) {
+                    // Scanner.nextLine считает концом строки ещё символы U+0085, U+2028 и U+2029
+                    terminatorLength = unicodeLineSeparatorLength(buffer, i, to, endOfInput);
+                    if (terminatorLength != 0) {
+                        break;
+                    }
+                }
+                ++i;
+            }
+
+            if (terminatorLength < 0) {
+                if (i < to || !endOfInput) {
+                    // Конец строки ещё не прочитан
+                    return lineStart;
+                }
+                terminatorLength = 0;
+            }
+
+            parseLine(lineStart, i);
+            lineStart = i + terminatorLength;
+        }
+        return lineStart;
+    }
+
+    /**
+     * @return длину разделителя строк в UTF-8, начинающегося с i, 0 если разделителя нет,
+     * -1 если для ответа не хватает байтов
+     */
+    private static int unicodeLineSeparatorLength(ByteBuffer buffer, int i, int to, boolean endOfInput) {
+        final byte b = buffer.get(i);
+        if (b == (byte) 0xC2) {
+            if (i + 1 >= to) {
+                return endOfInput ? 0 : -1;
+            }
+            return buffer.get(i + 1) == (byte) 0x85 ? 2 : 0;
+        }
+        if (b == (byte) 0xE2) {
+            if (i + 2 >= to) {
+                return endOfInput ? 0 : -1;
+            }
+            final byte b2 = buffer.get(i + 2);
+            return buffer.get(i + 1) == (byte) 0x80 && (b2 == (byte) 0xA8 || b2 == (byte) 0xA9) ? 3 : 0;
+        }
+        return 0;
+    }
+
+    private void parseLine(int start, int end) {
+        ++lineInd;
+        cursor = start;
+        lineEnd = end;
+
+        // Как и line.split("\\s+"): если строка начинается с пробела, токен пустой
+        int tokenEnd = start;
+        while (tokenEnd < end && !isWhitespace(buffer.get(tokenEnd))) {
+            ++tokenEnd;
+        }
+        cursor = tokenEnd;
+
+        final int tokenLength = tokenEnd - start;
+        if (tokenLength == 0 || tokenLength > 2 || (tokenLength == 2 && buffer.get(start) != 'v')) {
+            return;
+        }
+
+        final byte first = buffer.get(start);
+        if (tokenLength == 1) {
+            if (first == 'v') {
+                parseVertex();
+            } else if (first == 'f') {
+                parseFace();
+            }
+            return;
+        }
+
+        final byte second = buffer.get(start + 1);
+        if (second == 't') {
+            parseTextureVertex();
+        } else if (second == 'n') {
+            parseNormal();
+        }
+    }
+
+    private void parseVertex() {
+        final float x = nextFloat("Too few vertex arguments.");
+        final float y = nextFloat("Too few vertex arguments.");
+        final float z = nextFloat("Too few vertex arguments.");
+        onVertex(x, y, z);
+    }
+
+    private void parseTextureVertex() {
+        final float u = nextFloat("Too few texture vertex arguments.");
+        final float v = nextFloat("Too few texture vertex arguments.");
+        onTextureVertex(u, v);
+    }
+
+    private void parseNormal() {
+        final float x = nextFloat("Too few normal arguments.");
+        final float y = nextFloat("Too few normal arguments.");
+        final float z = nextFloat("Too few normal arguments.");
+        onNormal(x, y, z);
+    }
+
+    private void parseFace() {
+        faceVertexCount = 0;
+        faceTextureVertexCount = 0;
+        faceNormalCount = 0;
+        while (nextWord()) {
+            parseFaceWord();
+        }
+        onFace();
+    }
+
+    /**
+     * Разбор одного элемента полигона с той же семантикой, что и
+     * {@code wordInLine.split("/")} в {@link ObjReader#parseFaceWord}:
+     * пустые части в конце отбрасываются.
+     */
+    private void parseFaceWord() {
+        int partCount = 0;
+        int lastNonEmptyPart = -1;
+        int partStart = wordStart;
+        for (int i = wordStart; i <= wordEnd; ++i) {
+            if (i == wordEnd || buffer.get(i) == '/') {
+                if (partCount < 3) {
+                    partStarts[partCount] = partStart;
+                    partEnds[partCount] = i;
+                }
+                if (i > partStart) {
+                    lastNonEmptyPart = partCount;
+                }
+                ++partCount;
+                partStart = i + 1;
+            }
+        }
+
+        switch (lastNonEmptyPart + 1) {
+            case 1 -> faceVertexIndices = append(faceVertexIndices, faceVertexCount++, parsePart(0));
+            case 2 -> {
+                faceVertexIndices = append(faceVertexIndices, faceVertexCount++, parsePart(0));
+                faceTextureVertexIndices = append(faceTextureVertexIndices, faceTextureVertexCount++, parsePart(1));
+            }
+            case 3 -> {
+                faceVertexIndices = append(faceVertexIndices, faceVertexCount++, parsePart(0));
+                faceNormalIndices = append(faceNormalIndices, faceNormalCount++, parsePart(2));
+                if (partEnds[1] > partStarts[1]) {
+                    faceTextureVertexIndices = append(faceTextureVertexIndices, faceTextureVertexCount++, parsePart(1));
+                }
+            }
+            default -> throw new ObjReaderException("Invalid element size.", lineInd);
+        }
+    }
+
+    private int parsePart(int part) {
+        return parseInt(partStarts[part], partEnds[part]);
+    }
+
+    private static int[] append(int[] array, int index, int value) {
+        if (index == array.length) {
+            int[] larger = new int[array.length * 2];
+            System.arraycopy(array, 0, larger, 0, array.length);
+            array = larger;
+        }
+        array[index] = value;
+        return array;
+    }
+
+    private boolean nextWord() {
+        int i = cursor;
+        while (i < lineEnd && isWhitespace(buffer.get(i))) {
+            ++i;
+        }
+        if (i == lineEnd) {
+            cursor = i;
+            return false;
+        }
+        wordStart = i;
+        while (i < lineEnd && !isWhitespace(buffer.get(i))) {
+            ++i;
+        }
+        wordEnd = i;
+        cursor = i;
+        return true;
+    }
+
+    private float nextFloat(String tooFewArgumentsMessage) {
+        if (!nextWord()) {
+            throw new ObjReaderException(tooFewArgumentsMessage, lineInd);
+        }
+        return parseFloat(wordStart, wordEnd);
+    }
+
+    /**
+     * Разбор float без создания строк. Результат совпадает с {@link Float#parseFloat}:
+     * быстрый путь используется только тогда, когда округление гарантированно точное,
+     * всё остальное отдаётся стандартной библиотеке.
+     */
+    private float parseFloat(int start, int end) {
+        int i = start;
+        byte c = buffer.get(i);
+        final boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            ++i;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean truncated = false;
+
+        while (i < end && (c = buffer.get(i)) >= '0' && c <= '9') {
+            hasDigits = true;
+            if (significantDigits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    ++significantDigits;
+                }
+            } else {
+                ++exponent;
+                truncated |= c != '0';
+            }
+            ++i;
+        }
+
+        if (i < end && buffer.get(i) == '.') {
+            ++i;
+            while (i < end && (c = buffer.get(i)) >= '0' && c <= '9') {
+                hasDigits = true;
+                if (significantDigits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        ++significantDigits;
+                    }
+                    --exponent;
+                } else {
+                    truncated |= c != '0';
+                }
+                ++i;
+            }
+        }
+
+        if (hasDigits && i < end && ((c = buffer.get(i)) == 'e' || c == 'E')) {
+            ++i;
+            boolean negativeExponent = false;
+            if (i < end && ((c = buffer.get(i)) == '-' || c == '+')) {
+                negativeExponent = c == '-';
+                ++i;
+            }
+            int explicitExponent = 0;
+            boolean hasExponentDigits = false;
+            while (i < end && (c = buffer.get(i)) >= '0' && c <= '9' && explicitExponent < 1000) {
+                hasExponentDigits = true;
+                explicitExponent = explicitExponent * 10 + (c - '0');
+                ++i;
+            }
+            if (!hasExponentDigits) {
+                return parseFloatFallback(start, end);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (!hasDigits || truncated || i != end) {
+            return parseFloatFallback(start, end);
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0f : 0.0f;
+        }
+
+        // float * степень десятки точно округляется, если оба множителя представимы точно
+        if (mantissa <= (1 << 24) && exponent >= -10 && exponent <= 10) {
+            float result = (float) mantissa;
+            result = exponent < 0 ? result / FLOAT_POWERS_OF_TEN[-exponent] : result * FLOAT_POWERS_OF_TEN[exponent];
+            return negative ? -result : result;
+        }
+
+        if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            final double exact = exponent < 0
+                    ? mantissa / DOUBLE_POWERS_OF_TEN[-exponent]
+                    : mantissa * DOUBLE_POWERS_OF_TEN[exponent];
+            final float result = (float) exact;
+            // Двойное округление ошибается только если double попал ровно в середину между float
+            if ((double) result != exact) {
+                final float neighbour = exact > result ? Math.nextUp(result) : Math.nextDown(result);
+                if (((double) result + (double) neighbour) * 0.5 == exact) {
+                    return parseFloatFallback(start, end);
+                }
+            }
+            return negative ? -result : result;
+        }
+
+        return parseFloatFallback(start, end);
+    }
+
+    private float parseFloatFallback(int start, int end) {
+        try {
+            return Float.parseFloat(decode(start, end));
+        } catch (NumberFormatException e) {
+            throw new ObjReaderException("Failed to parse float value.", lineInd);
+        }
+    }
+
+    private int parseInt(int start, int end) {
+        if (start == end) {
+            throw new ObjReaderException("Failed to parse int value.", lineInd);
+        }
+
+        int i = start;
+        final byte sign = buffer.get(i);
+        if (sign == '-' || sign == '+') {
+            ++i;
+        }
+        // 9 цифр гарантированно помещаются в int
+        if (i == end || end - i > 9) {
+            return parseIntFallback(start, end);
+        }
+
+        int result = 0;
+        for (; i < end; ++i) {
+            final byte c = buffer.get(i);
+            if (c < '0' || c > '9') {
+                return parseIntFallback(start, end);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return sign == '-' ? -result : result;
+    }
+
+    private int parseIntFallback(int start, int end) {
+        try {
+            return Integer.parseInt(decode(start, end));
+        } catch (NumberFormatException e) {
+            throw new ObjReaderException("Failed to parse int value.", lineInd);
+        }
+    }
+
+    private String decode(int start, int end) {
+        final int length = end - start;
+        if (fallbackBytes.length < length) {
+            fallbackBytes = new byte[Math.max(length, fallbackBytes.length * 2)];
+        }
+        buffer.get(start, fallbackBytes, 0, length);
+        return new String(fallbackBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+}
@@ -0,0 +1,100 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.FloatList;
+import com.cgvsu.model.IntList;
+import com.cgvsu.model.PolygonList;
+
+/**
+ * Разборщик одного куска OBJ-файла для параллельного чтения.
+ * <p>
+ * Кусок ничего не знает о том, сколько вершин было до него, поэтому все данные
+ * складываются в плоские массивы и {@link PolygonList}, а индексы полигонов бывают двух видов:
+ * абсолютные (положительные в файле) сразу переводятся к нумерации с нуля,
+ * относительные (отрицательные в файле) считаются от начала куска, и их позиции
+ * запоминаются, чтобы при слиянии прибавить к ним число вершин в предыдущих кусках.
+ */
+class ObjChunkParser extends ObjByteParser {
+
+    final FloatList vertices = new FloatList();
+    final FloatList textureVertices = new FloatList();
+    final FloatList normals = new FloatList();
+    final PolygonList polygons = new PolygonList();
+
+    // Позиции относительных индексов в массивах индексов polygons
+    final IntList relativeVertexIndices = new IntList();
+    final IntList relativeTextureVertexIndices = new IntList();
+    final IntList relativeNormalIndices = new IntList();
+
+    ObjReaderException error;
+
+    int getVertexCount() {
+        return vertices.size() / 3;
+    }
+
+    int getTextureVertexCount() {
+        return textureVertices.size() / 2;
+    }
+
+    int getNormalCount() {
+        return normals.size() / 3;
+    }
+
+    int getPolygonCount() {
+        return polygons.size();
+    }
+
+    @Override
+    protected void onVertex(float x, float y, float z) {
+        vertices.add(x, y, z);
+    }
+
+    @Override
+    protected void onTextureVertex(float u, float v) {
+        textureVertices.add(u, v);
+    }
+
+    @Override
+    protected void onNormal(float x, float y, float z) {
+        normals.add(x, y, z);
+    }
+
+    @Override
+    protected void onFace() {
+        final int offset = polygons.getCornerCount();
+        toIndices(faceVertexIndices, faceVertexCount, getVertexCount(), offset, relativeVertexIndices);
+        toIndices(faceTextureVertexIndices, faceTextureVertexCount, getTextureVertexCount(),
+                offset, relativeTextureVertexIndices);
+        toIndices(faceNormalIndices, faceNormalCount, getNormalCount(), offset, relativeNormalIndices);
+        polygons.add(
+                faceVertexIndices, faceVertexCount,
+                faceTextureVertexIndices, faceTextureVertexCount,
+                faceNormalIndices, faceNormalCount);
+    }
+
+    private static void toIndices(int[] indices, int count, int localCount, int offset, IntList relative) {
+        for (int i = 0; i < count; ++i) {
+            final int raw = indices[i];
+            if (raw < 0) {
+                relative.add(offset + i);
+                indices[i] = localCount + raw;
+            } else {
+                indices[i] = raw - 1;
+            }
+        }
+    }
+
+    /**
+     * Переводит относительные индексы куска в индексы всей модели.
+     */
+    void shiftRelativeIndices(int vertexOffset, int textureVertexOffset, int normalOffset) {
+        shift(polygons.vertexIndices(), relativeVertexIndices, vertexOffset);
+        shift(polygons.textureVertexIndices(), relativeTextureVertexIndices, textureVertexOffset);
+        shift(polygons.normalIndices(), relativeNormalIndices, normalOffset);
+    }
+
+    private static void shift(int[] data, IntList positions, int offset) {
+        for (int i = 0; i < positions.size(); ++i) {
+            data[positions.get(i)] += offset;
+        }
+    }
+}
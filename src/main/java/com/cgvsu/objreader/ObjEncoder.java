@@ -0,0 +1,178 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.PolygonList;
+import com.cgvsu.model.Vector2fList;
+import com.cgvsu.model.Vector3fList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Потоковая запись строк OBJ в канал.
+ * <p>
+ * Текст кодируется сразу в байты (ASCII) в переиспользуемый массив, без строк и
+ * StringBuilder: числа пишутся вручную, float - через {@link FloatFormatter}. Когда массив
+ * заполняется, он одним копированием переносится в direct-буфер и отдаётся каналу, так что
+ * расход памяти не зависит от размера модели.
+ * <p>
+ * Без канала кодировщик собирает кусок файла целиком в памяти (массив растёт по мере
+ * надобности) - так куски кодируются параллельно в {@link ParallelObjWriter}.
+ */
+final class ObjEncoder {
+
+    // Самый длинный элемент, который пишется без проверки места: строка вершины
+    // "vn x y z\n" или один угол полигона " v/vt/vn"
+    private static final int MAX_ELEMENT_LENGTH = 3 + 3 * (FloatFormatter.MAX_LENGTH + 1) + 1;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private byte[] chunk;
+    private int position;
+
+    ObjEncoder(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        final int size = Math.max(bufferSize, MAX_ELEMENT_LENGTH);
+        this.chunk = new byte[size];
+        this.buffer = ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * Кодировщик в память, см. {@link #toByteBuffer()}.
+     */
+    ObjEncoder(int initialCapacity) {
+        this.channel = null;
+        this.chunk = new byte[Math.max(initialCapacity, MAX_ELEMENT_LENGTH)];
+        this.buffer = null;
+    }
+
+    /**
+     * Строки "v x y z" для вершин с from по to (не включая to).
+     */
+    void vertices(Vector3fList vertices, int from, int to) throws IOException {
+        final float[] coordinates = vertices.coordinates();
+        for (int i = from; i < to; ++i) {
+            reserve(MAX_ELEMENT_LENGTH);
+            chunk[position++] = 'v';
+            putFloat(' ', coordinates[i * 3]);
+            putFloat(' ', coordinates[i * 3 + 1]);
+            putFloat(' ', coordinates[i * 3 + 2]);
+            chunk[position++] = '\n';
+        }
+    }
+
+    /**
+     * Строки "vt u v" для текстурных вершин с from по to.
+     */
+    void textureVertices(Vector2fList textureVertices, int from, int to) throws IOException {
+        final float[] coordinates = textureVertices.coordinates();
+        for (int i = from; i < to; ++i) {
+            reserve(MAX_ELEMENT_LENGTH);
+            chunk[position++] = 'v';
+            chunk[position++] = 't';
+            putFloat(' ', coordinates[i * 2]);
+            putFloat(' ', coordinates[i * 2 + 1]);
+            chunk[position++] = '\n';
+        }
+    }
+
+    /**
+     * Строки "vn x y z" для нормалей с from по to.
+     */
+    void normals(Vector3fList normals, int from, int to) throws IOException {
+        final float[] coordinates = normals.coordinates();
+        for (int i = from; i < to; ++i) {
+            reserve(MAX_ELEMENT_LENGTH);
+            chunk[position++] = 'v';
+            chunk[position++] = 'n';
+            putFloat(' ', coordinates[i * 3]);
+            putFloat(' ', coordinates[i * 3 + 1]);
+            putFloat(' ', coordinates[i * 3 + 2]);
+            chunk[position++] = '\n';
+        }
+    }
+
+    /**
+     * Строки "f ..." для полигонов с from по to. Индексы читаются прямо из общих массивов
+     * {@link PolygonList}; в OBJ индексация с 1.
+     */
+    void polygons(PolygonList polygons, int from, int to) throws IOException {
+        final int[] offsets = polygons.offsets();
+        final int[] vertexIndices = polygons.vertexIndices();
+        final int[] textureIndices = polygons.textureVertexIndices();
+        final int[] normalIndices = polygons.normalIndices();
+        for (int polygonInd = from; polygonInd < to; ++polygonInd) {
+            reserve(1);
+            chunk[position++] = 'f';
+            for (int i = offsets[polygonInd]; i < offsets[polygonInd + 1]; ++i) {
+                reserve(MAX_ELEMENT_LENGTH);
+                chunk[position++] = ' ';
+                putInt(vertexIndices[i] + 1);
+
+                final boolean hasTexture = textureIndices != null && textureIndices[i] != -1;
+                final boolean hasNormal = normalIndices != null && normalIndices[i] != -1;
+                if (hasTexture || hasNormal) {
+                    chunk[position++] = '/';
+                    if (hasTexture) {
+                        putInt(textureIndices[i] + 1);
+                    }
+                    if (hasNormal) {
+                        chunk[position++] = '/';
+                        putInt(normalIndices[i] + 1);
+                    }
+                }
+            }
+            reserve(1);
+            chunk[position++] = '\n';
+        }
+    }
+
+    /**
+     * Отдаёт каналу всё накопленное.
+     */
+    void flush() throws IOException {
+        buffer.clear();
+        buffer.put(chunk, 0, position);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+
+    /**
+     * Всё закодированное кодировщиком в память.
+     */
+    ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(chunk, 0, position);
+    }
+
+    private void reserve(int length) throws IOException {
+        if (position + length > chunk.length) {
+            if (channel == null) {
+                chunk = Arrays.copyOf(chunk, Math.max(chunk.length * 2, position + length));
+            } else {
+                flush();
+            }
+        }
+    }
+
+    private void putFloat(char separator, float value) {
+        chunk[position++] = (byte) separator;
+        position = FloatFormatter.format(value, chunk, position);
+    }
+
+    // Индексы в OBJ после сдвига на единицу всегда положительны
+    private void putInt(int value) {
+        int length = 1;
+        for (int rest = value; rest >= 10; rest /= 10) {
+            ++length;
+        }
+        for (int i = position + length - 1; i >= position; --i) {
+            chunk[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += length;
+    }
+}
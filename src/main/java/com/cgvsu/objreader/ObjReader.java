@@ -5,9 +5,15 @@ import com.cgvsu.math.Vector3f;
 import com.cgvsu.model.Model;
 import com.cgvsu.model.Polygon;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * ========================================================================
@@ -69,7 +75,13 @@ public class ObjReader {
 				case OBJ_VERTEX_TOKEN -> result.vertices.add(parseVertex(wordsInLine, lineInd));
 				case OBJ_TEXTURE_TOKEN -> result.textureVertices.add(parseTextureVertex(wordsInLine, lineInd));
 				case OBJ_NORMAL_TOKEN -> result.normals.add(parseNormal(wordsInLine, lineInd));
-				case OBJ_FACE_TOKEN -> result.polygons.add(parseFace(wordsInLine, lineInd));
+				case OBJ_FACE_TOKEN -> {
+					Polygon polygon = parseFace(wordsInLine, lineInd);
+					resolveRelativeIndices(polygon.getVertexIndices(), result.vertices.size());
+					resolveRelativeIndices(polygon.getTextureVertexIndices(), result.textureVertices.size());
+					resolveRelativeIndices(polygon.getNormalIndices(), result.normals.size());
+					result.polygons.add(polygon);
+				}
 				default -> {}
 			}
 		}
@@ -77,6 +89,96 @@ public class ObjReader {
 		return result;
 	}
 
+	/**
+	 * Отрицательный индекс в OBJ отсчитывается от последнего прочитанного элемента:
+	 * -1 - последняя вершина. После parseFaceWord он хранится как (индекс - 1),
+	 * здесь переводим его в обычный индекс с нуля.
+	 */
+	private static void resolveRelativeIndices(ArrayList<Integer> indices, int elementCount) {
+		for (int i = 0; i < indices.size(); ++i) {
+			final int index = indices.get(i);
+			if (index < -1) {
+				indices.set(i, elementCount + index + 1);
+			}
+		}
+	}
+
+	/**
+	 * Потоковое чтение OBJ-файла без загрузки его в память целиком.
+	 * Результат и сообщения об ошибках (включая номера строк) совпадают с {@link #read(String)}.
+	 *
+	 * @param path путь к OBJ-файлу
+	 * @return объект Model с загруженными данными
+	 * @throws IOException если файл не удалось прочитать
+	 */
+	public static Model read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return read(channel);
+		}
+	}
+
+	/**
+	 * Потоковое чтение OBJ из канала. Байты разбираются по мере поступления,
+	 * без промежуточных строк и списков слов.
+	 *
+	 * @param channel канал с содержимым OBJ-файла в UTF-8, закрывает его вызывающий код
+	 * @return объект Model с загруженными данными
+	 * @throws IOException если канал не удалось прочитать
+	 */
+	public static Model read(ReadableByteChannel channel) throws IOException {
+		return read(channel, ObjByteParser.DEFAULT_BUFFER_SIZE);
+	}
+
+	static Model read(ReadableByteChannel channel, int bufferSize) throws IOException {
+		ModelObjParser parser = new ModelObjParser();
+		parser.parse(channel, bufferSize);
+		return parser.getModel();
+	}
+
+	/**
+	 * Параллельное чтение OBJ-файла: файл отображается в память, делится на куски
+	 * по границам строк, куски разбираются на общем fork-join пуле и сливаются
+	 * в одну модель в порядке следования в файле.
+	 * Результат совпадает с {@link #read(String)}.
+	 *
+	 * @param path путь к OBJ-файлу
+	 * @return объект Model с загруженными данными
+	 * @throws IOException если файл не удалось прочитать
+	 */
+	public static Model readParallel(Path path) throws IOException {
+		return readParallel(path, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * То же, что {@link #readParallel(Path)}, но куски разбираются на указанном пуле.
+	 */
+	public static Model readParallel(Path path, ForkJoinPool pool) throws IOException {
+		return ParallelObjReader.read(path, pool, 0);
+	}
+
+	/**
+	 * То же, что {@link #readParallel(Path, ForkJoinPool)}, но с наблюдателем, который
+	 * получает число разобранных байт и может прервать чтение.
+	 *
+	 * @throws java.util.concurrent.CancellationException если monitor прервал чтение
+	 */
+	public static Model readParallel(Path path, ForkJoinPool pool, ReadMonitor monitor) throws IOException {
+		return ParallelObjReader.read(path, pool, 0, monitor);
+	}
+
+	/**
+	 * Постепенное параллельное чтение: пока файл читается, monitor получает снимки
+	 * уже прочитанного начала модели ({@link ReadMonitor#onSnapshot}) - когда добавилось
+	 * не меньше polygonsPerSnapshot полигонов или прошло millisPerSnapshot миллисекунд
+	 * с прошлого снимка (0 - условие не используется). Итоговая модель та же, что
+	 * у {@link #readParallel(Path)}.
+	 */
+	public static Model readProgressive(
+			Path path, ForkJoinPool pool, ReadMonitor monitor,
+			int polygonsPerSnapshot, long millisPerSnapshot) throws IOException {
+		return ParallelObjReader.read(path, pool, 0, monitor, polygonsPerSnapshot, millisPerSnapshot);
+	}
+
 	/**
 	 * ПУНКТ 1: Парсинг вершины (v x y z).
 	 * Метод имеет модификатор protected для тестирования.
@@ -1,11 +1,17 @@
 package com.cgvsu.objreader;
 
-import com.cgvsu.math.Vector2f;
-import com.cgvsu.math.Vector3f;
 import com.cgvsu.model.Model;
-import com.cgvsu.model.Polygon;
 
-import java.util.ArrayList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * ========================================================================
@@ -23,76 +29,74 @@ import java.util.ArrayList;
  */
 public class ObjWriter {
 
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
     /**
      * ПУНКТ 1: Сохранение модели в строку формата OBJ.
      * Формирует корректный OBJ-файл с учетом индексации (OBJ использует индексацию с 1).
+     * Для больших моделей лучше {@link #write(Model, Path)}: строка держит весь файл в памяти.
      * 
      * @param model модель для сохранения
      * @return строка с содержимым OBJ-файла
      */
     public static String write(Model model) {
-        StringBuilder builder = new StringBuilder();
-
-        // Вершины
-        for (Vector3f vertex : model.vertices) {
-            builder.append("v ")
-                    .append(vertex.x).append(' ')
-                    .append(vertex.y).append(' ')
-                    .append(vertex.z).append('\n');
-        }
-
-        // Текстурные вершины
-        for (Vector2f textureVertex : model.textureVertices) {
-            builder.append("vt ")
-                    .append(textureVertex.x).append(' ')
-                    .append(textureVertex.y).append('\n');
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            write(model, Channels.newChannel(output));
+        } catch (IOException exception) {
+            // Запись в память не бросает IOException
+            throw new UncheckedIOException(exception);
         }
+        return output.toString(StandardCharsets.US_ASCII);
+    }
 
-        // Нормали
-        for (Vector3f normal : model.normals) {
-            builder.append("vn ")
-                    .append(normal.x).append(' ')
-                    .append(normal.y).append(' ')
-                    .append(normal.z).append('\n');
+    /**
+     * Сохранение модели в файл. Текст пишется в канал кусками по мере кодирования,
+     * поэтому память не растёт с размером модели.
+     */
+    public static void write(Model model, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(model, channel);
         }
+    }
 
-        // Полигоны
-        for (Polygon polygon : model.polygons) {
-            builder.append("f");
-
-            ArrayList<Integer> vertexIndices = polygon.getVertexIndices();
-            ArrayList<Integer> textureIndices = polygon.getTextureVertexIndices();
-            ArrayList<Integer> normalIndices = polygon.getNormalIndices();
-
-            int n = vertexIndices.size();
-            for (int i = 0; i < n; i++) {
-                int vIndex = vertexIndices.get(i) + 1; // В OBJ индексация с 1
-
-                StringBuilder element = new StringBuilder();
-                element.append(' ').append(vIndex);
-
-                boolean hasTexture = i < textureIndices.size();
-                boolean hasNormal = i < normalIndices.size();
-
-                if (hasTexture || hasNormal) {
-                    element.append('/');
-                    if (hasTexture) {
-                        element.append(textureIndices.get(i) + 1);
-                    }
-                    if (hasNormal) {
-                        element.append('/').append(normalIndices.get(i) + 1);
-                    }
-                }
+    /**
+     * Сохранение модели в канал; канал не закрывается.
+     */
+    public static void write(Model model, WritableByteChannel channel) throws IOException {
+        write(model, channel, DEFAULT_BUFFER_SIZE);
+    }
 
-                builder.append(element);
-            }
+    /**
+     * Параллельное сохранение модели в файл: куски файла кодируются на общем fork-join
+     * пуле и пишутся каждый на своё место. Результат побайтно совпадает с {@link #write(Model, Path)}.
+     */
+    public static void writeParallel(Model model, Path file) throws IOException {
+        writeParallel(model, file, ForkJoinPool.commonPool());
+    }
 
-            builder.append('\n');
+    /**
+     * То же, что {@link #writeParallel(Model, Path)}, но куски кодируются на указанном пуле.
+     */
+    public static void writeParallel(Model model, Path file, ForkJoinPool pool) throws IOException {
+        if (pool.getParallelism() < 2) {
+            // На одном потоке куски только добавили бы копирований
+            write(model, file);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ParallelObjWriter.write(model, channel, pool, 0);
         }
+    }
 
-        return builder.toString();
+    static void write(Model model, WritableByteChannel channel, int bufferSize) throws IOException {
+        ObjEncoder encoder = new ObjEncoder(channel, bufferSize);
+        encoder.vertices(model.vertices, 0, model.vertices.size());
+        encoder.textureVertices(model.textureVertices, 0, model.textureVertices.size());
+        encoder.normals(model.normals, 0, model.normals.size());
+        encoder.polygons(model.polygons, 0, model.polygons.size());
+        encoder.flush();
     }
 }
-
-
-
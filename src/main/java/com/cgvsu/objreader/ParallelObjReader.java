@@ -0,0 +1,242 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Параллельное чтение OBJ-файла, отображённого в память.
+ * <p>
+ * Файл режется на куски так, чтобы каждый кусок заканчивался переводом строки.
+ * Каждый кусок отображается отдельно (так файлы больше 2 ГБ не упираются в предел
+ * размера {@link MappedByteBuffer}) и разбирается своим {@link ObjChunkParser}.
+ * Затем куски сливаются по порядку: номера строк в ошибках и относительные
+ * индексы полигонов пересчитываются с учётом предыдущих кусков.
+ * <p>
+ * В постепенном режиме куски сливаются по мере готовности (по порядку), и наблюдатель
+ * время от времени получает снимок уже прочитанного начала модели ({@link Model#snapshot}).
+ */
+class ParallelObjReader {
+
+    private static final long MIN_CHUNK_SIZE = 4L << 20;
+    private static final long MAX_CHUNK_SIZE = 256L << 20;
+    // Под наблюдателем куски мельче, чтобы прогресс шёл плавно, а отмена срабатывала быстро
+    private static final long MONITORED_MAX_CHUNK_SIZE = 16L << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int BOUNDARY_SEARCH_SIZE = 4096;
+
+    /**
+     * @param chunkSize желаемый размер куска в байтах, 0 - подобрать по размеру файла и пула
+     */
+    static Model read(Path path, ForkJoinPool pool, long chunkSize) throws IOException {
+        return read(path, pool, chunkSize, ReadMonitor.NONE);
+    }
+
+    /**
+     * То же с наблюдателем: прогресс сообщается по мере разбора кусков, отмена проверяется
+     * перед каждым куском.
+     *
+     * @throws CancellationException если monitor попросил прекратить чтение
+     */
+    static Model read(Path path, ForkJoinPool pool, long chunkSize, ReadMonitor monitor) throws IOException {
+        return read(path, pool, chunkSize, monitor, 0, 0);
+    }
+
+    /**
+     * То же в постепенном режиме: снимок прочитанного начала модели отдаётся
+     * {@link ReadMonitor#onSnapshot}, когда с прошлого снимка добавилось не меньше
+     * polygonsPerSnapshot полигонов или прошло не меньше millisPerSnapshot миллисекунд
+     * (проверяется после слияния очередного куска). Оба параметра 0 - без снимков.
+     */
+    static Model read(
+            Path path, ForkJoinPool pool, long chunkSize, ReadMonitor monitor,
+            int polygonsPerSnapshot, long millisPerSnapshot) throws IOException {
+        final boolean progressive = polygonsPerSnapshot > 0 || millisPerSnapshot > 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (chunkSize <= 0) {
+                chunkSize = fileSize / ((long) pool.getParallelism() * CHUNKS_PER_THREAD);
+                chunkSize = Math.min(Math.max(chunkSize, MIN_CHUNK_SIZE),
+                        monitor == ReadMonitor.NONE ? MAX_CHUNK_SIZE : MONITORED_MAX_CHUNK_SIZE);
+            }
+            final AtomicLong bytesRead = new AtomicLong();
+
+            List<ForkJoinTask<ObjChunkParser>> tasks = new ArrayList<>();
+            long chunkStart = 0;
+            while (chunkStart < fileSize) {
+                final long start = chunkStart;
+                final long end = findChunkEnd(channel, start + chunkSize, fileSize);
+                tasks.add(pool.submit(() -> {
+                    if (monitor.isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    ObjChunkParser parser = parseChunk(channel, start, end);
+                    monitor.onProgress(bytesRead.addAndGet(end - start), fileSize);
+                    return parser;
+                }));
+                chunkStart = end;
+            }
+
+            List<ObjChunkParser> chunks = new ArrayList<>(tasks.size());
+            try {
+                if (progressive) {
+                    return mergeProgressively(tasks, monitor, polygonsPerSnapshot, millisPerSnapshot);
+                }
+                for (ForkJoinTask<ObjChunkParser> task : tasks) {
+                    chunks.add(task.join());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (CancellationException e) {
+                // Куски, которые ещё не начали разбираться, разбирать уже незачем
+                // (уже слитые куски в постепенном режиме убраны из списка)
+                for (ForkJoinTask<ObjChunkParser> task : tasks) {
+                    if (task != null) {
+                        task.cancel(false);
+                    }
+                }
+                throw e;
+            }
+            return merge(chunks);
+        }
+    }
+
+    /**
+     * Ищет первый перевод строки начиная с from и возвращает позицию сразу за ним.
+     * Пара \r\n при этом никогда не разрывается.
+     */
+    private static long findChunkEnd(FileChannel channel, long from, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SEARCH_SIZE);
+        long position = from;
+        while (position < fileSize) {
+            buffer.clear();
+            final int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; ++i) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    private static ObjChunkParser parseChunk(FileChannel channel, long start, long end) {
+        ObjChunkParser parser = new ObjChunkParser();
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            parser.parse(buffer, 0, buffer.limit(), true);
+        } catch (ObjReaderException exception) {
+            parser.error = exception;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return parser;
+    }
+
+    private static Model mergeProgressively(
+            List<ForkJoinTask<ObjChunkParser>> tasks, ReadMonitor monitor,
+            int polygonsPerSnapshot, long millisPerSnapshot) {
+        Model result = new Model();
+        int lineCount = 0;
+        // Полигоны, все вершины которых уже прочитаны: в снимок попадают только они
+        int drawablePolygonCount = 0;
+        int snapshotPolygonCount = 0;
+        long snapshotTime = System.nanoTime();
+
+        for (int chunkInd = 0; chunkInd < tasks.size(); ++chunkInd) {
+            final ObjChunkParser chunk = tasks.get(chunkInd).join();
+            // Разобранный кусок больше не нужен, пусть память освобождается по ходу чтения
+            tasks.set(chunkInd, null);
+            if (chunk.error != null) {
+                throw new ObjReaderException(chunk.error.getErrorMessage(), lineCount + chunk.error.getLineInd());
+            }
+            chunk.shiftRelativeIndices(result.vertices.size(), result.textureVertices.size(), result.normals.size());
+            result.vertices.addAll(chunk.vertices.array(), 0, chunk.getVertexCount());
+            result.textureVertices.addAll(chunk.textureVertices.array(), 0, chunk.getTextureVertexCount());
+            result.normals.addAll(chunk.normals.array(), 0, chunk.getNormalCount());
+            result.polygons.addAll(chunk.polygons);
+            lineCount += chunk.getLineCount();
+
+            if (drawablePolygonCount == result.polygons.size() - chunk.polygons.size()) {
+                drawablePolygonCount = countDrawablePolygons(result, drawablePolygonCount);
+            }
+            final long now = System.nanoTime();
+            if (chunkInd + 1 < tasks.size()
+                    && drawablePolygonCount > snapshotPolygonCount
+                    && ((polygonsPerSnapshot > 0 && drawablePolygonCount - snapshotPolygonCount >= polygonsPerSnapshot)
+                    || (millisPerSnapshot > 0 && now - snapshotTime >= millisPerSnapshot * 1_000_000))) {
+                monitor.onSnapshot(result.snapshot(result.vertices.size(), drawablePolygonCount));
+                snapshotPolygonCount = drawablePolygonCount;
+                snapshotTime = now;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Продвигает границу полигонов, которые можно рисовать: у них все индексы вершин
+     * ссылаются на уже прочитанные вершины. Полигон со ссылкой вперёд (или неверной)
+     * останавливает границу до конца чтения, снимки растут дальше только вершинами.
+     */
+    private static int countDrawablePolygons(Model model, int from) {
+        final int[] offsets = model.polygons.offsets();
+        final int[] vertexIndices = model.polygons.vertexIndices();
+        final int vertexCount = model.vertices.size();
+        int polygonInd = from;
+        for (; polygonInd < model.polygons.size(); ++polygonInd) {
+            for (int i = offsets[polygonInd]; i < offsets[polygonInd + 1]; ++i) {
+                if (vertexIndices[i] < 0 || vertexIndices[i] >= vertexCount) {
+                    return polygonInd;
+                }
+            }
+        }
+        return polygonInd;
+    }
+
+    private static Model merge(List<ObjChunkParser> chunks) {
+        int vertexCount = 0;
+        int textureVertexCount = 0;
+        int normalCount = 0;
+        int lineCount = 0;
+        for (ObjChunkParser chunk : chunks) {
+            if (chunk.error != null) {
+                // Ошибка в самом раннем куске - она же первая ошибка в файле
+                throw new ObjReaderException(chunk.error.getErrorMessage(), lineCount + chunk.error.getLineInd());
+            }
+            chunk.shiftRelativeIndices(vertexCount, textureVertexCount, normalCount);
+            vertexCount += chunk.getVertexCount();
+            textureVertexCount += chunk.getTextureVertexCount();
+            normalCount += chunk.getNormalCount();
+            lineCount += chunk.getLineCount();
+        }
+
+        Model result = new Model();
+        result.vertices.ensureCapacity(vertexCount);
+        result.textureVertices.ensureCapacity(textureVertexCount);
+        result.normals.ensureCapacity(normalCount);
+
+        for (ObjChunkParser chunk : chunks) {
+            result.vertices.addAll(chunk.vertices.array(), 0, chunk.getVertexCount());
+            result.textureVertices.addAll(chunk.textureVertices.array(), 0, chunk.getTextureVertexCount());
+            result.normals.addAll(chunk.normals.array(), 0, chunk.getNormalCount());
+            result.polygons.addAll(chunk.polygons);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,137 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Параллельная запись модели в OBJ-файл.
+ * <p>
+ * Вершины, текстурные вершины, нормали и полигоны режутся на куски из целых строк, каждый
+ * кусок кодируется своим {@link ObjEncoder} в память на пуле потоков. Место куска в файле -
+ * конец предыдущего куска, оно известно сразу после кодирования предыдущего, поэтому куски
+ * пишутся позиционной записью {@link FileChannel#write(ByteBuffer, long)} параллельно,
+ * не дожидаясь, пока предыдущие допишутся. Склеенные по порядку куски дают ровно те же
+ * байты, что и последовательный {@link ObjWriter#write(Model, java.nio.channels.WritableByteChannel)}.
+ * <p>
+ * Одновременно в памяти держится ограниченное число кусков, так что память, как и у
+ * последовательной записи, не растёт с размером модели.
+ */
+class ParallelObjWriter {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 15;
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 4;
+    // Примерная длина строки вершины или угла полигона, чтобы массив куска не рос
+    private static final int BYTES_PER_ELEMENT = 32;
+
+    private enum Section {
+        VERTICES, TEXTURE_VERTICES, NORMALS, POLYGONS
+    }
+
+    private record Chunk(Section section, int from, int to) {
+    }
+
+    /**
+     * Пишет модель в channel начиная с его текущей позиции и сдвигает позицию в конец записанного.
+     *
+     * @param chunkSize строк вершин (или углов полигонов) в куске, 0 - по умолчанию
+     */
+    static void write(Model model, FileChannel channel, ForkJoinPool pool, int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            chunkSize = DEFAULT_CHUNK_SIZE;
+        }
+        final int initialCapacity = chunkSize * BYTES_PER_ELEMENT;
+        final int maxChunksInFlight = pool.getParallelism() * CHUNKS_IN_FLIGHT_PER_THREAD;
+
+        ArrayDeque<CompletableFuture<Void>> writes = new ArrayDeque<>();
+        CompletableFuture<Long> chunkEnd = CompletableFuture.completedFuture(channel.position());
+        try {
+            for (Chunk chunk : split(model, chunkSize)) {
+                final CompletableFuture<ByteBuffer> encoded =
+                        CompletableFuture.supplyAsync(() -> encode(model, chunk, initialCapacity), pool);
+                final CompletableFuture<Long> chunkStart = chunkEnd;
+                chunkEnd = encoded.thenCombine(chunkStart, (bytes, start) -> start + bytes.limit());
+                writes.add(encoded.thenAcceptBothAsync(chunkStart,
+                        (bytes, start) -> writeFully(channel, bytes, start), pool));
+                if (writes.size() > maxChunksInFlight) {
+                    writes.poll().join();
+                }
+            }
+            while (!writes.isEmpty()) {
+                writes.poll().join();
+            }
+            channel.position(chunkEnd.join());
+        } catch (CompletionException exception) {
+            // Дописывать уже нечего, но оставшиеся куски не должны писать в закрытый канал
+            writes.forEach(write -> write.cancel(false));
+            if (exception.getCause() instanceof UncheckedIOException ioException) {
+                throw ioException.getCause();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Куски в порядке следования в файле: сначала все v, потом vt, vn и f.
+     * Полигоны режутся по числу углов, чтобы куски были примерно равными по длине.
+     */
+    private static List<Chunk> split(Model model, int chunkSize) {
+        List<Chunk> chunks = new ArrayList<>();
+        splitEvenly(chunks, Section.VERTICES, model.vertices.size(), chunkSize);
+        splitEvenly(chunks, Section.TEXTURE_VERTICES, model.textureVertices.size(), chunkSize);
+        splitEvenly(chunks, Section.NORMALS, model.normals.size(), chunkSize);
+
+        final int[] offsets = model.polygons.offsets();
+        final int polygonCount = model.polygons.size();
+        int from = 0;
+        for (int polygonInd = 1; polygonInd <= polygonCount; ++polygonInd) {
+            if (offsets[polygonInd] - offsets[from] >= chunkSize || polygonInd == polygonCount) {
+                chunks.add(new Chunk(Section.POLYGONS, from, polygonInd));
+                from = polygonInd;
+            }
+        }
+        return chunks;
+    }
+
+    private static void splitEvenly(List<Chunk> chunks, Section section, int count, int chunkSize) {
+        for (int from = 0; from < count; from += chunkSize) {
+            chunks.add(new Chunk(section, from, Math.min(from + chunkSize, count)));
+        }
+    }
+
+    private static ByteBuffer encode(Model model, Chunk chunk, int initialCapacity) {
+        ObjEncoder encoder = new ObjEncoder(initialCapacity);
+        try {
+            switch (chunk.section()) {
+                case VERTICES -> encoder.vertices(model.vertices, chunk.from(), chunk.to());
+                case TEXTURE_VERTICES -> encoder.textureVertices(model.textureVertices, chunk.from(), chunk.to());
+                case NORMALS -> encoder.normals(model.normals, chunk.from(), chunk.to());
+                case POLYGONS -> encoder.polygons(model.polygons, chunk.from(), chunk.to());
+            }
+        } catch (IOException exception) {
+            // Кодировщик в память канала не трогает
+            throw new UncheckedIOException(exception);
+        }
+        return encoder.toByteBuffer();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes, long position) {
+        try {
+            final ByteBuffer remaining = bytes.duplicate();
+            while (remaining.hasRemaining()) {
+                position += channel.write(remaining, position);
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+
+/**
+ * Наблюдатель за долгим чтением файла: сколько уже разобрано и не пора ли остановиться.
+ * Методы вызываются из потоков пула, на котором идёт чтение, в том числе одновременно.
+ */
+public interface ReadMonitor {
+
+    /**
+     * Наблюдатель, которому ничего не нужно.
+     */
+    ReadMonitor NONE = new ReadMonitor() {
+        @Override
+        public void onProgress(long bytesRead, long totalBytes) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Разобрано bytesRead байт из totalBytes. Значения только растут, но из разных потоков
+     * могут приходить не по порядку.
+     */
+    void onProgress(long bytesRead, long totalBytes);
+
+    /**
+     * true, если чтение пора прекратить; тогда оно бросает
+     * {@link java.util.concurrent.CancellationException}.
+     */
+    boolean isCancelled();
+
+    /**
+     * Снимок уже прочитанной части модели в постепенном режиме чтения
+     * ({@link ObjReader#readProgressive}). Число вершин и полигонов от снимка к снимку
+     * только растёт. Снимок только для чтения и не копирует данные, см. {@link Model#snapshot}.
+     */
+    default void onSnapshot(Model snapshot) {
+    }
+}
@@ -21,14 +21,20 @@ public class Camera {
 
     public void setPosition(final Vector3f position) {
         this.position = position;
+        ++modificationCount;
     }
 
     public void setTarget(final Vector3f target) {
         this.target = target;
+        ++modificationCount;
     }
 
     public void setAspectRatio(final float aspectRatio) {
-        this.aspectRatio = aspectRatio;
+        // Вызывается каждый кадр, поэтому изменением считается только новое значение
+        if (this.aspectRatio != aspectRatio) {
+            this.aspectRatio = aspectRatio;
+            ++modificationCount;
+        }
     }
 
     public Vector3f getPosition() {
@@ -41,10 +47,22 @@ public class Camera {
 
     public void movePosition(final Vector3f translation) {
         this.position.add(translation);
+        ++modificationCount;
     }
 
     public void moveTarget(final Vector3f translation) {
         this.target.add(target);
+        ++modificationCount;
+    }
+
+    /**
+     * Счётчик изменений камеры: растёт при каждом изменении положения, цели
+     * или соотношения сторон через методы камеры. По нему можно понять, что кадр
+     * нужно перерисовать. Изменения векторов, полученных через getPosition/getTarget,
+     * напрямую не отслеживаются.
+     */
+    public int getModificationCount() {
+        return modificationCount;
     }
 
     Matrix4f getViewMatrix() {
@@ -61,4 +79,5 @@ public class Camera {
     private float aspectRatio;
     private float nearPlane;
     private float farPlane;
+    private int modificationCount;
 }
\ No newline at end of file
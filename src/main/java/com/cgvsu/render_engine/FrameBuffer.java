@@ -0,0 +1,241 @@
+package com.cgvsu.render_engine;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.paint.Color;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Кадр для программной растеризации: массив пикселей int в формате ARGB
+ * с premultiplied alpha (как {@link PixelFormat#getIntArgbPreInstance()}).
+ * <p>
+ * Весь кадр рисуется в массив, а на Canvas отправляется одним вызовом
+ * {@link PixelWriter#setPixels} в {@link #present(PixelWriter)}, вместо
+ * тысяч отдельных команд GraphicsContext. Массив переиспользуется между кадрами
+ * и пересоздаётся только при увеличении окна.
+ * <p>
+ * Вместе с цветом хранится буфер глубины (z после перспективного деления, меньше - ближе),
+ * по которому закрашенные треугольники перекрывают друг друга.
+ */
+public class FrameBuffer {
+
+    private static final PixelFormat<IntBuffer> PIXEL_FORMAT = PixelFormat.getIntArgbPreInstance();
+
+    private int[] pixels = new int[0];
+    private float[] depthBuffer = new float[0];
+    private int width;
+    private int height;
+
+    /**
+     * Подгоняет размер кадра под окно. Содержимое после изменения размера не определено.
+     */
+    public void resize(int width, int height) {
+        width = Math.max(width, 0);
+        height = Math.max(height, 0);
+        if (pixels.length < width * height) {
+            pixels = new int[width * height];
+            depthBuffer = new float[width * height];
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Пиксели кадра построчно, пиксель (x, y) лежит в элементе y * getWidth() + x.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getPixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    public float getDepth(int x, int y) {
+        return depthBuffer[y * width + x];
+    }
+
+    /**
+     * Заливает кадр цветом и сбрасывает буфер глубины.
+     */
+    public void clear(int argb) {
+        Arrays.fill(pixels, 0, width * height, argb);
+        Arrays.fill(depthBuffer, 0, width * height, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Отправляет кадр на экран одним вызовом.
+     */
+    public void present(PixelWriter pixelWriter) {
+        if (width > 0 && height > 0) {
+            pixelWriter.setPixels(0, 0, width, height, PIXEL_FORMAT, pixels, 0, width);
+        }
+    }
+
+    /**
+     * Переводит цвет JavaFX в ARGB с premultiplied alpha.
+     */
+    public static int toArgb(Color color) {
+        final double alpha = color.getOpacity();
+        final int a = (int) Math.round(alpha * 255);
+        final int r = (int) Math.round(color.getRed() * alpha * 255);
+        final int g = (int) Math.round(color.getGreen() * alpha * 255);
+        final int b = (int) Math.round(color.getBlue() * alpha * 255);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    public void drawLine(float x0, float y0, float x1, float y1, int argb) {
+        drawLine(x0, y0, x1, y1, argb, 1);
+    }
+
+    public void drawLine(float x0, float y0, float x1, float y1, int argb, int thickness) {
+        drawLine(x0, y0, x1, y1, argb, thickness, 0, 0, width - 1, height - 1);
+    }
+
+    /**
+     * Рисует отрезок алгоритмом DDA, но только пиксели внутри прямоугольника
+     * [clipMinX, clipMaxX] x [clipMinY, clipMaxY].
+     * <p>
+     * Положение каждого пикселя зависит только от концов отрезка, а не от прямоугольника,
+     * поэтому отрезок, нарисованный по частям в соседних прямоугольниках (плитках),
+     * совпадает с нарисованным целиком. Перебираются только шаги внутри прямоугольника,
+     * так что длинные отрезки за пределами кадра ничего не стоят.
+     * Толстая линия рисуется несколькими параллельными отрезками,
+     * сдвинутыми поперёк основного направления.
+     */
+    public void drawLine(
+            float x0, float y0, float x1, float y1, int argb, int thickness,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+        if (!Float.isFinite(x0) || !Float.isFinite(y0) || !Float.isFinite(x1) || !Float.isFinite(y1)) {
+            return;
+        }
+        clipMinX = Math.max(clipMinX, 0);
+        clipMinY = Math.max(clipMinY, 0);
+        clipMaxX = Math.min(clipMaxX, width - 1);
+        clipMaxY = Math.min(clipMaxY, height - 1);
+
+        final boolean steep = Math.abs(y1 - y0) > Math.abs(x1 - x0);
+        for (int offset = -(thickness - 1) / 2; offset <= thickness / 2; ++offset) {
+            if (steep) {
+                // Основная ось - y: меняем оси местами
+                drawLineDda(y0, x0 + offset, y1, x1 + offset, argb, clipMinY, clipMaxY, clipMinX, clipMaxX, true);
+            } else {
+                drawLineDda(x0, y0 + offset, x1, y1 + offset, argb, clipMinX, clipMaxX, clipMinY, clipMaxY, false);
+            }
+        }
+    }
+
+    /**
+     * DDA по основной оси u: на каждом целом u вторая координата v вычисляется заново
+     * по уравнению прямой и округляется.
+     */
+    private void drawLineDda(
+            double u0, double v0, double u1, double v1, int argb,
+            int minU, int maxU, int minV, int maxV, boolean transposed) {
+        if (u0 > u1) {
+            double t = u0; u0 = u1; u1 = t;
+            t = v0; v0 = v1; v1 = t;
+        }
+        final double slope = u1 > u0 ? (v1 - v0) / (u1 - u0) : 0;
+        final long start = Math.max(Math.round(u0), minU);
+        final long end = Math.min(Math.round(u1), maxU);
+        for (long u = start; u <= end; ++u) {
+            final long v = Math.round(v0 + (u - u0) * slope);
+            if (v >= minV && v <= maxV) {
+                if (transposed) {
+                    pixels[(int) u * width + (int) v] = argb;
+                } else {
+                    pixels[(int) v * width + (int) u] = argb;
+                }
+            }
+        }
+    }
+
+    /**
+     * Закрашивает треугольник с проверкой глубины.
+     * Пиксель закрашивается, если его центр лежит внутри треугольника, а глубина,
+     * линейно интерпретированная по вершинам, меньше уже записанной в буфер.
+     * Проверка глубины делается до записи цвета, так что закрытые пиксели ничего не стоят.
+     * Порядок обхода вершин не важен: отбрасывание нелицевых граней - забота вызывающего.
+     */
+    public void fillTriangle(
+            float x0, float y0, float z0,
+            float x1, float y1, float z1,
+            float x2, float y2, float z2,
+            int argb) {
+        fillTriangle(x0, y0, z0, x1, y1, z1, x2, y2, z2, argb, 0, 0, width - 1, height - 1);
+    }
+
+    /**
+     * То же, но закрашиваются только пиксели внутри прямоугольника
+     * [clipMinX, clipMaxX] x [clipMinY, clipMaxY]. Разные потоки могут одновременно
+     * закрашивать непересекающиеся прямоугольники одного кадра.
+     */
+    public void fillTriangle(
+            float x0, float y0, float z0,
+            float x1, float y1, float z1,
+            float x2, float y2, float z2,
+            int argb,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+        float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if (area == 0 || !Float.isFinite(area)) {
+            return;
+        }
+        if (area < 0) {
+            // Приводим к обходу с положительной площадью, чтобы внутри все рёберные функции были >= 0
+            float t = x1; x1 = x2; x2 = t;
+            t = y1; y1 = y2; y2 = t;
+            t = z1; z1 = z2; z2 = t;
+            area = -area;
+        }
+
+        // Ограничивающий прямоугольник по центрам пикселей, обрезанный по кадру
+        final int minX = Math.max((int) Math.ceil(Math.min(x0, Math.min(x1, x2)) - 0.5f), Math.max(clipMinX, 0));
+        final int maxX = Math.min((int) Math.floor(Math.max(x0, Math.max(x1, x2)) - 0.5f), Math.min(clipMaxX, width - 1));
+        final int minY = Math.max((int) Math.ceil(Math.min(y0, Math.min(y1, y2)) - 0.5f), Math.max(clipMinY, 0));
+        final int maxY = Math.min((int) Math.floor(Math.max(y0, Math.max(y1, y2)) - 0.5f), Math.min(clipMaxY, height - 1));
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        // Глубина - линейная функция экранных координат
+        final float depthDx = ((z1 - z0) * (y2 - y0) - (z2 - z0) * (y1 - y0)) / area;
+        final float depthDy = ((z2 - z0) * (x1 - x0) - (z1 - z0) * (x2 - x0)) / area;
+
+        // Рёберные функции: e01 для ребра v0 -> v1 и т.д., внутри треугольника все неотрицательны
+        final float e01Dx = -(y1 - y0), e01Dy = x1 - x0;
+        final float e12Dx = -(y2 - y1), e12Dy = x2 - x1;
+        final float e20Dx = -(y0 - y2), e20Dy = x0 - x2;
+
+        final float startX = minX + 0.5f;
+        for (int y = minY; y <= maxY; ++y) {
+            final float py = y + 0.5f;
+            float e01 = e01Dy * (py - y0) + e01Dx * (startX - x0);
+            float e12 = e12Dy * (py - y1) + e12Dx * (startX - x1);
+            float e20 = e20Dy * (py - y2) + e20Dx * (startX - x2);
+            float depth = z0 + depthDx * (startX - x0) + depthDy * (py - y0);
+
+            int index = y * width + minX;
+            for (int x = minX; x <= maxX; ++x, ++index) {
+                if (e01 >= 0 && e12 >= 0 && e20 >= 0 && depth < depthBuffer[index]) {
+                    depthBuffer[index] = depth;
+                    pixels[index] = argb;
+                }
+                e01 += e01Dx;
+                e12 += e12Dx;
+                e20 += e20Dx;
+                depth += depthDx;
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.BoundingBox;
+
+import javax.vecmath.Matrix4f;
+
+/**
+ * Отсечение по пирамиде видимости.
+ * <p>
+ * Видимая часть пространства в однородных координатах (x, y, z, w) после матрицы
+ * модель-вид-проекция: -w/2 &lt;= x &lt;= w/2, -w/2 &lt;= y &lt;= w/2 (так экранные координаты
+ * считает {@link GraphicConveyor#vertexToPoint}) и -w &lt;= z &lt;= w между ближней и дальней
+ * плоскостями. Для каждой вершины считается код из шести битов, по одному на плоскость,
+ * за которой она лежит. Если у всех вершин примитива есть общий бит, примитив целиком
+ * снаружи и отбрасывается без растеризации.
+ * <p>
+ * Примитивы, пересекающие ближнюю плоскость, обрезаются по ней: у вершин позади камеры
+ * после деления на w получаются бессмысленные координаты, поэтому точка пересечения
+ * ищется до деления, по однородным координатам. Остальные плоскости обрезать не нужно,
+ * растеризатор и так рисует только пиксели внутри кадра.
+ * <p>
+ * Объект хранит рабочие массивы для обрезки и переиспользуется; из разных потоков
+ * нужны разные объекты.
+ */
+final class FrustumClipper {
+
+    static final int LEFT = 1;
+    static final int RIGHT = 1 << 1;
+    static final int TOP = 1 << 2;
+    static final int BOTTOM = 1 << 3;
+    static final int NEAR = 1 << 4;
+    static final int FAR = 1 << 5;
+
+    // Треугольник, обрезанный одной плоскостью, - не больше четырёх вершин
+    private static final int MAX_VERTICES = 4;
+
+    private final float[] clipCoordinates = new float[3 * 4];
+    private final float[] screenX = new float[MAX_VERTICES];
+    private final float[] screenY = new float[MAX_VERTICES];
+    private final float[] depth = new float[MAX_VERTICES];
+
+    /**
+     * Код вершины по её экранным координатам и глубине из {@link ScreenVertexBuffer}.
+     * У вершины перед ближней плоскостью (в том числе позади камеры, глубина NaN)
+     * экранные координаты не определены, и код у неё - только {@link #NEAR}.
+     */
+    static int outcode(float x, float y, float z, int width, int height) {
+        if (!(z >= -1)) {
+            return NEAR;
+        }
+        int code = z > 1 ? FAR : 0;
+        if (x < 0) {
+            code |= LEFT;
+        } else if (x > width) {
+            code |= RIGHT;
+        }
+        if (y < 0) {
+            code |= TOP;
+        } else if (y > height) {
+            code |= BOTTOM;
+        }
+        return code;
+    }
+
+    /**
+     * Код вершины по однородным координатам, верен и для точек позади камеры.
+     */
+    static int outcode(float x, float y, float z, float w) {
+        int code = 0;
+        if (x < -0.5f * w) {
+            code |= LEFT;
+        } else if (x > 0.5f * w) {
+            code |= RIGHT;
+        }
+        if (y > 0.5f * w) {
+            code |= TOP;
+        } else if (y < -0.5f * w) {
+            code |= BOTTOM;
+        }
+        if (z < -w) {
+            code |= NEAR;
+        } else if (z > w) {
+            code |= FAR;
+        }
+        return code;
+    }
+
+    /**
+     * true, если параллелепипед целиком лежит за одной из плоскостей пирамиды видимости,
+     * то есть модель заведомо не видна. Проверяются восемь углов, так что отбрасывание
+     * объекта стоит одинаково для модели любого размера.
+     */
+    static boolean isOutside(BoundingBox bounds, Matrix4f modelViewProjectionMatrix) {
+        if (bounds.isEmpty()) {
+            return true;
+        }
+        final Matrix4f m = modelViewProjectionMatrix;
+        int common = LEFT | RIGHT | TOP | BOTTOM | NEAR | FAR;
+        for (int corner = 0; corner < 8 && common != 0; ++corner) {
+            final float vx = (corner & 1) == 0 ? bounds.getMinX() : bounds.getMaxX();
+            final float vy = (corner & 2) == 0 ? bounds.getMinY() : bounds.getMaxY();
+            final float vz = (corner & 4) == 0 ? bounds.getMinZ() : bounds.getMaxZ();
+            common &= outcode(
+                    (vx * m.m00) + (vy * m.m10) + (vz * m.m20) + m.m30,
+                    (vx * m.m01) + (vy * m.m11) + (vz * m.m21) + m.m31,
+                    (vx * m.m02) + (vy * m.m12) + (vz * m.m22) + m.m32,
+                    (vx * m.m03) + (vy * m.m13) + (vz * m.m23) + m.m33);
+        }
+        return common != 0;
+    }
+
+    /**
+     * Обрезает ребро start-end ближней плоскостью, концы результата - вершины 0 и 1.
+     *
+     * @return false, если ребро целиком перед ближней плоскостью
+     */
+    boolean clipSegment(ScreenVertexBuffer screenVertices, int start, int end) {
+        screenVertices.getClipCoordinates(start, clipCoordinates, 0);
+        screenVertices.getClipCoordinates(end, clipCoordinates, 4);
+        final float startDistance = clipCoordinates[2] + clipCoordinates[3];
+        final float endDistance = clipCoordinates[6] + clipCoordinates[7];
+        if (!(startDistance >= 0) && !(endDistance >= 0)) {
+            return false;
+        }
+
+        int count = 0;
+        if (startDistance >= 0) {
+            count = emitVertex(screenVertices, start, count);
+        } else {
+            count = emitIntersection(screenVertices, 0, 1, startDistance, endDistance, count);
+        }
+        if (endDistance >= 0) {
+            emitVertex(screenVertices, end, count);
+        } else {
+            emitIntersection(screenVertices, 0, 1, startDistance, endDistance, count);
+        }
+        return true;
+    }
+
+    /**
+     * Обрезает треугольник ближней плоскостью (алгоритм Сазерленда - Ходжмена для одной
+     * плоскости). Обход вершин сохраняется.
+     *
+     * @return число вершин получившегося многоугольника: 0, 3 или 4
+     */
+    int clipTriangle(ScreenVertexBuffer screenVertices, int i0, int i1, int i2) {
+        screenVertices.getClipCoordinates(i0, clipCoordinates, 0);
+        screenVertices.getClipCoordinates(i1, clipCoordinates, 4);
+        screenVertices.getClipCoordinates(i2, clipCoordinates, 8);
+
+        int count = 0;
+        for (int k = 0; k < 3; ++k) {
+            final int next = k == 2 ? 0 : k + 1;
+            final float distance = clipCoordinates[k * 4 + 2] + clipCoordinates[k * 4 + 3];
+            final float nextDistance = clipCoordinates[next * 4 + 2] + clipCoordinates[next * 4 + 3];
+            if (distance >= 0) {
+                count = emitVertex(screenVertices, k == 0 ? i0 : k == 1 ? i1 : i2, count);
+            }
+            if ((distance >= 0) != (nextDistance >= 0)) {
+                count = emitIntersection(screenVertices, k, next, distance, nextDistance, count);
+            }
+        }
+        return count;
+    }
+
+    float getScreenX(int vertex) {
+        return screenX[vertex];
+    }
+
+    float getScreenY(int vertex) {
+        return screenY[vertex];
+    }
+
+    float getDepth(int vertex) {
+        return depth[vertex];
+    }
+
+    /**
+     * Удвоенная ориентированная площадь многоугольника из count вершин результата,
+     * положительная для лицевого (см. {@link TiledRasterizer#fillTriangles}).
+     */
+    float area(int count) {
+        float area = 0;
+        for (int k = 0; k < count; ++k) {
+            final int next = k + 1 < count ? k + 1 : 0;
+            area += screenX[k] * screenY[next] - screenX[next] * screenY[k];
+        }
+        return area;
+    }
+
+    private int emitVertex(ScreenVertexBuffer screenVertices, int vertexIndex, int count) {
+        // Вершина перед плоскостью уже спроецирована, берём её координаты как есть,
+        // чтобы обрезанный треугольник стыковался с соседними без щелей
+        screenX[count] = screenVertices.getScreenX()[vertexIndex];
+        screenY[count] = screenVertices.getScreenY()[vertexIndex];
+        depth[count] = screenVertices.getDepth()[vertexIndex];
+        return count + 1;
+    }
+
+    private int emitIntersection(
+            ScreenVertexBuffer screenVertices, int from, int to, float fromDistance, float toDistance, int count) {
+        final float t = fromDistance / (fromDistance - toDistance);
+        final float x = lerp(from * 4, to * 4, t);
+        final float y = lerp(from * 4 + 1, to * 4 + 1, t);
+        final float z = lerp(from * 4 + 2, to * 4 + 2, t);
+        final float w = lerp(from * 4 + 3, to * 4 + 3, t);
+        final int width = screenVertices.getWidth();
+        final int height = screenVertices.getHeight();
+        screenX[count] = x / w * width + width / 2.0F;
+        screenY[count] = -(y / w) * height + height / 2.0F;
+        depth[count] = z / w;
+        return count + 1;
+    }
+
+    private float lerp(int from, int to, float t) {
+        return clipCoordinates[from] + (clipCoordinates[to] - clipCoordinates[from]) * t;
+    }
+}
@@ -63,4 +63,45 @@ public class GraphicConveyor {
     public static Point2f vertexToPoint(final Vector3f vertex, final int width, final int height) {
         return new Point2f(vertex.x * width + width / 2.0F, -vertex.y * height + height / 2.0F);
     }
+
+    /**
+     * То же, что vertexToPoint(multiplyMatrix4ByVector3(matrix, v), width, height),
+     * но сразу для вершин [from, to) из плоского массива координат (x y z подряд)
+     * и без создания объектов: результаты пишутся в массивы screenX, screenY, depth
+     * по индексу вершины. Вершинам позади камеры (w &lt;= 0) записывается глубина NaN.
+     */
+    public static void projectVertices(
+            final Matrix4f matrix,
+            final float[] coordinates,
+            final int from,
+            final int to,
+            final int width,
+            final int height,
+            final float[] screenX,
+            final float[] screenY,
+            final float[] depth) {
+        final float m00 = matrix.m00, m10 = matrix.m10, m20 = matrix.m20, m30 = matrix.m30;
+        final float m01 = matrix.m01, m11 = matrix.m11, m21 = matrix.m21, m31 = matrix.m31;
+        final float m02 = matrix.m02, m12 = matrix.m12, m22 = matrix.m22, m32 = matrix.m32;
+        final float m03 = matrix.m03, m13 = matrix.m13, m23 = matrix.m23, m33 = matrix.m33;
+        final float halfWidth = width / 2.0F;
+        final float halfHeight = height / 2.0F;
+
+        for (int i = from; i < to; ++i) {
+            final int offset = i * 3;
+            final float vx = coordinates[offset];
+            final float vy = coordinates[offset + 1];
+            final float vz = coordinates[offset + 2];
+
+            final float x = (vx * m00) + (vy * m10) + (vz * m20) + m30;
+            final float y = (vx * m01) + (vy * m11) + (vz * m21) + m31;
+            final float z = (vx * m02) + (vy * m12) + (vz * m22) + m32;
+            final float w = (vx * m03) + (vy * m13) + (vz * m23) + m33;
+
+            screenX[i] = x / w * width + halfWidth;
+            screenY[i] = -(y / w) * height + halfHeight;
+            // Для вершин позади камеры глубина не определена
+            depth[i] = w > 0 ? z / w : Float.NaN;
+        }
+    }
 }
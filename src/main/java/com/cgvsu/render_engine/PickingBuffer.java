@@ -0,0 +1,217 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+
+import java.util.List;
+
+/**
+ * Выбор полигона мышью по буферу номеров полигонов.
+ * <p>
+ * Модель растеризуется не в цвета, а в номера полигонов ({@link RenderEngine#renderPolygonIds})
+ * с буфером глубины, после чего полигон под любой точкой экрана находится одним чтением
+ * из массива. Буфер строится только по запросу ({@link #update}), обычные кадры за него
+ * не платят, и запоминается вместе с камерой, моделью, поворотом и размером окна: пока они
+ * не меняются, повторные запросы (например, при движении курсора) ничего не растеризуют.
+ * <p>
+ * Так же строится буфер для всей сцены ({@link #update(Camera, List, int, int, TiledRasterizer)}):
+ * тогда полигоны нумеруются подряд по всем объектам, и по точке экрана находится
+ * и объект ({@link #getObjectAt}), и полигон в нём.
+ */
+public class PickingBuffer {
+
+    private final FrameBuffer idBuffer = new FrameBuffer();
+
+    // Ключ кэша: для чего построен текущий буфер
+    private boolean valid;
+    private int cachedCameraModificationCount;
+    private Model cachedModel;
+    private long cachedModelModificationCount;
+    private float cachedRotationX;
+    private float cachedRotationY;
+    // Для буфера сцены: объекты, их счётчики изменений и начало нумерации полигонов каждого
+    private SceneObject[] cachedObjects;
+    private long[] cachedObjectModificationCounts;
+    private int[] polygonBases;
+    private boolean cachedCullBackFaces;
+
+    /**
+     * Строит буфер номеров полигонов, если он ещё не построен для этой камеры, модели,
+     * поворота и размера окна.
+     *
+     * @return true, если буфер был перестроен
+     */
+    public boolean update(
+            final Camera camera,
+            final Model mesh,
+            final int width,
+            final int height,
+            final float rotationX,
+            final float rotationY,
+            final ScreenVertexBuffer screenVertices,
+            final TiledRasterizer rasterizer) {
+        if (valid
+                && cachedCameraModificationCount == camera.getModificationCount()
+                && cachedModel == mesh
+                && cachedModelModificationCount == mesh.getModificationCount()
+                && cachedRotationX == rotationX
+                && cachedRotationY == rotationY
+                && idBuffer.getWidth() == width
+                && idBuffer.getHeight() == height) {
+            return false;
+        }
+
+        idBuffer.resize(width, height);
+        RenderEngine.renderPolygonIds(idBuffer, camera, mesh, rotationX, rotationY, screenVertices, rasterizer);
+
+        valid = true;
+        cachedObjects = null;
+        polygonBases = null;
+        cachedCameraModificationCount = camera.getModificationCount();
+        cachedModel = mesh;
+        cachedModelModificationCount = mesh.getModificationCount();
+        cachedRotationX = rotationX;
+        cachedRotationY = rotationY;
+        return true;
+    }
+
+    /**
+     * Строит буфер номеров полигонов для всех объектов сцены, если с прошлого раза
+     * не изменились камера, окно, состав сцены, положение объектов и сами модели.
+     *
+     * @return true, если буфер был перестроен
+     */
+    public boolean update(
+            final Camera camera,
+            final List<SceneObject> objects,
+            final int width,
+            final int height,
+            final TiledRasterizer rasterizer) {
+        return update(camera, objects, width, height, rasterizer, true);
+    }
+
+    /**
+     * То же; при cullBackFaces = false выбираются и нелицевые полигоны (каркасный режим,
+     * см. {@link RenderEngine#renderScenePolygonIds(FrameBuffer, Camera, List, int[], TiledRasterizer, boolean)}).
+     *
+     * @return true, если буфер был перестроен
+     */
+    public boolean update(
+            final Camera camera,
+            final List<SceneObject> objects,
+            final int width,
+            final int height,
+            final TiledRasterizer rasterizer,
+            final boolean cullBackFaces) {
+        final int count = objects.size();
+        if (valid
+                && cachedObjects != null
+                && cachedObjects.length == count
+                && cachedCullBackFaces == cullBackFaces
+                && cachedCameraModificationCount == camera.getModificationCount()
+                && idBuffer.getWidth() == width
+                && idBuffer.getHeight() == height
+                && isSameScene(objects)) {
+            return false;
+        }
+
+        cachedObjects = objects.toArray(new SceneObject[0]);
+        cachedObjectModificationCounts = new long[count];
+        polygonBases = new int[count];
+        int polygonCount = 0;
+        for (int i = 0; i < count; ++i) {
+            final SceneObject object = cachedObjects[i];
+            cachedObjectModificationCounts[i] = getModificationCount(object);
+            polygonBases[i] = polygonCount;
+            polygonCount += object.getModel().polygons.size();
+        }
+
+        idBuffer.resize(width, height);
+        RenderEngine.renderScenePolygonIds(idBuffer, camera, objects, polygonBases, rasterizer, cullBackFaces);
+
+        valid = true;
+        cachedModel = null;
+        cachedCullBackFaces = cullBackFaces;
+        cachedCameraModificationCount = camera.getModificationCount();
+        return true;
+    }
+
+    private boolean isSameScene(final List<SceneObject> objects) {
+        for (int i = 0; i < cachedObjects.length; ++i) {
+            final SceneObject object = objects.get(i);
+            if (cachedObjects[i] != object || cachedObjectModificationCounts[i] != getModificationCount(object)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long getModificationCount(final SceneObject object) {
+        return object.getModificationCount() + object.getModel().getModificationCount();
+    }
+
+    /**
+     * Сбрасывает буфер, следующий {@link #update} обязательно построит его заново.
+     */
+    public void invalidate() {
+        valid = false;
+        cachedModel = null;
+        cachedObjects = null;
+    }
+
+    /**
+     * Номер полигона, видимого в точке экрана (x, y), по последнему построенному буферу.
+     * Для буфера сцены - номер полигона в модели объекта {@link #getObjectAt}.
+     *
+     * @return номер полигона или -1, если в точке фон или она за пределами окна
+     */
+    public int getPolygonAt(final double x, final double y) {
+        final int id = getId(x, y);
+        if (id <= 0) {
+            return -1;
+        }
+        return polygonBases == null ? id - 1 : id - 1 - polygonBases[findObject(id - 1)];
+    }
+
+    /**
+     * Объект сцены, видимый в точке экрана (x, y), по последнему буферу сцены.
+     *
+     * @return объект или null, если в точке фон или буфер строился для одной модели
+     */
+    public SceneObject getObjectAt(final double x, final double y) {
+        final int id = getId(x, y);
+        if (id <= 0 || polygonBases == null) {
+            return null;
+        }
+        return cachedObjects[findObject(id - 1)];
+    }
+
+    private int getId(final double x, final double y) {
+        if (!valid || !(x >= 0 && y >= 0)) {
+            return 0;
+        }
+        final int pixelX = (int) x;
+        final int pixelY = (int) y;
+        if (pixelX >= idBuffer.getWidth() || pixelY >= idBuffer.getHeight()) {
+            return 0;
+        }
+        return idBuffer.getPixel(pixelX, pixelY);
+    }
+
+    /**
+     * Последний объект, чья нумерация начинается не позже polygon (объекты без полигонов
+     * пропускаются).
+     */
+    private int findObject(final int polygon) {
+        int low = 0;
+        int high = polygonBases.length - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (polygonBases[middle] <= polygon) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
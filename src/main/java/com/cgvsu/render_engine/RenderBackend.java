@@ -0,0 +1,16 @@
+package com.cgvsu.render_engine;
+
+/**
+ * Способ вывода кадра на экран. Переключается во время работы из меню View,
+ * чтобы можно было сравнить скорость на одной и той же модели.
+ */
+public enum RenderBackend {
+    /**
+     * Каждая линия - отдельная команда {@link javafx.scene.canvas.GraphicsContext}.
+     */
+    CANVAS,
+    /**
+     * Программная растеризация в {@link FrameBuffer} и одна выгрузка пикселей за кадр.
+     */
+    SOFTWARE
+}
@@ -1,12 +1,20 @@
 package com.cgvsu.render_engine;
 
-import java.util.ArrayList;
-
-import com.cgvsu.math.Vector3f;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import javax.vecmath.*;
+import com.cgvsu.model.BoundingBox;
+import com.cgvsu.model.EdgeList;
+import com.cgvsu.model.LodChain;
 import com.cgvsu.model.Model;
+import com.cgvsu.model.TriangleBvh;
+import com.cgvsu.model.TriangleList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+
 import static com.cgvsu.render_engine.GraphicConveyor.*;
 
 public class RenderEngine {
@@ -21,56 +29,706 @@ public class RenderEngine {
             final float rotationY,
             final int selectedPolygonIndex,
             final javafx.scene.paint.Color defaultColor)
+    {
+        render(graphicsContext, camera, mesh, width, height, rotationX, rotationY, selectedPolygonIndex, defaultColor,
+                new ScreenVertexBuffer());
+    }
+
+    /**
+     * Отрисовка с переиспользуемым буфером экранных координат.
+     * Все вершины модели проецируются один раз за кадр в screenVertices,
+     * а уникальные рёбра модели рисуются уже по готовым экранным координатам,
+     * поэтому на каждую вершину и на каждый полигон ничего не создаётся.
+     * <p>
+     * Модель, чей ограничивающий параллелепипед целиком вне пирамиды видимости, не проецируется
+     * вовсе. Рёбра, лежащие целиком за одной из её плоскостей, не попадают в путь, а рёбра,
+     * пересекающие ближнюю плоскость, обрезаются по ней (см. {@link FrustumClipper}).
+     */
+    public static void render(
+            final GraphicsContext graphicsContext,
+            final Camera camera,
+            final Model mesh,
+            final int width,
+            final int height,
+            final float rotationX,
+            final float rotationY,
+            final int selectedPolygonIndex,
+            final javafx.scene.paint.Color defaultColor,
+            final ScreenVertexBuffer screenVertices)
+    {
+        Matrix4f modelViewProjectionMatrix = createModelViewProjectionMatrix(camera, rotationX, rotationY);
+        if (FrustumClipper.isOutside(mesh.getBounds(), modelViewProjectionMatrix)) {
+            return;
+        }
+        screenVertices.project(mesh.vertices, modelViewProjectionMatrix, width, height);
+
+        // Каждое ребро рисуется один раз, все рёбра одного цвета - одним путём
+        // вместо отдельного strokeLine на каждую сторону каждого полигона
+        graphicsContext.setStroke(defaultColor);
+        graphicsContext.setLineWidth(1.0);
+        graphicsContext.beginPath();
+        appendEdges(graphicsContext, mesh.getEdges(), screenVertices, width, height);
+        graphicsContext.stroke();
+
+        // Выделенный полигон рисуется другим цветом поверх остальных
+        strokePolygonOutline(graphicsContext, mesh, selectedPolygonIndex, screenVertices, Color.RED, 3.0);
+    }
+
+    /**
+     * Добавляет к текущему пути graphicsContext видимые рёбра по уже спроецированным вершинам.
+     */
+    private static void appendEdges(
+            final GraphicsContext graphicsContext,
+            final EdgeList edges,
+            final ScreenVertexBuffer screenVertices,
+            final int width,
+            final int height)
+    {
+        final float[] screenX = screenVertices.getScreenX();
+        final float[] screenY = screenVertices.getScreenY();
+        final float[] depth = screenVertices.getDepth();
+        // Создаётся, только если какое-то ребро придётся обрезать
+        FrustumClipper clipper = null;
+
+        final int[] edgeVertexIndices = edges.vertexIndices();
+        final int nEdges = edges.size();
+        for (int edgeInd = 0; edgeInd < nEdges; ++edgeInd) {
+            final int start = edgeVertexIndices[edgeInd * 2];
+            final int end = edgeVertexIndices[edgeInd * 2 + 1];
+            final int startCode = FrustumClipper.outcode(screenX[start], screenY[start], depth[start], width, height);
+            final int endCode = FrustumClipper.outcode(screenX[end], screenY[end], depth[end], width, height);
+            if ((startCode & endCode) != 0) {
+                continue;
+            }
+            if (((startCode | endCode) & FrustumClipper.NEAR) != 0) {
+                if (clipper == null) {
+                    clipper = new FrustumClipper();
+                }
+                if (clipper.clipSegment(screenVertices, start, end)) {
+                    graphicsContext.moveTo(clipper.getScreenX(0), clipper.getScreenY(0));
+                    graphicsContext.lineTo(clipper.getScreenX(1), clipper.getScreenY(1));
+                }
+                continue;
+            }
+            graphicsContext.moveTo(screenX[start], screenY[start]);
+            graphicsContext.lineTo(screenX[end], screenY[end]);
+        }
+    }
+
+    /**
+     * Обводит один полигон поверх уже нарисованного кадра, например полигон под курсором.
+     * Вершины проецируются той же камерой и поворотом, что и при отрисовке кадра,
+     * поэтому сразу после {@link #render} повторного проецирования не будет.
+     */
+    public static void drawPolygonOutline(
+            final GraphicsContext graphicsContext,
+            final Camera camera,
+            final Model mesh,
+            final int width,
+            final int height,
+            final float rotationX,
+            final float rotationY,
+            final int polygonIndex,
+            final ScreenVertexBuffer screenVertices,
+            final Color color,
+            final double lineWidth)
+    {
+        if (polygonIndex < 0 || polygonIndex >= mesh.polygons.size()) {
+            return;
+        }
+        Matrix4f modelViewProjectionMatrix = createModelViewProjectionMatrix(camera, rotationX, rotationY);
+        screenVertices.project(mesh.vertices, modelViewProjectionMatrix, width, height);
+        strokePolygonOutline(graphicsContext, mesh, polygonIndex, screenVertices, color, lineWidth);
+    }
+
+    public static void drawPolygonOutline(
+            final FrameBuffer frameBuffer,
+            final Camera camera,
+            final Model mesh,
+            final float rotationX,
+            final float rotationY,
+            final int polygonIndex,
+            final ScreenVertexBuffer screenVertices,
+            final Color color,
+            final int thickness)
+    {
+        if (polygonIndex < 0 || polygonIndex >= mesh.polygons.size()) {
+            return;
+        }
+        Matrix4f modelViewProjectionMatrix = createModelViewProjectionMatrix(camera, rotationX, rotationY);
+        screenVertices.project(mesh.vertices, modelViewProjectionMatrix, frameBuffer.getWidth(), frameBuffer.getHeight());
+        strokePolygonOutline(frameBuffer, mesh, polygonIndex, screenVertices, FrameBuffer.toArgb(color), thickness);
+    }
+
+    private static void strokePolygonOutline(
+            final GraphicsContext graphicsContext,
+            final Model mesh,
+            final int polygonIndex,
+            final ScreenVertexBuffer screenVertices,
+            final Color color,
+            final double lineWidth)
+    {
+        if (polygonIndex < 0 || polygonIndex >= mesh.polygons.size()) {
+            return;
+        }
+        final int start = mesh.polygons.getOffset(polygonIndex);
+        final int end = mesh.polygons.getOffset(polygonIndex + 1);
+        final int[] polygonVertexIndices = mesh.polygons.vertexIndices();
+        final FrustumClipper clipper = new FrustumClipper();
+
+        graphicsContext.setStroke(color);
+        graphicsContext.setLineWidth(lineWidth);
+        graphicsContext.beginPath();
+        for (int i = start; i < end; ++i) {
+            final int current = polygonVertexIndices[i];
+            final int next = polygonVertexIndices[i + 1 < end ? i + 1 : start];
+            if (clipper.clipSegment(screenVertices, current, next)) {
+                graphicsContext.moveTo(clipper.getScreenX(0), clipper.getScreenY(0));
+                graphicsContext.lineTo(clipper.getScreenX(1), clipper.getScreenY(1));
+            }
+        }
+        graphicsContext.stroke();
+    }
+
+    public static void render(
+            final FrameBuffer frameBuffer,
+            final Camera camera,
+            final Model mesh,
+            final float rotationX,
+            final float rotationY,
+            final int selectedPolygonIndex,
+            final javafx.scene.paint.Color defaultColor,
+            final ScreenVertexBuffer screenVertices)
+    {
+        render(frameBuffer, camera, mesh, rotationX, rotationY, selectedPolygonIndex, defaultColor, screenVertices,
+                new TiledRasterizer());
+    }
+
+    /**
+     * Программная отрисовка каркаса в frameBuffer.
+     * Рёбра те же, что и при отрисовке через GraphicsContext, но растеризуются
+     * прямо в массив пикселей, параллельно по плиткам кадра; на экран кадр
+     * отправляется вызывающим кодом через {@link FrameBuffer#present}.
+     */
+    public static void render(
+            final FrameBuffer frameBuffer,
+            final Camera camera,
+            final Model mesh,
+            final float rotationX,
+            final float rotationY,
+            final int selectedPolygonIndex,
+            final javafx.scene.paint.Color defaultColor,
+            final ScreenVertexBuffer screenVertices,
+            final TiledRasterizer rasterizer)
+    {
+        Matrix4f modelViewProjectionMatrix = createModelViewProjectionMatrix(camera, rotationX, rotationY);
+        if (FrustumClipper.isOutside(mesh.getBounds(), modelViewProjectionMatrix)) {
+            return;
+        }
+        screenVertices.project(mesh.vertices, modelViewProjectionMatrix, frameBuffer.getWidth(), frameBuffer.getHeight());
+
+        rasterizer.drawEdges(frameBuffer, screenVertices, mesh.getEdges(), FrameBuffer.toArgb(defaultColor));
+
+        strokePolygonOutline(frameBuffer, mesh, selectedPolygonIndex, screenVertices, FrameBuffer.toArgb(Color.RED), 3);
+    }
+
+    public static void renderFilled(
+            final FrameBuffer frameBuffer,
+            final Camera camera,
+            final Model mesh,
+            final float rotationX,
+            final float rotationY,
+            final int selectedPolygonIndex,
+            final javafx.scene.paint.Color fillColor,
+            final ScreenVertexBuffer screenVertices)
+    {
+        renderFilled(frameBuffer, camera, mesh, rotationX, rotationY, selectedPolygonIndex, fillColor, screenVertices,
+                new TiledRasterizer());
+    }
+
+    /**
+     * Программная отрисовка закрашенных полигонов с буфером глубины.
+     * <p>
+     * Полигоны разбиваются на треугольники ({@link Model#getTriangles()}), нелицевые
+     * треугольники отбрасываются по знаку площади на экране, остальные закрашиваются
+     * с проверкой глубины (см. {@link TiledRasterizer#fillTriangles}). Глубина берётся
+     * из z после перспективного деления, которое уже посчитано при проецировании вершин.
+     * Треугольники вне пирамиды видимости отбрасываются, а пересекающие ближнюю плоскость
+     * обрезаются по ней, так что приближение камеры вплотную к модели не даёт дыр и мусора.
+     * Каждый треугольник закрашивается одним цветом, яркость зависит от угла между
+     * гранью и направлением взгляда камеры.
+     */
+    public static void renderFilled(
+            final FrameBuffer frameBuffer,
+            final Camera camera,
+            final Model mesh,
+            final float rotationX,
+            final float rotationY,
+            final int selectedPolygonIndex,
+            final javafx.scene.paint.Color fillColor,
+            final ScreenVertexBuffer screenVertices,
+            final TiledRasterizer rasterizer)
     {
         Matrix4f modelMatrix = createModelMatrix(rotationX, rotationY);
-        Matrix4f viewMatrix = camera.getViewMatrix();
-        Matrix4f projectionMatrix = camera.getProjectionMatrix();
+        Matrix4f modelViewProjectionMatrix = createModelViewProjectionMatrix(camera, rotationX, rotationY);
+        if (FrustumClipper.isOutside(mesh.getBounds(), modelViewProjectionMatrix)) {
+            return;
+        }
+        screenVertices.project(mesh.vertices, modelViewProjectionMatrix, frameBuffer.getWidth(), frameBuffer.getHeight());
 
-        Matrix4f modelViewProjectionMatrix = new Matrix4f(modelMatrix);
-        modelViewProjectionMatrix.mul(viewMatrix);
-        modelViewProjectionMatrix.mul(projectionMatrix);
+        rasterizer.fillTriangles(frameBuffer, screenVertices, mesh.getTriangles(),
+                createFaceShader(mesh, modelMatrix, getViewDirection(camera), fillColor));
+
+        // Выделенный полигон обводится поверх закрашенной модели
+        strokePolygonOutline(frameBuffer, mesh, selectedPolygonIndex, screenVertices, FrameBuffer.toArgb(Color.RED), 3);
+    }
+
+    /**
+     * Цвет треугольника модели по его номеру: fillColor с яркостью по углу между гранью
+     * и направлением взгляда view (в мировых координатах).
+     */
+    private static IntUnaryOperator createFaceShader(
+            final Model mesh,
+            final Matrix4f modelMatrix,
+            final Vector3f view,
+            final Color fillColor)
+    {
+        final float[] coordinates = mesh.vertices.coordinates();
+        final int[] triangleVertexIndices = mesh.getTriangles().vertexIndices();
+
+        // Направление взгляда в координатах модели: модель только вращается и переносится,
+        // поэтому для направления обратное преобразование - транспонированная матрица вращения
+        final float lightX = modelMatrix.m00 * view.x + modelMatrix.m01 * view.y + modelMatrix.m02 * view.z;
+        final float lightY = modelMatrix.m10 * view.x + modelMatrix.m11 * view.y + modelMatrix.m12 * view.z;
+        final float lightZ = modelMatrix.m20 * view.x + modelMatrix.m21 * view.y + modelMatrix.m22 * view.z;
+
+        final float red = (float) fillColor.getRed();
+        final float green = (float) fillColor.getGreen();
+        final float blue = (float) fillColor.getBlue();
 
-        final int nPolygons = mesh.polygons.size();
-        for (int polygonInd = 0; polygonInd < nPolygons; ++polygonInd) {
-            final int nVerticesInPolygon = mesh.polygons.get(polygonInd).getVertexIndices().size();
+        return triangleInd -> {
+            final float intensity = faceIntensity(coordinates,
+                    triangleVertexIndices[triangleInd * 3],
+                    triangleVertexIndices[triangleInd * 3 + 1],
+                    triangleVertexIndices[triangleInd * 3 + 2],
+                    lightX, lightY, lightZ);
+            return 0xFF000000
+                    | (Math.round(red * intensity * 255) << 16)
+                    | (Math.round(green * intensity * 255) << 8)
+                    | Math.round(blue * intensity * 255);
+        };
+    }
 
-            ArrayList<Point2f> resultPoints = new ArrayList<>();
-            for (int vertexInPolygonInd = 0; vertexInPolygonInd < nVerticesInPolygon; ++vertexInPolygonInd) {
-                Vector3f vertex = mesh.vertices.get(mesh.polygons.get(polygonInd).getVertexIndices().get(vertexInPolygonInd));
+    private static Vector3f getViewDirection(final Camera camera) {
+        Vector3f view = new Vector3f();
+        view.sub(camera.getTarget(), camera.getPosition());
+        view.normalize();
+        return view;
+    }
 
-                javax.vecmath.Vector3f vertexVecmath = new javax.vecmath.Vector3f(vertex.x, vertex.y, vertex.z);
+    /**
+     * Обводит полигон поверх уже нарисованного кадра.
+     */
+    private static void strokePolygonOutline(
+            final FrameBuffer frameBuffer,
+            final Model mesh,
+            final int polygonIndex,
+            final ScreenVertexBuffer screenVertices,
+            final int argb,
+            final int thickness)
+    {
+        if (polygonIndex < 0 || polygonIndex >= mesh.polygons.size()) {
+            return;
+        }
 
-                Point2f resultPoint = vertexToPoint(multiplyMatrix4ByVector3(modelViewProjectionMatrix, vertexVecmath), width, height);
-                resultPoints.add(resultPoint);
+        final int start = mesh.polygons.getOffset(polygonIndex);
+        final int end = mesh.polygons.getOffset(polygonIndex + 1);
+        final int[] polygonVertexIndices = mesh.polygons.vertexIndices();
+        final FrustumClipper clipper = new FrustumClipper();
+
+        for (int i = start; i < end; ++i) {
+            final int current = polygonVertexIndices[i];
+            final int next = polygonVertexIndices[i + 1 < end ? i + 1 : start];
+            if (clipper.clipSegment(screenVertices, current, next)) {
+                frameBuffer.drawLine(clipper.getScreenX(0), clipper.getScreenY(0),
+                        clipper.getScreenX(1), clipper.getScreenY(1), argb, thickness);
             }
+        }
+    }
 
-            // Выделение выбранного полигона другим цветом
-            if (polygonInd == selectedPolygonIndex) {
-                graphicsContext.setStroke(Color.RED);
-                graphicsContext.setLineWidth(3.0);
-            } else {
-                graphicsContext.setStroke(defaultColor);
-                graphicsContext.setLineWidth(1.0);
+    /**
+     * Буфер номеров полигонов для выбора мышью: в каждый пиксель idBuffer вместо цвета
+     * записывается номер видимого в нём полигона плюс один (0 - фон). Растеризация та же,
+     * что и у {@link #renderFilled}: те же треугольники, отбрасывание нелицевых граней,
+     * отсечение и проверка глубины, так что в пикселе оказывается ровно тот полигон,
+     * который видно на закрашенной модели.
+     */
+    public static void renderPolygonIds(
+            final FrameBuffer idBuffer,
+            final Camera camera,
+            final Model mesh,
+            final float rotationX,
+            final float rotationY,
+            final ScreenVertexBuffer screenVertices,
+            final TiledRasterizer rasterizer)
+    {
+        idBuffer.clear(0);
+        Matrix4f modelViewProjectionMatrix = createModelViewProjectionMatrix(camera, rotationX, rotationY);
+        if (FrustumClipper.isOutside(mesh.getBounds(), modelViewProjectionMatrix)) {
+            return;
+        }
+        screenVertices.project(mesh.vertices, modelViewProjectionMatrix, idBuffer.getWidth(), idBuffer.getHeight());
+
+        final TriangleList triangles = mesh.getTriangles();
+        final int[] polygonIndices = triangles.polygonIndices();
+        rasterizer.fillTriangles(idBuffer, screenVertices, triangles, triangleInd -> polygonIndices[triangleInd] + 1);
+    }
+
+    /**
+     * Отрисовка всей сцены в frameBuffer: каркас или (filled) закрашенные полигоны.
+     * <p>
+     * Вид и проекция камеры перемножаются один раз за кадр, для каждого объекта к ним
+     * домножается только его матрица модели. Скрытые объекты и объекты, чей ограничивающий
+     * параллелепипед целиком вне пирамиды видимости, пропускаются. Остальные проецируются
+     * параллельно, каждый в свой буфер экранных координат, а их примитивы растеризуются
+     * вместе, одним проходом по плиткам кадра. Так время кадра зависит от того, сколько
+     * геометрии видно, а не от того, сколько моделей загружено.
+     *
+     * @param selectedObject объект, в котором выделен полигон selectedPolygonIndex, или null
+     * @return число нарисованных объектов
+     */
+    public static int renderScene(
+            final FrameBuffer frameBuffer,
+            final Camera camera,
+            final List<SceneObject> objects,
+            final SceneObject selectedObject,
+            final int selectedPolygonIndex,
+            final Color color,
+            final boolean filled,
+            final TiledRasterizer rasterizer)
+    {
+        return renderScene(frameBuffer, camera, objects, selectedObject, selectedPolygonIndex, color, filled,
+                rasterizer, false);
+    }
+
+    /**
+     * То же, но если useLevelsOfDetail, объекты с построенной цепочкой {@link LodChain}
+     * рисуются уровнем, который выбирается по радиусу их ограничивающей сферы на экране.
+     * Выделенный полигон обводится, только если его объект нарисован полностью: номера
+     * полигонов упрощённых уровней с исходными не совпадают.
+     */
+    public static int renderScene(
+            final FrameBuffer frameBuffer,
+            final Camera camera,
+            final List<SceneObject> objects,
+            final SceneObject selectedObject,
+            final int selectedPolygonIndex,
+            final Color color,
+            final boolean filled,
+            final TiledRasterizer rasterizer,
+            final boolean useLevelsOfDetail)
+    {
+        final List<SceneObject> visible = projectVisibleObjects(camera, objects,
+                frameBuffer.getWidth(), frameBuffer.getHeight(), rasterizer.getPool(), useLevelsOfDetail);
+        final int count = visible.size();
+        final ScreenVertexBuffer[] screenVertices = new ScreenVertexBuffer[count];
+        for (int i = 0; i < count; ++i) {
+            screenVertices[i] = visible.get(i).drawnScreenVertices;
+        }
+
+        if (filled) {
+            final Vector3f view = getViewDirection(camera);
+            final TriangleList[] triangles = new TriangleList[count];
+            final IntUnaryOperator[] shaders = new IntUnaryOperator[count];
+            for (int i = 0; i < count; ++i) {
+                final SceneObject object = visible.get(i);
+                triangles[i] = object.drawnModel.getTriangles();
+                shaders[i] = createFaceShader(object.drawnModel, object.modelMatrix(), view, color);
+            }
+            rasterizer.fillTriangles(frameBuffer, screenVertices, triangles, shaders, count);
+        } else {
+            final EdgeList[] edges = new EdgeList[count];
+            final int[] colors = new int[count];
+            for (int i = 0; i < count; ++i) {
+                edges[i] = visible.get(i).drawnModel.getEdges();
+                colors[i] = FrameBuffer.toArgb(color);
             }
+            rasterizer.drawEdges(frameBuffer, screenVertices, edges, colors, count);
+        }
+
+        if (selectedObject != null && selectedObject.drawnLevel == 0 && visible.contains(selectedObject)) {
+            strokePolygonOutline(frameBuffer, selectedObject.getModel(), selectedPolygonIndex,
+                    selectedObject.screenVertices, FrameBuffer.toArgb(Color.RED), 3);
+        }
+        return count;
+    }
+
+    /**
+     * Каркас всей сцены через GraphicsContext: видимые объекты отбираются и проецируются
+     * так же, как в {@link #renderScene(FrameBuffer, Camera, List, SceneObject, int, Color, boolean, TiledRasterizer)},
+     * а рёбра всех объектов рисуются одним путём.
+     *
+     * @return число нарисованных объектов
+     */
+    public static int renderScene(
+            final GraphicsContext graphicsContext,
+            final Camera camera,
+            final List<SceneObject> objects,
+            final int width,
+            final int height,
+            final SceneObject selectedObject,
+            final int selectedPolygonIndex,
+            final Color color)
+    {
+        return renderScene(graphicsContext, camera, objects, width, height, selectedObject, selectedPolygonIndex,
+                color, false);
+    }
 
-            for (int vertexInPolygonInd = 1; vertexInPolygonInd < nVerticesInPolygon; ++vertexInPolygonInd) {
-                graphicsContext.strokeLine(
-                        resultPoints.get(vertexInPolygonInd - 1).x,
-                        resultPoints.get(vertexInPolygonInd - 1).y,
-                        resultPoints.get(vertexInPolygonInd).x,
-                        resultPoints.get(vertexInPolygonInd).y);
+    public static int renderScene(
+            final GraphicsContext graphicsContext,
+            final Camera camera,
+            final List<SceneObject> objects,
+            final int width,
+            final int height,
+            final SceneObject selectedObject,
+            final int selectedPolygonIndex,
+            final Color color,
+            final boolean useLevelsOfDetail)
+    {
+        final List<SceneObject> visible = projectVisibleObjects(camera, objects, width, height,
+                ForkJoinPool.commonPool(), useLevelsOfDetail);
+
+        graphicsContext.setStroke(color);
+        graphicsContext.setLineWidth(1.0);
+        graphicsContext.beginPath();
+        for (SceneObject object : visible) {
+            appendEdges(graphicsContext, object.drawnModel.getEdges(), object.drawnScreenVertices, width, height);
+        }
+        graphicsContext.stroke();
+
+        if (selectedObject != null && selectedObject.drawnLevel == 0 && visible.contains(selectedObject)) {
+            strokePolygonOutline(graphicsContext, selectedObject.getModel(), selectedPolygonIndex,
+                    selectedObject.screenVertices, Color.RED, 3.0);
+        }
+        return visible.size();
+    }
+
+    /**
+     * Обводит полигон объекта сцены поверх уже нарисованного кадра. Сразу после
+     * {@link #renderScene} вершины объекта повторно не проецируются. Если в кадре объект
+     * нарисован упрощённым уровнем, обводка не рисуется: для неё пришлось бы проецировать
+     * всю полную модель.
+     */
+    public static void drawPolygonOutline(
+            final FrameBuffer frameBuffer,
+            final Camera camera,
+            final SceneObject object,
+            final int polygonIndex,
+            final Color color,
+            final int thickness)
+    {
+        final Model mesh = object.getModel();
+        if (polygonIndex < 0 || polygonIndex >= mesh.polygons.size() || object.drawnLevel > 0) {
+            return;
+        }
+        object.modelViewProjectionMatrix.mul(object.modelMatrix(), createViewProjectionMatrix(camera));
+        object.screenVertices.project(mesh.vertices, object.modelViewProjectionMatrix,
+                frameBuffer.getWidth(), frameBuffer.getHeight());
+        strokePolygonOutline(frameBuffer, mesh, polygonIndex, object.screenVertices, FrameBuffer.toArgb(color), thickness);
+    }
+
+    public static void drawPolygonOutline(
+            final GraphicsContext graphicsContext,
+            final Camera camera,
+            final SceneObject object,
+            final int width,
+            final int height,
+            final int polygonIndex,
+            final Color color,
+            final double lineWidth)
+    {
+        final Model mesh = object.getModel();
+        if (polygonIndex < 0 || polygonIndex >= mesh.polygons.size() || object.drawnLevel > 0) {
+            return;
+        }
+        object.modelViewProjectionMatrix.mul(object.modelMatrix(), createViewProjectionMatrix(camera));
+        object.screenVertices.project(mesh.vertices, object.modelViewProjectionMatrix, width, height);
+        strokePolygonOutline(graphicsContext, mesh, polygonIndex, object.screenVertices, color, lineWidth);
+    }
+
+    /**
+     * Буфер номеров полигонов всей сцены: в пиксель пишется polygonBases[k] + номер полигона + 1,
+     * где k - номер объекта в objects (0 - фон). Растеризация та же, что у закрашенной
+     * {@link #renderScene}, так что в пикселе оказывается видимый полигон видимого объекта.
+     */
+    public static void renderScenePolygonIds(
+            final FrameBuffer idBuffer,
+            final Camera camera,
+            final List<SceneObject> objects,
+            final int[] polygonBases,
+            final TiledRasterizer rasterizer)
+    {
+        renderScenePolygonIds(idBuffer, camera, objects, polygonBases, rasterizer, true);
+    }
+
+    /**
+     * То же; при cullBackFaces = false в буфер попадают и нелицевые полигоны. Так выбирают
+     * полигоны в каркасном режиме: там видны и задние грани, и щелчок по задней грани,
+     * ничем не закрытой, должен выбирать её. Из нескольких полигонов под точкой
+     * по-прежнему выбирается ближайший.
+     */
+    public static void renderScenePolygonIds(
+            final FrameBuffer idBuffer,
+            final Camera camera,
+            final List<SceneObject> objects,
+            final int[] polygonBases,
+            final TiledRasterizer rasterizer,
+            final boolean cullBackFaces)
+    {
+        idBuffer.clear(0);
+        final List<SceneObject> visible = projectVisibleObjects(camera, objects,
+                idBuffer.getWidth(), idBuffer.getHeight(), rasterizer.getPool(), false);
+        final int count = visible.size();
+        final ScreenVertexBuffer[] screenVertices = new ScreenVertexBuffer[count];
+        final TriangleList[] triangles = new TriangleList[count];
+        final IntUnaryOperator[] shaders = new IntUnaryOperator[count];
+        // Видимые объекты идут в том же порядке, что и в objects
+        int objectInd = 0;
+        for (int i = 0; i < count; ++i) {
+            final SceneObject object = visible.get(i);
+            while (objects.get(objectInd) != object) {
+                ++objectInd;
+            }
+            final int base = polygonBases[objectInd] + 1;
+            final int[] polygonIndices = object.getModel().getTriangles().polygonIndices();
+            screenVertices[i] = object.screenVertices;
+            triangles[i] = object.getModel().getTriangles();
+            shaders[i] = triangleInd -> base + polygonIndices[triangleInd];
+        }
+        rasterizer.fillTriangles(idBuffer, screenVertices, triangles, shaders, count, cullBackFaces);
+    }
+
+    /**
+     * Считает матрицы модель-вид-проекция видимых объектов, отбрасывает объекты вне пирамиды
+     * видимости и параллельно проецирует вершины остальных: полной модели или, если
+     * useLevelsOfDetail, уровня детализации по размеру объекта на экране.
+     *
+     * @return объекты, которые надо рисовать, в порядке objects
+     */
+    private static List<SceneObject> projectVisibleObjects(
+            final Camera camera,
+            final List<SceneObject> objects,
+            final int width,
+            final int height,
+            final ForkJoinPool pool,
+            final boolean useLevelsOfDetail)
+    {
+        final Matrix4f viewProjectionMatrix = createViewProjectionMatrix(camera);
+        final List<SceneObject> visible = new ArrayList<>();
+        for (SceneObject object : objects) {
+            if (!object.isVisible()) {
+                continue;
+            }
+            object.modelViewProjectionMatrix.mul(object.modelMatrix(), viewProjectionMatrix);
+            if (!FrustumClipper.isOutside(object.getModel().getBounds(), object.modelViewProjectionMatrix)) {
+                visible.add(object);
+                selectLevelOfDetail(object, useLevelsOfDetail, height);
+            }
+        }
+        TiledRasterizer.runParallel(pool, visible.size(), i -> {
+            final SceneObject object = visible.get(i);
+            object.drawnScreenVertices.project(object.drawnModel.vertices, object.modelViewProjectionMatrix,
+                    width, height);
+        });
+        return visible;
+    }
+
+    /**
+     * Выбирает, какой моделью рисовать объект в этом кадре. Радиус ограничивающей сферы
+     * на экране: радиус в мире, умноженный на масштаб проекции по y (длина второго столбца
+     * матрицы модель-вид-проекция - модель и вид только вращают и переносят) и делённый
+     * на глубину центра w. Если камера внутри сферы, рисуется полная модель.
+     */
+    private static void selectLevelOfDetail(final SceneObject object, final boolean useLevelsOfDetail, final int height) {
+        final Model model = object.getModel();
+        final LodChain levels = object.getLevelsOfDetail();
+        int level = 0;
+        if (useLevelsOfDetail && levels != null && levels.isValidFor(model)) {
+            final Matrix4f matrix = object.modelViewProjectionMatrix;
+            final BoundingBox bounds = model.getBounds();
+            final float radius = bounds.getRadius();
+            final float w = bounds.getCenterX() * matrix.m03 + bounds.getCenterY() * matrix.m13
+                    + bounds.getCenterZ() * matrix.m23 + matrix.m33;
+            if (w > radius) {
+                final double scaleY = Math.sqrt(matrix.m01 * matrix.m01 + matrix.m11 * matrix.m11 + matrix.m21 * matrix.m21);
+                level = levels.selectLevel(radius * scaleY / w * height);
             }
+        }
+        object.drawnLevel = level;
+        if (level == 0) {
+            object.drawnModel = model;
+            object.drawnScreenVertices = object.screenVertices;
+        } else {
+            object.drawnModel = levels.getLevel(level);
+            object.drawnScreenVertices = object.lodScreenVertices;
+        }
+    }
 
-            if (nVerticesInPolygon > 0)
-                graphicsContext.strokeLine(
-                        resultPoints.get(nVerticesInPolygon - 1).x,
-                        resultPoints.get(nVerticesInPolygon - 1).y,
-                        resultPoints.get(0).x,
-                        resultPoints.get(0).y);
+    /**
+     * Яркость грани: 0.2 для граней, видимых с ребра, до 1 для граней, повёрнутых к камере.
+     */
+    private static float faceIntensity(
+            final float[] coordinates,
+            final int i0,
+            final int i1,
+            final int i2,
+            final float lightX,
+            final float lightY,
+            final float lightZ)
+    {
+        final float ax = coordinates[i1 * 3] - coordinates[i0 * 3];
+        final float ay = coordinates[i1 * 3 + 1] - coordinates[i0 * 3 + 1];
+        final float az = coordinates[i1 * 3 + 2] - coordinates[i0 * 3 + 2];
+        final float bx = coordinates[i2 * 3] - coordinates[i0 * 3];
+        final float by = coordinates[i2 * 3 + 1] - coordinates[i0 * 3 + 1];
+        final float bz = coordinates[i2 * 3 + 2] - coordinates[i0 * 3 + 2];
+
+        final float nx = ay * bz - az * by;
+        final float ny = az * bx - ax * bz;
+        final float nz = ax * by - ay * bx;
+        final float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length == 0) {
+            return 0.2f;
         }
+        final float cos = Math.abs(nx * lightX + ny * lightY + nz * lightZ) / length;
+        return 0.2f + 0.8f * Math.min(cos, 1);
     }
 
-    private static Matrix4f createModelMatrix(float rotationX, float rotationY) {
+    private static Matrix4f createModelViewProjectionMatrix(
+            final Camera camera,
+            final float rotationX,
+            final float rotationY)
+    {
+        Matrix4f modelMatrix = createModelMatrix(rotationX, rotationY);
+        Matrix4f viewMatrix = camera.getViewMatrix();
+        Matrix4f projectionMatrix = camera.getProjectionMatrix();
+
+        Matrix4f modelViewProjectionMatrix = new Matrix4f(modelMatrix);
+        modelViewProjectionMatrix.mul(viewMatrix);
+        modelViewProjectionMatrix.mul(projectionMatrix);
+        return modelViewProjectionMatrix;
+    }
+
+    /**
+     * Вид и проекция камеры, общие для всех объектов сцены.
+     */
+    private static Matrix4f createViewProjectionMatrix(final Camera camera) {
+        Matrix4f viewProjectionMatrix = camera.getViewMatrix();
+        viewProjectionMatrix.mul(camera.getProjectionMatrix());
+        return viewProjectionMatrix;
+    }
+
+    static Matrix4f createModelMatrix(float rotationX, float rotationY) {
         // Матрица вращения вокруг оси X
         Matrix4f rotX = new Matrix4f();
         rotX.setIdentity();
@@ -99,6 +757,13 @@ public class RenderEngine {
 
     /**
      * Находит полигон под указанной точкой на экране
+     * <p>
+     * Через точку экрана проводится луч от ближней плоскости камеры вглубь сцены
+     * (обратным преобразованием модель-вид-проекция), и ищется ближайший треугольник модели
+     * на этом луче по дереву {@link Model#getBvh()}. Поиск занимает примерно логарифмическое
+     * от числа полигонов время и возвращает видимый полигон, а не первый по номеру.
+     *
+     * @return номер полигона или -1, если под точкой ничего нет
      */
     public static int findPolygonAtPoint(
             final Camera camera,
@@ -110,75 +775,29 @@ public class RenderEngine {
             final double screenX,
             final double screenY)
     {
-        Matrix4f modelMatrix = createModelMatrix(rotationX, rotationY);
-        Matrix4f viewMatrix = camera.getViewMatrix();
-        Matrix4f projectionMatrix = camera.getProjectionMatrix();
+        Matrix4f inverseMatrix = createModelViewProjectionMatrix(camera, rotationX, rotationY);
+        inverseMatrix.invert();
 
-        Matrix4f modelViewProjectionMatrix = new Matrix4f(modelMatrix);
-        modelViewProjectionMatrix.mul(viewMatrix);
-        modelViewProjectionMatrix.mul(projectionMatrix);
+        // Координаты точки до перспективного деления, обратные vertexToPoint
+        final float x = (float) ((screenX - width / 2.0) / width);
+        final float y = (float) (-(screenY - height / 2.0) / height);
+        final Vector3f near = unproject(inverseMatrix, x, y, -1);
+        final Vector3f far = unproject(inverseMatrix, x, y, 1);
 
-        final double threshold = 10.0; // Радиус поиска в пикселях
-
-        for (int polygonInd = 0; polygonInd < mesh.polygons.size(); ++polygonInd) {
-            final int nVerticesInPolygon = mesh.polygons.get(polygonInd).getVertexIndices().size();
-            
-            ArrayList<Point2f> resultPoints = new ArrayList<>();
-            for (int vertexInPolygonInd = 0; vertexInPolygonInd < nVerticesInPolygon; ++vertexInPolygonInd) {
-                Vector3f vertex = mesh.vertices.get(mesh.polygons.get(polygonInd).getVertexIndices().get(vertexInPolygonInd));
-                javax.vecmath.Vector3f vertexVecmath = new javax.vecmath.Vector3f(vertex.x, vertex.y, vertex.z);
-                Point2f resultPoint = vertexToPoint(multiplyMatrix4ByVector3(modelViewProjectionMatrix, vertexVecmath), width, height);
-                resultPoints.add(resultPoint);
-            }
-
-            // Проверяем, находится ли точка внутри полигона или рядом с его границами
-            if (isPointNearPolygon(screenX, screenY, resultPoints, threshold)) {
-                return polygonInd;
-            }
-        }
-
-        return -1;
-    }
-
-    private static boolean isPointNearPolygon(double x, double y, ArrayList<Point2f> polygonPoints, double threshold) {
-        // Проверка близости к границам полигона
-        for (int i = 0; i < polygonPoints.size(); ++i) {
-            Point2f p1 = polygonPoints.get(i);
-            Point2f p2 = polygonPoints.get((i + 1) % polygonPoints.size());
-            
-            double dist = pointToLineDistance(x, y, p1.x, p1.y, p2.x, p2.y);
-            if (dist < threshold) {
-                return true;
-            }
-        }
-        return false;
+        final TriangleBvh bvh = mesh.getBvh();
+        final int triangleInd = bvh.raycast(near.x, near.y, near.z, far.x - near.x, far.y - near.y, far.z - near.z);
+        return triangleInd < 0 ? -1 : bvh.getTriangles().getPolygonIndex(triangleInd);
     }
 
-    private static double pointToLineDistance(double px, double py, double x1, double y1, double x2, double y2) {
-        double A = px - x1;
-        double B = py - y1;
-        double C = x2 - x1;
-        double D = y2 - y1;
-
-        double dot = A * C + B * D;
-        double lenSq = C * C + D * D;
-        double param = lenSq != 0 ? dot / lenSq : -1;
-
-        double xx, yy;
-
-        if (param < 0) {
-            xx = x1;
-            yy = y1;
-        } else if (param > 1) {
-            xx = x2;
-            yy = y2;
-        } else {
-            xx = x1 + param * C;
-            yy = y1 + param * D;
-        }
-
-        double dx = px - xx;
-        double dy = py - yy;
-        return Math.sqrt(dx * dx + dy * dy);
+    /**
+     * Точка в координатах модели, которая проецируется в (x, y, z) после перспективного деления.
+     */
+    private static Vector3f unproject(final Matrix4f inverseMatrix, final float x, final float y, final float z) {
+        final Matrix4f m = inverseMatrix;
+        final float resultX = (x * m.m00) + (y * m.m10) + (z * m.m20) + m.m30;
+        final float resultY = (x * m.m01) + (y * m.m11) + (z * m.m21) + m.m31;
+        final float resultZ = (x * m.m02) + (y * m.m12) + (z * m.m22) + m.m32;
+        final float w = (x * m.m03) + (y * m.m13) + (z * m.m23) + m.m33;
+        return new Vector3f(resultX / w, resultY / w, resultZ / w);
     }
-}
\ No newline at end of file
+}
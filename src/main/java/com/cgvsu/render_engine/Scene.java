@@ -0,0 +1,63 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Сцена: все загруженные модели, каждая со своим положением ({@link SceneObject}).
+ * Рисуется целиком за один кадр, см. {@link RenderEngine#renderScene}.
+ */
+public class Scene {
+
+    private final List<SceneObject> objects = new ArrayList<>();
+    private final List<SceneObject> unmodifiableObjects = Collections.unmodifiableList(objects);
+    private long modificationCount;
+
+    public SceneObject add(Model model) {
+        SceneObject object = new SceneObject(model);
+        objects.add(object);
+        ++modificationCount;
+        return object;
+    }
+
+    public SceneObject remove(int index) {
+        SceneObject object = objects.remove(index);
+        // Счётчики удалённого объекта остаются в сумме, чтобы общий счётчик только рос
+        modificationCount += 1 + object.getModificationCount() + object.getModel().getModificationCount();
+        return object;
+    }
+
+    public SceneObject get(int index) {
+        return objects.get(index);
+    }
+
+    public int size() {
+        return objects.size();
+    }
+
+    public boolean isEmpty() {
+        return objects.isEmpty();
+    }
+
+    /**
+     * Объекты сцены по порядку добавления (только для чтения).
+     */
+    public List<SceneObject> getObjects() {
+        return unmodifiableObjects;
+    }
+
+    /**
+     * Общий счётчик изменений: растёт при добавлении и удалении объектов, изменении
+     * их положения, видимости и самих моделей. По нему видно, что кадр пора перерисовать.
+     */
+    public long getModificationCount() {
+        long count = modificationCount;
+        for (SceneObject object : objects) {
+            count += object.getModificationCount() + object.getModel().getModificationCount();
+        }
+        return count;
+    }
+}
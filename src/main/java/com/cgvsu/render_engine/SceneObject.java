@@ -0,0 +1,156 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.LodChain;
+import com.cgvsu.model.Model;
+
+import javax.vecmath.Matrix4f;
+
+/**
+ * Модель в сцене вместе со своим положением.
+ * <p>
+ * Матрица модели - поворот (сначала вокруг X, затем вокруг Y, как и при отрисовке одной
+ * модели), затем перенос. Матрица пересчитывается, только если положение изменилось.
+ * <p>
+ * У каждого объекта свои экранные координаты вершин ({@link ScreenVertexBuffer}): объекты
+ * сцены проецируются параллельно, а объект, который не двигался, при движении соседнего
+ * заново не проецируется.
+ * <p>
+ * Для большой модели в фоне строится цепочка упрощённых уровней ({@link LodChain}); при
+ * отрисовке с уровнями детализации далёкий объект рисуется упрощённым, см.
+ * {@link RenderEngine#renderScene}.
+ */
+public class SceneObject {
+
+    private final Model model;
+    private float rotationX;
+    private float rotationY;
+    private float translationX;
+    private float translationY;
+    private float translationZ;
+    private boolean visible = true;
+    private int modificationCount;
+
+    private volatile LodChain levelsOfDetail;
+
+    private final Matrix4f modelMatrix = new Matrix4f();
+    private int modelMatrixModificationCount = -1;
+
+    // Заполняются при отрисовке сцены, см. RenderEngine
+    final ScreenVertexBuffer screenVertices = new ScreenVertexBuffer();
+    final Matrix4f modelViewProjectionMatrix = new Matrix4f();
+    // Упрощённый уровень проецируется в свой буфер, чтобы не сбивать кэш полной модели,
+    // по которой выбираются полигоны мышью
+    final ScreenVertexBuffer lodScreenVertices = new ScreenVertexBuffer();
+    Model drawnModel;
+    ScreenVertexBuffer drawnScreenVertices;
+    int drawnLevel;
+
+    public SceneObject(Model model) {
+        this.model = model;
+    }
+
+    public Model getModel() {
+        return model;
+    }
+
+    public float getRotationX() {
+        return rotationX;
+    }
+
+    public float getRotationY() {
+        return rotationY;
+    }
+
+    public void setRotation(float rotationX, float rotationY) {
+        this.rotationX = rotationX;
+        this.rotationY = rotationY;
+        ++modificationCount;
+    }
+
+    /**
+     * Поворачивает объект; наклон вокруг X ограничен четвертью оборота в каждую сторону.
+     */
+    public void rotate(float deltaX, float deltaY) {
+        final float limit = (float) (Math.PI / 2);
+        setRotation(Math.max(-limit, Math.min(limit, rotationX + deltaX)), rotationY + deltaY);
+    }
+
+    public void setTranslation(float x, float y, float z) {
+        translationX = x;
+        translationY = y;
+        translationZ = z;
+        ++modificationCount;
+    }
+
+    public float getTranslationX() {
+        return translationX;
+    }
+
+    public float getTranslationY() {
+        return translationY;
+    }
+
+    public float getTranslationZ() {
+        return translationZ;
+    }
+
+    /**
+     * Скрытые объекты не рисуются и не выбираются мышью.
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public void setVisible(boolean visible) {
+        if (this.visible != visible) {
+            this.visible = visible;
+            ++modificationCount;
+        }
+    }
+
+    /**
+     * Цепочка уровней детализации или null, если она ещё не построена. Цепочка,
+     * устаревшая после изменения модели ({@link LodChain#isValidFor}), не используется.
+     */
+    public LodChain getLevelsOfDetail() {
+        return levelsOfDetail;
+    }
+
+    public void setLevelsOfDetail(LodChain levelsOfDetail) {
+        this.levelsOfDetail = levelsOfDetail;
+    }
+
+    /**
+     * Уровень детализации, которым объект нарисован в последнем кадре (0 - полная модель).
+     */
+    public int getDrawnLevel() {
+        return drawnLevel;
+    }
+
+    /**
+     * Счётчик изменений положения и видимости объекта (изменения самой модели считает
+     * {@link Model#getModificationCount()}).
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Матрица модели (копия).
+     */
+    public Matrix4f getModelMatrix() {
+        return new Matrix4f(modelMatrix());
+    }
+
+    Matrix4f modelMatrix() {
+        if (modelMatrixModificationCount != modificationCount) {
+            modelMatrix.set(RenderEngine.createModelMatrix(rotationX, rotationY));
+            // Векторы-строки: перенос - последняя строка матрицы
+            modelMatrix.m30 = translationX;
+            modelMatrix.m31 = translationY;
+            modelMatrix.m32 = translationZ;
+            modelMatrixModificationCount = modificationCount;
+        }
+        return modelMatrix;
+    }
+}
@@ -0,0 +1,218 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Vector3fList;
+
+import javax.vecmath.Matrix4f;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Экранные координаты всех вершин модели за один кадр.
+ * <p>
+ * Каждая вершина проецируется ровно один раз, результат хранится в примитивных массивах
+ * (x, y на экране и глубина после перспективного деления), которые переиспользуются
+ * между кадрами. После того как массивы один раз выросли до размера модели, проецирование
+ * не создаёт ни одного объекта.
+ * <p>
+ * Результат запоминается вместе с матрицей, размером окна и счётчиком изменений вершин.
+ * Если в следующем кадре ничего из этого не поменялось (камера, поворот модели и сама
+ * модель те же), проецирование пропускается, и отрисовка с выбором полигона читают
+ * прошлые координаты.
+ * <p>
+ * Большие модели проецируются параллельно: вершины делятся на диапазоны по
+ * {@link #RANGE_SIZE}, диапазоны обрабатываются на {@link ForkJoinPool}. Каждый диапазон
+ * пишет в свою часть выходных массивов, поэтому синхронизация не нужна. Для моделей
+ * меньше порога запуск задач дороже самой работы, и они проецируются в текущем потоке.
+ * Порог подобран по ProjectionBenchmark (tests/com/cgvsu/render_engine).
+ */
+public class ScreenVertexBuffer {
+
+    /**
+     * Начиная с этого числа вершин проецирование идёт параллельно.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 32768;
+
+    // Вершин в одной задаче: входные координаты диапазона (12 байт на вершину)
+    // и выходные массивы (ещё 12 байт) помещаются в кэш второго уровня
+    static final int RANGE_SIZE = 8192;
+
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    private float[] screenX = new float[0];
+    private float[] screenY = new float[0];
+    private float[] depth = new float[0];
+    private int vertexCount;
+
+    // Ключ кэша: по каким данным посчитаны текущие координаты
+    private boolean valid;
+    private Vector3fList cachedVertices;
+    private int cachedModificationCount;
+    private final Matrix4f cachedMatrix = new Matrix4f();
+    private int cachedWidth;
+    private int cachedHeight;
+
+    public ScreenVertexBuffer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallelThreshold с какого числа вершин проецировать параллельно;
+     *                          {@link Integer#MAX_VALUE} - всегда в текущем потоке
+     */
+    public ScreenVertexBuffer(ForkJoinPool pool, int parallelThreshold) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Проецирует все вершины модели матрицей modelViewProjectionMatrix в окно width x height.
+     * Если координаты уже посчитаны для тех же вершин, матрицы и окна, ничего не делает.
+     *
+     * @return true, если координаты были пересчитаны
+     */
+    public boolean project(
+            final Vector3fList vertices,
+            final Matrix4f modelViewProjectionMatrix,
+            final int width,
+            final int height) {
+        if (valid
+                && cachedVertices == vertices
+                && cachedModificationCount == vertices.getModificationCount()
+                && cachedWidth == width
+                && cachedHeight == height
+                && cachedMatrix.equals(modelViewProjectionMatrix)) {
+            return false;
+        }
+
+        vertexCount = vertices.size();
+        ensureCapacity(vertexCount);
+        if (vertexCount >= parallelThreshold && pool.getParallelism() > 1) {
+            pool.invoke(new ProjectAction(modelViewProjectionMatrix, vertices.coordinates(), 0, vertexCount,
+                    width, height, screenX, screenY, depth));
+        } else {
+            VertexProjector.project(modelViewProjectionMatrix, vertices.coordinates(), 0, vertexCount,
+                    width, height, screenX, screenY, depth);
+        }
+
+        valid = true;
+        cachedVertices = vertices;
+        cachedModificationCount = vertices.getModificationCount();
+        cachedMatrix.set(modelViewProjectionMatrix);
+        cachedWidth = width;
+        cachedHeight = height;
+        return true;
+    }
+
+    /**
+     * Сбрасывает кэш, следующий вызов {@link #project} обязательно пересчитает координаты.
+     */
+    public void invalidate() {
+        valid = false;
+        cachedVertices = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (screenX.length < capacity) {
+            // Запас, чтобы при небольшом росте модели массивы не пересоздавались каждый кадр
+            final int newCapacity = capacity + (capacity >> 3);
+            screenX = new float[newCapacity];
+            screenY = new float[newCapacity];
+            depth = new float[newCapacity];
+        }
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Экранные x вершин, допустимы первые {@link #getVertexCount()} элементов.
+     */
+    public float[] getScreenX() {
+        return screenX;
+    }
+
+    public float[] getScreenY() {
+        return screenY;
+    }
+
+    /**
+     * Глубина вершин (z после перспективного деления, NaN для вершин позади камеры).
+     */
+    public float[] getDepth() {
+        return depth;
+    }
+
+    /**
+     * Ширина окна, в которое спроецированы вершины.
+     */
+    public int getWidth() {
+        return cachedWidth;
+    }
+
+    public int getHeight() {
+        return cachedHeight;
+    }
+
+    /**
+     * Однородные координаты вершины до перспективного деления (x, y, z, w) той же матрицей,
+     * что и при последнем {@link #project}. Нужны там, где отрезок пересекает ближнюю
+     * плоскость и точку пересечения надо искать до деления на w.
+     */
+    public void getClipCoordinates(final int vertexIndex, final float[] result, final int offset) {
+        final float[] coordinates = cachedVertices.coordinates();
+        final float vx = coordinates[vertexIndex * 3];
+        final float vy = coordinates[vertexIndex * 3 + 1];
+        final float vz = coordinates[vertexIndex * 3 + 2];
+        final Matrix4f m = cachedMatrix;
+        result[offset] = (vx * m.m00) + (vy * m.m10) + (vz * m.m20) + m.m30;
+        result[offset + 1] = (vx * m.m01) + (vy * m.m11) + (vz * m.m21) + m.m31;
+        result[offset + 2] = (vx * m.m02) + (vy * m.m12) + (vz * m.m22) + m.m32;
+        result[offset + 3] = (vx * m.m03) + (vy * m.m13) + (vz * m.m23) + m.m33;
+    }
+
+    /**
+     * Делит вершины пополам, пока диапазон не станет не больше {@link #RANGE_SIZE}.
+     */
+    // Задачи fork-join не сериализуются
+    @SuppressWarnings("serial")
+    private static class ProjectAction extends RecursiveAction {
+        private final Matrix4f matrix;
+        private final float[] coordinates;
+        private final int from;
+        private final int to;
+        private final int width;
+        private final int height;
+        private final float[] screenX;
+        private final float[] screenY;
+        private final float[] depth;
+
+        ProjectAction(
+                Matrix4f matrix, float[] coordinates, int from, int to, int width, int height,
+                float[] screenX, float[] screenY, float[] depth) {
+            this.matrix = matrix;
+            this.coordinates = coordinates;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+            this.height = height;
+            this.screenX = screenX;
+            this.screenY = screenY;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= RANGE_SIZE) {
+                VertexProjector.project(matrix, coordinates, from, to, width, height, screenX, screenY, depth);
+                return;
+            }
+            // Граница кратна RANGE_SIZE, чтобы соседние задачи не делили строки кэша
+            final int middle = from + ((to - from) / 2 + RANGE_SIZE - 1) / RANGE_SIZE * RANGE_SIZE;
+            invokeAll(
+                    new ProjectAction(matrix, coordinates, from, middle, width, height, screenX, screenY, depth),
+                    new ProjectAction(matrix, coordinates, middle, to, width, height, screenX, screenY, depth));
+        }
+    }
+}
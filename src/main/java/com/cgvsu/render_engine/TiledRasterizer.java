@@ -0,0 +1,515 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.EdgeList;
+import com.cgvsu.model.IntList;
+import com.cgvsu.model.TriangleList;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Многопоточная растеризация кадра по плиткам.
+ * <p>
+ * Кадр делится на квадратные плитки {@link #TILE_SIZE} x {@link #TILE_SIZE}.
+ * Сначала примитивы (треугольники или рёбра) параллельно раскладываются по плиткам,
+ * которые задевает их ограничивающий прямоугольник: примитивы делятся на диапазоны,
+ * у каждого диапазона свои списки для каждой плитки, так что при раскладке потоки
+ * ничего не делят. Затем плитки растеризуются параллельно: каждая плитка пишет только
+ * в свою часть массивов цвета и глубины {@link FrameBuffer}, поэтому блокировки не нужны,
+ * а готовый кадр выгружается на экран одним вызовом, как и при однопоточной отрисовке.
+ * Внутри плитки примитивы рисуются в исходном порядке, поэтому результат не зависит
+ * от числа потоков.
+ * <p>
+ * Можно растеризовать сразу несколько сеток (например, все видимые объекты сцены):
+ * их примитивы нумеруются подряд, сетка за сеткой, и раскладываются по плиткам вместе,
+ * так что на весь кадр приходится один проход по плиткам, сколько бы сеток ни было.
+ * <p>
+ * При раскладке примитивы, лежащие целиком за одной из плоскостей пирамиды видимости,
+ * отбрасываются ({@link FrustumClipper}). Редкие примитивы, пересекающие ближнюю плоскость,
+ * откладываются в отдельные списки, обрезаются после плиток и дорисовываются в текущем потоке.
+ * <p>
+ * Списки плиток и промежуточные массивы переиспользуются между кадрами.
+ */
+public class TiledRasterizer {
+
+    public static final int TILE_SIZE = 64;
+
+    // Сколько диапазонов примитивов приходится на один поток при раскладке
+    private static final int RANGES_PER_THREAD = 4;
+    // Меньше этого числа примитивов на диапазон делить не имеет смысла
+    private static final int MIN_RANGE_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+
+    private int tilesX;
+    private int tilesY;
+    // bins[range][tile] - номера примитивов диапазона range, задевающих плитку tile
+    private IntList[][] bins = new IntList[0][0];
+    private int rangeCount;
+    // nearClipped[range] - примитивы диапазона range, пересекающие ближнюю плоскость
+    private IntList[] nearClipped = new IntList[0];
+    private int[] colors = new int[0];
+    // Общая нумерация примитивов нескольких сеток: у сетки mesh номера
+    // с meshStarts[mesh] по meshStarts[mesh + 1] (не включая)
+    private int[] meshStarts = new int[2];
+    private final FrustumClipper clipper = new FrustumClipper();
+
+    public TiledRasterizer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public TiledRasterizer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Закрашивает треугольники с проверкой глубины.
+     *
+     * @param shader цвет лицевого треугольника по его номеру; вызывается параллельно,
+     *               только для треугольников, прошедших отбрасывание, 0 - не рисовать
+     */
+    public void fillTriangles(
+            final FrameBuffer frameBuffer,
+            final ScreenVertexBuffer screenVertices,
+            final TriangleList triangles,
+            final IntUnaryOperator shader) {
+        fillTriangles(frameBuffer, new ScreenVertexBuffer[]{screenVertices}, new TriangleList[]{triangles},
+                new IntUnaryOperator[]{shader}, 1);
+    }
+
+    /**
+     * Закрашивает треугольники нескольких сеток с общим буфером глубины. Сетка mesh
+     * спроецирована в screenVertices[mesh], её треугольники раскрашивает shaders[mesh]
+     * по номеру треугольника в этой сетке. Результат тот же, что у вызовов для каждой
+     * сетки по очереди.
+     */
+    public void fillTriangles(
+            final FrameBuffer frameBuffer,
+            final ScreenVertexBuffer[] screenVertices,
+            final TriangleList[] triangles,
+            final IntUnaryOperator[] shaders,
+            final int meshCount) {
+        fillTriangles(frameBuffer, screenVertices, triangles, shaders, meshCount, true);
+    }
+
+    /**
+     * То же, но при cullBackFaces = false нелицевые треугольники не отбрасываются,
+     * а закрашиваются наравне с лицевыми (например, для выбора мышью в каркасном режиме,
+     * где видны все полигоны).
+     */
+    public void fillTriangles(
+            final FrameBuffer frameBuffer,
+            final ScreenVertexBuffer[] screenVertices,
+            final TriangleList[] triangles,
+            final IntUnaryOperator[] shaders,
+            final int meshCount,
+            final boolean cullBackFaces) {
+        final float[][] meshScreenX = new float[meshCount][];
+        final float[][] meshScreenY = new float[meshCount][];
+        final float[][] meshDepth = new float[meshCount][];
+        final int[][] meshVertexIndices = new int[meshCount][];
+        final int[] starts = numberMeshes(meshCount);
+        for (int mesh = 0; mesh < meshCount; ++mesh) {
+            meshScreenX[mesh] = screenVertices[mesh].getScreenX();
+            meshScreenY[mesh] = screenVertices[mesh].getScreenY();
+            meshDepth[mesh] = screenVertices[mesh].getDepth();
+            meshVertexIndices[mesh] = triangles[mesh].vertexIndices();
+            starts[mesh + 1] = starts[mesh] + triangles[mesh].size();
+        }
+        final int triangleCount = starts[meshCount];
+        final int width = frameBuffer.getWidth();
+        final int height = frameBuffer.getHeight();
+
+        prepare(frameBuffer, triangleCount);
+        if (colors.length < triangleCount) {
+            colors = new int[triangleCount];
+        }
+        final int[] triangleColors = colors;
+
+        forEachRange(triangleCount, (range, from, to) -> {
+            for (int mesh = findMesh(starts, meshCount, from); from < to; ++mesh) {
+                final int meshStart = starts[mesh];
+                final int meshEnd = Math.min(starts[mesh + 1], to);
+                final float[] screenX = meshScreenX[mesh];
+                final float[] screenY = meshScreenY[mesh];
+                final float[] depth = meshDepth[mesh];
+                final int[] vertexIndices = meshVertexIndices[mesh];
+                final IntUnaryOperator shader = shaders[mesh];
+                for (int primitive = from; primitive < meshEnd; ++primitive) {
+                    final int triangleInd = primitive - meshStart;
+                    final int i0 = vertexIndices[triangleInd * 3];
+                    final int i1 = vertexIndices[triangleInd * 3 + 1];
+                    final int i2 = vertexIndices[triangleInd * 3 + 2];
+
+                    final int code0 = FrustumClipper.outcode(screenX[i0], screenY[i0], depth[i0], width, height);
+                    final int code1 = FrustumClipper.outcode(screenX[i1], screenY[i1], depth[i1], width, height);
+                    final int code2 = FrustumClipper.outcode(screenX[i2], screenY[i2], depth[i2], width, height);
+                    if ((code0 & code1 & code2) != 0) {
+                        continue;
+                    }
+                    if (((code0 | code1 | code2) & FrustumClipper.NEAR) != 0) {
+                        // Экранные координаты части вершин не определены, обрежем после плиток
+                        nearClipped[range].add(primitive);
+                        continue;
+                    }
+
+                    // Отбрасывание нелицевых граней: лицевые треугольники на экране
+                    // (ось y вниз) имеют положительную площадь
+                    final float area = (screenX[i1] - screenX[i0]) * (screenY[i2] - screenY[i0])
+                            - (screenX[i2] - screenX[i0]) * (screenY[i1] - screenY[i0]);
+                    if (!(cullBackFaces ? area > 0 : area != 0 && Float.isFinite(area))) {
+                        continue;
+                    }
+                    final float minX = Math.min(screenX[i0], Math.min(screenX[i1], screenX[i2]));
+                    final float maxX = Math.max(screenX[i0], Math.max(screenX[i1], screenX[i2]));
+                    final float minY = Math.min(screenY[i0], Math.min(screenY[i1], screenY[i2]));
+                    final float maxY = Math.max(screenY[i0], Math.max(screenY[i1], screenY[i2]));
+                    if (!isOnScreen(minX, minY, maxX, maxY)) {
+                        continue;
+                    }
+
+                    final int color = shader.applyAsInt(triangleInd);
+                    if (color != 0) {
+                        triangleColors[primitive] = color;
+                        addToBins(bins[range], primitive, minX, minY, maxX, maxY);
+                    }
+                }
+                from = meshEnd;
+            }
+        });
+
+        forEachTile((tile, clipMinX, clipMinY, clipMaxX, clipMaxY) -> {
+            // Номера в списках плиток растут от диапазона к диапазону, так что сетки
+            // идут по порядку и каждая ищется один раз
+            int meshStart = 0;
+            int meshEnd = 0;
+            float[] screenX = null;
+            float[] screenY = null;
+            float[] depth = null;
+            int[] vertexIndices = null;
+            for (int range = 0; range < rangeCount; ++range) {
+                final IntList bin = bins[range][tile];
+                for (int k = 0; k < bin.size(); ++k) {
+                    final int primitive = bin.get(k);
+                    if (primitive >= meshEnd) {
+                        final int mesh = findMesh(starts, meshCount, primitive);
+                        meshStart = starts[mesh];
+                        meshEnd = starts[mesh + 1];
+                        screenX = meshScreenX[mesh];
+                        screenY = meshScreenY[mesh];
+                        depth = meshDepth[mesh];
+                        vertexIndices = meshVertexIndices[mesh];
+                    }
+                    final int triangleInd = primitive - meshStart;
+                    final int i0 = vertexIndices[triangleInd * 3];
+                    final int i1 = vertexIndices[triangleInd * 3 + 1];
+                    final int i2 = vertexIndices[triangleInd * 3 + 2];
+                    frameBuffer.fillTriangle(
+                            screenX[i0], screenY[i0], depth[i0],
+                            screenX[i1], screenY[i1], depth[i1],
+                            screenX[i2], screenY[i2], depth[i2],
+                            triangleColors[primitive],
+                            clipMinX, clipMinY, clipMaxX, clipMaxY);
+                }
+            }
+        });
+
+        for (int range = 0; range < rangeCount; ++range) {
+            final IntList clipped = nearClipped[range];
+            for (int k = 0; k < clipped.size(); ++k) {
+                final int primitive = clipped.get(k);
+                final int mesh = findMesh(starts, meshCount, primitive);
+                final int triangleInd = primitive - starts[mesh];
+                final int[] vertexIndices = meshVertexIndices[mesh];
+                final int count = clipper.clipTriangle(screenVertices[mesh],
+                        vertexIndices[triangleInd * 3],
+                        vertexIndices[triangleInd * 3 + 1],
+                        vertexIndices[triangleInd * 3 + 2]);
+                final float area = count < 3 ? 0 : clipper.area(count);
+                if (!(cullBackFaces ? area > 0 : area != 0 && Float.isFinite(area))) {
+                    continue;
+                }
+                final int color = shaders[mesh].applyAsInt(triangleInd);
+                if (color == 0) {
+                    continue;
+                }
+                // Обрезанный треугольник - выпуклый многоугольник, рисуем его веером
+                for (int vertex = 1; vertex + 1 < count; ++vertex) {
+                    frameBuffer.fillTriangle(
+                            clipper.getScreenX(0), clipper.getScreenY(0), clipper.getDepth(0),
+                            clipper.getScreenX(vertex), clipper.getScreenY(vertex), clipper.getDepth(vertex),
+                            clipper.getScreenX(vertex + 1), clipper.getScreenY(vertex + 1), clipper.getDepth(vertex + 1),
+                            color);
+                }
+            }
+        }
+    }
+
+    /**
+     * Рисует рёбра одним цветом.
+     */
+    public void drawEdges(
+            final FrameBuffer frameBuffer,
+            final ScreenVertexBuffer screenVertices,
+            final EdgeList edges,
+            final int argb) {
+        drawEdges(frameBuffer, new ScreenVertexBuffer[]{screenVertices}, new EdgeList[]{edges}, new int[]{argb}, 1);
+    }
+
+    /**
+     * Рисует рёбра нескольких сеток, рёбра сетки mesh - цветом colors[mesh].
+     */
+    public void drawEdges(
+            final FrameBuffer frameBuffer,
+            final ScreenVertexBuffer[] screenVertices,
+            final EdgeList[] edges,
+            final int[] colors,
+            final int meshCount) {
+        final float[][] meshScreenX = new float[meshCount][];
+        final float[][] meshScreenY = new float[meshCount][];
+        final float[][] meshDepth = new float[meshCount][];
+        final int[][] meshVertexIndices = new int[meshCount][];
+        final int[] starts = numberMeshes(meshCount);
+        for (int mesh = 0; mesh < meshCount; ++mesh) {
+            meshScreenX[mesh] = screenVertices[mesh].getScreenX();
+            meshScreenY[mesh] = screenVertices[mesh].getScreenY();
+            meshDepth[mesh] = screenVertices[mesh].getDepth();
+            meshVertexIndices[mesh] = edges[mesh].vertexIndices();
+            starts[mesh + 1] = starts[mesh] + edges[mesh].size();
+        }
+        final int edgeCount = starts[meshCount];
+        final int width = frameBuffer.getWidth();
+        final int height = frameBuffer.getHeight();
+
+        prepare(frameBuffer, edgeCount);
+
+        forEachRange(edgeCount, (range, from, to) -> {
+            for (int mesh = findMesh(starts, meshCount, from); from < to; ++mesh) {
+                final int meshStart = starts[mesh];
+                final int meshEnd = Math.min(starts[mesh + 1], to);
+                final float[] screenX = meshScreenX[mesh];
+                final float[] screenY = meshScreenY[mesh];
+                final float[] depth = meshDepth[mesh];
+                final int[] vertexIndices = meshVertexIndices[mesh];
+                for (int primitive = from; primitive < meshEnd; ++primitive) {
+                    final int edgeInd = primitive - meshStart;
+                    final int start = vertexIndices[edgeInd * 2];
+                    final int end = vertexIndices[edgeInd * 2 + 1];
+                    final int startCode = FrustumClipper.outcode(screenX[start], screenY[start], depth[start], width, height);
+                    final int endCode = FrustumClipper.outcode(screenX[end], screenY[end], depth[end], width, height);
+                    if ((startCode & endCode) != 0) {
+                        continue;
+                    }
+                    if (((startCode | endCode) & FrustumClipper.NEAR) != 0) {
+                        nearClipped[range].add(primitive);
+                        continue;
+                    }
+                    final float minX = Math.min(screenX[start], screenX[end]);
+                    final float maxX = Math.max(screenX[start], screenX[end]);
+                    final float minY = Math.min(screenY[start], screenY[end]);
+                    final float maxY = Math.max(screenY[start], screenY[end]);
+                    if (isOnScreen(minX, minY, maxX, maxY)) {
+                        // Длинное наклонное ребро попадает и в плитки, которые задевает
+                        // только его прямоугольник; там оно просто ничего не нарисует
+                        addToBins(bins[range], primitive, minX, minY, maxX, maxY);
+                    }
+                }
+                from = meshEnd;
+            }
+        });
+
+        forEachTile((tile, clipMinX, clipMinY, clipMaxX, clipMaxY) -> {
+            int meshStart = 0;
+            int meshEnd = 0;
+            float[] screenX = null;
+            float[] screenY = null;
+            int[] vertexIndices = null;
+            int argb = 0;
+            for (int range = 0; range < rangeCount; ++range) {
+                final IntList bin = bins[range][tile];
+                for (int k = 0; k < bin.size(); ++k) {
+                    final int primitive = bin.get(k);
+                    if (primitive >= meshEnd) {
+                        final int mesh = findMesh(starts, meshCount, primitive);
+                        meshStart = starts[mesh];
+                        meshEnd = starts[mesh + 1];
+                        screenX = meshScreenX[mesh];
+                        screenY = meshScreenY[mesh];
+                        vertexIndices = meshVertexIndices[mesh];
+                        argb = colors[mesh];
+                    }
+                    final int edgeInd = primitive - meshStart;
+                    final int start = vertexIndices[edgeInd * 2];
+                    final int end = vertexIndices[edgeInd * 2 + 1];
+                    frameBuffer.drawLine(screenX[start], screenY[start], screenX[end], screenY[end], argb, 1,
+                            clipMinX, clipMinY, clipMaxX, clipMaxY);
+                }
+            }
+        });
+
+        for (int range = 0; range < rangeCount; ++range) {
+            final IntList clipped = nearClipped[range];
+            for (int k = 0; k < clipped.size(); ++k) {
+                final int primitive = clipped.get(k);
+                final int mesh = findMesh(starts, meshCount, primitive);
+                final int edgeInd = primitive - starts[mesh];
+                final int[] vertexIndices = meshVertexIndices[mesh];
+                if (clipper.clipSegment(screenVertices[mesh],
+                        vertexIndices[edgeInd * 2], vertexIndices[edgeInd * 2 + 1])) {
+                    frameBuffer.drawLine(clipper.getScreenX(0), clipper.getScreenY(0),
+                            clipper.getScreenX(1), clipper.getScreenY(1), colors[mesh]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Массив начал сеток в общей нумерации: начало первой - 0, остальные заполняет вызывающий.
+     */
+    private int[] numberMeshes(int meshCount) {
+        if (meshStarts.length < meshCount + 1) {
+            meshStarts = new int[meshCount + 1];
+        }
+        meshStarts[0] = 0;
+        return meshStarts;
+    }
+
+    /**
+     * Сетка, которой принадлежит примитив с общим номером primitive (пустые сетки пропускаются).
+     */
+    private static int findMesh(int[] starts, int meshCount, int primitive) {
+        int low = 0;
+        int high = meshCount - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= primitive) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Подготавливает и очищает списки плиток под размер кадра и число примитивов.
+     */
+    private void prepare(FrameBuffer frameBuffer, int primitiveCount) {
+        tilesX = (frameBuffer.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        tilesY = (frameBuffer.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+        final int tileCount = tilesX * tilesY;
+        rangeCount = Math.max(1, Math.min(pool.getParallelism() * RANGES_PER_THREAD,
+                primitiveCount / MIN_RANGE_SIZE));
+
+        if (bins.length < rangeCount || bins[0].length != tileCount) {
+            bins = new IntList[Math.max(rangeCount, bins.length)][tileCount];
+            for (IntList[] rangeBins : bins) {
+                for (int tile = 0; tile < tileCount; ++tile) {
+                    rangeBins[tile] = new IntList();
+                }
+            }
+        }
+        if (nearClipped.length < rangeCount) {
+            nearClipped = new IntList[rangeCount];
+            for (int range = 0; range < rangeCount; ++range) {
+                nearClipped[range] = new IntList();
+            }
+        }
+        for (int range = 0; range < rangeCount; ++range) {
+            for (IntList bin : bins[range]) {
+                bin.clear();
+            }
+            nearClipped[range].clear();
+        }
+    }
+
+    private boolean isOnScreen(float minX, float minY, float maxX, float maxY) {
+        // Сравнения записаны так, чтобы NaN давал false
+        return maxX >= 0 && maxY >= 0 && minX < tilesX * TILE_SIZE && minY < tilesY * TILE_SIZE;
+    }
+
+    private void addToBins(IntList[] rangeBins, int primitive, float minX, float minY, float maxX, float maxY) {
+        // Запас в пиксель: округление концов отрезка и толщина пикселя
+        final int tileMinX = Math.max((int) Math.floor((minX - 1) / TILE_SIZE), 0);
+        final int tileMaxX = Math.min((int) Math.floor((maxX + 1) / TILE_SIZE), tilesX - 1);
+        final int tileMinY = Math.max((int) Math.floor((minY - 1) / TILE_SIZE), 0);
+        final int tileMaxY = Math.min((int) Math.floor((maxY + 1) / TILE_SIZE), tilesY - 1);
+        for (int tileY = tileMinY; tileY <= tileMaxY; ++tileY) {
+            for (int tileX = tileMinX; tileX <= tileMaxX; ++tileX) {
+                rangeBins[tileY * tilesX + tileX].add(primitive);
+            }
+        }
+    }
+
+    private interface RangeBody {
+        void run(int range, int from, int to);
+    }
+
+    private interface TileBody {
+        void run(int tile, int clipMinX, int clipMinY, int clipMaxX, int clipMaxY);
+    }
+
+    private void forEachRange(int count, RangeBody body) {
+        final int ranges = rangeCount;
+        runParallel(ranges, range -> body.run(range,
+                (int) ((long) count * range / ranges),
+                (int) ((long) count * (range + 1) / ranges)));
+    }
+
+    private void forEachTile(TileBody body) {
+        final int columns = tilesX;
+        runParallel(tilesX * tilesY, tile -> {
+            final int clipMinX = (tile % columns) * TILE_SIZE;
+            final int clipMinY = (tile / columns) * TILE_SIZE;
+            body.run(tile, clipMinX, clipMinY, clipMinX + TILE_SIZE - 1, clipMinY + TILE_SIZE - 1);
+        });
+    }
+
+    private void runParallel(int count, IntConsumer body) {
+        runParallel(pool, count, body);
+    }
+
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Выполняет body для номеров от 0 до count (не включая) параллельно на pool.
+     */
+    static void runParallel(ForkJoinPool pool, int count, IntConsumer body) {
+        if (count == 1) {
+            body.accept(0);
+        } else if (count > 1) {
+            pool.invoke(new SplitAction(0, count, body));
+        }
+    }
+
+    /**
+     * Делит отрезок номеров пополам, пока не останется по одному.
+     */
+    // Задачи fork-join не сериализуются
+    @SuppressWarnings("serial")
+    private static class SplitAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        SplitAction(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                body.accept(from);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new SplitAction(from, middle, body), new SplitAction(middle, to, body));
+        }
+    }
+}
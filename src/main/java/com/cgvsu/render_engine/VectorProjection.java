@@ -0,0 +1,100 @@
+package com.cgvsu.render_engine;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import javax.vecmath.Matrix4f;
+
+/**
+ * Проецирование вершин на SIMD через Vector API (модуль jdk.incubator.vector).
+ * <p>
+ * За одну итерацию обрабатывается столько вершин, сколько float помещается в самый
+ * широкий регистр процессора ({@link FloatVector#SPECIES_PREFERRED}): 8 для AVX2, 16 для AVX-512.
+ * Координаты x, y, z лежат в массиве вперемешку, поэтому вершины обрабатываются блоками:
+ * координаты блока сначала раскладываются по трём отдельным массивам (x, y, z подряд),
+ * а затем читаются из них обычной векторной загрузкой. Выборка с шагом 3
+ * (fromArray с картой индексов) была бы короче, но в JDK 17 её компиляция C2 на AVX-512
+ * приводит к падению JVM.
+ * Операции выполняются в том же порядке, что и в {@link GraphicConveyor#projectVertices},
+ * поэтому результат совпадает со скалярной версией до бита.
+ * <p>
+ * Класс загружается только через {@link VertexProjector}: если модуль не подключён,
+ * загрузка падает с {@link NoClassDefFoundError}, и используется скалярная версия.
+ */
+final class VectorProjection {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    // Вершин в блоке; координаты блока (3 * 4 КБ) остаются в кэше первого уровня
+    private static final int BLOCK_SIZE = 1024;
+    // Разложенные по компонентам координаты блока: x, затем y, затем z; свои у каждого потока
+    private static final ThreadLocal<float[]> BLOCK = ThreadLocal.withInitial(() -> new float[BLOCK_SIZE * 3]);
+
+    private VectorProjection() {
+    }
+
+    static int getLaneCount() {
+        return LANES;
+    }
+
+    /**
+     * Проецирует целые группы по {@link #getLaneCount()} вершин начиная с from.
+     *
+     * @return номер первой необработанной вершины; остаток (меньше одной группы)
+     *         досчитывает вызывающий код
+     */
+    static int project(
+            final Matrix4f matrix,
+            final float[] coordinates,
+            final int from,
+            final int to,
+            final int width,
+            final int height,
+            final float[] screenX,
+            final float[] screenY,
+            final float[] depth) {
+        final float m00 = matrix.m00, m10 = matrix.m10, m20 = matrix.m20, m30 = matrix.m30;
+        final float m01 = matrix.m01, m11 = matrix.m11, m21 = matrix.m21, m31 = matrix.m31;
+        final float m02 = matrix.m02, m12 = matrix.m12, m22 = matrix.m22, m32 = matrix.m32;
+        final float m03 = matrix.m03, m13 = matrix.m13, m23 = matrix.m23, m33 = matrix.m33;
+        final float widthF = width;
+        final float heightF = height;
+        final float halfWidth = width / 2.0F;
+        final float halfHeight = height / 2.0F;
+        final FloatVector nan = FloatVector.broadcast(SPECIES, Float.NaN);
+
+        final float[] block = BLOCK.get();
+        final int end = from + (to - from) / LANES * LANES;
+        for (int blockStart = from; blockStart < end; blockStart += BLOCK_SIZE) {
+            final int blockEnd = Math.min(blockStart + BLOCK_SIZE, end);
+            final int count = blockEnd - blockStart;
+            for (int k = 0, offset = blockStart * 3; k < count; ++k, offset += 3) {
+                block[k] = coordinates[offset];
+                block[BLOCK_SIZE + k] = coordinates[offset + 1];
+                block[2 * BLOCK_SIZE + k] = coordinates[offset + 2];
+            }
+
+            for (int k = 0; k < count; k += LANES) {
+                final FloatVector vx = FloatVector.fromArray(SPECIES, block, k);
+                final FloatVector vy = FloatVector.fromArray(SPECIES, block, BLOCK_SIZE + k);
+                final FloatVector vz = FloatVector.fromArray(SPECIES, block, 2 * BLOCK_SIZE + k);
+
+                final FloatVector x = vx.mul(m00).add(vy.mul(m10)).add(vz.mul(m20)).add(m30);
+                final FloatVector y = vx.mul(m01).add(vy.mul(m11)).add(vz.mul(m21)).add(m31);
+                final FloatVector z = vx.mul(m02).add(vy.mul(m12)).add(vz.mul(m22)).add(m32);
+                final FloatVector w = vx.mul(m03).add(vy.mul(m13)).add(vz.mul(m23)).add(m33);
+
+                final int i = blockStart + k;
+                x.div(w).mul(widthF).add(halfWidth).intoArray(screenX, i);
+                y.div(w).neg().mul(heightF).add(halfHeight).intoArray(screenY, i);
+
+                // Для вершин позади камеры глубина не определена
+                final VectorMask<Float> inFront = w.compare(VectorOperators.GT, 0);
+                nan.blend(z.div(w), inFront).intoArray(depth, i);
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,63 @@
+package com.cgvsu.render_engine;
+
+import javax.vecmath.Matrix4f;
+
+/**
+ * Выбор реализации проецирования вершин: SIMD ({@link VectorProjection}), если
+ * модуль jdk.incubator.vector подключён при запуске (--add-modules jdk.incubator.vector),
+ * иначе скалярная {@link GraphicConveyor#projectVertices}.
+ * <p>
+ * SIMD можно отключить свойством -Dcgvsu.vectorProjection=false, например для сравнения скорости.
+ */
+final class VertexProjector {
+
+    private static volatile boolean vectorAvailable = detectVectorSupport();
+
+    private VertexProjector() {
+    }
+
+    static boolean isVectorized() {
+        return vectorAvailable;
+    }
+
+    /**
+     * То же, что {@link GraphicConveyor#projectVertices}, и с тем же результатом.
+     */
+    static void project(
+            final Matrix4f matrix,
+            final float[] coordinates,
+            final int from,
+            final int to,
+            final int width,
+            final int height,
+            final float[] screenX,
+            final float[] screenY,
+            final float[] depth) {
+        int scalarFrom = from;
+        if (vectorAvailable) {
+            try {
+                scalarFrom = VectorProjection.project(matrix, coordinates, from, to, width, height,
+                        screenX, screenY, depth);
+            } catch (LinkageError error) {
+                // Модуль есть в образе JDK, но не доступен этому коду - работаем без SIMD
+                vectorAvailable = false;
+            }
+        }
+        GraphicConveyor.projectVertices(matrix, coordinates, scalarFrom, to, width, height, screenX, screenY, depth);
+    }
+
+    private static boolean detectVectorSupport() {
+        if (!Boolean.parseBoolean(System.getProperty("cgvsu.vectorProjection", "true"))) {
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            // Без аппаратной поддержки векторы эмулируются и медленнее скалярного кода
+            return VectorProjection.getLaneCount() >= 4;
+        } catch (LinkageError error) {
+            return false;
+        }
+    }
+}
@@ -3,6 +3,8 @@ module com.cgvsu {
     requires javafx.fxml;
     requires vecmath;
     requires java.desktop;
+    // Необязательный: без него проецирование вершин идёт без SIMD
+    requires static jdk.incubator.vector;
 
 
     opens com.cgvsu to javafx.fxml;
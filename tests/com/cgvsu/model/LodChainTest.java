@@ -0,0 +1,146 @@
+package com.cgvsu.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LodChainTest {
+
+    // Замкнутая сфера радиуса 1 из четырёхугольников (у полюсов - треугольники)
+    static Model createSphere(int rings, int segments) {
+        Model model = new Model();
+        model.vertices.add(0, 1, 0);
+        for (int r = 1; r < rings; ++r) {
+            double theta = Math.PI * r / rings;
+            for (int s = 0; s < segments; ++s) {
+                double phi = 2 * Math.PI * s / segments;
+                model.vertices.add((float) (Math.sin(theta) * Math.cos(phi)), (float) Math.cos(theta),
+                        (float) (Math.sin(theta) * Math.sin(phi)));
+            }
+        }
+        model.vertices.add(0, -1, 0);
+        final int bottom = model.vertices.size() - 1;
+        for (int s = 0; s < segments; ++s) {
+            int next = (s + 1) % segments;
+            model.polygons.add(new int[]{0, 1 + next, 1 + s}, 3, null, 0, null, 0);
+            for (int r = 1; r + 1 < rings; ++r) {
+                int row = 1 + (r - 1) * segments;
+                int nextRow = row + segments;
+                model.polygons.add(new int[]{row + s, row + next, nextRow + next, nextRow + s}, 4, null, 0, null, 0);
+            }
+            int last = 1 + (rings - 2) * segments;
+            model.polygons.add(new int[]{bottom, last + s, last + next}, 3, null, 0, null, 0);
+        }
+        return model;
+    }
+
+    @Test
+    public void testLevelsShrink() {
+        Model sphere = createSphere(50, 80);
+        int sourceTriangles = sphere.getTriangles().size();
+        LodChain chain = LodChain.build(sphere, sphere.getModificationCount(), LodChain.DEFAULT_RATIOS, () -> false);
+
+        Assertions.assertEquals(LodChain.DEFAULT_RATIOS.length + 1, chain.getLevelCount());
+        Assertions.assertSame(sphere, chain.getLevel(0));
+        Assertions.assertEquals(sourceTriangles, chain.getTriangleCount(0));
+        for (int level = 1; level < chain.getLevelCount(); ++level) {
+            Model model = chain.getLevel(level);
+            int target = (int) (sourceTriangles * LodChain.DEFAULT_RATIOS[level - 1]);
+            Assertions.assertEquals(model.polygons.size(), chain.getTriangleCount(level));
+            Assertions.assertTrue(chain.getTriangleCount(level) < chain.getTriangleCount(level - 1));
+            Assertions.assertTrue(chain.getTriangleCount(level) <= target + 10,
+                    "level " + level + ": " + chain.getTriangleCount(level) + " > " + target);
+            // Упрощённые сферы остаются сферами: вершины недалеко от поверхности
+            float maxDeviation = level < 3 ? 0.02f : 0.2f;
+            for (int v = 0; v < model.vertices.size(); ++v) {
+                float x = model.vertices.getX(v);
+                float y = model.vertices.getY(v);
+                float z = model.vertices.getZ(v);
+                float radius = (float) Math.sqrt(x * x + y * y + z * z);
+                Assertions.assertEquals(1, radius, maxDeviation, "level " + level);
+            }
+        }
+        // Исходная модель не меняется
+        Assertions.assertEquals(sourceTriangles, sphere.getTriangles().size());
+    }
+
+    @Test
+    public void testFlatBorderStaysInPlane() {
+        // Квадрат 40x40 клеток: у сетки есть край, упрощённая сетка не выходит из плоскости и квадрата
+        Model grid = new Model();
+        final int size = 40;
+        for (int y = 0; y <= size; ++y) {
+            for (int x = 0; x <= size; ++x) {
+                grid.vertices.add(x, y, 0);
+            }
+        }
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                int v = y * (size + 1) + x;
+                grid.polygons.add(new int[]{v, v + 1, v + size + 2, v + size + 1}, 4, null, 0, null, 0);
+            }
+        }
+        LodChain chain = LodChain.build(grid, grid.getModificationCount(), new float[]{0.25f}, () -> false);
+        Assertions.assertEquals(2, chain.getLevelCount());
+        Model level = chain.getLevel(1);
+        Assertions.assertTrue(level.polygons.size() <= grid.polygons.size() * 2 / 4 + 10);
+        BoundingBox bounds = level.getBounds();
+        Assertions.assertEquals(0, bounds.getMinZ(), 1e-4f);
+        Assertions.assertEquals(0, bounds.getMaxZ(), 1e-4f);
+        Assertions.assertTrue(bounds.getMinX() >= -1e-4f && bounds.getMaxX() <= size + 1e-4f);
+        Assertions.assertTrue(bounds.getMinY() >= -1e-4f && bounds.getMaxY() <= size + 1e-4f);
+    }
+
+    @Test
+    public void testSelectLevel() {
+        Model sphere = createSphere(30, 40);
+        LodChain chain = LodChain.build(sphere, sphere.getModificationCount(), LodChain.DEFAULT_RATIOS, () -> false);
+        // Модель в несколько пикселей - самый грубый уровень, во весь экран - полная
+        Assertions.assertEquals(chain.getLevelCount() - 1, chain.selectLevel(2));
+        Assertions.assertEquals(0, chain.selectLevel(1000));
+        int previous = chain.getLevelCount() - 1;
+        for (double radius = 2; radius < 1000; radius *= 1.5) {
+            int level = chain.selectLevel(radius);
+            Assertions.assertTrue(level <= previous);
+            previous = level;
+        }
+    }
+
+    @Test
+    public void testInvalidAfterModification() {
+        Model sphere = createSphere(10, 12);
+        LodChain chain = LodChain.build(sphere, sphere.getModificationCount(), LodChain.DEFAULT_RATIOS, () -> false);
+        Assertions.assertTrue(chain.isValidFor(sphere));
+        Assertions.assertFalse(chain.isValidFor(createSphere(10, 12)));
+        sphere.deletePolygon(0);
+        Assertions.assertFalse(chain.isValidFor(sphere));
+    }
+
+    @Test
+    public void testPreparedCopyIgnoresLaterEdits() {
+        Model sphere = createSphere(30, 40);
+        int sourceTriangles = sphere.getTriangles().size();
+        LodChain.Builder builder = LodChain.prepare(sphere);
+        // Модель изменили после копирования: цепочка строится по копии и оказывается устаревшей
+        sphere.deleteVertex(0);
+        LodChain chain = builder.build(LodChain.DEFAULT_RATIOS, () -> false);
+        Assertions.assertEquals(sourceTriangles, chain.getTriangleCount(0));
+        Assertions.assertTrue(chain.getTriangleCount(1) <= sourceTriangles / 2 + 10);
+        Assertions.assertFalse(chain.isValidFor(sphere));
+    }
+
+    @Test
+    public void testEstimateMemory() {
+        // Скан в 20 миллионов треугольников укладывается в пару гигабайт
+        long bytes = LodChain.estimateMemory(10_000_000, 20_000_000, LodChain.DEFAULT_RATIOS);
+        Assertions.assertTrue(bytes > 20_000_000L * 44);
+        Assertions.assertTrue(bytes < 3_500_000_000L, String.valueOf(bytes));
+        Assertions.assertTrue(LodChain.estimateMemory(10, 20, new float[0])
+                < LodChain.estimateMemory(10, 20, LodChain.DEFAULT_RATIOS));
+    }
+
+    @Test
+    public void testCancel() {
+        Model sphere = createSphere(10, 12);
+        Assertions.assertNull(LodChain.build(sphere, sphere.getModificationCount(), LodChain.DEFAULT_RATIOS, () -> true));
+    }
+}
@@ -0,0 +1,292 @@
+package com.cgvsu.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+class ModelTest {
+
+    // Квадрат 3x3 вершины, 4 четырёхугольника, у каждого свои нормаль и текстурная вершина
+    private static Model createGrid() {
+        Model model = new Model();
+        for (int y = 0; y < 3; ++y) {
+            for (int x = 0; x < 3; ++x) {
+                model.vertices.add(x, y, 0);
+            }
+        }
+        for (int i = 0; i < 4; ++i) {
+            model.normals.add(0, 0, i);
+            model.textureVertices.add(i, i);
+        }
+        int polygon = 0;
+        for (int y = 0; y < 2; ++y) {
+            for (int x = 0; x < 2; ++x) {
+                int v = y * 3 + x;
+                model.polygons.add(
+                        new int[]{v, v + 1, v + 4, v + 3}, 4,
+                        new int[]{polygon, polygon, polygon, polygon}, 4,
+                        new int[]{polygon, polygon, polygon, polygon}, 4);
+                ++polygon;
+            }
+        }
+        return model;
+    }
+
+    @Test
+    public void testDeleteVertices01() {
+        Model expected = createGrid();
+        expected.deleteVertex(8);
+        expected.deleteVertex(0);
+
+        Model result = createGrid();
+        result.deleteVertices(new int[]{0, 8, 8, 100});
+
+        Assertions.assertArrayEquals(
+                Arrays.copyOf(expected.vertices.coordinates(), expected.vertices.size() * 3),
+                Arrays.copyOf(result.vertices.coordinates(), result.vertices.size() * 3));
+        Assertions.assertEquals(expected.polygons.size(), result.polygons.size());
+        for (int i = 0; i < expected.polygons.size(); ++i) {
+            Assertions.assertEquals(expected.polygons.get(i).getVertexIndices(),
+                    result.polygons.get(i).getVertexIndices());
+        }
+        Assertions.assertEquals(7, result.vertices.size());
+        Assertions.assertEquals(2, result.polygons.size());
+        Assertions.assertEquals(List.of(0, 1, 4, 3), result.polygons.get(0).getVertexIndices());
+    }
+
+    @Test
+    public void testDeleteVertices02() {
+        Model model = createGrid();
+        BitSet removed = new BitSet();
+        removed.set(0);
+        model.deleteVertices(removed, true);
+
+        Assertions.assertEquals(3, model.polygons.size());
+        Assertions.assertEquals(3, model.normals.size());
+        Assertions.assertEquals(3, model.textureVertices.size());
+        Assertions.assertEquals(List.of(0, 0, 0, 0), model.polygons.get(0).getNormalIndices());
+        Assertions.assertEquals(1.0f, model.normals.getZ(0));
+        Assertions.assertEquals(List.of(2, 2, 2, 2), model.polygons.get(2).getTextureVertexIndices());
+        Assertions.assertEquals(3.0f, model.textureVertices.getX(2));
+    }
+
+    @Test
+    public void testDeletePolygons01() {
+        Model model = createGrid();
+        model.deletePolygons(new int[]{1, 2, -1});
+
+        Assertions.assertEquals(9, model.vertices.size());
+        Assertions.assertEquals(2, model.polygons.size());
+        Assertions.assertEquals(List.of(0, 1, 4, 3), model.polygons.get(0).getVertexIndices());
+        Assertions.assertEquals(List.of(4, 5, 8, 7), model.polygons.get(1).getVertexIndices());
+        Assertions.assertEquals(4, model.normals.size());
+    }
+
+    @Test
+    public void testDeletePolygons02() {
+        Model model = createGrid();
+        BitSet removed = new BitSet();
+        removed.set(0);
+        removed.set(3);
+        model.deletePolygons(removed, true);
+
+        Assertions.assertEquals(2, model.normals.size());
+        Assertions.assertEquals(List.of(1, 1, 1, 1), model.polygons.get(1).getNormalIndices());
+        Assertions.assertEquals(2.0f, model.normals.getZ(1));
+    }
+
+    @Test
+    public void testGetEdges01() {
+        Model model = createGrid();
+        EdgeList edges = model.getEdges();
+
+        // 4 четырёхугольника дают 16 сторон, но общих из них 4, уникальных рёбер 12
+        Assertions.assertEquals(12, edges.size());
+        for (int i = 0; i < edges.size(); ++i) {
+            Assertions.assertTrue(edges.getStart(i) < edges.getEnd(i));
+            for (int j = 0; j < i; ++j) {
+                Assertions.assertFalse(edges.getStart(i) == edges.getStart(j) && edges.getEnd(i) == edges.getEnd(j));
+            }
+        }
+        Assertions.assertSame(edges, model.getEdges());
+    }
+
+    @Test
+    public void testGetEdges02() {
+        Model model = createGrid();
+        EdgeList edges = model.getEdges();
+
+        model.deletePolygon(0);
+        Assertions.assertNotSame(edges, model.getEdges());
+        Assertions.assertEquals(10, model.getEdges().size());
+
+        // Центральная вершина общая для всех полигонов
+        model.deleteVertex(4);
+        Assertions.assertEquals(0, model.getEdges().size());
+    }
+
+    @Test
+    public void testModificationCount() {
+        Model model = createGrid();
+        long count = model.getModificationCount();
+        Assertions.assertEquals(count, model.getModificationCount());
+
+        model.vertices.set(0, 5, 5, 5);
+        Assertions.assertNotEquals(count, model.getModificationCount());
+
+        count = model.getModificationCount();
+        model.deletePolygon(0);
+        Assertions.assertNotEquals(count, model.getModificationCount());
+    }
+
+    @Test
+    public void testGetBounds() {
+        Model model = createGrid();
+        model.vertices.set(0, -5, 7, 2);
+        BoundingBox bounds = model.getBounds();
+        Assertions.assertEquals(-5, bounds.getMinX());
+        Assertions.assertEquals(7, bounds.getMaxY());
+        Assertions.assertEquals(2, bounds.getMaxZ());
+        Assertions.assertSame(bounds, model.getBounds());
+
+        // После изменения вершин параллелепипед пересчитывается
+        model.vertices.set(0, 0, 0, 10);
+        Assertions.assertEquals(10, model.getBounds().getMaxZ());
+        Assertions.assertTrue(model.getBounds().getRadius() >= 5);
+        Assertions.assertTrue(new Model().getBounds().isEmpty());
+    }
+
+    @Test
+    public void testSnapshot() {
+        Model model = createGrid();
+        Model snapshot = model.snapshot(6, 2);
+        Assertions.assertEquals(6, snapshot.vertices.size());
+        Assertions.assertEquals(2, snapshot.polygons.size());
+        Assertions.assertEquals(model.polygons.get(1).getVertexIndices(), snapshot.polygons.get(1).getVertexIndices());
+        Assertions.assertEquals(model.polygons.get(1).getNormalIndices(), snapshot.polygons.get(1).getNormalIndices());
+        Assertions.assertEquals(7, snapshot.getEdges().size());
+        Assertions.assertEquals(4, snapshot.getTriangles().size());
+
+        // Добавления в исходную модель (в том числе с ростом массивов) снимок не меняют
+        for (int i = 0; i < 1000; ++i) {
+            model.vertices.add(i, i, i);
+            model.polygons.add(new int[]{0, 1, i + 9}, 3, null, 0, null, 0);
+        }
+        Assertions.assertEquals(6, snapshot.vertices.size());
+        Assertions.assertEquals(2, snapshot.polygons.size());
+        Assertions.assertEquals(2.0f, snapshot.vertices.getX(5));
+        Assertions.assertEquals(List.of(1, 2, 5, 4), snapshot.polygons.get(1).getVertexIndices());
+    }
+
+    @Test
+    public void testWeldVertices() {
+        // Сетка 3x3, где у каждого угла каждого полигона своя копия вершины
+        Model expected = createGrid();
+        Model model = new Model();
+        model.normals.addAll(expected.normals.coordinates(), 0, expected.normals.size());
+        model.textureVertices.addAll(expected.textureVertices.coordinates(), 0, expected.textureVertices.size());
+        for (int p = 0; p < expected.polygons.size(); ++p) {
+            int[] corners = new int[4];
+            for (int k = 0; k < 4; ++k) {
+                int v = expected.polygons.getVertexIndex(p, k);
+                corners[k] = model.vertices.size();
+                // Копии отличаются в пределах допуска
+                model.vertices.add(expected.vertices.getX(v) + k * 1e-8f, expected.vertices.getY(v),
+                        expected.vertices.getZ(v));
+            }
+            model.polygons.add(corners, 4, new int[]{p, p, p, p}, 4, new int[]{p, p, p, p}, 4);
+        }
+
+        Assertions.assertEquals(16, model.vertices.size());
+        Assertions.assertEquals(7, model.weldVertices(Model.DEFAULT_WELD_TOLERANCE));
+        Assertions.assertEquals(9, model.vertices.size());
+        Assertions.assertEquals(4, model.polygons.size());
+        // Остаётся первая копия, поэтому вершины идут в порядке первого появления
+        Assertions.assertEquals(List.of(0, 1, 2, 3), model.polygons.get(0).getVertexIndices());
+        for (int p = 0; p < 4; ++p) {
+            for (int k = 0; k < 4; ++k) {
+                int actual = model.polygons.getVertexIndex(p, k);
+                int original = expected.polygons.getVertexIndex(p, k);
+                Assertions.assertEquals(expected.vertices.getX(original), model.vertices.getX(actual), 1e-6f);
+                Assertions.assertEquals(expected.vertices.getY(original), model.vertices.getY(actual));
+            }
+            Assertions.assertEquals(p, model.polygons.getNormalIndex(p, 0));
+        }
+        Assertions.assertEquals(12, model.getEdges().size());
+
+        // Повторная сварка ничего не находит
+        Assertions.assertEquals(0, model.weldVertices(Model.DEFAULT_WELD_TOLERANCE));
+    }
+
+    @Test
+    public void testWeldVerticesMatchesPairwise() {
+        // Случайные вершины с повторами, в том числе около границ ячеек сетки
+        Random random = new Random(7);
+        float tolerance = 0.01f;
+        Model model = new Model();
+        for (int i = 0; i < 3000; ++i) {
+            if (i > 0 && random.nextInt(3) == 0) {
+                int source = random.nextInt(i);
+                model.vertices.add(
+                        model.vertices.getX(source) + (random.nextFloat() - 0.5f) * tolerance,
+                        model.vertices.getY(source) + (random.nextFloat() - 0.5f) * tolerance,
+                        model.vertices.getZ(source) - (random.nextFloat() - 0.5f) * tolerance);
+            } else {
+                model.vertices.add(random.nextInt(40) * tolerance, random.nextInt(40) * tolerance,
+                        random.nextFloat() * 2 - 1);
+            }
+        }
+        for (int i = 0; i + 2 < model.vertices.size(); i += 3) {
+            model.polygons.add(new int[]{i, i + 1, i + 2}, 3, null, 0, null, 0);
+        }
+
+        // Тот же результат перебором: вершина сливается с первой оставленной совпадающей
+        float[] coordinates = Arrays.copyOf(model.vertices.coordinates(), model.vertices.size() * 3);
+        int[] expected = new int[model.vertices.size()];
+        List<Integer> kept = new java.util.ArrayList<>();
+        for (int v = 0; v < expected.length; ++v) {
+            expected[v] = -1;
+            for (int k = 0; k < kept.size() && expected[v] < 0; ++k) {
+                int u = kept.get(k);
+                if (Math.abs(coordinates[u * 3] - coordinates[v * 3]) < tolerance
+                        && Math.abs(coordinates[u * 3 + 1] - coordinates[v * 3 + 1]) < tolerance
+                        && Math.abs(coordinates[u * 3 + 2] - coordinates[v * 3 + 2]) < tolerance) {
+                    expected[v] = k;
+                }
+            }
+            if (expected[v] < 0) {
+                expected[v] = kept.size();
+                kept.add(v);
+            }
+        }
+
+        int vertexCount = model.vertices.size();
+        long modificationCount = model.getModificationCount();
+        // Сваренная копия: тот же результат, а исходная модель не меняется
+        Model welded = model.weldedCopy(tolerance);
+        Assertions.assertEquals(modificationCount, model.getModificationCount());
+        Assertions.assertEquals(vertexCount, model.vertices.size());
+        Assertions.assertEquals(kept.size(), welded.vertices.size());
+        Assertions.assertEquals(model.polygons.size(), welded.polygons.size());
+        for (int p = 0; p < welded.polygons.size(); ++p) {
+            for (int k = 0; k < 3; ++k) {
+                int v = welded.polygons.getVertexIndex(p, k);
+                Assertions.assertEquals(expected[p * 3 + k], v);
+                Assertions.assertEquals(coordinates[kept.get(v) * 3], welded.vertices.getX(v));
+            }
+        }
+        Assertions.assertSame(welded, welded.weldedCopy(tolerance));
+
+        Assertions.assertEquals(vertexCount - kept.size(), model.weldVertices(tolerance));
+        Assertions.assertEquals(kept.size(), model.vertices.size());
+        for (int p = 0; p < model.polygons.size(); ++p) {
+            for (int k = 0; k < 3; ++k) {
+                Assertions.assertEquals(expected[p * 3 + k], model.polygons.getVertexIndex(p, k));
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.cgvsu.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class TriangleBvhTest {
+
+    // Случайные треугольники размером около 0.1 в кубе 10x10x10
+    private static Model createRandomModel(int triangleCount, Random random) {
+        Model model = new Model();
+        for (int t = 0; t < triangleCount; ++t) {
+            float x = random.nextFloat() * 10;
+            float y = random.nextFloat() * 10;
+            float z = random.nextFloat() * 10;
+            for (int k = 0; k < 3; ++k) {
+                model.vertices.add(x + random.nextFloat() * 0.5f, y + random.nextFloat() * 0.5f,
+                        z + random.nextFloat() * 0.5f);
+            }
+            model.polygons.add(new int[]{t * 3, t * 3 + 1, t * 3 + 2}, 3, null, 0, null, 0);
+        }
+        return model;
+    }
+
+    // Ближайший треугольник перебором всех
+    private static int raycastLinear(Model model, float[] ray) {
+        TriangleList triangles = model.getTriangles();
+        float closest = Float.POSITIVE_INFINITY;
+        int closestTriangle = -1;
+        for (int t = 0; t < triangles.size(); ++t) {
+            float distance = TriangleBvh.intersectTriangle(triangles.vertexIndices(), t, model.vertices.coordinates(),
+                    ray[0], ray[1], ray[2], ray[3], ray[4], ray[5]);
+            if (distance < closest) {
+                closest = distance;
+                closestTriangle = t;
+            }
+        }
+        return closestTriangle;
+    }
+
+    private static void assertMatchesLinear(Model model, Random random) {
+        TriangleBvh bvh = model.getBvh();
+        int hits = 0;
+        for (int i = 0; i < 500; ++i) {
+            // Лучи снаружи куба, направленные в случайную его точку
+            float[] ray = {-5, random.nextFloat() * 10, random.nextFloat() * 10, 0, 0, 0};
+            ray[3] = 15 - ray[0];
+            ray[4] = random.nextFloat() * 10 - ray[1];
+            ray[5] = random.nextFloat() * 10 - ray[2];
+            int expected = raycastLinear(model, ray);
+            Assertions.assertEquals(expected, bvh.raycast(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5]));
+            if (expected >= 0) {
+                ++hits;
+            }
+        }
+        // Лучи действительно что-то задевают, иначе проверка ничего не стоит
+        Assertions.assertTrue(hits > 30, "hits: " + hits);
+    }
+
+    @Test
+    public void testRaycastMatchesLinearScan() {
+        Random random = new Random(7);
+        assertMatchesLinear(createRandomModel(5000, random), random);
+    }
+
+    @Test
+    public void testRaycastSingleTriangle() {
+        Model model = new Model();
+        model.vertices.add(0, 0, 0);
+        model.vertices.add(1, 0, 0);
+        model.vertices.add(0, 1, 0);
+        model.polygons.add(new int[]{0, 1, 2}, 3, null, 0, null, 0);
+
+        Assertions.assertEquals(0, model.getBvh().raycast(0.2f, 0.2f, 5, 0, 0, -1));
+        // Стороны треугольника не различаются
+        Assertions.assertEquals(0, model.getBvh().raycast(0.2f, 0.2f, -5, 0, 0, 1));
+        Assertions.assertEquals(-1, model.getBvh().raycast(0.8f, 0.8f, 5, 0, 0, -1));
+        // Треугольник позади начала луча
+        Assertions.assertEquals(-1, model.getBvh().raycast(0.2f, 0.2f, 5, 0, 0, 1));
+        Assertions.assertEquals(-1, new Model().getBvh().raycast(0, 0, 0, 0, 0, 1));
+    }
+
+    @Test
+    public void testRefitAfterMovingVertices() {
+        Random random = new Random(11);
+        Model model = createRandomModel(2000, random);
+        TriangleBvh bvh = model.getBvh();
+
+        for (int i = 0; i < model.vertices.size(); ++i) {
+            model.vertices.set(i, model.vertices.getY(i), model.vertices.getX(i), model.vertices.getZ(i) * 0.5f);
+        }
+        // Полигоны те же: дерево не перестраивается, но находит треугольники на новых местах
+        Assertions.assertSame(bvh, model.getBvh());
+        assertMatchesLinear(model, random);
+    }
+
+    @Test
+    public void testRebuildAfterDelete() {
+        Random random = new Random(13);
+        Model model = createRandomModel(2000, random);
+        TriangleBvh bvh = model.getBvh();
+
+        model.deletePolygons(new int[]{0, 5, 10, 500, 1999});
+        Assertions.assertNotSame(bvh, model.getBvh());
+        Assertions.assertEquals(1995, model.getBvh().getTriangles().size());
+        assertMatchesLinear(model, random);
+
+        model.deleteVertex(0);
+        assertMatchesLinear(model, random);
+    }
+}
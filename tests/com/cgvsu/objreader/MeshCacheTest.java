@@ -0,0 +1,121 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+class MeshCacheTest {
+
+    private static final String OBJ = """
+            v 0 0 0
+            v 1 0 0
+            v 1 1 0
+            v 0 1 0
+            vt 0 0
+            vt 1 1
+            vn 0 0 1
+            f 1/1/1 2/2/1 3/1/1 4/2/1
+            f 1 3 4
+            """;
+
+    @Test
+    public void testRoundTrip(@TempDir Path directory) throws IOException {
+        Path source = directory.resolve("model.obj");
+        Files.writeString(source, OBJ);
+        Model expected = ObjReader.read(source);
+
+        Assertions.assertTrue(MeshCache.tryWrite(source, expected));
+        Assertions.assertTrue(Files.isRegularFile(MeshCache.getCachePath(source)));
+        ObjReaderTest.assertModelsEqual(expected, MeshCache.tryRead(source));
+    }
+
+    @Test
+    public void testCancelledWrite(@TempDir Path directory) throws IOException {
+        Path source = directory.resolve("model.obj");
+        Files.writeString(source, OBJ);
+        Model model = ObjReader.read(source);
+
+        // Отменённая запись не оставляет ни кэша, ни временного файла и не пишет в общий каталог
+        Assertions.assertFalse(MeshCache.tryWrite(source, model, () -> true));
+        try (var files = Files.list(directory)) {
+            Assertions.assertEquals(List.of(source), files.toList());
+        }
+        Assertions.assertFalse(Files.exists(MeshCache.getCacheDirectoryPath(source)));
+        Assertions.assertNull(MeshCache.tryRead(source));
+    }
+
+    @Test
+    public void testModelWithoutAttributes(@TempDir Path directory) throws IOException {
+        Path source = directory.resolve("model.obj");
+        Files.writeString(source, "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n");
+        Model expected = ObjReader.read(source);
+
+        MeshCache.write(MeshCache.getCachePath(source), source, expected);
+        Model result = MeshCache.read(MeshCache.getCachePath(source), source);
+        ObjReaderTest.assertModelsEqual(expected, result);
+        Assertions.assertFalse(result.polygons.hasTextureVertexIndices());
+        Assertions.assertFalse(result.polygons.hasNormalIndices());
+    }
+
+    @Test
+    public void testChangedSourceInvalidatesCache(@TempDir Path directory) throws IOException {
+        Path source = directory.resolve("model.obj");
+        Files.writeString(source, OBJ);
+        MeshCache.write(MeshCache.getCachePath(source), source, ObjReader.read(source));
+
+        // Тот же размер, другое содержимое и время изменения
+        Files.writeString(source, OBJ.replace("v 1 1 0", "v 2 2 0"));
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+        Assertions.assertNull(MeshCache.tryRead(source));
+
+        // Другой размер
+        Files.writeString(source, OBJ + "v 5 5 5\n");
+        Assertions.assertNull(MeshCache.tryRead(source));
+    }
+
+    @Test
+    public void testTouchedSourceKeepsCache(@TempDir Path directory) throws IOException {
+        Path source = directory.resolve("model.obj");
+        Files.writeString(source, OBJ);
+        Model expected = ObjReader.read(source);
+        MeshCache.write(MeshCache.getCachePath(source), source, expected);
+
+        // Время изменения другое, содержимое то же - кэш по-прежнему годен
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+        ObjReaderTest.assertModelsEqual(expected, MeshCache.tryRead(source));
+    }
+
+    @Test
+    public void testCorruptCacheIsIgnored(@TempDir Path directory) throws IOException {
+        Path source = directory.resolve("model.obj");
+        Files.writeString(source, OBJ);
+        Path cacheFile = MeshCache.getCachePath(source);
+        MeshCache.write(cacheFile, source, ObjReader.read(source));
+
+        // Индекс вершины последнего угла за пределами списка вершин
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F, 0x7F, 0x7F, 0x7F}), channel.size() - 4);
+        }
+        Assertions.assertNull(MeshCache.read(cacheFile, source));
+
+        // Обрезанный файл
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 8);
+        }
+        Assertions.assertNull(MeshCache.read(cacheFile, source));
+
+        // Не кэш вовсе
+        Files.writeString(cacheFile, "not a mesh cache, just some text that is long enough for a header......");
+        Assertions.assertNull(MeshCache.read(cacheFile, source));
+    }
+}
@@ -1,11 +1,25 @@
 package com.cgvsu.objreader;
 
+import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 class ObjReaderTest {
 
@@ -63,4 +77,252 @@ class ObjReaderTest {
             Assertions.assertEquals(expectedError, exception.getMessage());
         }
     }
+
+    private static final String SAMPLE_OBJ = """
+            # comment
+            v 1.01 -2.5 3e2
+            v 0.123456789 1E-3 -0
+            v +7 .5 5.
+            vt 0.25 0.75
+            vt 1 0 0
+            vn 0 0 1
+              v 9 9 9
+            o object
+            f 1 2 3
+            f 1/1 2/2 3/1
+            f 1//1 2//1 3//1
+            f 1/2/1 2/1/1 3/2/1 1/1/
+            v 0.7071067811865476 1.0000001 123456789012345678901234
+            """.replace("\n", "\r\n");
+
+    @Test
+    public void testReadChannel01() throws IOException {
+        Model expected = ObjReader.read(SAMPLE_OBJ);
+        for (int bufferSize : new int[]{1, 7, 64, 1 << 20}) {
+            Model result = ObjReader.read(
+                    Channels.newChannel(new ByteArrayInputStream(SAMPLE_OBJ.getBytes(StandardCharsets.UTF_8))),
+                    bufferSize);
+            assertModelsEqual(expected, result);
+        }
+    }
+
+    @Test
+    public void testReadChannel02() {
+        String content = "v 1 2 3\n\nv 1 2\n";
+        ObjReaderException expected = Assertions.assertThrows(ObjReaderException.class,
+                () -> ObjReader.read(content));
+        ObjReaderException result = Assertions.assertThrows(ObjReaderException.class,
+                () -> ObjReader.read(Channels.newChannel(
+                        new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))), 4));
+        Assertions.assertEquals(expected.getMessage(), result.getMessage());
+    }
+
+    @Test
+    public void testReadChannel03() {
+        for (String content : new String[]{"v 1 2 a", "f 1/2/3/4", "f 1/x", "vt 1"}) {
+            ObjReaderException expected = Assertions.assertThrows(ObjReaderException.class,
+                    () -> ObjReader.read(content));
+            ObjReaderException result = Assertions.assertThrows(ObjReaderException.class,
+                    () -> ObjReader.read(Channels.newChannel(
+                            new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)))));
+            Assertions.assertEquals(expected.getMessage(), result.getMessage());
+        }
+    }
+
+    private static final String RELATIVE_INDICES_OBJ = """
+            v 0 0 0
+            v 1 0 0
+            v 0 1 0
+            vt 0 0
+            vt 1 1
+            vn 0 0 1
+            f -3/-2/-1 -2/-1/-1 -1/-1/-1
+            v 1 1 0
+            f 2 -1 3
+            f 1/1 -2/-1 -1/1
+            """;
+
+    @Test
+    public void testReadRelativeIndices01() {
+        Model model = ObjReader.read(RELATIVE_INDICES_OBJ);
+        Assertions.assertEquals(List.of(0, 1, 2), model.polygons.get(0).getVertexIndices());
+        Assertions.assertEquals(List.of(0, 1, 1), model.polygons.get(0).getTextureVertexIndices());
+        Assertions.assertEquals(List.of(0, 0, 0), model.polygons.get(0).getNormalIndices());
+        Assertions.assertEquals(List.of(1, 3, 2), model.polygons.get(1).getVertexIndices());
+        Assertions.assertEquals(List.of(0, 2, 3), model.polygons.get(2).getVertexIndices());
+    }
+
+    @Test
+    public void testReadParallel01(@TempDir Path directory) throws IOException {
+        StringBuilder content = new StringBuilder(SAMPLE_OBJ);
+        for (int i = 0; i < 200; ++i) {
+            content.append(RELATIVE_INDICES_OBJ);
+            content.append("f ").append(i + 1).append("/1 -1/-1 -2//-1\n");
+        }
+        Path file = directory.resolve("model.obj");
+        Files.writeString(file, content);
+
+        Model expected = ObjReader.read(content.toString());
+        assertModelsEqual(expected, ObjReader.read(file));
+        assertModelsEqual(expected, ObjReader.readParallel(file));
+        for (long chunkSize : new long[]{1, 17, 100, 4096}) {
+            assertModelsEqual(expected, ParallelObjReader.read(file, ForkJoinPool.commonPool(), chunkSize));
+        }
+    }
+
+    @Test
+    public void testReadParallel02(@TempDir Path directory) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            content.append("v 1 2 3\n\n");
+        }
+        content.append("f 1 2 x\nv 1\n");
+        Path file = directory.resolve("broken.obj");
+        Files.writeString(file, content);
+
+        ObjReaderException expected = Assertions.assertThrows(ObjReaderException.class,
+                () -> ObjReader.read(content.toString()));
+        for (long chunkSize : new long[]{1, 64, 1 << 20}) {
+            ObjReaderException result = Assertions.assertThrows(ObjReaderException.class,
+                    () -> ParallelObjReader.read(file, ForkJoinPool.commonPool(), chunkSize));
+            Assertions.assertEquals(expected.getMessage(), result.getMessage());
+        }
+    }
+
+    @Test
+    public void testReadParallel03(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("empty.obj");
+        Files.writeString(file, "");
+        Model model = ObjReader.readParallel(file);
+        Assertions.assertEquals(0, model.vertices.size());
+        Assertions.assertEquals(0, model.polygons.size());
+    }
+
+    @Test
+    public void testReadParallelMonitor(@TempDir Path directory) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            content.append("v 1 2 3\n");
+        }
+        Path file = directory.resolve("model.obj");
+        Files.writeString(file, content);
+        final long fileSize = Files.size(file);
+
+        // Прогресс растёт до размера файла
+        AtomicLong maxBytesRead = new AtomicLong();
+        Model model = ParallelObjReader.read(file, ForkJoinPool.commonPool(), 100, new ReadMonitor() {
+            @Override
+            public void onProgress(long bytesRead, long totalBytes) {
+                Assertions.assertEquals(fileSize, totalBytes);
+                maxBytesRead.accumulateAndGet(bytesRead, Math::max);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+        Assertions.assertEquals(1000, model.vertices.size());
+        Assertions.assertEquals(fileSize, maxBytesRead.get());
+
+        // Отмена после первого же куска
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Assertions.assertThrows(CancellationException.class,
+                () -> ParallelObjReader.read(file, ForkJoinPool.commonPool(), 100, new ReadMonitor() {
+                    @Override
+                    public void onProgress(long bytesRead, long totalBytes) {
+                        cancelled.set(true);
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return cancelled.get();
+                    }
+                }));
+    }
+
+    @Test
+    public void testReadProgressive(@TempDir Path directory) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2000; ++i) {
+            content.append("v ").append(i).append(" 0 0\nv ").append(i).append(" 1 0\nv ").append(i).append(" 0 1\n");
+            content.append("f -3 -2 -1\n");
+        }
+        // Ссылка вперёд на самую последнюю вершину: дальше этого полигона снимки расти не должны
+        content.append("f 1 2 6500\n");
+        for (int i = 0; i < 500; ++i) {
+            content.append("v 0 0 ").append(i).append("\nf 1 2 -1\n");
+        }
+        Path file = directory.resolve("model.obj");
+        Files.writeString(file, content);
+
+        List<Model> snapshots = new ArrayList<>();
+        Model model = ParallelObjReader.read(file, ForkJoinPool.commonPool(), 256, new ReadMonitor() {
+            @Override
+            public void onProgress(long bytesRead, long totalBytes) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+
+            @Override
+            public void onSnapshot(Model snapshot) {
+                // Снимки приходят из одного потока по порядку
+                snapshots.add(snapshot);
+            }
+        }, 1, 0);
+        assertModelsEqual(ObjReader.read(file), model);
+
+        Assertions.assertTrue(snapshots.size() > 10, "snapshots: " + snapshots.size());
+        int previousVertexCount = 0;
+        int previousPolygonCount = 0;
+        for (Model snapshot : snapshots) {
+            Assertions.assertTrue(snapshot.vertices.size() >= previousVertexCount);
+            Assertions.assertTrue(snapshot.polygons.size() >= previousPolygonCount);
+            Assertions.assertTrue(snapshot.polygons.size() <= 2000);
+            previousVertexCount = snapshot.vertices.size();
+            previousPolygonCount = snapshot.polygons.size();
+            // Снимок - начало итоговой модели, и все его полигоны можно рисовать
+            for (int i = 0; i < snapshot.vertices.size(); ++i) {
+                Assertions.assertEquals(model.vertices.getX(i), snapshot.vertices.getX(i));
+            }
+            for (int i = 0; i < snapshot.polygons.size(); ++i) {
+                Assertions.assertEquals(model.polygons.get(i).getVertexIndices(),
+                        snapshot.polygons.get(i).getVertexIndices());
+            }
+        }
+        Assertions.assertEquals(2000, previousPolygonCount);
+    }
+
+    static void assertModelsEqual(Model expected, Model result) {
+        Assertions.assertEquals(expected.vertices.size(), result.vertices.size());
+        for (int i = 0; i < expected.vertices.size(); ++i) {
+            Vector3f e = expected.vertices.get(i);
+            Vector3f r = result.vertices.get(i);
+            Assertions.assertArrayEquals(new float[]{e.x, e.y, e.z}, new float[]{r.x, r.y, r.z});
+        }
+        Assertions.assertEquals(expected.textureVertices.size(), result.textureVertices.size());
+        for (int i = 0; i < expected.textureVertices.size(); ++i) {
+            Vector2f e = expected.textureVertices.get(i);
+            Vector2f r = result.textureVertices.get(i);
+            Assertions.assertArrayEquals(new float[]{e.x, e.y}, new float[]{r.x, r.y});
+        }
+        Assertions.assertEquals(expected.normals.size(), result.normals.size());
+        for (int i = 0; i < expected.normals.size(); ++i) {
+            Vector3f e = expected.normals.get(i);
+            Vector3f r = result.normals.get(i);
+            Assertions.assertArrayEquals(new float[]{e.x, e.y, e.z}, new float[]{r.x, r.y, r.z});
+        }
+        Assertions.assertEquals(expected.polygons.size(), result.polygons.size());
+        for (int i = 0; i < expected.polygons.size(); ++i) {
+            Assertions.assertEquals(expected.polygons.get(i).getVertexIndices(),
+                    result.polygons.get(i).getVertexIndices());
+            Assertions.assertEquals(expected.polygons.get(i).getTextureVertexIndices(),
+                    result.polygons.get(i).getTextureVertexIndices());
+            Assertions.assertEquals(expected.polygons.get(i).getNormalIndices(),
+                    result.polygons.get(i).getNormalIndices());
+        }
+    }
 }
\ No newline at end of file
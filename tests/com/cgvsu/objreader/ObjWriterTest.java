@@ -0,0 +1,162 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+class ObjWriterTest {
+
+    private static String format(float value) {
+        byte[] buffer = new byte[FloatFormatter.MAX_LENGTH];
+        return new String(buffer, 0, FloatFormatter.format(value, buffer, 0), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testFormatFloat01() {
+        Assertions.assertEquals("0.0", format(0.0f));
+        Assertions.assertEquals("-0.0", format(-0.0f));
+        Assertions.assertEquals("1.0", format(1.0f));
+        Assertions.assertEquals("-2.5", format(-2.5f));
+        Assertions.assertEquals("0.1", format(0.1f));
+        Assertions.assertEquals("0.001", format(0.001f));
+        Assertions.assertEquals("123.456", format(123.456f));
+        Assertions.assertEquals("1234567.0", format(1234567.0f));
+        Assertions.assertEquals("1.0E7", format(1e7f));
+        Assertions.assertEquals("1.0E-4", format(1e-4f));
+        Assertions.assertEquals("-2.5E12", format(-2.5e12f));
+        Assertions.assertEquals("3.4028235E38", format(Float.MAX_VALUE));
+        Assertions.assertEquals("NaN", format(Float.NaN));
+        Assertions.assertEquals("-Infinity", format(Float.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void testFormatFloat02() {
+        // Любое число читается обратно точно и не длиннее, чем у Float.toString
+        Random random = new Random(42);
+        for (int i = 0; i < 1_000_000; ++i) {
+            float value = Float.intBitsToFloat(random.nextInt());
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            String text = format(value);
+            Assertions.assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(Float.parseFloat(text)), text);
+            Assertions.assertTrue(text.length() <= Float.toString(value).length(), text);
+        }
+    }
+
+    @Test
+    public void testWrite01() {
+        Model model = ObjReader.read("""
+                v 1 2.5 -3
+                vt 0.5 1
+                vn 0 0 1
+                f 1 1 1
+                f 1/1 1/1 1/1
+                f 1//1 1//1 1//1
+                f 1/1/1 1/1/1 1/1/1
+                """);
+        Assertions.assertEquals("""
+                v 1.0 2.5 -3.0
+                vt 0.5 1.0
+                vn 0.0 0.0 1.0
+                f 1 1 1
+                f 1/1 1/1 1/1
+                f 1//1 1//1 1//1
+                f 1/1/1 1/1/1 1/1/1
+                """, ObjWriter.write(model));
+    }
+
+    @Test
+    public void testWriteChannelMatchesString() throws IOException {
+        Model model = createRandomModel();
+        String expected = ObjWriter.write(model);
+        // Маленькие буферы - много сбросов посреди строк и полигонов
+        for (int bufferSize : new int[]{1, 60, 1000, 1 << 20}) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ObjWriter.write(model, Channels.newChannel(output), bufferSize);
+            Assertions.assertEquals(expected, output.toString(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testWriteFileRoundTrip(@TempDir Path directory) throws IOException {
+        Model model = createRandomModel();
+        Path file = directory.resolve("model.obj");
+        ObjWriter.write(model, file);
+        ObjReaderTest.assertModelsEqual(model, ObjReader.read(file));
+        Assertions.assertEquals(ObjWriter.write(model), Files.readString(file));
+    }
+
+    @Test
+    public void testWriteParallelMatchesSerial(@TempDir Path directory) throws IOException {
+        Model model = createRandomModel();
+        byte[] expected = ObjWriter.write(model).getBytes(StandardCharsets.US_ASCII);
+        Path file = directory.resolve("model.obj");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Куски от одной строки до всей модели сразу
+            for (int chunkSize : new int[]{1, 7, 100, 1 << 20}) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ParallelObjWriter.write(model, channel, pool, chunkSize);
+                    Assertions.assertEquals(expected.length, channel.position());
+                }
+                Assertions.assertArrayEquals(expected, Files.readAllBytes(file));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // Поверх более длинного файла: хвост старого содержимого не остаётся
+        Files.write(file, new byte[expected.length * 2]);
+        ObjWriter.writeParallel(model, file);
+        Assertions.assertArrayEquals(expected, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void testWriteParallelEmptyModel(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("model.obj");
+        ObjWriter.writeParallel(new Model(), file);
+        Assertions.assertEquals(0, Files.size(file));
+    }
+
+    private static Model createRandomModel() {
+        Random random = new Random(7);
+        Model model = new Model();
+        for (int i = 0; i < 2000; ++i) {
+            model.vertices.add(random.nextFloat() * 200 - 100, random.nextFloat() * 1e-6f, random.nextFloat() * 1e9f);
+            model.textureVertices.add(random.nextFloat(), random.nextFloat());
+            model.normals.add(random.nextFloat(), random.nextFloat(), random.nextFloat());
+        }
+        for (int i = 0; i < 3000; ++i) {
+            int count = 3 + random.nextInt(30);
+            int[] vertexIndices = new int[count];
+            int[] textureIndices = new int[count];
+            int[] normalIndices = new int[count];
+            for (int k = 0; k < count; ++k) {
+                vertexIndices[k] = random.nextInt(2000);
+                textureIndices[k] = random.nextInt(2000);
+                normalIndices[k] = random.nextInt(2000);
+            }
+            switch (i % 4) {
+                case 0 -> model.polygons.add(vertexIndices, count, null, 0, null, 0);
+                case 1 -> model.polygons.add(vertexIndices, count, textureIndices, count, null, 0);
+                case 2 -> model.polygons.add(vertexIndices, count, null, 0, normalIndices, count);
+                default -> model.polygons.add(vertexIndices, count, textureIndices, count, normalIndices, count);
+            }
+        }
+        return model;
+    }
+}
@@ -0,0 +1,132 @@
+package com.cgvsu.render_engine;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FrameBufferTest {
+
+    private static final int COLOR = 0xFF112233;
+
+    private static int countPixels(FrameBuffer frameBuffer, int argb) {
+        int count = 0;
+        for (int y = 0; y < frameBuffer.getHeight(); ++y) {
+            for (int x = 0; x < frameBuffer.getWidth(); ++x) {
+                if (frameBuffer.getPixel(x, y) == argb) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testDrawLine01() {
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(20, 10);
+        frameBuffer.clear(0);
+
+        frameBuffer.drawLine(2, 3, 12, 3, COLOR);
+        Assertions.assertEquals(11, countPixels(frameBuffer, COLOR));
+        Assertions.assertEquals(COLOR, frameBuffer.getPixel(2, 3));
+        Assertions.assertEquals(COLOR, frameBuffer.getPixel(12, 3));
+    }
+
+    @Test
+    public void testDrawLine02() {
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(10, 10);
+        frameBuffer.clear(0);
+
+        // Диагональ: по одному пикселю на строку, концы на месте
+        frameBuffer.drawLine(9, 9, 0, 0, COLOR);
+        Assertions.assertEquals(10, countPixels(frameBuffer, COLOR));
+        for (int i = 0; i < 10; ++i) {
+            Assertions.assertEquals(COLOR, frameBuffer.getPixel(i, i));
+        }
+    }
+
+    @Test
+    public void testDrawLineClipping() {
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(10, 10);
+        frameBuffer.clear(0);
+
+        // Отрезок далеко за пределами кадра обрезается, а не перебирается попиксельно
+        frameBuffer.drawLine(-1e9f, 5, 1e9f, 5, COLOR);
+        Assertions.assertEquals(10, countPixels(frameBuffer, COLOR));
+
+        frameBuffer.clear(0);
+        frameBuffer.drawLine(-5, -5, -1, 20, COLOR);
+        frameBuffer.drawLine(Float.NaN, 0, 5, 5, COLOR);
+        Assertions.assertEquals(0, countPixels(frameBuffer, COLOR));
+    }
+
+    @Test
+    public void testDrawThickLine() {
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(10, 10);
+        frameBuffer.clear(0);
+
+        frameBuffer.drawLine(5, 0, 5, 9, COLOR, 3);
+        Assertions.assertEquals(30, countPixels(frameBuffer, COLOR));
+        Assertions.assertEquals(COLOR, frameBuffer.getPixel(4, 5));
+        Assertions.assertEquals(COLOR, frameBuffer.getPixel(6, 5));
+    }
+
+    @Test
+    public void testFillTriangle01() {
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(10, 10);
+        frameBuffer.clear(0);
+
+        // Прямоугольный треугольник с катетами 10: закрашены пиксели с центром под диагональю
+        frameBuffer.fillTriangle(0, 0, 0, 10, 0, 0, 0, 10, 0, COLOR);
+        Assertions.assertEquals(55, countPixels(frameBuffer, COLOR));
+
+        // Обход в другую сторону закрашивает то же самое
+        frameBuffer.clear(0);
+        frameBuffer.fillTriangle(0, 0, 0, 0, 10, 0, 10, 0, 0, COLOR);
+        Assertions.assertEquals(55, countPixels(frameBuffer, COLOR));
+    }
+
+    @Test
+    public void testFillTriangleDepth() {
+        final int near = 0xFF0000FF;
+        final int far = 0xFF00FF00;
+
+        // Ближний треугольник побеждает независимо от порядка отрисовки
+        for (int order = 0; order < 2; ++order) {
+            FrameBuffer frameBuffer = new FrameBuffer();
+            frameBuffer.resize(10, 10);
+            frameBuffer.clear(0);
+            for (int i = 0; i < 2; ++i) {
+                if ((i == 0) == (order == 0)) {
+                    frameBuffer.fillTriangle(-10, -10, 0.5f, 30, -10, 0.5f, -10, 30, 0.5f, far);
+                } else {
+                    frameBuffer.fillTriangle(-10, -10, -0.5f, 30, -10, -0.5f, -10, 30, -0.5f, near);
+                }
+            }
+            Assertions.assertEquals(100, countPixels(frameBuffer, near));
+            Assertions.assertEquals(-0.5f, frameBuffer.getDepth(3, 3));
+        }
+    }
+
+    @Test
+    public void testFillTriangleDepthInterpolation() {
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(10, 10);
+        frameBuffer.clear(0);
+
+        // Глубина растёт слева направо от 0 до 1
+        frameBuffer.fillTriangle(0, -10, 0, 10, -10, 1, 0, 30, 0, COLOR);
+        Assertions.assertEquals(0.05f, frameBuffer.getDepth(0, 0), 1e-5f);
+        Assertions.assertEquals(0.25f, frameBuffer.getDepth(2, 0), 1e-5f);
+    }
+
+    @Test
+    public void testToArgb() {
+        Assertions.assertEquals(0xFFFF0000, FrameBuffer.toArgb(Color.RED));
+        Assertions.assertEquals(0x80800000, FrameBuffer.toArgb(Color.rgb(255, 0, 0, 128 / 255.0)));
+    }
+}
@@ -0,0 +1,85 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Vector3f;
+
+class FrustumClipperTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 100;
+
+    private static Matrix4f createMatrix() {
+        Camera camera = new Camera(new Vector3f(0, 0, 10), new Vector3f(0, 0, 0), 1.0F, 1, 0.01F, 100);
+        Matrix4f matrix = new Matrix4f(camera.getViewMatrix());
+        matrix.mul(camera.getProjectionMatrix());
+        return matrix;
+    }
+
+    private static Model createModel(float... coordinates) {
+        Model model = new Model();
+        for (int i = 0; i < coordinates.length; i += 3) {
+            model.vertices.add(coordinates[i], coordinates[i + 1], coordinates[i + 2]);
+        }
+        return model;
+    }
+
+    @Test
+    public void testIsOutside() {
+        Matrix4f matrix = createMatrix();
+        // Перед камерой
+        Assertions.assertFalse(FrustumClipper.isOutside(createModel(-1, -1, -1, 1, 1, 1).getBounds(), matrix));
+        // Позади камеры
+        Assertions.assertTrue(FrustumClipper.isOutside(createModel(-1, -1, 20, 1, 1, 30).getBounds(), matrix));
+        // Далеко сбоку
+        Assertions.assertTrue(FrustumClipper.isOutside(createModel(100, -1, -1, 101, 1, 1).getBounds(), matrix));
+        // За дальней плоскостью
+        Assertions.assertTrue(FrustumClipper.isOutside(createModel(-1, -1, -200, 1, 1, -150).getBounds(), matrix));
+        // Камера внутри параллелепипеда: углы по разные стороны от всех плоскостей
+        Assertions.assertFalse(FrustumClipper.isOutside(createModel(-50, -50, -50, 50, 50, 50).getBounds(), matrix));
+        Assertions.assertTrue(FrustumClipper.isOutside(new Model().getBounds(), matrix));
+    }
+
+    @Test
+    public void testClipSegment() {
+        // Отрезок от начала координат назад, за камеру
+        Model model = createModel(0, 0, 0, 0, 0, 20);
+        ScreenVertexBuffer screenVertices = new ScreenVertexBuffer();
+        screenVertices.project(model.vertices, createMatrix(), WIDTH, HEIGHT);
+
+        FrustumClipper clipper = new FrustumClipper();
+        Assertions.assertTrue(clipper.clipSegment(screenVertices, 0, 1));
+        Assertions.assertEquals(screenVertices.getScreenX()[0], clipper.getScreenX(0));
+        Assertions.assertEquals(screenVertices.getDepth()[0], clipper.getDepth(0));
+        // Второй конец - на ближней плоскости, в центре экрана
+        Assertions.assertEquals(-1, clipper.getDepth(1), 1e-4f);
+        Assertions.assertEquals(WIDTH / 2.0f, clipper.getScreenX(1), 1e-3f);
+        Assertions.assertEquals(HEIGHT / 2.0f, clipper.getScreenY(1), 1e-3f);
+
+        // Отрезок целиком позади камеры
+        Model behind = createModel(0, 0, 20, 1, 1, 30);
+        screenVertices.project(behind.vertices, createMatrix(), WIDTH, HEIGHT);
+        Assertions.assertFalse(clipper.clipSegment(screenVertices, 0, 1));
+    }
+
+    @Test
+    public void testClipTriangle() {
+        // Одна вершина позади камеры: после обрезки получается четырёхугольник
+        Model model = createModel(-1, 0, 0, 1, 0, 0, 0, 0, 20);
+        ScreenVertexBuffer screenVertices = new ScreenVertexBuffer();
+        screenVertices.project(model.vertices, createMatrix(), WIDTH, HEIGHT);
+
+        FrustumClipper clipper = new FrustumClipper();
+        Assertions.assertEquals(4, clipper.clipTriangle(screenVertices, 0, 1, 2));
+        for (int vertex = 0; vertex < 4; ++vertex) {
+            Assertions.assertTrue(clipper.getDepth(vertex) >= -1 - 1e-4f);
+            Assertions.assertTrue(Float.isFinite(clipper.getScreenX(vertex)));
+        }
+
+        // Две вершины позади камеры: остаётся треугольник
+        Assertions.assertEquals(3, clipper.clipTriangle(screenVertices, 2, 0, 2));
+    }
+}
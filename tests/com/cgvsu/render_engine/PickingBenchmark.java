@@ -0,0 +1,128 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Vector3f;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Замер выбора полигона по щелчку: поиск по BVH ({@link RenderEngine#findPolygonAtPoint})
+ * против прежнего перебора всех полигонов с расстоянием до рёбер на экране.
+ * Для перебора вершины спроецированы заранее (как было после отрисовки кадра),
+ * так что замеряется только сам поиск. Отдельно выводится время построения дерева.
+ * <p>
+ * Запуск: java com.cgvsu.render_engine.PickingBenchmark
+ */
+public class PickingBenchmark {
+
+    private static final int WIDTH = 1600;
+    private static final int HEIGHT = 900;
+    private static final int[] GRID_SIZES = {32, 100, 316, 1000, 2000};
+    private static final int CLICKS = 200;
+
+    public static void main(String[] args) {
+        Camera camera = new Camera(new Vector3f(0, 0, 3), new Vector3f(0, 0, 0), 1.0F,
+                (float) WIDTH / HEIGHT, 0.01F, 100);
+        Random random = new Random(1);
+
+        System.out.printf("%10s %12s %14s %14s %10s%n", "polygons", "build, ms", "linear, us", "bvh, us", "speedup");
+        for (int gridSize : GRID_SIZES) {
+            Model model = createGrid(gridSize);
+
+            final long buildStart = System.nanoTime();
+            model.getBvh();
+            final double build = (System.nanoTime() - buildStart) / 1e6;
+
+            ScreenVertexBuffer screenVertices = new ScreenVertexBuffer();
+            Matrix4f matrix = new Matrix4f(camera.getViewMatrix());
+            matrix.mul(camera.getProjectionMatrix());
+            screenVertices.project(model.vertices, matrix, WIDTH, HEIGHT);
+
+            long[] linearTimes = new long[CLICKS];
+            long[] bvhTimes = new long[CLICKS];
+            for (int click = -CLICKS; click < CLICKS; ++click) {
+                final double x = random.nextDouble() * WIDTH;
+                final double y = random.nextDouble() * HEIGHT;
+
+                long start = System.nanoTime();
+                findPolygonLinear(model, screenVertices, x, y);
+                final long linear = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                RenderEngine.findPolygonAtPoint(camera, model, WIDTH, HEIGHT, 0, 0, x, y);
+                final long bvh = System.nanoTime() - start;
+
+                // Первые CLICKS щелчков - прогрев
+                if (click >= 0) {
+                    linearTimes[click] = linear;
+                    bvhTimes[click] = bvh;
+                }
+            }
+            final double linear = median(linearTimes) / 1e3;
+            final double bvh = median(bvhTimes) / 1e3;
+            System.out.printf("%10d %12.1f %14.1f %14.1f %10.1f%n",
+                    model.polygons.size(), build, linear, bvh, linear / bvh);
+        }
+    }
+
+    // Волнистая сетка gridSize x gridSize четырёхугольников, закрывающая экран
+    private static Model createGrid(int gridSize) {
+        Model model = new Model();
+        for (int y = 0; y <= gridSize; ++y) {
+            for (int x = 0; x <= gridSize; ++x) {
+                final float u = (float) x / gridSize * 4 - 2;
+                final float v = (float) y / gridSize * 4 - 2;
+                model.vertices.add(u, v, (float) (0.1 * Math.sin(u * 5) * Math.cos(v * 5)));
+            }
+        }
+        for (int y = 0; y < gridSize; ++y) {
+            for (int x = 0; x < gridSize; ++x) {
+                final int v = y * (gridSize + 1) + x;
+                model.polygons.add(new int[]{v, v + 1, v + gridSize + 2, v + gridSize + 1}, 4, null, 0, null, 0);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Прежний поиск: первый полигон, к рёбрам которого точка ближе 10 пикселей.
+     */
+    private static int findPolygonLinear(Model model, ScreenVertexBuffer screenVertices, double x, double y) {
+        final float[] pointsX = screenVertices.getScreenX();
+        final float[] pointsY = screenVertices.getScreenY();
+        final int[] offsets = model.polygons.offsets();
+        final int[] indices = model.polygons.vertexIndices();
+        for (int polygonInd = 0; polygonInd < model.polygons.size(); ++polygonInd) {
+            final int start = offsets[polygonInd];
+            final int end = offsets[polygonInd + 1];
+            for (int i = start; i < end; ++i) {
+                final int p1 = indices[i];
+                final int p2 = indices[i + 1 < end ? i + 1 : start];
+                if (pointToSegmentDistance(x, y, pointsX[p1], pointsY[p1], pointsX[p2], pointsY[p2]) < 10) {
+                    return polygonInd;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static double pointToSegmentDistance(double px, double py, double x1, double y1, double x2, double y2) {
+        final double dx = x2 - x1;
+        final double dy = y2 - y1;
+        final double lengthSquared = dx * dx + dy * dy;
+        final double t = lengthSquared != 0
+                ? Math.max(0, Math.min(1, ((px - x1) * dx + (py - y1) * dy) / lengthSquared))
+                : 0;
+        final double nearestX = x1 + t * dx - px;
+        final double nearestY = y1 + t * dy - py;
+        return Math.sqrt(nearestX * nearestX + nearestY * nearestY);
+    }
+
+    private static double median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,134 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Vector3f;
+
+class PickingBufferTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 100;
+
+    // Два квадрата один за другим, ближе к камере - полигон 1
+    private static Model createModel() {
+        Model model = new Model();
+        for (float z : new float[]{0, 2}) {
+            model.vertices.add(-1, -1, z);
+            model.vertices.add(1, -1, z);
+            model.vertices.add(1, 1, z);
+            model.vertices.add(-1, 1, z);
+        }
+        model.polygons.add(new int[]{0, 1, 2, 3}, 4, null, 0, null, 0);
+        model.polygons.add(new int[]{4, 5, 6, 7}, 4, null, 0, null, 0);
+        return model;
+    }
+
+    @Test
+    public void testGetPolygonAt() {
+        Camera camera = new Camera(new Vector3f(0, 0, 10), new Vector3f(0, 0, 0), 1.0F, 1, 0.01F, 100);
+        Model model = createModel();
+        PickingBuffer pickingBuffer = new PickingBuffer();
+        Assertions.assertEquals(-1, pickingBuffer.getPolygonAt(50, 50));
+
+        Assertions.assertTrue(pickingBuffer.update(camera, model, WIDTH, HEIGHT, 0, 0,
+                new ScreenVertexBuffer(), new TiledRasterizer()));
+        Assertions.assertEquals(1, pickingBuffer.getPolygonAt(50, 50));
+        Assertions.assertEquals(-1, pickingBuffer.getPolygonAt(1, 1));
+        Assertions.assertEquals(-1, pickingBuffer.getPolygonAt(-1, 50));
+        Assertions.assertEquals(-1, pickingBuffer.getPolygonAt(50, HEIGHT));
+
+        // Ничего не изменилось - буфер не перестраивается
+        Assertions.assertFalse(pickingBuffer.update(camera, model, WIDTH, HEIGHT, 0, 0,
+                new ScreenVertexBuffer(), new TiledRasterizer()));
+
+        // Ближний квадрат удалён: под центром теперь дальний
+        model.deletePolygon(1);
+        Assertions.assertTrue(pickingBuffer.update(camera, model, WIDTH, HEIGHT, 0, 0,
+                new ScreenVertexBuffer(), new TiledRasterizer()));
+        Assertions.assertEquals(0, pickingBuffer.getPolygonAt(50, 50));
+    }
+
+    @Test
+    public void testGetObjectAt() {
+        Camera camera = new Camera(new Vector3f(0, 0, 10), new Vector3f(0, 0, 0), 1.0F, 1, 0.01F, 100);
+        Scene scene = new Scene();
+        scene.add(new Model());
+        SceneObject left = scene.add(createModel());
+        left.setTranslation(-1.5f, 0, 0);
+        SceneObject right = scene.add(createModel());
+        right.setTranslation(1.5f, 0, 0);
+
+        PickingBuffer pickingBuffer = new PickingBuffer();
+        Assertions.assertTrue(pickingBuffer.update(camera, scene.getObjects(), WIDTH, HEIGHT, new TiledRasterizer()));
+        // Камера смотрит вдоль -z, поэтому сдвинутый в -x объект виден справа
+        Assertions.assertSame(left, pickingBuffer.getObjectAt(WIDTH * 0.65, HEIGHT / 2.0));
+        Assertions.assertEquals(1, pickingBuffer.getPolygonAt(WIDTH * 0.65, HEIGHT / 2.0));
+        Assertions.assertSame(right, pickingBuffer.getObjectAt(WIDTH * 0.35, HEIGHT / 2.0));
+        Assertions.assertEquals(1, pickingBuffer.getPolygonAt(WIDTH * 0.35, HEIGHT / 2.0));
+        Assertions.assertNull(pickingBuffer.getObjectAt(1, 1));
+        Assertions.assertEquals(-1, pickingBuffer.getPolygonAt(1, 1));
+
+        Assertions.assertFalse(pickingBuffer.update(camera, scene.getObjects(), WIDTH, HEIGHT, new TiledRasterizer()));
+
+        // Скрытый объект не выбирается, смена видимости перестраивает буфер
+        left.setVisible(false);
+        Assertions.assertTrue(pickingBuffer.update(camera, scene.getObjects(), WIDTH, HEIGHT, new TiledRasterizer()));
+        Assertions.assertNull(pickingBuffer.getObjectAt(WIDTH * 0.65, HEIGHT / 2.0));
+    }
+
+    @Test
+    public void testBackFacesInWireframe() {
+        // Камера сзади: оба квадрата повёрнуты к ней обратной стороной, ближе к камере - полигон 0
+        Camera camera = new Camera(new Vector3f(0, 0, -10), new Vector3f(0, 0, 0), 1.0F, 1, 0.01F, 100);
+        Scene scene = new Scene();
+        SceneObject object = scene.add(createModel());
+
+        PickingBuffer pickingBuffer = new PickingBuffer();
+        Assertions.assertTrue(pickingBuffer.update(camera, scene.getObjects(), WIDTH, HEIGHT, new TiledRasterizer(), true));
+        Assertions.assertNull(pickingBuffer.getObjectAt(50, 50));
+
+        // Смена режима перестраивает буфер
+        Assertions.assertTrue(pickingBuffer.update(camera, scene.getObjects(), WIDTH, HEIGHT, new TiledRasterizer(), false));
+        Assertions.assertSame(object, pickingBuffer.getObjectAt(50, 50));
+        Assertions.assertEquals(0, pickingBuffer.getPolygonAt(50, 50));
+        Assertions.assertFalse(pickingBuffer.update(camera, scene.getObjects(), WIDTH, HEIGHT, new TiledRasterizer(), false));
+    }
+
+    @Test
+    public void testMatchesRayCast() {
+        Camera camera = new Camera(new Vector3f(1, 2, 6), new Vector3f(0, 0, 0), 1.0F, 1, 0.01F, 100);
+        Model model = new Model();
+        // Сетка 20x20 на волнистой поверхности
+        final int size = 20;
+        for (int y = 0; y <= size; ++y) {
+            for (int x = 0; x <= size; ++x) {
+                float u = x * 0.2f - 2;
+                float v = y * 0.2f - 2;
+                model.vertices.add(u, v, (float) (0.2 * Math.sin(u * 2)));
+            }
+        }
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                int v = y * (size + 1) + x;
+                model.polygons.add(new int[]{v, v + 1, v + size + 2, v + size + 1}, 4, null, 0, null, 0);
+            }
+        }
+
+        PickingBuffer pickingBuffer = new PickingBuffer();
+        pickingBuffer.update(camera, model, WIDTH, HEIGHT, 0.3f, 0.2f, new ScreenVertexBuffer(), new TiledRasterizer());
+        int mismatches = 0;
+        for (int y = 0; y < HEIGHT; y += 3) {
+            for (int x = 0; x < WIDTH; x += 3) {
+                int expected = RenderEngine.findPolygonAtPoint(camera, model, WIDTH, HEIGHT, 0.3f, 0.2f,
+                        x + 0.5, y + 0.5);
+                if (expected != pickingBuffer.getPolygonAt(x + 0.5, y + 0.5)) {
+                    ++mismatches;
+                }
+            }
+        }
+        // Расхождения возможны только в пикселях на границах полигонов
+        Assertions.assertTrue(mismatches < 20, "mismatches: " + mismatches);
+    }
+}
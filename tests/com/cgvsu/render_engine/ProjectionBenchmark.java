@@ -0,0 +1,73 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Vector3fList;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Vector3f;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Замер проецирования вершин в одном потоке и параллельно для разного размера модели.
+ * По выводу видно, с какого числа вершин параллельная версия начинает выигрывать;
+ * по нему выбран {@link ScreenVertexBuffer#DEFAULT_PARALLEL_THRESHOLD}.
+ * <p>
+ * Запуск: java com.cgvsu.render_engine.ProjectionBenchmark [число потоков]
+ * (с --add-modules jdk.incubator.vector - на SIMD, с -Dcgvsu.vectorProjection=false - без него)
+ */
+public class ProjectionBenchmark {
+
+    private static final int WIDTH = 1600;
+    private static final int HEIGHT = 900;
+    private static final int[] SIZES = {
+            1 << 10, 1 << 12, 1 << 13, 1 << 14, 1 << 15, 1 << 16, 1 << 17, 1 << 18, 1 << 20, 1 << 22};
+
+    public static void main(String[] args) {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        Matrix4f matrix = new Matrix4f(GraphicConveyor.lookAt(new Vector3f(1, 2, 10), new Vector3f(0, 0, 0)));
+        matrix.mul(GraphicConveyor.perspective(1.0F, (float) WIDTH / HEIGHT, 0.01F, 100));
+
+        System.out.printf("threads: %d, simd: %s%n%10s %14s %14s %8s%n", threads, VertexProjector.isVectorized(), "vertices", "serial, us", "parallel, us", "speedup");
+        int crossover = -1;
+        for (int size : SIZES) {
+            Vector3fList vertices = new Vector3fList();
+            for (int i = 0; i < size; ++i) {
+                vertices.add((float) Math.sin(i), (float) Math.cos(i * 0.5), i * 1e-6f);
+            }
+
+            final double serial = measure(new ScreenVertexBuffer(pool, Integer.MAX_VALUE), vertices, matrix);
+            final double parallel = measure(new ScreenVertexBuffer(pool, 0), vertices, matrix);
+            System.out.printf("%10d %14.1f %14.1f %8.2f%n", size, serial / 1e3, parallel / 1e3, serial / parallel);
+            // Порог - размер, начиная с которого параллельная версия быстрее на всех больших размерах
+            if (parallel >= serial) {
+                crossover = -1;
+            } else if (crossover < 0) {
+                crossover = size;
+            }
+        }
+        System.out.println("parallel is faster from: " + (crossover < 0 ? "never" : crossover + " vertices"));
+        pool.shutdown();
+    }
+
+    /**
+     * Медиана времени одного проецирования в наносекундах после прогрева.
+     */
+    private static double measure(ScreenVertexBuffer buffer, Vector3fList vertices, Matrix4f matrix) {
+        final int runs = Math.max(20, (1 << 24) / vertices.size());
+        long[] times = new long[runs];
+        for (int warmup = 0; warmup < runs; ++warmup) {
+            buffer.invalidate();
+            buffer.project(vertices, matrix, WIDTH, HEIGHT);
+        }
+        for (int run = 0; run < runs; ++run) {
+            buffer.invalidate();
+            final long start = System.nanoTime();
+            buffer.project(vertices, matrix, WIDTH, HEIGHT);
+            times[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+}
@@ -0,0 +1,237 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.LodChain;
+import com.cgvsu.model.Model;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Vector3f;
+import java.util.List;
+
+class RenderEngineTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 100;
+
+    private static Camera createCamera() {
+        return new Camera(new Vector3f(0, 0, 10), new Vector3f(0, 0, 0), 1.0F, 1, 0.01F, 100);
+    }
+
+    private static int countFilledPixels(Model model) {
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(WIDTH, HEIGHT);
+        frameBuffer.clear(0);
+        RenderEngine.renderFilled(frameBuffer, createCamera(), model, 0, 0, -1, Color.WHITE, new ScreenVertexBuffer());
+
+        int count = 0;
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                if (frameBuffer.getPixel(x, y) != 0) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static Model createQuad(boolean counterClockwise) {
+        Model model = new Model();
+        model.vertices.add(-1, -1, 0);
+        model.vertices.add(1, -1, 0);
+        model.vertices.add(1, 1, 0);
+        model.vertices.add(-1, 1, 0);
+        int[] indices = counterClockwise ? new int[]{0, 1, 2, 3} : new int[]{3, 2, 1, 0};
+        model.polygons.add(indices, 4, null, 0, null, 0);
+        return model;
+    }
+
+    @Test
+    public void testRenderFilledCulling() {
+        // Квадрат, обходимый против часовой стрелки, если смотреть с камеры, - лицевой
+        Assertions.assertTrue(countFilledPixels(createQuad(true)) > 0);
+        Assertions.assertEquals(0, countFilledPixels(createQuad(false)));
+    }
+
+    @Test
+    public void testRenderFilledBehindCamera() {
+        Model model = createQuad(true);
+        for (int i = 0; i < model.vertices.size(); ++i) {
+            model.vertices.set(i, model.vertices.getX(i), model.vertices.getY(i), 20);
+        }
+        Assertions.assertEquals(0, countFilledPixels(model));
+    }
+
+    @Test
+    public void testRenderFilledNearPlaneClipping() {
+        // Пол под камерой, уходящий за её спину: без обрезки по ближней плоскости
+        // его треугольники не рисовались бы вовсе
+        Model model = new Model();
+        model.vertices.add(-100, -1, -100);
+        model.vertices.add(-100, -1, 100);
+        model.vertices.add(100, -1, 100);
+        model.vertices.add(100, -1, -100);
+        model.polygons.add(new int[]{0, 1, 2, 3}, 4, null, 0, null, 0);
+
+        // Горизонт - дальний край пола, чуть ниже середины кадра
+        int filled = countFilledPixels(model);
+        Assertions.assertTrue(filled > WIDTH * HEIGHT * 2 / 5, "filled: " + filled);
+        Assertions.assertTrue(filled <= WIDTH * HEIGHT / 2, "filled: " + filled);
+    }
+
+    @Test
+    public void testOutsideModelIsNotProjected() {
+        Model model = createQuad(true);
+        for (int i = 0; i < model.vertices.size(); ++i) {
+            model.vertices.set(i, model.vertices.getX(i), model.vertices.getY(i), 20);
+        }
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(WIDTH, HEIGHT);
+        frameBuffer.clear(0);
+        ScreenVertexBuffer screenVertices = new ScreenVertexBuffer();
+        RenderEngine.render(frameBuffer, createCamera(), model, 0, 0, -1, Color.WHITE, screenVertices);
+        Assertions.assertEquals(0, screenVertices.getVertexCount());
+    }
+
+    @Test
+    public void testFindPolygonAtPoint() {
+        // Два квадрата один за другим: под центром экрана выбирается ближний к камере
+        Model model = createQuad(true);
+        for (int i = 0; i < 4; ++i) {
+            model.vertices.add(model.vertices.getX(i), model.vertices.getY(i), 2);
+        }
+        model.polygons.add(new int[]{4, 5, 6, 7}, 4, null, 0, null, 0);
+
+        Assertions.assertEquals(1, RenderEngine.findPolygonAtPoint(createCamera(), model, WIDTH, HEIGHT, 0, 0,
+                WIDTH / 2.0, HEIGHT / 2.0));
+        Assertions.assertEquals(-1, RenderEngine.findPolygonAtPoint(createCamera(), model, WIDTH, HEIGHT, 0, 0,
+                1, 1));
+
+        // Модель повёрнута на пол-оборота вокруг Y: теперь ближе квадрат с z = 0
+        Assertions.assertEquals(0, RenderEngine.findPolygonAtPoint(createCamera(), model, WIDTH, HEIGHT, 0,
+                (float) Math.PI, WIDTH / 2.0, HEIGHT / 2.0));
+    }
+
+    @Test
+    public void testRenderSceneCullsObjects() {
+        // Три квадрата: в центре, сдвинутый за пределы кадра и скрытый
+        Scene scene = new Scene();
+        SceneObject center = scene.add(createQuad(true));
+        SceneObject outside = scene.add(createQuad(true));
+        outside.setTranslation(100, 0, 0);
+        SceneObject hidden = scene.add(createQuad(true));
+        hidden.setVisible(false);
+
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(WIDTH, HEIGHT);
+        frameBuffer.clear(0);
+        Assertions.assertEquals(1, RenderEngine.renderScene(frameBuffer, createCamera(), scene.getObjects(),
+                null, -1, Color.WHITE, true, new TiledRasterizer()));
+        Assertions.assertEquals(4, center.screenVertices.getVertexCount());
+        Assertions.assertEquals(0, outside.screenVertices.getVertexCount());
+        Assertions.assertEquals(0, hidden.screenVertices.getVertexCount());
+        Assertions.assertNotEquals(0, frameBuffer.getPixel(WIDTH / 2, HEIGHT / 2));
+    }
+
+    @Test
+    public void testRenderSceneLevelsOfDetail() {
+        // Сфера из нескольких тысяч треугольников занимает на экране всего около 20 пикселей в радиусе
+        Model sphere = new Model();
+        final int rings = 40;
+        final int segments = 40;
+        for (int r = 0; r <= rings; ++r) {
+            double theta = Math.PI * r / rings;
+            for (int s = 0; s < segments; ++s) {
+                double phi = 2 * Math.PI * s / segments;
+                sphere.vertices.add((float) (Math.sin(theta) * Math.cos(phi)), (float) Math.cos(theta),
+                        (float) (Math.sin(theta) * Math.sin(phi)));
+            }
+        }
+        for (int r = 0; r < rings; ++r) {
+            for (int s = 0; s < segments; ++s) {
+                int v = r * segments + s;
+                int next = r * segments + (s + 1) % segments;
+                sphere.polygons.add(new int[]{v, next, next + segments, v + segments}, 4, null, 0, null, 0);
+            }
+        }
+        SceneObject object = new SceneObject(sphere);
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(WIDTH, HEIGHT);
+        TiledRasterizer rasterizer = new TiledRasterizer();
+
+        // Пока цепочка не построена, рисуется полная модель
+        RenderEngine.renderScene(frameBuffer, createCamera(), List.of(object), null, -1, Color.WHITE, true,
+                rasterizer, true);
+        Assertions.assertEquals(0, object.getDrawnLevel());
+
+        object.setLevelsOfDetail(LodChain.build(sphere, sphere.getModificationCount(), LodChain.DEFAULT_RATIOS,
+                () -> false));
+        frameBuffer.clear(0);
+        RenderEngine.renderScene(frameBuffer, createCamera(), List.of(object), null, -1, Color.WHITE, true,
+                rasterizer, true);
+        Assertions.assertTrue(object.getDrawnLevel() > 0);
+        Assertions.assertSame(object.getLevelsOfDetail().getLevel(object.getDrawnLevel()), object.drawnModel);
+        Assertions.assertNotEquals(0, frameBuffer.getPixel(WIDTH / 2, HEIGHT / 2));
+
+        // Без уровней детализации - снова полная модель
+        RenderEngine.renderScene(frameBuffer, createCamera(), List.of(object), null, -1, Color.WHITE, true,
+                rasterizer, false);
+        Assertions.assertEquals(0, object.getDrawnLevel());
+
+        // После изменения модели цепочка устарела и не используется
+        sphere.deletePolygon(0);
+        RenderEngine.renderScene(frameBuffer, createCamera(), List.of(object), null, -1, Color.WHITE, true,
+                rasterizer, true);
+        Assertions.assertEquals(0, object.getDrawnLevel());
+    }
+
+    @Test
+    public void testRenderSceneMatchesSingleModel() {
+        // Объект сцены с поворотом рисуется так же, как одна модель с тем же поворотом
+        Model model = createQuad(true);
+        for (int i = 0; i < 4; ++i) {
+            model.vertices.add(model.vertices.getX(i) * 0.5f, model.vertices.getY(i), 1);
+        }
+        model.polygons.add(new int[]{4, 5, 6, 7}, 4, null, 0, null, 0);
+
+        FrameBuffer expected = new FrameBuffer();
+        expected.resize(WIDTH, HEIGHT);
+        expected.clear(0);
+        RenderEngine.renderFilled(expected, createCamera(), model, 0.3f, 0.5f, 1, Color.WHITE, new ScreenVertexBuffer());
+
+        SceneObject object = new SceneObject(model);
+        object.setRotation(0.3f, 0.5f);
+        FrameBuffer actual = new FrameBuffer();
+        actual.resize(WIDTH, HEIGHT);
+        actual.clear(0);
+        RenderEngine.renderScene(actual, createCamera(), List.of(object), object, 1, Color.WHITE, true,
+                new TiledRasterizer());
+
+        int mismatches = 0;
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                if (expected.getPixel(x, y) != actual.getPixel(x, y)) {
+                    ++mismatches;
+                }
+            }
+        }
+        // Матрицы перемножаются в другом порядке, на краях возможны единичные расхождения
+        Assertions.assertTrue(mismatches < 10, "mismatches: " + mismatches);
+    }
+
+    @Test
+    public void testSceneModificationCount() {
+        Scene scene = new Scene();
+        long count = scene.getModificationCount();
+        SceneObject object = scene.add(createQuad(true));
+        Assertions.assertTrue(scene.getModificationCount() > count);
+
+        count = scene.getModificationCount();
+        object.rotate(0.1f, 0);
+        Assertions.assertTrue(scene.getModificationCount() > count);
+
+        count = scene.getModificationCount();
+        scene.remove(0);
+        Assertions.assertTrue(scene.getModificationCount() > count);
+    }
+}
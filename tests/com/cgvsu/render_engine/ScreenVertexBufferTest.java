@@ -0,0 +1,189 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Vector3fList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Point2f;
+import javax.vecmath.Vector3f;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+class ScreenVertexBufferTest {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    private static Vector3fList createVertices(int count) {
+        Vector3fList vertices = new Vector3fList();
+        for (int i = 0; i < count; ++i) {
+            vertices.add((float) Math.sin(i), (float) Math.cos(i * 0.5), i * 0.01f - 3);
+        }
+        return vertices;
+    }
+
+    private static Matrix4f createMatrix() {
+        Matrix4f matrix = new Matrix4f(GraphicConveyor.lookAt(new Vector3f(1, 2, 10), new Vector3f(0, 0, 0)));
+        matrix.mul(GraphicConveyor.perspective(1.0F, (float) WIDTH / HEIGHT, 0.01F, 100));
+        return matrix;
+    }
+
+    @Test
+    public void testProject01() {
+        Vector3fList vertices = createVertices(100);
+        Matrix4f matrix = createMatrix();
+
+        ScreenVertexBuffer buffer = new ScreenVertexBuffer();
+        buffer.project(vertices, matrix, WIDTH, HEIGHT);
+
+        Assertions.assertEquals(vertices.size(), buffer.getVertexCount());
+        for (int i = 0; i < vertices.size(); ++i) {
+            Vector3f transformed = GraphicConveyor.multiplyMatrix4ByVector3(matrix,
+                    new Vector3f(vertices.getX(i), vertices.getY(i), vertices.getZ(i)));
+            Point2f expected = GraphicConveyor.vertexToPoint(transformed, WIDTH, HEIGHT);
+            Assertions.assertEquals(expected.x, buffer.getScreenX()[i]);
+            Assertions.assertEquals(expected.y, buffer.getScreenY()[i]);
+            Assertions.assertEquals(transformed.z, buffer.getDepth()[i]);
+        }
+    }
+
+    @Test
+    public void testProject02() {
+        ScreenVertexBuffer buffer = new ScreenVertexBuffer();
+        Matrix4f matrix = createMatrix();
+
+        buffer.project(createVertices(1000), matrix, WIDTH, HEIGHT);
+        float[] screenX = buffer.getScreenX();
+
+        // Модель стала меньше - массивы остаются прежними
+        buffer.project(createVertices(10), matrix, WIDTH, HEIGHT);
+        Assertions.assertEquals(10, buffer.getVertexCount());
+        Assertions.assertSame(screenX, buffer.getScreenX());
+    }
+
+    @Test
+    public void testProjectCache01() {
+        Vector3fList vertices = createVertices(100);
+        Matrix4f matrix = createMatrix();
+        ScreenVertexBuffer buffer = new ScreenVertexBuffer();
+
+        Assertions.assertTrue(buffer.project(vertices, matrix, WIDTH, HEIGHT));
+        // Та же камера, то же окно, та же модель - пересчёта нет
+        Assertions.assertFalse(buffer.project(vertices, new Matrix4f(matrix), WIDTH, HEIGHT));
+
+        Assertions.assertTrue(buffer.project(vertices, matrix, WIDTH, HEIGHT + 1));
+        Matrix4f moved = new Matrix4f(matrix);
+        moved.m03 += 1;
+        Assertions.assertTrue(buffer.project(vertices, moved, WIDTH, HEIGHT + 1));
+        Assertions.assertFalse(buffer.project(vertices, moved, WIDTH, HEIGHT + 1));
+
+        buffer.invalidate();
+        Assertions.assertTrue(buffer.project(vertices, moved, WIDTH, HEIGHT + 1));
+    }
+
+    @Test
+    public void testProjectCache02() {
+        Vector3fList vertices = createVertices(100);
+        Matrix4f matrix = createMatrix();
+        ScreenVertexBuffer buffer = new ScreenVertexBuffer();
+        buffer.project(vertices, matrix, WIDTH, HEIGHT);
+
+        // Изменение вершины сбрасывает кэш, и новая координата видна на экране
+        final float oldX = buffer.getScreenX()[5];
+        vertices.set(5, vertices.getX(5) + 1, vertices.getY(5), vertices.getZ(5));
+        Assertions.assertTrue(buffer.project(vertices, matrix, WIDTH, HEIGHT));
+        Assertions.assertNotEquals(oldX, buffer.getScreenX()[5]);
+
+        // Другой список с теми же координатами тоже пересчитывается
+        Assertions.assertTrue(buffer.project(createVertices(100), matrix, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void testProjectParallel() {
+        // Размер не кратен диапазону, чтобы последний диапазон был неполным
+        Vector3fList vertices = createVertices(ScreenVertexBuffer.RANGE_SIZE * 5 + 123);
+        Matrix4f matrix = createMatrix();
+
+        ScreenVertexBuffer serial = new ScreenVertexBuffer(ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+        serial.project(vertices, matrix, WIDTH, HEIGHT);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ScreenVertexBuffer parallel = new ScreenVertexBuffer(pool, 0);
+            parallel.project(vertices, matrix, WIDTH, HEIGHT);
+
+            final int count = vertices.size();
+            Assertions.assertArrayEquals(Arrays.copyOf(serial.getScreenX(), count), Arrays.copyOf(parallel.getScreenX(), count));
+            Assertions.assertArrayEquals(Arrays.copyOf(serial.getScreenY(), count), Arrays.copyOf(parallel.getScreenY(), count));
+            Assertions.assertArrayEquals(Arrays.copyOf(serial.getDepth(), count), Arrays.copyOf(parallel.getDepth(), count));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testVectorProjection() {
+        Assumptions.assumeTrue(VertexProjector.isVectorized(), "jdk.incubator.vector is not available");
+
+        // Часть вершин позади камеры, размер не кратен числу вершин за итерацию
+        Vector3fList vertices = createVertices(1003);
+        for (int i = 0; i < vertices.size(); i += 7) {
+            vertices.set(i, vertices.getX(i), vertices.getY(i), 50);
+        }
+        Matrix4f matrix = createMatrix();
+        final int count = vertices.size();
+
+        float[][] expected = new float[3][count];
+        GraphicConveyor.projectVertices(matrix, vertices.coordinates(), 0, count, WIDTH, HEIGHT,
+                expected[0], expected[1], expected[2]);
+        float[][] actual = new float[3][count];
+        int vectorized = VectorProjection.project(matrix, vertices.coordinates(), 0, count, WIDTH, HEIGHT,
+                actual[0], actual[1], actual[2]);
+        Assertions.assertEquals(count - count % VectorProjection.getLaneCount(), vectorized);
+
+        VertexProjector.project(matrix, vertices.coordinates(), 0, count, WIDTH, HEIGHT,
+                actual[0], actual[1], actual[2]);
+        for (int k = 0; k < 3; ++k) {
+            Assertions.assertArrayEquals(expected[k], actual[k]);
+        }
+    }
+
+    @Test
+    public void testProjectDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assertions.assertTrue(threadBean.isThreadAllocatedMemorySupported());
+
+        Vector3fList vertices = createVertices(10_000);
+        Matrix4f matrix = createMatrix();
+        ScreenVertexBuffer buffer = new ScreenVertexBuffer();
+
+        // Прогрев: массивы вырастают до размера модели, код компилируется JIT
+        // (векторное ядро перестаёт создавать объекты только после компиляции C2)
+        for (int i = 0; i < 2000; ++i) {
+            buffer.invalidate();
+            buffer.project(vertices, matrix, WIDTH, HEIGHT);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        // Сам замер тоже может что-то выделять, его вычитаем
+        final long calibrationStart = threadBean.getThreadAllocatedBytes(threadId);
+        final long calibrationEnd = threadBean.getThreadAllocatedBytes(threadId);
+        final long overhead = calibrationEnd - calibrationStart;
+
+        // Несколько замеров: перекомпиляция JIT посреди замера может разово что-то выделить
+        long allocated = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < 10 && allocated != 0; ++attempt) {
+            final long start = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100; ++i) {
+                buffer.invalidate();
+                buffer.project(vertices, matrix, WIDTH, HEIGHT);
+            }
+            allocated = threadBean.getThreadAllocatedBytes(threadId) - start - overhead;
+        }
+        Assertions.assertEquals(0, allocated);
+    }
+}
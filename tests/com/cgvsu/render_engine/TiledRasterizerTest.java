@@ -0,0 +1,156 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.EdgeList;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.TriangleList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4f;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+
+class TiledRasterizerTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    // Случайные треугольники прямо в экранных координатах (матрица - тождественная,
+    // окно 1x1, поэтому экранные x, y получаются из координат вершин без искажений)
+    private static Model createRandomModel(int triangleCount) {
+        Random random = new Random(42);
+        Model model = new Model();
+        for (int i = 0; i < triangleCount * 3; ++i) {
+            model.vertices.add(random.nextFloat() * (WIDTH + 100) - 50, random.nextFloat() * (HEIGHT + 100) - 50,
+                    random.nextFloat() * 2 - 1);
+        }
+        for (int i = 0; i < triangleCount; ++i) {
+            model.polygons.add(new int[]{i * 3, i * 3 + 1, i * 3 + 2}, 3, null, 0, null, 0);
+        }
+        return model;
+    }
+
+    private static ScreenVertexBuffer project(Model model) {
+        Matrix4f identity = new Matrix4f();
+        identity.setIdentity();
+        ScreenVertexBuffer screenVertices = new ScreenVertexBuffer();
+        screenVertices.project(model.vertices, identity, 1, 1);
+        // Экранные координаты при окне 1x1: x + 0.5 и -y + 0.5, возвращаем исходные
+        for (int i = 0; i < model.vertices.size(); ++i) {
+            screenVertices.getScreenX()[i] = model.vertices.getX(i);
+            screenVertices.getScreenY()[i] = model.vertices.getY(i);
+        }
+        return screenVertices;
+    }
+
+    private static int[] renderTiled(Model model, ScreenVertexBuffer screenVertices, ForkJoinPool pool) {
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(WIDTH, HEIGHT);
+        frameBuffer.clear(0);
+        TiledRasterizer rasterizer = new TiledRasterizer(pool);
+        rasterizer.fillTriangles(frameBuffer, screenVertices, model.getTriangles(), triangleInd -> 0xFF000000 | triangleInd);
+        rasterizer.drawEdges(frameBuffer, screenVertices, model.getEdges(), 0xFFFFFFFF);
+        return Arrays.copyOf(frameBuffer.getPixels(), WIDTH * HEIGHT);
+    }
+
+    @Test
+    public void testTiledMatchesSerial() {
+        Model model = createRandomModel(500);
+        ScreenVertexBuffer screenVertices = project(model);
+
+        // Тот же кадр без плиток: лицевые треугольники по порядку, затем рёбра
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.resize(WIDTH, HEIGHT);
+        frameBuffer.clear(0);
+        float[] x = screenVertices.getScreenX();
+        float[] y = screenVertices.getScreenY();
+        float[] z = screenVertices.getDepth();
+        TriangleList triangles = model.getTriangles();
+        for (int t = 0; t < triangles.size(); ++t) {
+            int i0 = triangles.getVertexIndex(t, 0);
+            int i1 = triangles.getVertexIndex(t, 1);
+            int i2 = triangles.getVertexIndex(t, 2);
+            if ((x[i1] - x[i0]) * (y[i2] - y[i0]) - (x[i2] - x[i0]) * (y[i1] - y[i0]) > 0) {
+                frameBuffer.fillTriangle(x[i0], y[i0], z[i0], x[i1], y[i1], z[i1], x[i2], y[i2], z[i2], 0xFF000000 | t);
+            }
+        }
+        for (int e = 0; e < model.getEdges().size(); ++e) {
+            int start = model.getEdges().getStart(e);
+            int end = model.getEdges().getEnd(e);
+            frameBuffer.drawLine(x[start], y[start], x[end], y[end], 0xFFFFFFFF);
+        }
+
+        int[] expected = Arrays.copyOf(frameBuffer.getPixels(), WIDTH * HEIGHT);
+        int[] actual = renderTiled(model, screenVertices, ForkJoinPool.commonPool());
+        int mismatches = 0;
+        for (int i = 0; i < expected.length; ++i) {
+            if (expected[i] != actual[i]) {
+                ++mismatches;
+            }
+        }
+        // Допускаются единичные расхождения на границах треугольников из-за округления
+        Assertions.assertTrue(mismatches < expected.length / 1000, "mismatches: " + mismatches);
+    }
+
+    @Test
+    public void testMultipleMeshesMatchSequential() {
+        Model first = createRandomModel(3000);
+        Model second = createRandomModel(200);
+        Model empty = new Model();
+        ScreenVertexBuffer firstVertices = project(first);
+        ScreenVertexBuffer secondVertices = project(second);
+        // Вторая сетка сдвинута, чтобы она перекрывала первую не везде
+        for (int i = 0; i < second.vertices.size(); ++i) {
+            secondVertices.getScreenX()[i] += 40;
+            secondVertices.getDepth()[i] *= 0.5f;
+        }
+
+        FrameBuffer expected = new FrameBuffer();
+        expected.resize(WIDTH, HEIGHT);
+        expected.clear(0);
+        TiledRasterizer rasterizer = new TiledRasterizer();
+        rasterizer.fillTriangles(expected, firstVertices, first.getTriangles(), triangleInd -> 0xFF000000 | triangleInd);
+        rasterizer.fillTriangles(expected, secondVertices, second.getTriangles(), triangleInd -> 0xFF100000 | triangleInd);
+        rasterizer.drawEdges(expected, firstVertices, first.getEdges(), 0xFFFFFFFF);
+        rasterizer.drawEdges(expected, secondVertices, second.getEdges(), 0xFF00FF00);
+
+        // Те же сетки одним вызовом, в том числе с пустой сеткой посередине
+        FrameBuffer actual = new FrameBuffer();
+        actual.resize(WIDTH, HEIGHT);
+        actual.clear(0);
+        ScreenVertexBuffer[] screenVertices = {firstVertices, project(empty), secondVertices};
+        rasterizer.fillTriangles(actual, screenVertices,
+                new TriangleList[]{first.getTriangles(), empty.getTriangles(), second.getTriangles()},
+                new IntUnaryOperator[]{
+                        triangleInd -> 0xFF000000 | triangleInd,
+                        triangleInd -> 0xFFFFFFFF,
+                        triangleInd -> 0xFF100000 | triangleInd},
+                3);
+        rasterizer.drawEdges(actual, screenVertices,
+                new EdgeList[]{first.getEdges(), empty.getEdges(), second.getEdges()},
+                new int[]{0xFFFFFFFF, 0xFFFFFFFF, 0xFF00FF00}, 3);
+
+        Assertions.assertArrayEquals(
+                Arrays.copyOf(expected.getPixels(), WIDTH * HEIGHT),
+                Arrays.copyOf(actual.getPixels(), WIDTH * HEIGHT));
+    }
+
+    @Test
+    public void testResultDoesNotDependOnThreadCount() {
+        Model model = createRandomModel(20000);
+        ScreenVertexBuffer screenVertices = project(model);
+
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        ForkJoinPool manyThreads = new ForkJoinPool(8);
+        try {
+            Assertions.assertArrayEquals(
+                    renderTiled(model, screenVertices, singleThread),
+                    renderTiled(model, screenVertices, manyThreads));
+        } finally {
+            singleThread.shutdown();
+            manyThreads.shutdown();
+        }
+    }
+}